@@ -196,6 +196,167 @@ this.unregisterConditional(_arg0, _arg1);
 reply.writeNoException();
 return true;
 }
+case TRANSACTION_registerAdaptive:
+{
+data.enforceInterface(DESCRIPTOR);
+int _arg0;
+_arg0 = data.readInt();
+long _arg1;
+_arg1 = data.readLong();
+long _arg2;
+_arg2 = data.readLong();
+float _arg3;
+_arg3 = data.readFloat();
+long _arg4;
+_arg4 = data.readLong();
+android.os.Messenger _arg5;
+if ((0!=data.readInt())) {
+_arg5 = android.os.Messenger.CREATOR.createFromParcel(data);
+}
+else {
+_arg5 = null;
+}
+int _result = this.registerAdaptive(_arg0, _arg1, _arg2, _arg3, _arg4, _arg5);
+reply.writeNoException();
+reply.writeInt(_result);
+return true;
+}
+case TRANSACTION_getMetricFloat:
+{
+data.enforceInterface(DESCRIPTOR);
+int _arg0;
+_arg0 = data.readInt();
+long _arg1;
+_arg1 = data.readLong();
+float _result = this.getMetricFloat(_arg0, _arg1);
+reply.writeNoException();
+reply.writeFloat(_result);
+return true;
+}
+case TRANSACTION_getMetricDouble:
+{
+data.enforceInterface(DESCRIPTOR);
+int _arg0;
+_arg0 = data.readInt();
+long _arg1;
+_arg1 = data.readLong();
+double _result = this.getMetricDouble(_arg0, _arg1);
+reply.writeNoException();
+reply.writeDouble(_result);
+return true;
+}
+case TRANSACTION_registerPeriodicBatch:
+{
+data.enforceInterface(DESCRIPTOR);
+int[] _arg0;
+_arg0 = data.createIntArray();
+long[] _arg1;
+_arg1 = data.createLongArray();
+long _arg2;
+_arg2 = data.readLong();
+boolean _arg3;
+_arg3 = (0!=data.readInt());
+android.os.Messenger _arg4;
+if ((0!=data.readInt())) {
+_arg4 = android.os.Messenger.CREATOR.createFromParcel(data);
+}
+else {
+_arg4 = null;
+}
+int[] _result = this.registerPeriodicBatch(_arg0, _arg1, _arg2, _arg3, _arg4);
+reply.writeNoException();
+reply.writeIntArray(_result);
+return true;
+}
+case TRANSACTION_unregisterBatch:
+{
+data.enforceInterface(DESCRIPTOR);
+int[] _arg0;
+_arg0 = data.createIntArray();
+int[] _arg1;
+_arg1 = data.createIntArray();
+this.unregisterBatch(_arg0, _arg1);
+reply.writeNoException();
+return true;
+}
+case TRANSACTION_getSnapshot:
+{
+data.enforceInterface(DESCRIPTOR);
+int[] _arg0;
+_arg0 = data.createIntArray();
+double[] _result = this.getSnapshot(_arg0);
+reply.writeNoException();
+reply.writeDoubleArray(_result);
+return true;
+}
+case TRANSACTION_registerBatchedPeriodic:
+{
+data.enforceInterface(DESCRIPTOR);
+int _arg0;
+_arg0 = data.readInt();
+long _arg1;
+_arg1 = data.readLong();
+long _arg2;
+_arg2 = data.readLong();
+boolean _arg3;
+_arg3 = (0!=data.readInt());
+long _arg4;
+_arg4 = data.readLong();
+int _arg5;
+_arg5 = data.readInt();
+android.os.Messenger _arg6;
+if ((0!=data.readInt())) {
+_arg6 = android.os.Messenger.CREATOR.createFromParcel(data);
+}
+else {
+_arg6 = null;
+}
+int _result = this.registerBatchedPeriodic(_arg0, _arg1, _arg2, _arg3, _arg4, _arg5, _arg6);
+reply.writeNoException();
+reply.writeInt(_result);
+return true;
+}
+case TRANSACTION_openStream:
+{
+data.enforceInterface(DESCRIPTOR);
+int[] _arg0;
+_arg0 = data.createIntArray();
+long _arg1;
+_arg1 = data.readLong();
+long _arg2;
+_arg2 = data.readLong();
+int _arg3;
+_arg3 = data.readInt();
+android.os.IBinder _arg4;
+_arg4 = data.readStrongBinder();
+int[] _arg5;
+int _arg5_length = data.readInt();
+if ((_arg5_length<0)) {
+_arg5 = null;
+}
+else {
+_arg5 = new int[_arg5_length];
+}
+android.os.ParcelFileDescriptor _result = this.openStream(_arg0, _arg1, _arg2, _arg3, _arg4, _arg5);
+reply.writeNoException();
+if ((_result!=null)) {
+reply.writeInt(1);
+_result.writeToParcel(reply, android.os.Parcelable.PARCELABLE_WRITE_RETURN_VALUE);
+}
+else {
+reply.writeInt(0);
+}
+reply.writeIntArray(_arg5);
+return true;
+}
+case TRANSACTION_getWakeupStats:
+{
+data.enforceInterface(DESCRIPTOR);
+long[] _result = this.getWakeupStats();
+reply.writeNoException();
+reply.writeLongArray(_result);
+return true;
+}
 }
 return super.onTransact(code, data, reply, flags);
 }
@@ -263,11 +424,16 @@ return _result;
 	 * Obtain current value for metric in synchronous call. For a list of all supported 
 	 * metrics and their associated integer reference, see {@link Metrics}.
 	 * 
+	 * If the value cached by the metric group is within the group's freshness 
+	 * threshold, it is returned immediately.  Otherwise a one-shot update of the
+	 * group is triggered, and the call blocks for at most timeout milliseconds
+	 * (capped at 5 seconds) waiting for it.
+	 * 
 	 * @param metric     integer representing metric (per {@link Metrics})
-	 * @param timeout    required freshness of value, in milliseconds.  If currently 
-	 *                    cached value is within timeout bounds, cached value will be 
-	 *                    returned for most efficient execution. 
-	 * @return    current value for metric
+	 * @param timeout    maximum time to wait for a fresh value, in milliseconds.  If 0,
+	 *                    only a cached value is returned. 
+	 * @return    current value for metric, Long.MIN_VALUE if metric is unknown or no
+	 *             value could be obtained within timeout
 	 * 
 	 * @see Metrics
 	 */
@@ -522,6 +688,373 @@ _reply.recycle();
 _data.recycle();
 }
 }
+/**
+     * Register a new adaptive monitor. Updates are provided in the same way as for
+     * periodic monitors, but the period between updates adapts to the variability of
+     * the metric: it is stretched up to maxPeriod while the value is flat, and tightened 
+     * down to minPeriod as soon as it changes, so that values between updates differ
+     * from the last update by about the error tolerance at most.  Adaptive monitors 
+     * are removed with {@link #unregisterPeriodic(int, int)}.
+     * 
+	 * @param metric    integer representing metric (per {@link Metrics}) to monitor
+	 * @param minPeriod    minimum period between updates (milliseconds)
+	 * @param maxPeriod    maximum period between updates (milliseconds)
+	 * @param tolerance    error tolerance, in units of the metric
+	 * @param duration    duration to monitor (in milliseconds), 0 for continuous
+	 * @param callback    messenger for client callback handler to handle updates
+     * @return    unique id of registered monitor, -1 on failure (typically because metric
+     *             is not supported on this system)
+     * 
+     * @see Metrics
+     */
+@Override public int registerAdaptive(int metric, long minPeriod, long maxPeriod, float tolerance, long duration, android.os.Messenger callback) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+int _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeInt(metric);
+_data.writeLong(minPeriod);
+_data.writeLong(maxPeriod);
+_data.writeFloat(tolerance);
+_data.writeLong(duration);
+if ((callback!=null)) {
+_data.writeInt(1);
+callback.writeToParcel(_data, 0);
+}
+else {
+_data.writeInt(0);
+}
+mRemote.transact(Stub.TRANSACTION_registerAdaptive, _data, _reply, 0);
+_reply.readException();
+_result = _reply.readInt();
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
+/**
+	 * Obtain current value for metric in synchronous call, as float.  Values are
+	 * cached and refreshed as for {@link #getMetricLong(int, long)}.
+	 * 
+	 * @param metric     integer representing metric (per {@link Metrics})
+	 * @param timeout    maximum time to wait for a fresh value, in milliseconds
+	 * @return    current value for metric, NaN if metric is unknown or no value could
+	 *             be obtained within timeout
+	 * 
+	 * @see Metrics
+	 */
+@Override public float getMetricFloat(int metric, long timeout) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+float _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeInt(metric);
+_data.writeLong(timeout);
+mRemote.transact(Stub.TRANSACTION_getMetricFloat, _data, _reply, 0);
+_reply.readException();
+_result = _reply.readFloat();
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
+/**
+	 * Obtain current value for metric in synchronous call, as double.  Values are
+	 * cached and refreshed as for {@link #getMetricLong(int, long)}.
+	 * 
+	 * @param metric     integer representing metric (per {@link Metrics})
+	 * @param timeout    maximum time to wait for a fresh value, in milliseconds
+	 * @return    current value for metric, NaN if metric is unknown or no value could
+	 *             be obtained within timeout
+	 * 
+	 * @see Metrics
+	 */
+@Override public double getMetricDouble(int metric, long timeout) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+double _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeInt(metric);
+_data.writeLong(timeout);
+mRemote.transact(Stub.TRANSACTION_getMetricDouble, _data, _reply, 0);
+_reply.readException();
+_result = _reply.readDouble();
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
+/**
+     * Register new periodic monitors for several metrics in a single call.  Monitors
+     * behave as if registered individually with 
+     * {@link #registerPeriodic(int, long, long, boolean, Messenger)}, sharing the 
+     * duration, eavesdrop setting and callback, but their ids are allocated in a 
+     * single database transaction and each metric group receives a single request.
+     * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) to monitor
+	 * @param periods    period between updates for each metric (milliseconds), same 
+	 *                     length as metrics
+	 * @param duration    duration to monitor (in milliseconds), 0 for continuous
+	 * @param eavesdrop    if true, will provide updates as frequently as they are available
+	 *                        due to any active monitors
+	 * @param callback    messenger for client callback handler to handle periodic updates
+     * @return    unique id of registered monitor for each metric, -1 for metrics which
+     *             are not supported on this system
+     * 
+     * @see #unregisterBatch(int[], int[])
+     */
+@Override public int[] registerPeriodicBatch(int[] metrics, long[] periods, long duration, boolean eavesdrop, android.os.Messenger callback) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+int[] _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeIntArray(metrics);
+_data.writeLongArray(periods);
+_data.writeLong(duration);
+_data.writeInt(((eavesdrop)?(1):(0)));
+if ((callback!=null)) {
+_data.writeInt(1);
+callback.writeToParcel(_data, 0);
+}
+else {
+_data.writeInt(0);
+}
+mRemote.transact(Stub.TRANSACTION_registerPeriodicBatch, _data, _reply, 0);
+_reply.readException();
+_result = _reply.createIntArray();
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
+/**
+     * Unregister several periodic monitors in a single call.
+     * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) of registered 
+	 *                     monitors
+	 * @param monitorIds    unique id of each monitor, as returned by 
+	 *                        {@link #registerPeriodicBatch(int[], long[], long, boolean, Messenger)}
+	 *                        or {@link #registerPeriodic(int, long, long, boolean, Messenger)}
+     */
+@Override public void unregisterBatch(int[] metrics, int[] monitorIds) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeIntArray(metrics);
+_data.writeIntArray(monitorIds);
+mRemote.transact(Stub.TRANSACTION_unregisterBatch, _data, _reply, 0);
+_reply.readException();
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+}
+/**
+     * Obtain current values of several metrics in a single call.  Values of metrics 
+     * which belong to the same metric group are taken from the same read of the
+     * group.
+     * 
+     * Each group is checked against its own freshness threshold: a group whose
+     * last published values are within it is answered from those values, without
+     * involving its thread.  Each stale group is refreshed by a single one-shot 
+     * read on its thread, which publishes new values without counting as an update
+     * of the group (monitors of the group are not notified).  Groups which can not
+     * be read outside of their updates return their last values.  The call blocks
+     * for at most 1 second waiting for stale groups.
+     * 
+     * Metrics reported as deltas, such as the jiffies of each CPU core, are 
+     * counted from the previous one-shot read rather than from the previous update
+     * (the first one-shot read of such a group reports 0).
+     * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) to read
+     * @return    current value of each metric, NaN for metrics which are unknown or
+     *             currently not available
+     * 
+     * @see #getMetricDouble(int, long)
+     */
+@Override public double[] getSnapshot(int[] metrics) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+double[] _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeIntArray(metrics);
+mRemote.transact(Stub.TRANSACTION_getSnapshot, _data, _reply, 0);
+_reply.readException();
+_result = _reply.createDoubleArray();
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
+/**
+     * Register a new periodic monitor whose updates are delivered in batches.  Rather 
+     * than one message per sample, the Messenger receives messages with the "what" 
+     * field set to metric, arg1 set to the count of samples, and a 
+     * {@link SampleBatch} of primitive timestamps and values in the message data 
+     * under {@link SampleBatch#KEY}.  A batch is sent once it holds maxCount samples, 
+     * or once holding it for the next sample would delay its first sample by more 
+     * than maxLatency.  Pending samples are sent when the monitor completes or is 
+     * unregistered.  Monitors are removed with {@link #unregisterPeriodic(int, int)}.
+     * <p>
+     * maxCount is limited to {@link SampleBatch#MAX_COUNT}.  Location coordinates
+     * are always delivered one message per sample.
+     * 
+	 * @param metric    integer representing metric (per {@link Metrics}) to monitor
+	 * @param period    period between updates (milliseconds), if eavesdrop is true this will
+	 *                     represent the maximum allowable period between updates
+	 * @param duration    duration to monitor (in milliseconds), 0 for continuous
+	 * @param eavesdrop    if true, will provide updates as frequently as they are available
+	 *                        due to any active monitors
+	 * @param maxLatency    maximum time a sample may be held before it is sent 
+	 *                        (milliseconds)
+	 * @param maxCount    maximum number of samples per batch
+	 * @param callback    messenger for client callback handler to handle batches
+     * @return    unique id of registered monitor, -1 on failure (typically because metric
+     *             is not supported on this system)
+     * 
+     * @see SampleBatch
+     */
+@Override public int registerBatchedPeriodic(int metric, long period, long duration, boolean eavesdrop, long maxLatency, int maxCount, android.os.Messenger callback) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+int _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeInt(metric);
+_data.writeLong(period);
+_data.writeLong(duration);
+_data.writeInt(((eavesdrop)?(1):(0)));
+_data.writeLong(maxLatency);
+_data.writeInt(maxCount);
+if ((callback!=null)) {
+_data.writeInt(1);
+callback.writeToParcel(_data, 0);
+}
+else {
+_data.writeInt(0);
+}
+mRemote.transact(Stub.TRANSACTION_registerBatchedPeriodic, _data, _reply, 0);
+_reply.readException();
+_result = _reply.readInt();
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
+/**
+     * Open a stream of samples through shared memory, for high rate monitoring of 
+     * one or more metrics.  A periodic monitor is registered for each metric, and 
+     * every sample is written to a {@link SampleRing} in a shared memory region, 
+     * rather than sent in a message.  The client maps the region from the returned
+     * descriptor (for example with FileInputStream.getChannel().map() in read-only
+     * mode), {@link SampleRing#attach(java.nio.ByteBuffer) attaches} to the ring, and 
+     * reads samples at its own pace.  If the client falls behind by more than the 
+     * capacity of the ring, the oldest samples are overwritten and counted as 
+     * overruns.  Monitors are removed with {@link #unregisterBatch(int[], int[])}, 
+     * once their duration expires, or when the process holding token dies; once 
+     * all are removed, the ring is marked closed.
+     * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) to monitor
+	 * @param period    period between updates (milliseconds)
+	 * @param duration    duration to monitor (in milliseconds), 0 for continuous
+	 * @param capacity    requested capacity of ring (records), rounded to a power of 2
+	 *                      between {@link SampleRing#MIN_CAPACITY} and 
+	 *                      {@link SampleRing#MAX_CAPACITY}
+	 * @param token    binder object of client (such as a new Binder()), watched to 
+	 *                   remove monitors if client dies; may be null only if duration
+	 *                   is finite
+	 * @param monitorIds    array of same length as metrics, filled with unique id of 
+	 *                        monitor of each metric, -1 for metrics which are not 
+	 *                        supported on this system
+     * @return    read-only descriptor of shared memory region, null on failure
+     * 
+     * @see SampleRing
+     */
+@Override public android.os.ParcelFileDescriptor openStream(int[] metrics, long period, long duration, int capacity, android.os.IBinder token, int[] monitorIds) throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+android.os.ParcelFileDescriptor _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+_data.writeIntArray(metrics);
+_data.writeLong(period);
+_data.writeLong(duration);
+_data.writeInt(capacity);
+_data.writeStrongBinder(token);
+if ((monitorIds==null)) {
+_data.writeInt(-1);
+}
+else {
+_data.writeInt(monitorIds.length);
+}
+mRemote.transact(Stub.TRANSACTION_openStream, _data, _reply, 0);
+_reply.readException();
+if ((0!=_reply.readInt())) {
+_result = android.os.ParcelFileDescriptor.CREATOR.createFromParcel(_reply);
+}
+else {
+_result = null;
+}
+_reply.readIntArray(monitorIds);
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
+/**
+     * Get counters of the scheduler which coalesces timed updates of metrics
+     * sharing a metric thread into shared wakeups of that thread.
+     * Used only for testing purposes.
+     * 
+     * @return    array of metric thread wakeups which ran updates, updates run by
+     *             these wakeups, and wakeups saved by running updates together
+     */
+@Override public long[] getWakeupStats() throws android.os.RemoteException
+{
+android.os.Parcel _data = android.os.Parcel.obtain();
+android.os.Parcel _reply = android.os.Parcel.obtain();
+long[] _result;
+try {
+_data.writeInterfaceToken(DESCRIPTOR);
+mRemote.transact(Stub.TRANSACTION_getWakeupStats, _data, _reply, 0);
+_reply.readException();
+_result = _reply.createLongArray();
+}
+finally {
+_reply.recycle();
+_data.recycle();
+}
+return _result;
+}
 }
 static final int TRANSACTION_getPid = (android.os.IBinder.FIRST_CALL_TRANSACTION + 0);
 static final int TRANSACTION_getMeasureCnt = (android.os.IBinder.FIRST_CALL_TRANSACTION + 1);
@@ -532,6 +1065,15 @@ static final int TRANSACTION_registerEvent = (android.os.IBinder.FIRST_CALL_TRAN
 static final int TRANSACTION_unregisterEvent = (android.os.IBinder.FIRST_CALL_TRANSACTION + 6);
 static final int TRANSACTION_registerConditional = (android.os.IBinder.FIRST_CALL_TRANSACTION + 7);
 static final int TRANSACTION_unregisterConditional = (android.os.IBinder.FIRST_CALL_TRANSACTION + 8);
+static final int TRANSACTION_registerAdaptive = (android.os.IBinder.FIRST_CALL_TRANSACTION + 9);
+static final int TRANSACTION_getMetricFloat = (android.os.IBinder.FIRST_CALL_TRANSACTION + 10);
+static final int TRANSACTION_getMetricDouble = (android.os.IBinder.FIRST_CALL_TRANSACTION + 11);
+static final int TRANSACTION_registerPeriodicBatch = (android.os.IBinder.FIRST_CALL_TRANSACTION + 12);
+static final int TRANSACTION_unregisterBatch = (android.os.IBinder.FIRST_CALL_TRANSACTION + 13);
+static final int TRANSACTION_getSnapshot = (android.os.IBinder.FIRST_CALL_TRANSACTION + 14);
+static final int TRANSACTION_registerBatchedPeriodic = (android.os.IBinder.FIRST_CALL_TRANSACTION + 15);
+static final int TRANSACTION_openStream = (android.os.IBinder.FIRST_CALL_TRANSACTION + 16);
+static final int TRANSACTION_getWakeupStats = (android.os.IBinder.FIRST_CALL_TRANSACTION + 17);
 }
 /**
 	 * Get PID of CIMON application.
@@ -549,11 +1091,16 @@ public int getMeasureCnt(int metric) throws android.os.RemoteException;
 	 * Obtain current value for metric in synchronous call. For a list of all supported 
 	 * metrics and their associated integer reference, see {@link Metrics}.
 	 * 
+	 * If the value cached by the metric group is within the group's freshness 
+	 * threshold, it is returned immediately.  Otherwise a one-shot update of the
+	 * group is triggered, and the call blocks for at most timeout milliseconds
+	 * (capped at 5 seconds) waiting for it.
+	 * 
 	 * @param metric     integer representing metric (per {@link Metrics})
-	 * @param timeout    required freshness of value, in milliseconds.  If currently 
-	 *                    cached value is within timeout bounds, cached value will be 
-	 *                    returned for most efficient execution. 
-	 * @return    current value for metric
+	 * @param timeout    maximum time to wait for a fresh value, in milliseconds.  If 0,
+	 *                    only a cached value is returned. 
+	 * @return    current value for metric, Long.MIN_VALUE if metric is unknown or no
+	 *             value could be obtained within timeout
 	 * 
 	 * @see Metrics
 	 */
@@ -668,4 +1215,170 @@ public int registerConditional(int metric, java.lang.String expression, long per
 	 * @see #registerConditional(int, String, long, Messenger)
      */
 public void unregisterConditional(int metric, int monitorId) throws android.os.RemoteException;
+/**
+     * Register a new adaptive monitor. Updates are provided in the same way as for
+     * periodic monitors, but the period between updates adapts to the variability of
+     * the metric: it is stretched up to maxPeriod while the value is flat, and tightened 
+     * down to minPeriod as soon as it changes, so that values between updates differ
+     * from the last update by about the error tolerance at most.  Adaptive monitors 
+     * are removed with {@link #unregisterPeriodic(int, int)}.
+     * 
+	 * @param metric    integer representing metric (per {@link Metrics}) to monitor
+	 * @param minPeriod    minimum period between updates (milliseconds)
+	 * @param maxPeriod    maximum period between updates (milliseconds)
+	 * @param tolerance    error tolerance, in units of the metric
+	 * @param duration    duration to monitor (in milliseconds), 0 for continuous
+	 * @param callback    messenger for client callback handler to handle updates
+     * @return    unique id of registered monitor, -1 on failure (typically because metric
+     *             is not supported on this system)
+     * 
+     * @see Metrics
+     */
+public int registerAdaptive(int metric, long minPeriod, long maxPeriod, float tolerance, long duration, android.os.Messenger callback) throws android.os.RemoteException;
+/**
+	 * Obtain current value for metric in synchronous call, as float.  Values are
+	 * cached and refreshed as for {@link #getMetricLong(int, long)}.
+	 * 
+	 * @param metric     integer representing metric (per {@link Metrics})
+	 * @param timeout    maximum time to wait for a fresh value, in milliseconds
+	 * @return    current value for metric, NaN if metric is unknown or no value could
+	 *             be obtained within timeout
+	 * 
+	 * @see Metrics
+	 */
+public float getMetricFloat(int metric, long timeout) throws android.os.RemoteException;
+/**
+	 * Obtain current value for metric in synchronous call, as double.  Values are
+	 * cached and refreshed as for {@link #getMetricLong(int, long)}.
+	 * 
+	 * @param metric     integer representing metric (per {@link Metrics})
+	 * @param timeout    maximum time to wait for a fresh value, in milliseconds
+	 * @return    current value for metric, NaN if metric is unknown or no value could
+	 *             be obtained within timeout
+	 * 
+	 * @see Metrics
+	 */
+public double getMetricDouble(int metric, long timeout) throws android.os.RemoteException;
+/**
+     * Register new periodic monitors for several metrics in a single call.  Monitors
+     * behave as if registered individually with 
+     * {@link #registerPeriodic(int, long, long, boolean, Messenger)}, sharing the 
+     * duration, eavesdrop setting and callback, but their ids are allocated in a 
+     * single database transaction and each metric group receives a single request.
+     * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) to monitor
+	 * @param periods    period between updates for each metric (milliseconds), same 
+	 *                     length as metrics
+	 * @param duration    duration to monitor (in milliseconds), 0 for continuous
+	 * @param eavesdrop    if true, will provide updates as frequently as they are available
+	 *                        due to any active monitors
+	 * @param callback    messenger for client callback handler to handle periodic updates
+     * @return    unique id of registered monitor for each metric, -1 for metrics which
+     *             are not supported on this system
+     * 
+     * @see #unregisterBatch(int[], int[])
+     */
+public int[] registerPeriodicBatch(int[] metrics, long[] periods, long duration, boolean eavesdrop, android.os.Messenger callback) throws android.os.RemoteException;
+/**
+     * Unregister several periodic monitors in a single call.
+     * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) of registered 
+	 *                     monitors
+	 * @param monitorIds    unique id of each monitor, as returned by 
+	 *                        {@link #registerPeriodicBatch(int[], long[], long, boolean, Messenger)}
+	 *                        or {@link #registerPeriodic(int, long, long, boolean, Messenger)}
+     */
+public void unregisterBatch(int[] metrics, int[] monitorIds) throws android.os.RemoteException;
+/**
+     * Obtain current values of several metrics in a single call.  Values of metrics 
+     * which belong to the same metric group are taken from the same read of the
+     * group.
+     * 
+     * Each group is checked against its own freshness threshold: a group whose
+     * last published values are within it is answered from those values, without
+     * involving its thread.  Each stale group is refreshed by a single one-shot 
+     * read on its thread, which publishes new values without counting as an update
+     * of the group (monitors of the group are not notified).  Groups which can not
+     * be read outside of their updates return their last values.  The call blocks
+     * for at most 1 second waiting for stale groups.
+     * 
+     * Metrics reported as deltas, such as the jiffies of each CPU core, are 
+     * counted from the previous one-shot read rather than from the previous update
+     * (the first one-shot read of such a group reports 0).
+     * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) to read
+     * @return    current value of each metric, NaN for metrics which are unknown or
+     *             currently not available
+     * 
+     * @see #getMetricDouble(int, long)
+     */
+public double[] getSnapshot(int[] metrics) throws android.os.RemoteException;
+/**
+     * Register a new periodic monitor whose updates are delivered in batches.  Rather 
+     * than one message per sample, the Messenger receives messages with the "what" 
+     * field set to metric, arg1 set to the count of samples, and a 
+     * {@link SampleBatch} of primitive timestamps and values in the message data 
+     * under {@link SampleBatch#KEY}.  A batch is sent once it holds maxCount samples, 
+     * or once holding it for the next sample would delay its first sample by more 
+     * than maxLatency.  Pending samples are sent when the monitor completes or is 
+     * unregistered.  Monitors are removed with {@link #unregisterPeriodic(int, int)}.
+     * <p>
+     * maxCount is limited to {@link SampleBatch#MAX_COUNT}.  Location coordinates
+     * are always delivered one message per sample.
+     * 
+	 * @param metric    integer representing metric (per {@link Metrics}) to monitor
+	 * @param period    period between updates (milliseconds), if eavesdrop is true this will
+	 *                     represent the maximum allowable period between updates
+	 * @param duration    duration to monitor (in milliseconds), 0 for continuous
+	 * @param eavesdrop    if true, will provide updates as frequently as they are available
+	 *                        due to any active monitors
+	 * @param maxLatency    maximum time a sample may be held before it is sent 
+	 *                        (milliseconds)
+	 * @param maxCount    maximum number of samples per batch
+	 * @param callback    messenger for client callback handler to handle batches
+     * @return    unique id of registered monitor, -1 on failure (typically because metric
+     *             is not supported on this system)
+     * 
+     * @see SampleBatch
+     */
+public int registerBatchedPeriodic(int metric, long period, long duration, boolean eavesdrop, long maxLatency, int maxCount, android.os.Messenger callback) throws android.os.RemoteException;
+/**
+     * Open a stream of samples through shared memory, for high rate monitoring of 
+     * one or more metrics.  A periodic monitor is registered for each metric, and 
+     * every sample is written to a {@link SampleRing} in a shared memory region, 
+     * rather than sent in a message.  The client maps the region from the returned
+     * descriptor (for example with FileInputStream.getChannel().map() in read-only
+     * mode), {@link SampleRing#attach(java.nio.ByteBuffer) attaches} to the ring, and 
+     * reads samples at its own pace.  If the client falls behind by more than the 
+     * capacity of the ring, the oldest samples are overwritten and counted as 
+     * overruns.  Monitors are removed with {@link #unregisterBatch(int[], int[])}, 
+     * once their duration expires, or when the process holding token dies; once 
+     * all are removed, the ring is marked closed.
+     * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) to monitor
+	 * @param period    period between updates (milliseconds)
+	 * @param duration    duration to monitor (in milliseconds), 0 for continuous
+	 * @param capacity    requested capacity of ring (records), rounded to a power of 2
+	 *                      between {@link SampleRing#MIN_CAPACITY} and 
+	 *                      {@link SampleRing#MAX_CAPACITY}
+	 * @param token    binder object of client (such as a new Binder()), watched to 
+	 *                   remove monitors if client dies; may be null only if duration
+	 *                   is finite
+	 * @param monitorIds    array of same length as metrics, filled with unique id of 
+	 *                        monitor of each metric, -1 for metrics which are not 
+	 *                        supported on this system
+     * @return    read-only descriptor of shared memory region, null on failure
+     * 
+     * @see SampleRing
+     */
+public android.os.ParcelFileDescriptor openStream(int[] metrics, long period, long duration, int capacity, android.os.IBinder token, int[] monitorIds) throws android.os.RemoteException;
+/**
+     * Get counters of the scheduler which coalesces timed updates of metrics
+     * sharing a metric thread into shared wakeups of that thread.
+     * Used only for testing purposes.
+     * 
+     * @return    array of metric thread wakeups which ran updates, updates run by
+     *             these wakeups, and wakeups saved by running updates together
+     */
+public long[] getWakeupStats() throws android.os.RemoteException;
 }
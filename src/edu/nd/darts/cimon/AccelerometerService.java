@@ -44,7 +44,7 @@ import android.util.SparseArray;
  * @see MetricService
  *
  */
-public final class AccelerometerService extends MetricService<Float> 
+public final class AccelerometerService extends FloatMetricService 
 						implements SensorEventListener {
 
 	/** Tag for log messages. */
@@ -76,6 +76,9 @@ public final class AccelerometerService extends MetricService<Float>
 		}
 		groupId = Metrics.ACCELEROMETER;
 		metricsCount = ACCEL_METRICS;
+		// orientation is computed from accelerometer and magnetometer callbacks
+		lane = MetricExecutor.LANE_DEDICATED;
+		affinity = Metrics.ACCELEROMETER;
 		
 		Context context = MyApplication.getAppContext();
 		mSensorManager = (SensorManager)context.getSystemService(Context.SENSOR_SERVICE);
@@ -86,14 +89,14 @@ public final class AccelerometerService extends MetricService<Float>
 			supportedMetric = false;
 			return;
 		}
-		values = new Float[ACCEL_METRICS];
+		floatValues = new float[ACCEL_METRICS];
 		valueNodes = new SparseArray<ValueNode<Float>>();
 		freshnessThreshold = FIVE_SECONDS;
 //		observerHandler = new Handler();
 		minInterval = mAccelerometer.getMinDelay()/1000;
 		adminObserver = SensorObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -130,6 +133,11 @@ public final class AccelerometerService extends MetricService<Float>
 		}
 	}
 	
+	@Override
+	protected boolean hasMonitors() {
+		return (orientService != null) || super.hasMonitors();
+	}
+	
 	@Override
 	void getMetricInfo() {
 		if (DebugLog.DEBUG) Log.d(TAG, "AccelerometerService.getMetricInfo - updating accelerometer values");
@@ -151,10 +159,10 @@ public final class AccelerometerService extends MetricService<Float>
 //		final long curTime = SystemClock.uptimeMillis();
 		float magnitude = 0;
 		for (int i = 0; i < (ACCEL_METRICS - 1); i++) {
-			values[i] = event.values[i];
+			floatValues[i] = event.values[i];
 			magnitude += event.values[i] * event.values[i];
 		}
-		values[ACCEL_METRICS - 1] = FloatMath.sqrt(magnitude);
+		floatValues[ACCEL_METRICS - 1] = FloatMath.sqrt(magnitude);
 		
 		// override of performUpdates();
 		// inserted here to provide access to *event* for orientService call
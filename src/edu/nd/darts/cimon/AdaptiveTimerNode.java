@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import android.os.Messenger;
+
+/**
+ * Node which holds an adaptive monitoring request for a specific metric.  The 
+ * period between updates varies between a minimum and maximum period, following
+ * the variability of the metric: it is stretched while the signal is flat, and
+ * tightened as soon as the signal changes.
+ * <p>
+ * The rate of change of the metric is estimated online, as an exponentially
+ * weighted average of the change between delivered values per millisecond.  The
+ * next period is the time in which the metric is expected to change by the error
+ * tolerance at that rate, so a client reconstructing the signal from the delivered
+ * values (holding or interpolating between them) stays within the tolerance.  The
+ * period at most doubles from one update to the next, and drops to the minimum
+ * period whenever consecutive values differ by more than the tolerance.
+ * 
+ * @author darts
+ * 
+ * @see TimerList#insertAdaptive(int, long, long, float, Messenger, long)
+ *
+ */
+public class AdaptiveTimerNode extends TimerNode {
+	
+	/** Weight of newest observation in estimate of rate of change. */
+	private static final float RATE_WEIGHT = 0.3f;
+	
+	private final long minPeriod;
+	private final long maxPeriod;
+	private final float tolerance;
+	private boolean started = false;
+	private float lastValue;
+	private long lastTime;
+	/** Estimated rate of change, per millisecond. */
+	private float rate = 0;
+	
+	/**
+	 * Node which holds adaptive monitoring request. 
+	 * 
+	 * @param monitorId    unique id of monitor
+	 * @param minPeriod    minimum time between updates in milliseconds
+	 * @param maxPeriod    maximum time between updates in milliseconds
+	 * @param tolerance    error tolerance, in units of the metric
+	 * @param callback     callback Messenger to handle updates
+	 * @param duration     duration to monitor, in milliseconds (0 for continuous)
+	 */
+	public AdaptiveTimerNode(int monitorId, long minPeriod, long maxPeriod, float tolerance,
+			Messenger callback, long duration) {
+		super(monitorId, minPeriod, callback, duration);
+		this.minPeriod = minPeriod;
+		this.maxPeriod = Math.max(minPeriod, maxPeriod);
+		this.tolerance = Math.abs(tolerance);
+	}
+	
+	@Override
+	void observe(float value, long timestamp) {
+		if (!started) {
+			started = true;
+			lastValue = value;
+			lastTime = timestamp;
+			return;
+		}
+		long elapsed = timestamp - lastTime;
+		if (elapsed <= 0) return;
+		float change = Math.abs(value - lastValue);
+		float observed = change / elapsed;
+		lastValue = value;
+		lastTime = timestamp;
+		
+		if (change > tolerance) {
+			// signal is changing faster than current period can follow
+			rate = Math.max(rate, observed);
+			setPeriod(minPeriod);
+			return;
+		}
+		rate += RATE_WEIGHT * (observed - rate);
+		long period = (rate > 0) ? (long) (tolerance / rate) : maxPeriod;
+		period = Math.min(period, 2 * getPeriod());
+		setPeriod(Math.max(minPeriod, Math.min(period, maxPeriod)));
+	}
+	
+	/**
+	 * Returns minimum period of this monitor.
+	 * 
+	 * @return    period in milliseconds
+	 */
+	public long getMinPeriod() {
+		return minPeriod;
+	}
+	
+	/**
+	 * Returns maximum period of this monitor.
+	 * 
+	 * @return    period in milliseconds
+	 */
+	public long getMaxPeriod() {
+		return maxPeriod;
+	}
+	
+	/**
+	 * Returns error tolerance of this monitor.
+	 * 
+	 * @return    tolerance, in units of the metric
+	 */
+	public float getTolerance() {
+		return tolerance;
+	}
+
+}
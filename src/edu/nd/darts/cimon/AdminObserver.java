@@ -19,6 +19,11 @@
  */
 package edu.nd.darts.cimon;
 
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import android.os.Handler;
 import android.util.Log;
 import android.util.SparseArray;
@@ -30,6 +35,17 @@ import android.util.SparseArray;
  * lightweight method of providing updates to the administration app, so that 
  * repeated queries of the database is not needed to fetch the rapidly changing 
  * metric values.  These values are updated directly by the metric services.
+ * <p>
+ * Changes are reported to the administration app as a set of changed groups.
+ * Groups which change before the app handles the previous change are merged into
+ * the same set, so a single task on the app's thread updates all of them, and 
+ * no object is allocated or lock taken per update.
+ * <p>
+ * Metrics which the app monitors itself are watched through the 
+ * {@link LocalListener} of this observer ({@link #getListener()}), registered
+ * with {@link LocalMetrics}.  Their values are written by the listener alone, 
+ * into a primitive array read by the app, and are no longer set by the metric 
+ * services through {@link #setValue(int, float)}.
  * 
  * @author chris miller
  * 
@@ -43,11 +59,62 @@ public abstract class AdminObserver implements AdminObservable {
 	
 	protected AdminUpdate adminUpdate;
 	protected SparseArray<ObservableUpdate> observables;
-	protected SparseArray<Long> periods;
+	protected SparseArray<GroupStatus> periods;
 	protected SparseArray<MetricStatus> metrics;
 	protected Handler handler;
 	protected long minInterval;
 	protected int category;
+	/** Groups changed since the app last handled changes, as words of bits. */
+	private final AtomicLongArray changed = new AtomicLongArray((Metrics.MAX_METRIC + 63) / 64);
+	/** True while a task to handle changed groups is posted to the app's thread. */
+	private final AtomicBoolean dispatchPending = new AtomicBoolean(false);
+	/** Groups being handled on the app's thread. */
+	private final BitSet dispatching = new BitSet();
+	/** Group of each metric watched through the listener, -1 if not watched. */
+	private final int[] watchedGroups = new int[Metrics.MAX_METRIC];
+	/** Values of watched metrics, written only by the listener. */
+	private final float[] watchedValues = new float[Metrics.MAX_METRIC];
+	
+	{
+		Arrays.fill(watchedGroups, -1);
+	}
+	
+	/**
+	 * Task which reports all changed groups to the administration app.
+	 */
+	private final Runnable dispatchChanges = new Runnable() {
+
+		public void run() {
+			// cleared first, so a change from now on posts a new task
+			dispatchPending.set(false);
+			dispatching.clear();
+			for (int i = 0; i < changed.length(); i++) {
+				long word = changed.getAndSet(i, 0);
+				while (word != 0) {
+					dispatching.set(i * 64 + Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			if (!dispatching.isEmpty()) {
+				onChange(dispatching);
+			}
+		}
+	};
+	
+	/**
+	 * Listener of metrics watched by the administration app.  Called on the thread
+	 * of the metric group with each value, which it stores without locking, and 
+	 * reports the group as changed.
+	 */
+	private final LocalListener listener = new LocalListener() {
+		
+		public void onUpdate(int metric, float value, long timestamp) {
+			final int groupId = watchedGroups[metric];
+			if (groupId < 0) return;
+			watchedValues[metric] = value;
+			notifyChange(groupId);
+		}
+	};
 	
 	/**
 	 * Maintains current value of metrics and status.
@@ -69,10 +136,20 @@ public abstract class AdminObserver implements AdminObservable {
 		}
 	}
 	
+	/**
+	 * Maintains current monitoring interval of metric group.
+	 * 
+	 * @author darts
+	 *
+	 */
+	protected class GroupStatus {
+		long period;
+	}
+	
 	protected void init() {
 		minInterval = 0;
 		adminUpdate = null;
-		periods = new SparseArray<Long>();
+		periods = new SparseArray<GroupStatus>();
 		metrics = new SparseArray<MetricStatus>();
 		observables = new SparseArray<ObservableUpdate>();
 	}
@@ -84,7 +161,12 @@ public abstract class AdminObserver implements AdminObservable {
 	 * @param period    current update interval for metric group
 	 */
 	public synchronized void setPeriod(int groupId, long period) {
-		periods.put(groupId, period);
+		GroupStatus gStatus = periods.get(groupId);
+		if (gStatus == null) {
+			gStatus = new GroupStatus();
+			periods.put(groupId, gStatus);
+		}
+		gStatus.period = period;
 	}
 	
 	/**
@@ -127,24 +209,86 @@ public abstract class AdminObserver implements AdminObservable {
 		if (mStatus.monitorId != monitorId) return false;
 		mStatus.active = false;
 		mStatus.monitorId = -1;
+		unwatch(metricId);
 		return true;
 	}
 	
 	/**
-	 * Update the current value of metric.
+	 * Watch metric through the listener of this observer ({@link #getListener()}).
+	 * Until the monitor of the metric is set inactive, values of the metric are 
+	 * only taken from the listener.  Must be called before the listener is 
+	 * registered with {@link LocalMetrics}, which hands it to the thread of the
+	 * metric group.
+	 * 
+	 * @param metricId    id of individual metric
+	 * @param groupId    id of metric group of metric, reported as changed with 
+	 *                     each value
+	 */
+	public synchronized void watch(int metricId, int groupId) {
+		if ((metricId < 0) || (metricId >= Metrics.MAX_METRIC)) return;
+		watchedValues[metricId] = getValue(metricId);
+		watchedGroups[metricId] = groupId;
+	}
+	
+	/**
+	 * Stop watching metric through the listener of this observer.  Its last value 
+	 * is kept until the metric services set a new one.  Called when the monitor
+	 * of the metric is set inactive.
 	 * 
 	 * @param metricId    id of individual metric
-	 * @param value    new value of metric
 	 */
-	public synchronized void setValue(int metricId, float value) {
+	public synchronized void unwatch(int metricId) {
+		if (!isWatched(metricId)) return;
+		watchedGroups[metricId] = -1;
 		MetricStatus mStatus = metrics.get(metricId);
 		if (mStatus == null) {
-			mStatus = new MetricStatus(value);
+			metrics.put(metricId, new MetricStatus(watchedValues[metricId]));
 		}
 		else {
-			mStatus.value = value;
+			mStatus.value = watchedValues[metricId];
+		}
+	}
+	
+	/**
+	 * Return listener which stores values of watched metrics for the 
+	 * administration app, to register with {@link LocalMetrics}.
+	 * 
+	 * @return    listener of this observer
+	 */
+	public LocalListener getListener() {
+		return listener;
+	}
+	
+	/**
+	 * Check if values of metric are taken from the listener of this observer.
+	 * 
+	 * @param metricId    id of individual metric
+	 * @return    true if metric is watched through listener
+	 */
+	public boolean isWatched(int metricId) {
+		return (metricId >= 0) && (metricId < Metrics.MAX_METRIC) && 
+				(watchedGroups[metricId] >= 0);
+	}
+	
+	/**
+	 * Update the current value of metric.  Metrics watched through the listener
+	 * are left to it, without locking.
+	 * 
+	 * @param metricId    id of individual metric
+	 * @param value    new value of metric
+	 */
+	public void setValue(int metricId, float value) {
+		if (isWatched(metricId)) return;
+		synchronized (this) {
+			MetricStatus mStatus = metrics.get(metricId);
+			if (mStatus == null) {
+				mStatus = new MetricStatus(value);
+			}
+			else {
+				mStatus.value = value;
+			}
+			metrics.put(metricId, mStatus);
 		}
-		metrics.put(metricId, mStatus);
 	}
 	
 	/**
@@ -154,7 +298,9 @@ public abstract class AdminObserver implements AdminObservable {
 	 * @return    current update interval for metric group, 0 for inactive
 	 */
 	public long getPeriod(int groupId) {
-		return periods.get(groupId, (long) 0);
+		GroupStatus gStatus = periods.get(groupId);
+		if (gStatus == null) return 0;
+		return gStatus.period;
 	}
 	
 	/**
@@ -164,6 +310,9 @@ public abstract class AdminObserver implements AdminObservable {
 	 * @return    current value for metric, 0 for inactive
 	 */
 	public float getValue(int metricId) {
+		if (isWatched(metricId)) {
+			return watchedValues[metricId];
+		}
 		MetricStatus mStatus = metrics.get(metricId);
 		if (mStatus == null) return 0;
 		return mStatus.value;
@@ -194,28 +343,49 @@ public abstract class AdminObserver implements AdminObservable {
 	}
 	
 	/**
-	 * Calls on updateGroup() method of administration app to update UI.
+	 * Calls on updateGroups() method of administration app to update UI.
 	 * 
-	 * @param groupId    id of metric group that has been updated
+	 * @param groups    ids of metric groups that have been updated
 	 */
-	private void onChange(int groupId) {
-		if (DebugLog.DEBUG) Log.d(TAG, "AdminObserver.onChange - group:" + groupId);
-		adminUpdate.updateGroup(groupId);
+	private void onChange(BitSet groups) {
+		if (DebugLog.DEBUG) Log.d(TAG, "AdminObserver.onChange - groups:" + groups.cardinality());
+		AdminUpdate update = adminUpdate;
+		if (update != null) {
+			update.updateGroups(groups);
+		}
 	}
 	
-	public void notifyChange(final int groupId) {
-		if (DebugLog.DEBUG) Log.d(TAG, "AdminObserver.notifyChange - group:" + groupId);
-		handler.post(new Runnable() {
-
-			public void run() {
-				onChange(groupId);
-			}
-		});
+	/**
+	 * Report change of metric group to administration app.  The group is added to
+	 * the set of changed groups, and a task to handle the set is posted to the app's
+	 * thread only if none is pending.  Takes no lock, and only reads shared state
+	 * when the group is already marked changed.
+	 * 
+	 * @param groupId    id of metric group that has been updated
+	 */
+	public void notifyChange(int groupId) {
+		Handler target = handler;
+		if (target == null) return;
+		final int word = groupId >> 6;
+		final long bit = 1L << groupId;
+		long bits = changed.get(word);
+		while ((bits & bit) == 0) {
+			if (changed.compareAndSet(word, bits, bits | bit)) break;
+			bits = changed.get(word);
+		}
+		if (!dispatchPending.get() && dispatchPending.compareAndSet(false, true)) {
+			target.post(dispatchChanges);
+		}
 	}
 
 	public void registerObserver(AdminUpdate adminUpdate, Handler handler, 
 			long minInterval) {
 		if (DebugLog.DEBUG) Log.d(TAG, "AdminObserver.registerObserver - observer:" + adminUpdate);
+		// changes left by a previous observer are covered by the refresh below
+		for (int i = 0; i < changed.length(); i++) {
+			changed.set(i, 0);
+		}
+		dispatchPending.set(false);
 		this.adminUpdate = adminUpdate;
 		this.handler = handler;
 		this.minInterval = minInterval;
@@ -19,9 +19,11 @@
  */
 package edu.nd.darts.cimon;
 
+import java.util.BitSet;
+
 /**
  * Defines interface used for updating values in the administration app.
- * The updateGroup method is called from the {@link AdminObserver} onChange
+ * The updateGroups method is called from the {@link AdminObserver} onChange
  * method, and is handled in the administration app's thread (UI thread).
  * 
  * @author chris miller
@@ -33,10 +35,13 @@ package edu.nd.darts.cimon;
 public interface AdminUpdate {
 
 	/**
-	 * Update views associated with group _groupId_.
+	 * Update views associated with every group set in _groups_.  All groups which
+	 * changed since the previous call are delivered together.
 	 * 
-	 * @param groupId    ID of metric group to update
+	 * @param groups    IDs of metric groups to update, as set bits.  The set is 
+	 *                    reused by the observer, so it must not be kept after 
+	 *                    returning.
 	 */
-	public void updateGroup(int groupId);
+	public void updateGroups(BitSet groups);
 	
 }
@@ -87,7 +87,7 @@ public final class BatteryService extends MetricService<Integer> {
 //		observerHandler = new Handler();
 		adminObserver = SystemObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -201,6 +201,22 @@ public final class BatteryService extends MetricService<Integer> {
 		updateObservable();
 	}
 
+	/**
+	 * Publish temperature and voltage along with the integer values of the group.
+	 */
+	@Override
+	protected void publishValues(long timestamp) {
+		final ValueSnapshot current = beginPublish();
+		for (int i = 0; i < BATT_INT_METRICS; i++) {
+			current.set(i, (values[i] == null) ? Double.NaN : values[i]);
+		}
+		current.set(Metrics.BATTERY_TEMPERATURE - groupId, 
+				(temperature == null) ? Double.NaN : temperature);
+		current.set(Metrics.BATTERY_VOLTAGE - groupId, 
+				(voltage == null) ? Double.NaN : voltage);
+		current.end(timestamp);
+	}
+
 	/**
 	 * BroadcastReceiver for receiving battery data updates.
 	 */
@@ -288,6 +304,32 @@ public final class BatteryService extends MetricService<Integer> {
 		}
 	}
 
+	@Override
+	void insertAdaptive(final int metric, final int monitorId, final long minPeriod, 
+			final long maxPeriod, final float tolerance, final long duration, 
+			final Messenger callback) {
+		if (metric == Metrics.BATTERY_TEMPERATURE) {
+			if (temperatureNode == null) {
+				temperatureNode = new ValueNode<Float>(Metrics.BATTERY_TEMPERATURE, 
+						schedules, dbHandler, adminObserver);
+			}
+			temperatureNode.insertAdaptive(monitorId, minPeriod, maxPeriod, tolerance, 
+					callback, duration);
+		}
+		else if (metric == Metrics.BATTERY_VOLTAGE) {
+			if (voltageNode == null) {
+				voltageNode = new ValueNode<Float>(Metrics.BATTERY_VOLTAGE, 
+						schedules, dbHandler, adminObserver);
+			}
+			voltageNode.insertAdaptive(monitorId, minPeriod, maxPeriod, tolerance, 
+					callback, duration);
+		}
+		else {
+			super.insertAdaptive(metric, monitorId, minPeriod, maxPeriod, tolerance, 
+					duration, callback);
+		}
+	}
+
 	@Override
 	void removeClient(final int metric, final int monitorId) {
 		if (metric == Metrics.BATTERY_TEMPERATURE) {
@@ -20,6 +20,8 @@
 package edu.nd.darts.cimon;
 
 //import java.text.DecimalFormat;
+import java.util.BitSet;
+
 import edu.nd.darts.cimon.contentprovider.CimonContentProvider;
 import edu.nd.darts.cimon.database.MetricInfoTable;
 import edu.nd.darts.cimon.database.MetricsTable;
@@ -33,7 +35,6 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
-import android.os.RemoteException;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
@@ -60,7 +61,6 @@ public class CimonListView extends ExpandableListActivity implements
 	
 	private static final long TWOFIFTY_MILLISECONDS = 250;
 //	private static final long TWOHUNDRED_MILLISECONDS = 200;
-	private CimonInterface mCimonInterface = null;
 	private ExpandableListView list;
 	private CimonListAdapter adapter;
 	private AdminObserver adminObserver;
@@ -156,28 +156,21 @@ public class CimonListView extends ExpandableListActivity implements
 	}
 
 	/**
-	 * Class for interacting with the main interface of the service.
-	 * On connection, acquire binder to {@link CimonInterface} from the
-	 * CIMON background service.
+	 * Connection to the CIMON background service, which keeps the service running
+	 * while the administration activity is shown.  Monitors are registered through
+	 * {@link LocalMetrics}, since the activity runs in the same process as the 
+	 * service, so the binder of the service is not used.
 	 */
 	private ServiceConnection mConnection = new ServiceConnection() {
 		public void onServiceConnected(ComponentName className,
 				IBinder service) {
-			// This is called when the connection with the service has been
-			// established, giving us the service object we can use to
-			// interact with the service.  We are communicating with our
-			// service through an IDL interface, so get a client-side
-			// representation of that from the raw service object.
 			if (DebugLog.DEBUG) Log.d(TAG, "NDroidSystem.onServiceConnected - connected");
-			mCimonInterface = CimonInterface.Stub.asInterface(service);
 		}
 
 		public void onServiceDisconnected(ComponentName className) {
 			// This is called when the connection with the service has been
 			// unexpectedly disconnected -- that is, its process crashed.
 			if (DebugLog.DEBUG) Log.d(TAG, "NDroidSystem.onServiceDisconnected - disconnected");
-			mCimonInterface = null;
-
 		}
 	};
 	
@@ -250,23 +243,26 @@ public class CimonListView extends ExpandableListActivity implements
 			boolean email, boolean dropbox, boolean box, boolean drive) {
 		if (DebugLog.DEBUG) Log.d(TAG, "CimonListView.registerPeriodic - metric:" + metric + " period:" + 
 				period + " duration:" + duration);
-		if (mCimonInterface == null) {
-			if (DebugLog.INFO) Log.i(TAG, "CimonListView.OnClickListener - register: service inactive");
-		}
-		else {
-			try {
-				if (!adminObserver.getStatus(metric)) {
-					int monitorId = mCimonInterface.registerPeriodic(
-							metric, period, duration, false, null);	//mMessenger
-					adminObserver.setActive(metric, monitorId);
-					monitorReports.append(monitorId, 
-							new MonitorReport(this, metric, monitorId, backgroundHandler, 
-									adminObserver, metadata, email, dropbox, box, drive));
-				}
-			} catch (RemoteException e) {
+		if (!adminObserver.getStatus(metric)) {
+			MetricService<?> mService = MetricService.getService(metric);
+			if (mService == null) {
 				if (DebugLog.INFO) Log.i(TAG, "CimonListView.OnClickListener - register failed");
-				e.printStackTrace();
+				return;
 			}
+			// values of monitor are passed on the thread of the metric group to the 
+			// listener of the admin observer, and no longer set by the metric service
+			adminObserver.watch(metric, mService.groupId);
+			int monitorId = LocalMetrics.register(metric, period, duration, false, 
+					adminObserver.getListener());
+			if (monitorId < 0) {
+				adminObserver.unwatch(metric);
+				if (DebugLog.INFO) Log.i(TAG, "CimonListView.OnClickListener - register failed");
+				return;
+			}
+			adminObserver.setActive(metric, monitorId);
+			monitorReports.append(monitorId, 
+					new MonitorReport(this, metric, monitorId, backgroundHandler, 
+							adminObserver, metadata, email, dropbox, box, drive));
 		}
 	}
 	
@@ -279,17 +275,10 @@ public class CimonListView extends ExpandableListActivity implements
 	 */
 	public void unregisterPeriodic(int metric) {
 		if (DebugLog.DEBUG) Log.d(TAG, "CimonListView.OnClickListener - unregister periodic");
-		if (mCimonInterface != null) {
-			try {
-				int monitorId = adminObserver.getMonitor(metric);
-				if (monitorId >= 0) {
-					mCimonInterface.unregisterPeriodic(metric, monitorId);
-					adminObserver.setInactive(metric, monitorId);
-				}
-			} catch (RemoteException e) {
-				if (DebugLog.INFO) Log.i(TAG, "CimonListView.OnClickListener - unregister failed");
-				e.printStackTrace();
-			}
+		int monitorId = adminObserver.getMonitor(metric);
+		if (monitorId >= 0) {
+			LocalMetrics.unregister(metric, monitorId);
+			adminObserver.setInactive(metric, monitorId);
 		}
 	}
 
@@ -430,11 +419,15 @@ public class CimonListView extends ExpandableListActivity implements
 	}
 
 	/**
-	 * Initiate update of group view in adapter when new data is available.
+	 * Initiate update of group views in adapter when new data is available.
 	 */
-	public void updateGroup(int groupId) {
-		if (DebugLog.DEBUG) Log.d(TAG, "CimonListView.updateGroup - group: " + groupId);
-		adapter.updateGroup(groupId);
+	public void updateGroups(BitSet groups) {
+		if (DebugLog.DEBUG) Log.d(TAG, "CimonListView.updateGroups - groups: " + 
+				groups.cardinality());
+		for (int groupId = groups.nextSetBit(0); groupId >= 0; 
+				groupId = groups.nextSetBit(groupId + 1)) {
+			adapter.updateGroup(groupId);
+		}
 	}
 	
 }
@@ -34,6 +34,8 @@ import android.util.Log;
 public class ConditionNode<T extends Comparable<T>> implements ExpressionNode {	//Number & 
 	
 	private static final String TAG = "NDroid";
+	/** Maximum time to wait for a fresh value of metric when node is created (milliseconds). */
+	private static final long FETCH_TIMEOUT = 1000;
 	
 	private final int condition;
 	private final int metric;
@@ -74,7 +76,9 @@ public class ConditionNode<T extends Comparable<T>> implements ExpressionNode {
 			if (DebugLog.INFO) Log.i(TAG, "ConditionNode.ConditionNode - service not found");
 			return;
 		}
-		insertionValue = (T) mService.getMetricValue(metric);
+		// created on a binder thread, so the value is read from the published values
+		// of the service, refreshed on its own thread if stale
+		insertionValue = toValue(mService.fetchMetricDouble(metric, FETCH_TIMEOUT));
 		// TODO * Add implementation of getCost to MetricService to populate here *
 		cost = 0;
 	}
@@ -140,10 +144,11 @@ public class ConditionNode<T extends Comparable<T>> implements ExpressionNode {
 			return;
 		}
 		if (insertionValue == null) {
-			insertionValue = (T) mService.getMetricValue(metric);
+			// may run on the metric thread, so published values are not waited for
+			insertionValue = toValue(mService.getPublishedDouble(metric));
 			// TODO not sure how to handle this, for now just set to 0
 			if (insertionValue == null) {
-				insertionValue = (T) Integer.valueOf(0);
+				insertionValue = toValue(0);
 			}
 		}
 
@@ -175,6 +180,40 @@ public class ConditionNode<T extends Comparable<T>> implements ExpressionNode {
 		}
 	}
 	
+	/**
+	 * Helper function to convert a value of metric to the type of the threshold.
+	 * 
+	 * @param value    value of metric
+	 * @return    value as type of threshold, or null if value is NaN
+	 */
+	@SuppressWarnings("unchecked")
+	private T toValue(double value) {
+		if (Double.isNaN(value)) {
+			return null;
+		}
+		if (threshold instanceof Integer) {
+			return (T) Integer.valueOf((int) value);
+		}
+		else if (threshold instanceof Long) {
+			return (T) Long.valueOf((long) value);
+		}
+		else if (threshold instanceof Float) {
+			return (T) Float.valueOf((float) value);
+		}
+		else if (threshold instanceof Double) {
+			return (T) Double.valueOf(value);
+		}
+		else if (threshold instanceof Short) {
+			return (T) Short.valueOf((short) value);
+		}
+		else if (threshold instanceof Byte) {
+			return (T) Byte.valueOf((byte) value);
+		}
+		else {
+			return null;
+		}
+	}
+	
 	/**
 	 * Helper function to add a threshold to a current value (to determine absolute
 	 * threshold from relational threshold).
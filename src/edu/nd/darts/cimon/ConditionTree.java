@@ -471,6 +471,16 @@ public class ConditionTree {
 									case Metrics.CPU_LOAD1:
 									case Metrics.CPU_LOAD5:
 									case Metrics.CPU_LOAD15:
+									// memory pressure metrics
+									case Metrics.VM_PGMAJFAULT:
+									case Metrics.VM_PGSCAN:
+									case Metrics.VM_PGSTEAL:
+									case Metrics.VM_ALLOCSTALL:
+									case Metrics.PSI_MEMORY_SOME:
+									case Metrics.PSI_MEMORY_FULL:
+									case Metrics.PSI_MEMORY_STALL:
+									case Metrics.PSI_CPU_SOME:
+									case Metrics.PSI_CPU_STALL:
 									// accelerometer metrics
 									case Metrics.ACCEL_X:
 									case Metrics.ACCEL_Y:
@@ -536,6 +546,15 @@ public class ConditionTree {
 												"coordinate condition block :" + this.toString());
 										break;
 									default:
+										// top consuming process and block device metrics
+										if (Metrics.isProcessMetric(metric) || 
+												Metrics.isDiskMetric(metric)) {
+											nodeStack.push(new ConditionNode<Float>(condition, 
+													metric, Float.valueOf(threshold), this));
+											if (DebugLog.DEBUG) Log.d(TAG, "ConditionTree.expressionParser - push " +
+													"condition block (Float) :" + this.toString());
+											break;
+										}
 										// Unrecognized expression format
 										if (DebugLog.INFO) Log.i(TAG, "ConditionTree.expressionParser - ERROR: " +
 												"unknown condition metric");
@@ -33,7 +33,6 @@ import android.os.Messenger;
 import android.os.RemoteException;
 import android.os.SystemClock;
 import android.util.Log;
-import android.util.SparseArray;
 
 /**
  * A {@link CurrentNode} used specifically for geo-location metrics. This node maintains the 
@@ -52,7 +51,7 @@ public class CoordValNode implements CurrentNode<Location> {
 	private TimerList timerList;
 	private EavesdropList eavesdropList;
 	private Context context;
-	private SparseArray<TimerNode> schedules;
+	private ScheduleIndex schedules;
 	
 	private LocationManager locationManager;
 	private Hashtable<Integer, ExpressionNode> maxProximity;
@@ -64,7 +63,7 @@ public class CoordValNode implements CurrentNode<Location> {
 	 * @param metric    integer representing metric to be monitored (as specified in {@link Metrics})
 	 * @param schedules    schedule shared by all metrics in group to synchronize updates
 	 */
-	public CoordValNode(int metric, SparseArray<TimerNode> schedules) {
+	public CoordValNode(int metric, ScheduleIndex schedules) {
 		this.metric = metric;
 		this.schedules = schedules;
 		this.coordinate = null;
@@ -128,6 +127,7 @@ public class CoordValNode implements CurrentNode<Location> {
 				e.printStackTrace();
 				eavesdropList.remove(monitorId);
 //				schedules.remove(monitorId);
+				iter = iter.next;
 				continue;
 			}
 			if (DebugLog.DEBUG) Log.d(TAG, "CoordValNode.updateValue - opportunistic list pop");
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * Monitoring service for utilization and frequency of individual CPU cores.
+ * Metrics of this group are allocated dynamically, {@link Metrics#CORE_FIELDS} per 
+ * core, beginning at {@link Metrics#CPUCORE_CATEGORY}.  Use 
+ * {@link Metrics#cpuCoreMetric(int, int)} to obtain the metric for a field of a core.
+ * <p>
+ * Per-core metrics:
+ * <li>User 	: jiffies in user mode (including nice) since previous update
+ * <li>System	: jiffies in system mode since previous update
+ * <li>Idle 	: jiffies idle since previous update
+ * <li>IO Wait	: jiffies waiting for I/O to complete since previous update
+ * <li>Frequency	: current frequency of core (kHz), 0 when core is offline
+ * 
+ * @author darts
+ * 
+ * @see FloatMetricService
+ * @see CpuCoreStats
+ *
+ */
+public final class CpuCoreService extends FloatMetricService {
+	
+	private static final String TAG = "NDroid";
+	private static final long FIVE_SECONDS = 5000;
+	private static final int ONE_SECOND = 1000;
+	private static final String CPU_DIR = "/sys/devices/system/cpu";
+	
+	// NOTE: title and string array must be defined above instance,
+	//   otherwise, they will be null in constructor
+	private static final String title = "CPU cores";
+	private static final String[] fields = {"user", 
+											"system", 
+											"idle", 
+											"IOWait", 
+											"frequency"};
+	private static final CpuCoreService INSTANCE = new CpuCoreService();
+	
+	private final CpuCoreStats stats;
+	/** Statistics of one-shot reads, with a baseline of their own. */
+	private CpuCoreStats fetchStats = null;
+	private float[] fetchedValues;
+	
+	private CpuCoreService() {
+		if (DebugLog.DEBUG) Log.d(TAG, "CpuCoreService - constructor");
+		if (INSTANCE != null) {
+			throw new IllegalStateException("CpuCoreService already instantiated");
+		}
+		int cores = getCoreCount();
+		stats = new CpuCoreStats(cores, "/proc/stat", CPU_DIR);
+		groupId = Metrics.CPUCORE_CATEGORY;
+		metricsCount = cores * Metrics.CORE_FIELDS;
+		
+		floatValues = new float[metricsCount];
+		valueNodes = new SparseArray<ValueNode<Float>>();
+		freshnessThreshold = FIVE_SECONDS;
+//		observerHandler = new Handler();
+		adminObserver = SystemObserver.getInstance();
+		adminObserver.registerObservable(this, groupId);
+		schedules = new ScheduleIndex();
+			init();
+	}
+	
+	public static CpuCoreService getInstance() {
+		if (DebugLog.DEBUG) Log.d(TAG, "CpuCoreService.getInstance - get single instance");
+		if (!INSTANCE.supportedMetric) return null;
+		return INSTANCE;
+	}
+	
+	/**
+	 * Get instance of service if metric refers to a core present in this device.
+	 * 
+	 * @param metric    integer representing per-core metric
+	 * @return    single instance of service, null if core is not present
+	 */
+	public static CpuCoreService getInstance(int metric) {
+		if (metric >= (Metrics.CPUCORE_CATEGORY + INSTANCE.metricsCount)) {
+			if (DebugLog.INFO) Log.i(TAG, "CpuCoreService.getInstance - metric " + metric + 
+					" beyond cores of device");
+			return null;
+		}
+		return getInstance();
+	}
+
+	@Override
+	void insertDatabaseEntries() {
+		Context context = MyApplication.getAppContext();
+		CimonDatabaseAdapter database = CimonDatabaseAdapter.getInstance(context);
+		
+		int cores = stats.getCores();
+		// insert metric group information in database
+		database.insertOrReplaceMetricInfo(groupId, title, cores + " cores", SUPPORTED, 0, 
+				ONE_SECOND, "Jiffies per core, frequency in kHz", "1 jiffie", 
+				Metrics.TYPE_SYSTEM);
+		// insert information for metrics in group into database
+		for (int i = 0; i < cores; i++) {
+			for (int j = 0; j < Metrics.CORE_FIELDS; j++) {
+				if (j == Metrics.CORE_FREQ) {
+					database.insertOrReplaceMetrics(Metrics.cpuCoreMetric(i, j), groupId, 
+							"Core " + i + " " + fields[j], "kHz", 5000000);
+				}
+				else {
+					database.insertOrReplaceMetrics(Metrics.cpuCoreMetric(i, j), groupId, 
+							"Core " + i + " " + fields[j], "jiffies", 1000);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Get count of possible CPU cores, including those currently offline.
+	 * Read from highest index of /sys/devices/system/cpu/possible (such as "0-7"), 
+	 * limited to {@link Metrics#MAX_CPU_CORES}.
+	 * 
+	 * @return    count of cores in device, at least 1
+	 */
+	private static int getCoreCount() {
+		if (DebugLog.DEBUG) Log.d(TAG, "CpuCoreService.getCoreCount - getting cpu core count");
+		BufferedReader reader = null;
+		int cores = 1;
+		try {
+			reader = new BufferedReader(new InputStreamReader(
+					new FileInputStream(new File(CPU_DIR + "/possible"))), 32);
+			String line;
+			if ( (line = reader.readLine()) != null) {
+				line = line.trim();
+				int index = Math.max(line.lastIndexOf('-'), line.lastIndexOf(','));
+				cores = Integer.parseInt(line.substring(index + 1)) + 1;	// 0-indexed value
+			}
+		}
+		catch (Exception e) {
+			if (DebugLog.WARNING) Log.w(TAG, "CpuCoreService.getCoreCount - read cpu possible failed!");
+		}
+		finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				}
+				catch (IOException ie) {
+					if (DebugLog.WARNING) Log.w(TAG, "CpuCoreService.getCoreCount - close reader failed!");
+				}
+			}
+		}
+		return Math.max(1, Math.min(cores, Metrics.MAX_CPU_CORES));
+	}
+	
+	@Override
+	void getMetricInfo() {
+		fetchValues();
+		
+		performUpdates();
+	}
+
+	/**
+	 * Obtain updated values for all cores, in a single pass of /proc/stat.
+	 */
+	private void fetchValues() {
+		if (DebugLog.DEBUG) Log.d(TAG, "CpuCoreService.fetchValues - updating core values");
+		if (stats.update(floatValues) < 0) {
+			if (DebugLog.WARNING) Log.w(TAG, "CpuCoreService.fetchValues - read stat failed!");
+		}
+	}
+
+	/**
+	 * Jiffies of a one-shot read are counted since the previous one-shot read, 
+	 * through statistics of their own, so the next scheduled update still counts
+	 * jiffies since the previous scheduled update.  The first one-shot read 
+	 * reports 0 jiffies.
+	 */
+	@Override
+	protected boolean refreshValues() {
+		if (fetchStats == null) {
+			fetchStats = new CpuCoreStats(stats.getCores(), "/proc/stat", CPU_DIR);
+			fetchedValues = new float[metricsCount];
+		}
+		if (fetchStats.update(fetchedValues) < 0) {
+			if (DebugLog.WARNING) Log.w(TAG, "CpuCoreService.refreshValues - read stat failed!");
+			return false;
+		}
+		publishValues(fetchedValues, SystemClock.uptimeMillis());
+		return true;
+	}
+
+	/**
+	 * Values are jiffies since the previous update, so they are not read here, and
+	 * the last published values are returned.
+	 */
+	@Override
+	double getMetricDouble(int metric) {
+		return getPublishedDouble(metric);
+	}
+	
+}
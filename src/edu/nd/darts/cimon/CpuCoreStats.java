@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+/**
+ * Per-core processor statistics, for {@link CpuCoreService}.  Each update reads
+ * the cpuN lines of /proc/stat in a single pass, and computes the jiffies each 
+ * core spent in user, system, idle and I/O wait states since the previous update.
+ * The current frequency of each online core is read from its cpufreq directory.
+ * Cores which are offline (missing from /proc/stat) report 0 for all fields, 
+ * and report 0 jiffies again on the update at which they come back online.
+ * <p>
+ * Values are stored at index (core * {@link Metrics#CORE_FIELDS}) + field, 
+ * matching the offsets of metrics from {@link Metrics#CPUCORE_CATEGORY}.  All 
+ * files are kept open through {@link ProcFileReader}s, so updates do not allocate.
+ * 
+ * @author darts
+ * 
+ * @see CpuCoreService
+ *
+ */
+final class CpuCoreStats {
+	
+	/** Counters kept per core: user (including nice), system, idle, iowait. */
+	private static final int COUNTERS = 4;
+	private static final byte[] CPU_KEY = ProcFileReader.key("cpu");
+	
+	private final int cores;
+	private final ProcFileReader statReader;
+	private final ProcFileReader[] freqReaders;
+	private final long[] previous;
+	private final boolean[] primed;
+	private final boolean[] online;
+	
+	/**
+	 * Create statistics for cores of device.
+	 * 
+	 * @param cores    number of cores, cores with higher index are ignored
+	 * @param statPath    path of stat file, typically /proc/stat
+	 * @param cpuDir    directory of cpu devices, typically /sys/devices/system/cpu
+	 */
+	CpuCoreStats(int cores, String statPath, String cpuDir) {
+		this.cores = cores;
+		statReader = new ProcFileReader(statPath, 1024 + (cores * 96));
+		freqReaders = new ProcFileReader[cores];
+		for (int i = 0; i < cores; i++) {
+			freqReaders[i] = new ProcFileReader(cpuDir + "/cpu" + i + 
+					"/cpufreq/scaling_cur_freq", 16);
+		}
+		previous = new long[cores * COUNTERS];
+		primed = new boolean[cores];
+		online = new boolean[cores];
+	}
+	
+	/**
+	 * Number of cores covered.
+	 * 
+	 * @return    count of cores
+	 */
+	int getCores() {
+		return cores;
+	}
+	
+	/**
+	 * Read current statistics of all cores, and store values since previous update.
+	 * The first update of a core stores 0 for its jiffy counts.
+	 * 
+	 * @param values    array to store values in, of at least 
+	 *                    cores * {@link Metrics#CORE_FIELDS} entries
+	 * @return    number of online cores, -1 if /proc/stat could not be read
+	 */
+	int update(float[] values) {
+		if (!statReader.read()) {
+			return -1;
+		}
+		for (int i = 0; i < cores; i++) {
+			online[i] = false;
+		}
+		int count = 0;
+		// first line is the aggregate of all cores, cpuN lines follow it
+		while (statReader.nextLine() && statReader.startsWith(CPU_KEY)) {
+			final long core = statReader.nextLong(-1);
+			if ((core < 0) || (core >= cores)) {
+				continue;
+			}
+			final int index = (int) core;
+			final int base = index * COUNTERS;
+			final long user = statReader.nextLong(0) + statReader.nextLong(0);
+			final long system = statReader.nextLong(0);
+			final long idle = statReader.nextLong(0);
+			final long iowait = statReader.nextLong(0);
+			final int field = index * Metrics.CORE_FIELDS;
+			if (primed[index]) {
+				values[field + Metrics.CORE_USER] = delta(user, previous[base]);
+				values[field + Metrics.CORE_SYSTEM] = delta(system, previous[base + 1]);
+				values[field + Metrics.CORE_IDLE] = delta(idle, previous[base + 2]);
+				values[field + Metrics.CORE_IOWAIT] = delta(iowait, previous[base + 3]);
+			}
+			else {
+				values[field + Metrics.CORE_USER] = 0;
+				values[field + Metrics.CORE_SYSTEM] = 0;
+				values[field + Metrics.CORE_IDLE] = 0;
+				values[field + Metrics.CORE_IOWAIT] = 0;
+				primed[index] = true;
+			}
+			previous[base] = user;
+			previous[base + 1] = system;
+			previous[base + 2] = idle;
+			previous[base + 3] = iowait;
+			online[index] = true;
+			count++;
+		}
+		for (int i = 0; i < cores; i++) {
+			final int field = i * Metrics.CORE_FIELDS;
+			if (!online[i]) {
+				primed[i] = false;
+				values[field + Metrics.CORE_USER] = 0;
+				values[field + Metrics.CORE_SYSTEM] = 0;
+				values[field + Metrics.CORE_IDLE] = 0;
+				values[field + Metrics.CORE_IOWAIT] = 0;
+				values[field + Metrics.CORE_FREQ] = 0;
+				continue;
+			}
+			if (freqReaders[i].read()) {
+				values[field + Metrics.CORE_FREQ] = freqReaders[i].nextLong(0);
+			}
+			else {
+				values[field + Metrics.CORE_FREQ] = 0;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Difference of counter since previous update, 0 if counter was reset.
+	 */
+	private static float delta(long current, long previous) {
+		return (current >= previous) ? (current - previous) : 0;
+	}
+	
+}
@@ -42,10 +42,10 @@ import android.util.SparseArray;
  * 
  * @author darts
  * 
- * @see MetricService
+ * @see FloatMetricService
  *
  */
-public final class CpuService extends MetricService<Float> {
+public final class CpuService extends FloatMetricService {
 	
 	private static final String TAG = "NDroid";
 	private static final int CPU_LOADS = 3;
@@ -61,6 +61,8 @@ public final class CpuService extends MetricService<Float> {
 	private static final CpuService INSTANCE = new CpuService();
 //	private static float[] loads = new float[CPU_LOADS];
 	
+	private final ProcFileReader loadReader = new ProcFileReader("/proc/loadavg", 64);
+	
 //	private static CimonDatabaseAdapter database;
 	
 	private CpuService() {
@@ -71,13 +73,13 @@ public final class CpuService extends MetricService<Float> {
 		groupId = Metrics.CPULOAD_CATEGORY;
 		metricsCount = CPU_LOADS;
 		
-		values = new Float[CPU_LOADS];
+		floatValues = new float[CPU_LOADS];
 		valueNodes = new SparseArray<ValueNode<Float>>();
 		freshnessThreshold = SIXTY_SECONDS;
 //		observerHandler = new Handler();
 		adminObserver = SystemObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -203,52 +205,37 @@ public final class CpuService extends MetricService<Float> {
 
 	/**
 	 * Obtain updated values for CPU load.
+	 * 
+	 * @return    true if loads were read
 	 */
-	private void fetchValues() {
-		BufferedReader reader = null;
-//		long percentFree = 0;
-		
+	private synchronized boolean fetchValues() {
 		if (DebugLog.DEBUG) Log.d(TAG, "CpuService.fetchValues - updating cpu values");
-		try {
-			reader = new BufferedReader(new InputStreamReader(
-					new FileInputStream(new File("/proc/loadavg"))), 64);
-			String line;
-			
-			if ( (line = reader.readLine()) != null) {
-				String[] params = line.split("\\s+");
-				for (int i = 0; (i < CPU_LOADS) && (i < params.length); i++) {
-					values[i] = Float.parseFloat(params[i]);
-				}
-			}
-		}
-		catch (Exception e) {
+		if (!loadReader.read()) {
 			if (DebugLog.WARNING) Log.w(TAG, "CpuService.fetchValues - read cpu values failed!");
+			return false;
 		}
-		finally {
-			if (reader != null) {
-				try {
-					reader.close();
-				}
-				catch (IOException ie) {
-					if (DebugLog.WARNING) Log.w(TAG, "CpuService.fetchValues - close reader failed!");
-				}
-			}
+		for (int i = 0; i < CPU_LOADS; i++) {
+			floatValues[i] = loadReader.nextFloat(floatValues[i]);
 		}
+		return true;
+	}
+	
+	@Override
+	protected boolean refreshValues() {
+		if (!fetchValues()) {
+			return false;
+		}
+		publishValues(SystemClock.uptimeMillis());
+		return true;
 	}
 
+	/**
+	 * Load averages are only read on the metric thread, so the last published 
+	 * values are returned.
+	 */
 	@Override
-	Float getMetricValue(int metric) {
-		final long curTime = SystemClock.uptimeMillis();
-		if ((curTime - lastUpdate) > SIXTY_SECONDS) {
-			fetchValues();
-			lastUpdate = curTime;
-		}
-		if ((metric < groupId) || (metric >= (groupId + values.length))) {
-			if (DebugLog.INFO) Log.i(TAG, "CpuService.getMetricValue - metric value " + metric +
-					", not valid for group " + groupId);
-			return null;
-		}
-		return values[metric - groupId];
+	double getMetricDouble(int metric) {
+		return getPublishedDouble(metric);
 	}
 	
 }
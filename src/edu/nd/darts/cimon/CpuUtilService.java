@@ -56,7 +56,7 @@ import android.util.SparseArray;
  * @see MetricService
  *
  */
-public final class CpuUtilService extends MetricService<Long> {
+public final class CpuUtilService extends LongMetricService {
 
 	private static final String TAG = "NDroid";
 	private static final int PROC_METRICS = 9;
@@ -94,6 +94,12 @@ public final class CpuUtilService extends MetricService<Long> {
 	 * </pre>
 	 */
 	private long[] prevVals = new long[PROC_METRICS];
+	/** Counters read by one-shot reads, kept apart from those of the admin view. */
+	private final long[] fetchedValues = new long[PROC_METRICS];
+	
+	private static final byte[] CPU_KEY = ProcFileReader.key("cpu ");
+	private static final byte[] CTXT_KEY = ProcFileReader.key("ctxt ");
+	private final ProcFileReader statReader = new ProcFileReader("/proc/stat", 4096);
 
 	private CpuUtilService() {
 		if (DebugLog.DEBUG) Log.d(TAG, "CpuUtilService - constructor");
@@ -103,13 +109,13 @@ public final class CpuUtilService extends MetricService<Long> {
 		groupId = Metrics.PROCESSOR_CATEGORY;
 		metricsCount = PROC_METRICS;
 		
-		values = new Long[PROC_METRICS];
+		longValues = new long[PROC_METRICS];
 		valueNodes = new SparseArray<ValueNode<Long>>();
 		freshnessThreshold = SIXTY_SECONDS;
 //		observerHandler = new Handler();
 		adminObserver = SystemObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -183,7 +189,7 @@ public final class CpuUtilService extends MetricService<Long> {
 	
 	@Override
 	void getMetricInfo() {
-		fetchValues();
+		fetchValues(longValues);
 		
 		performUpdates();
 	}
@@ -197,92 +203,84 @@ public final class CpuUtilService extends MetricService<Long> {
 				updateCount = 1;
 			}
 			adminObserver.setPeriod(groupId, (lastUpdate - prevUpdate)/updateCount);
-			long totalJiffies = values[0] - prevVals[0];
+			long totalJiffies = longValues[0] - prevVals[0];
 			for (int i = 0; i < (PROC_METRICS - 1); i++) {
-				int percent = (int) (((values[i] - prevVals[i]) * 100)/totalJiffies);
+				int percent = (int) (((longValues[i] - prevVals[i]) * 100)/totalJiffies);
 				adminObserver.setValue(groupId + i, percent);
 			}
 			adminObserver.setValue(Metrics.PROC_CTXT, 
-					(values[PROC_METRICS - 1] - prevVals[PROC_METRICS - 1]));
+					(longValues[PROC_METRICS - 1] - prevVals[PROC_METRICS - 1]));
 		}
 		else {
 			adminObserver.setPeriod(groupId, 0);
-			for (int i = 0; i < values.length; i++) {
+			for (int i = 0; i < longValues.length; i++) {
 				adminObserver.setValue(groupId + i, 0);
 			}
 		}
 		prevUpdate = lastUpdate;	// SystemClock.uptimeMillis();
 		updateCount = 0;
-		for (int i = 0; i < values.length; i++) {
-			prevVals[i] = values[i];
+		for (int i = 0; i < longValues.length; i++) {
+			prevVals[i] = longValues[i];
 		}
 	}
 
 	/**
 	 * Obtain updated values for CPU utilization.
+	 * 
+	 * @param dest    array to store counters in
+	 * @return    true if /proc/stat was read
 	 */
-	private void fetchValues() {
-		BufferedReader reader = null;
-//		long percentFree = 0;
-		
+	private synchronized boolean fetchValues(long[] dest) {
 		if (DebugLog.DEBUG) Log.d(TAG, "CpuUtilService.getProcInfo - updating proc values");
-		try {
-			reader = new BufferedReader(new InputStreamReader(
-					new FileInputStream(new File("/proc/stat"))), 1024);
-			String line;
-//			int index = 0;
-			
-			if ( (line = reader.readLine()) != null) {
-				String[] params = line.split("\\s+");
-				if (params[0].contentEquals("cpu")) {
-					values[0] = (long) 0;
-					for (int i = 1; (i < (PROC_METRICS-1)) && (i < params.length); i++) {
-						values[i] = Long.parseLong(params[i]);
-						values[0] += values[i];
-					}
-				}
-				else {
-					if (DebugLog.ERROR) Log.e(TAG, "CpuUtilService.getProcInfo - failed to read cpu line");
-				}
-			}
-			while ( (line = reader.readLine()) != null) {
-				if (line.startsWith("ctxt")) {
-					String[] params = line.split("\\s+");
-					if (params.length == 2) {
-						values[PROC_METRICS - 1] = Long.parseLong(params[1]);
-					}
+		if (!statReader.read()) {
+			if (DebugLog.WARNING) Log.w(TAG, "CpuUtilService.getProcInfo - read proc values failed!");
+			return false;
+		}
+		if (statReader.startsWith(CPU_KEY)) {
+			long total = 0;
+			for (int i = 1; i < (PROC_METRICS - 1); i++) {
+				long jiffies = statReader.nextLong(-1);
+				if (jiffies < 0) {
 					break;
 				}
+				dest[i] = jiffies;
+				total += jiffies;
 			}
+			dest[0] = total;
 		}
-		catch (Exception e) {
-			if (DebugLog.WARNING) Log.w(TAG, "CpuUtilService.getProcInfo - read proc values failed!");
+		else {
+			if (DebugLog.ERROR) Log.e(TAG, "CpuUtilService.getProcInfo - failed to read cpu line");
 		}
-		finally {
-			if (reader != null) {
-				try {
-					reader.close();
-				}
-				catch (IOException ie) {
-					if (DebugLog.WARNING) Log.w(TAG, "CpuUtilService.getProcInfo - close reader failed!");
-				}
+		if (statReader.findLine(CTXT_KEY)) {
+			long ctxt = statReader.nextLong(-1);
+			if (ctxt >= 0) {
+				dest[PROC_METRICS - 1] = ctxt;
 			}
 		}
+		return true;
 	}
-
+	
+	/**
+	 * Cumulative counters of a one-shot read are read apart from those of the 
+	 * scheduled updates, which the admin view compares with the previous update.
+	 */
 	@Override
-	Long getMetricValue(int metric) {
-		final long curTime = SystemClock.uptimeMillis();
-		if ((curTime - lastUpdate) > SIXTY_SECONDS) {
-			fetchValues();
-			lastUpdate = curTime;
+	protected boolean refreshValues() {
+		if (!fetchValues(fetchedValues)) {
+			return false;
 		}
-		if ((metric < groupId) || (metric >= (groupId + values.length))) {
-			if (DebugLog.INFO) Log.i(TAG, "CpuService.getMetricValue - metric value " + metric +
-					", not valid for group " + groupId);
-			return null;
-		}
-		return values[metric - groupId];
+		publishValues(fetchedValues, SystemClock.uptimeMillis());
+		return true;
+	}
+	
+	/**
+	 * Values are jiffies since the previous update, and reading them here would
+	 * move the baseline of the next update, so the last published values are
+	 * returned.
+	 */
+	@Override
+	double getMetricDouble(int metric) {
+		return getPublishedDouble(metric);
 	}
 
 }
@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.zip.GZIPOutputStream;
+
+import edu.nd.darts.cimon.contentprovider.CimonContentProvider;
+import edu.nd.darts.cimon.database.DataTable;
+import android.content.ContentResolver;
+import android.database.Cursor;
+
+/**
+ * Streaming writer of tab separated monitor reports.
+ * Readings are read from the content provider in bounded pages (keyset paging
+ * by timestamp and row id), and numbers are formatted into reusable buffers,
+ * so exporting does not allocate per reading and memory use does
+ * not depend on the size of the monitor.  The buffer is written through a
+ * {@link FileChannel}, or through a gzip stream if compression is requested.
+ * Exporters may also write to any output stream, as used for upload payloads.
+ * 
+ * @author darts
+ * 
+ * @see MonitorReport
+ * @see DataUploader
+ *
+ */
+public final class CsvExporter implements Closeable {
+	
+	/** Number of readings queried per page. */
+	public static final int PAGE_SIZE = 5000;
+	/** Extension appended to file names of compressed reports. */
+	public static final String GZIP_EXTENSION = ".gz";
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/** Reserved space for one formatted number, or character of text. */
+	private static final int MAX_FIELD = 32;
+	
+	private static final String[] PROJECTION = { DataTable.COLUMN_ID, 
+		DataTable.COLUMN_TIMESTAMP, DataTable.COLUMN_VALUE };
+	
+	private final FileOutputStream output;
+	private final FileChannel channel;
+	private final GZIPOutputStream gzip;
+	/** Stream written instead of channel, if not null. */
+	private final OutputStream stream;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+	private final byte[] digits = new byte[20];
+	/** Scratch text of float values. */
+	private final StringBuilder floatText = new StringBuilder(MAX_FIELD);
+	private int position = 0;
+	
+	/**
+	 * Open report file for writing.  Existing file is replaced.
+	 * 
+	 * @param file    report file
+	 * @param gzip    compress report with gzip
+	 * @throws IOException if file could not be opened
+	 */
+	public CsvExporter(File file, boolean gzip) throws IOException {
+		output = new FileOutputStream(file);
+		channel = output.getChannel();
+		this.gzip = gzip ? new GZIPOutputStream(Channels.newOutputStream(channel), 
+				BUFFER_SIZE) : null;
+		stream = this.gzip;
+	}
+	
+	/**
+	 * Open exporter writing to output stream.  The stream is closed when the
+	 * exporter is closed.
+	 * 
+	 * @param out     stream to write
+	 * @param gzip    compress output with gzip
+	 * @throws IOException if gzip header could not be written
+	 */
+	public CsvExporter(OutputStream out, boolean gzip) throws IOException {
+		output = null;
+		channel = null;
+		this.gzip = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+		stream = gzip ? this.gzip : out;
+	}
+	
+	/**
+	 * Write readings of monitor, as lines of timestamp and value separated by tab.
+	 * 
+	 * @param resolver     content resolver for CIMON content provider
+	 * @param monitorId    id of monitor
+	 * @return    number of readings written, or -1 if readings could not be queried
+	 * @throws IOException if report could not be written
+	 */
+	public long writeMonitor(ContentResolver resolver, int monitorId) throws IOException {
+		long afterTime = Long.MIN_VALUE;
+		long afterId = -1;
+		long rows = 0;
+		while (true) {
+			Cursor cursor = resolver.query(CimonContentProvider.monitorPageUri(monitorId, 
+					afterTime, afterId, PAGE_SIZE), PROJECTION, null, null, null);
+			if (cursor == null) {
+				return (rows == 0) ? -1 : rows;
+			}
+			int count = 0;
+			try {
+				while (cursor.moveToNext()) {
+					afterId = cursor.getLong(0);
+					afterTime = cursor.getLong(1);
+					write(afterTime).write('\t').write(cursor.getFloat(2)).newLine();
+					count++;
+				}
+			} finally {
+				cursor.close();
+			}
+			rows += count;
+			if (count < PAGE_SIZE) {
+				return rows;
+			}
+		}
+	}
+	
+	/**
+	 * Write text.  Characters are encoded as UTF-8.
+	 * 
+	 * @param text    text to write
+	 * @return    this exporter
+	 * @throws IOException if report could not be written
+	 */
+	public CsvExporter write(String text) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			write(text.charAt(i));
+		}
+		return this;
+	}
+	
+	/**
+	 * Write character, encoded as UTF-8.
+	 * 
+	 * @param c    character to write
+	 * @return    this exporter
+	 * @throws IOException if report could not be written
+	 */
+	public CsvExporter write(char c) throws IOException {
+		reserve();
+		if (c < 0x80) {
+			buffer[position++] = (byte) c;
+		}
+		else if (c < 0x800) {
+			buffer[position++] = (byte) (0xc0 | (c >> 6));
+			buffer[position++] = (byte) (0x80 | (c & 0x3f));
+		}
+		else {
+			buffer[position++] = (byte) (0xe0 | (c >> 12));
+			buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+			buffer[position++] = (byte) (0x80 | (c & 0x3f));
+		}
+		return this;
+	}
+	
+	/**
+	 * Write end of line.
+	 * 
+	 * @return    this exporter
+	 * @throws IOException if report could not be written
+	 */
+	public CsvExporter newLine() throws IOException {
+		return write('\n');
+	}
+	
+	/**
+	 * Write decimal integer.
+	 * 
+	 * @param value    value to write
+	 * @return    this exporter
+	 * @throws IOException if report could not be written
+	 */
+	public CsvExporter write(long value) throws IOException {
+		reserve();
+		if (value < 0) {
+			buffer[position++] = '-';
+		}
+		else {
+			value = -value;
+		}
+		// digits are accumulated as negative values, so Long.MIN_VALUE does not overflow
+		int count = 0;
+		do {
+			digits[count++] = (byte) ('0' - (value % 10));
+			value /= 10;
+		} while (value != 0);
+		while (count > 0) {
+			buffer[position++] = digits[--count];
+		}
+		return this;
+	}
+	
+	/**
+	 * Write float value, exactly as by {@link Float#toString(float)}, so reports
+	 * read the same as those written with string concatenation.  The digits are
+	 * appended to a reusable builder, rather than creating a string per value.
+	 * 
+	 * @param value    value to write
+	 * @return    this exporter
+	 * @throws IOException if report could not be written
+	 */
+	public CsvExporter write(float value) throws IOException {
+		floatText.setLength(0);
+		floatText.append(value);
+		reserve();
+		for (int i = 0; i < floatText.length(); i++) {
+			buffer[position++] = (byte) floatText.charAt(i);
+		}
+		return this;
+	}
+	
+	/**
+	 * Write buffered output and close report file, or output stream.
+	 * 
+	 * @throws IOException if report could not be written
+	 */
+	public void close() throws IOException {
+		try {
+			flush();
+			if (gzip != null) {
+				gzip.finish();
+			}
+		} finally {
+			if (stream != null) {
+				stream.close();
+			}
+			if (output != null) {
+				output.close();
+			}
+		}
+	}
+	
+	/**
+	 * Ensure space for one field in buffer, flushing if necessary.
+	 */
+	private void reserve() throws IOException {
+		if ((BUFFER_SIZE - position) < MAX_FIELD) {
+			flush();
+		}
+	}
+	
+	private void flush() throws IOException {
+		if (position == 0) return;
+		if (stream != null) {
+			stream.write(buffer, 0, position);
+		}
+		else {
+			byteBuffer.clear();
+			byteBuffer.limit(position);
+			while (byteBuffer.hasRemaining()) {
+				channel.write(byteBuffer);
+			}
+		}
+		position = 0;
+	}
+	
+}
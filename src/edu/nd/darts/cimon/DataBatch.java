@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+/**
+ * Columnar batch of timestamp and value pairs for entries in the Data table.
+ * Used to batch inserts for efficiency.  Timestamps and values are held in 
+ * parallel primitive arrays, so adding an entry does not allocate.
+ * <p>
+ * Batches are recycled through a bounded pool, in the same fashion as 
+ * {@link android.os.Message}.  Obtain a batch with {@link #obtain()}, and 
+ * return it with {@link #recycle()} once its entries have been written to the
+ * database.  A batch must not be used after it is recycled.
+ * 
+ * @author chris miller
+ * 
+ * @see ValueNode
+ * @see edu.nd.darts.cimon.database.CimonDatabaseAdapter
+ *
+ */
+public final class DataBatch {
+
+	/** Maximum number of entries held by a batch. */
+	public static final int CAPACITY = 1000;
+	/** Maximum number of free batches retained by pool. */
+	private static final int MAX_POOL_SIZE = 16;
+	
+	private static final Object sPoolSync = new Object();
+	private static DataBatch sPool;
+	private static int sPoolSize = 0;
+	
+	/** Timestamps of entries, from system uptime in milliseconds. */
+	public final long[] timestamps;
+	/** Values of entries. */
+	public final float[] values;
+	private int size;
+	private DataBatch next;
+	
+	private DataBatch() {
+		timestamps = new long[CAPACITY];
+		values = new float[CAPACITY];
+		size = 0;
+	}
+	
+	/**
+	 * Return an empty batch from the pool, or a new batch if the pool is empty.
+	 * 
+	 * @return    empty batch
+	 */
+	public static DataBatch obtain() {
+		synchronized (sPoolSync) {
+			if (sPool != null) {
+				DataBatch batch = sPool;
+				sPool = batch.next;
+				batch.next = null;
+				sPoolSize--;
+				return batch;
+			}
+		}
+		return new DataBatch();
+	}
+	
+	/**
+	 * Return this batch to the pool.  If the pool is full, the batch is dropped.
+	 */
+	public void recycle() {
+		size = 0;
+		synchronized (sPoolSync) {
+			if (sPoolSize < MAX_POOL_SIZE) {
+				next = sPool;
+				sPool = this;
+				sPoolSize++;
+			}
+		}
+	}
+	
+	/**
+	 * Append a new entry to batch.
+	 * 
+	 * @param timestamp    timestamp of data acquisition
+	 * @param value    value acquired for metric
+	 * @return    true if batch is full after adding entry
+	 */
+	public boolean add(long timestamp, float value) {
+		timestamps[size] = timestamp;
+		values[size] = value;
+		size++;
+		return (size >= CAPACITY);
+	}
+	
+	/**
+	 * Return number of entries in batch.
+	 * 
+	 * @return    count of entries
+	 */
+	public int size() {
+		return size;
+	}
+	
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+}
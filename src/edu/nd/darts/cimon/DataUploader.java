@@ -0,0 +1,549 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Random;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import edu.nd.darts.cimon.contentprovider.CimonContentProvider;
+import edu.nd.darts.cimon.database.DataTable;
+import edu.nd.darts.cimon.database.MetricInfoTable;
+import edu.nd.darts.cimon.database.MetricsTable;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.provider.Settings;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * Uploads monitor readings to the remote data server.
+ * Readings are read from the content provider in batches (keyset paging by
+ * timestamp and row id), encoded as gzip compressed tab separated lines of row id,
+ * timestamp and value, and posted with one request per batch.  Requests use
+ * fixed length bodies and responses are read to the end without disconnecting,
+ * so the connection is kept alive and reused for following batches.  Any 2xx
+ * status acknowledges a request.
+ * <p>
+ * Each upload first posts the description of the sensor and device as JSON
+ * objects of type <i>Sensor_Table</i>, <i>Device_List</i> and <i>Labeling_Freq</i>,
+ * one object per request, with the fields expected by the server.  Readings are
+ * posted in version {@value #FORMAT_VERSION} of the <i>Data_Table</i> format, 
+ * which replaces the single JSON object per reading of version 1:
+ * <pre>
+ *   POST &lt;url&gt;?type=Data_Table&amp;version=2&amp;device=&lt;android id&gt;
+ *       &amp;monitor=&lt;monitor id&gt;&amp;metric=&lt;metric id&gt;&amp;count=&lt;readings&gt;
+ *   Content-Type: text/tab-separated-values; charset=utf-8
+ *   Content-Encoding: gzip
+ *   
+ *   &lt;row id&gt; TAB &lt;timestamp&gt; TAB &lt;value&gt; LF    (one line per reading)
+ * </pre>
+ * <p>
+ * The last acknowledged reading of each monitor is saved as a checkpoint in
+ * shared preferences, so an interrupted upload resumes from that reading the next
+ * time the monitor is uploaded.  Failed requests are retried with exponential
+ * backoff, up to {@link #MAX_ATTEMPTS} times per batch.  All uploads run on a
+ * single background thread.
+ * 
+ * @author darts
+ * 
+ * @see MonitorReport
+ * @see CsvExporter
+ *
+ */
+public final class DataUploader {
+	
+	private static final String TAG = "NDroid";
+	private static final String THREADTAG = "cimonupload";
+	
+	/** Version of the Data_Table upload format. */
+	public static final int FORMAT_VERSION = 2;
+	/** Address of data server, unless another is {@link #setServerUrl(Context, String) set}. */
+	private static final String DEFAULT_URL = "http://10.0.0.4:8100/Update_Data/";
+	/** Maximum readings posted in a single request. */
+	public static final int BATCH_SIZE = 2000;
+	/** Maximum attempts to post a batch before upload is abandoned. */
+	public static final int MAX_ATTEMPTS = 6;
+	/** Delay before first retry of failed batch, in milliseconds. */
+	private static final long INITIAL_BACKOFF = 1000;
+	/** Maximum delay before retry of failed batch, in milliseconds. */
+	private static final long MAX_BACKOFF = 60000;
+	private static final int CONNECT_TIMEOUT = 15000;
+	private static final int READ_TIMEOUT = 30000;
+	
+	private static final String SHARED_PREFS = "CimonUploadPrefs";
+	private static final String PREF_TIME = "time";
+	private static final String PREF_ID = "id";
+	private static final String PREF_URL = "url";
+	
+	private static final String CONTENT_TYPE = "text/tab-separated-values; charset=utf-8";
+	private static final String CONTENT_TYPE_JSON = "application/json; charset=utf-8";
+	private static final String PARAM_TYPE = "type";
+	private static final String PARAM_VERSION = "version";
+	private static final String PARAM_DEVICE = "device";
+	private static final String PARAM_MONITOR = "monitor";
+	private static final String PARAM_METRIC = "metric";
+	private static final String PARAM_COUNT = "count";
+	private static final String TYPE_DATA = "Data_Table";
+	private static final String TYPE_SENSOR = "Sensor_Table";
+	private static final String TYPE_DEVICE = "Device_List";
+	private static final String TYPE_LABELING = "Labeling_Freq";
+	/** Number of description records posted before the readings of a monitor. */
+	private static final int DESCRIPTIONS = 3;
+	
+	private static final String[] PROJECTION = { DataTable.COLUMN_ID, 
+		DataTable.COLUMN_TIMESTAMP, DataTable.COLUMN_VALUE };
+	
+	// result of a single batch
+	private static final int BATCH_SENT = 0;
+	private static final int BATCH_EMPTY = 1;
+	private static final int BATCH_RETRY = 2;
+	private static final int BATCH_FAILED = 3;
+	
+	private static DataUploader mInstance = null;
+	
+	private final Handler uploadHandler;
+	private final ContentResolver resolver;
+	private final SharedPreferences checkpoints;
+	private final String deviceId;
+	private final SparseArray<UploadTask> uploads = new SparseArray<UploadTask>();
+	private final Payload payload = new Payload();
+	private final byte[] discard = new byte[1024];
+	private final Random random = new Random();
+	private volatile String url;
+	
+	/**
+	 * Create uploader which runs uploads on the thread of the specified looper.
+	 * 
+	 * @param context    application context
+	 * @param looper     looper of upload thread
+	 */
+	DataUploader(Context context, Looper looper) {
+		if (DebugLog.DEBUG) Log.d(TAG, "DataUploader - constructor");
+		resolver = context.getContentResolver();
+		checkpoints = context.getSharedPreferences(SHARED_PREFS, Context.MODE_PRIVATE);
+		url = checkpoints.getString(PREF_URL, DEFAULT_URL);
+		String androidId = Settings.Secure.getString(resolver, Settings.Secure.ANDROID_ID);
+		deviceId = (androidId == null) ? "unknown" : androidId;
+		uploadHandler = new Handler(looper);
+	}
+	
+	/**
+	 * Get uploader, running on its own background thread.
+	 * 
+	 * @param context    application context
+	 * @return    single instance of uploader
+	 */
+	public static synchronized DataUploader getInstance(Context context) {
+		if (mInstance == null) {
+			HandlerThread uploadThread = new HandlerThread(THREADTAG);
+			uploadThread.start();
+			mInstance = new DataUploader(context.getApplicationContext(), 
+					uploadThread.getLooper());
+		}
+		return mInstance;
+	}
+	
+	/**
+	 * Set address of data server, used by later requests of all uploads.  The 
+	 * address is kept across restarts.
+	 * 
+	 * @param context    application context
+	 * @param url        address of data server, or null for the default server
+	 */
+	public static void setServerUrl(Context context, String url) {
+		SharedPreferences.Editor editor = context.getSharedPreferences(SHARED_PREFS, 
+				Context.MODE_PRIVATE).edit();
+		if (url == null) {
+			editor.remove(PREF_URL);
+		}
+		else {
+			editor.putString(PREF_URL, url);
+		}
+		editor.commit();
+		synchronized (DataUploader.class) {
+			if (mInstance != null) {
+				mInstance.url = (url == null) ? DEFAULT_URL : url;
+			}
+		}
+	}
+	
+	/**
+	 * Upload readings of monitor which have not yet been acknowledged by the server.
+	 * Upload runs in the background.  If an upload of this monitor is already 
+	 * in progress, it will continue through the newest readings and this call has
+	 * no further effect.
+	 * 
+	 * @param monitorId    id of monitor
+	 * @param metricId     id of metric of monitor
+	 */
+	public void upload(int monitorId, int metricId) {
+		synchronized (uploads) {
+			if (uploads.get(monitorId) != null) {
+				if (DebugLog.DEBUG) Log.d(TAG, "DataUploader.upload - already uploading monitor:" 
+						+ monitorId);
+				return;
+			}
+			UploadTask task = new UploadTask(monitorId, metricId);
+			uploads.put(monitorId, task);
+			uploadHandler.post(task);
+		}
+	}
+	
+	/**
+	 * Upload of the readings of a single monitor.  Each execution posts one 
+	 * description record or batch, and reschedules the task for the next request, 
+	 * or for a retry after backoff.
+	 */
+	private final class UploadTask implements Runnable {
+		
+		final int monitorId;
+		final int metricId;
+		long afterTime;
+		long afterId;
+		int described = 0;
+		int attempts = 0;
+		long startTime;
+		long samples = 0;
+		long bytes = 0;
+		
+		UploadTask(int monitorId, int metricId) {
+			this.monitorId = monitorId;
+			this.metricId = metricId;
+			afterTime = checkpoints.getLong(PREF_TIME + monitorId, Long.MIN_VALUE);
+			afterId = checkpoints.getLong(PREF_ID + monitorId, -1);
+			startTime = System.currentTimeMillis();
+		}
+
+		public void run() {
+			int result = (described < DESCRIPTIONS) ? sendDescription(this) : sendBatch(this);
+			switch (result) {
+				case BATCH_SENT:
+					attempts = 0;
+					uploadHandler.post(this);
+					return;
+				case BATCH_RETRY:
+					if (++attempts < MAX_ATTEMPTS) {
+						long delay = backoff(attempts);
+						if (DebugLog.INFO) Log.i(TAG, "DataUploader.run - retry monitor:" + 
+								monitorId + " attempt:" + attempts + " in " + delay + "ms");
+						uploadHandler.postDelayed(this, delay);
+						return;
+					}
+					if (DebugLog.WARNING) Log.w(TAG, "DataUploader.run - upload abandoned after " 
+							+ attempts + " attempts, monitor:" + monitorId);
+					break;
+				case BATCH_FAILED:
+					if (DebugLog.WARNING) Log.w(TAG, "DataUploader.run - upload failed, monitor:" 
+							+ monitorId);
+					break;
+				default:
+					if (DebugLog.DEBUG) {
+						long elapsed = Math.max(System.currentTimeMillis() - startTime, 1);
+						Log.d(TAG, "DataUploader.run - monitor:" + monitorId + " uploaded " + 
+								samples + " samples, " + bytes + " bytes in " + elapsed + "ms (" + 
+								(samples * 1000 / elapsed) + " samples/s)");
+					}
+					break;
+			}
+			synchronized (uploads) {
+				uploads.remove(monitorId);
+			}
+		}
+	}
+	
+	/**
+	 * Post next description record of upload task, in the JSON format of version 1.
+	 * 
+	 * @param task    upload task
+	 * @return    result of request
+	 */
+	private int sendDescription(UploadTask task) {
+		JSONObject record;
+		try {
+			switch (task.described) {
+				case 0:
+					record = describeSensor(task.metricId);
+					break;
+				case 1:
+					record = new JSONObject();
+					record.put(PARAM_TYPE, TYPE_DEVICE);
+					record.put("Device_ID", deviceId);
+					record.put("Description", Build.MODEL);
+					record.put("Last_Update", String.valueOf(System.currentTimeMillis()));
+					record.put("Sensor " + task.metricId, "True");
+					break;
+				default:
+					// CIMON does not collect activity labels
+					record = new JSONObject();
+					record.put(PARAM_TYPE, TYPE_LABELING);
+					record.put("Device_ID", deviceId);
+					record.put("Average_Label", "0");
+					break;
+			}
+		} catch (JSONException e) {
+			if (DebugLog.ERROR) Log.e(TAG, "DataUploader.sendDescription - encoding failed: " + e);
+			return BATCH_FAILED;
+		}
+		payload.reset();
+		try {
+			payload.write(record.toString().getBytes("UTF-8"));
+		} catch (IOException e) {
+			// payload is written to memory
+			return BATCH_FAILED;
+		}
+		int result = send(url, CONTENT_TYPE_JSON, false);
+		if (result == BATCH_SENT) {
+			task.described++;
+		}
+		return result;
+	}
+	
+	/**
+	 * Description of metric, from the Metrics and MetricInfo tables.
+	 */
+	private JSONObject describeSensor(int metricId) throws JSONException {
+		JSONObject record = new JSONObject();
+		record.put(PARAM_TYPE, TYPE_SENSOR);
+		record.put("Sensor_ID", String.valueOf(metricId));
+		String description = "";
+		String max = "";
+		String units = "";
+		String resolution = "";
+		String power = "";
+		Cursor cursor = resolver.query(Uri.withAppendedPath(CimonContentProvider.METRICS_URI, 
+				String.valueOf(metricId)), null, null, null, null);
+		int infoId = -1;
+		if (cursor != null) {
+			try {
+				if (cursor.moveToFirst()) {
+					description = cursor.getString(cursor.getColumnIndex(MetricsTable.COLUMN_METRIC));
+					max = cursor.getString(cursor.getColumnIndex(MetricsTable.COLUMN_MAX));
+					units = cursor.getString(cursor.getColumnIndex(MetricsTable.COLUMN_UNITS));
+					infoId = cursor.getInt(cursor.getColumnIndex(MetricsTable.COLUMN_INFO_ID));
+				}
+			} finally {
+				cursor.close();
+			}
+		}
+		cursor = (infoId < 0) ? null : resolver.query(Uri.withAppendedPath(
+				CimonContentProvider.INFO_URI, String.valueOf(infoId)), null, null, null, null);
+		if (cursor != null) {
+			try {
+				if (cursor.moveToFirst()) {
+					resolution = cursor.getString(cursor.getColumnIndex(
+							MetricInfoTable.COLUMN_RESOLUTION));
+					power = cursor.getString(cursor.getColumnIndex(MetricInfoTable.COLUMN_POWER));
+				}
+			} finally {
+				cursor.close();
+			}
+		}
+		record.put("Description", description);
+		record.put("Max", max);
+		record.put("Unit", units);
+		record.put("Resolution", resolution);
+		record.put("Power", power);
+		return record;
+	}
+	
+	/**
+	 * Read, encode and post next batch of readings for upload task.  Checkpoint is
+	 * advanced once the server acknowledges the batch.
+	 * 
+	 * @param task    upload task
+	 * @return    result of batch
+	 */
+	private int sendBatch(UploadTask task) {
+		Cursor cursor = resolver.query(CimonContentProvider.monitorPageUri(task.monitorId, 
+				task.afterTime, task.afterId, BATCH_SIZE), PROJECTION, null, null, null);
+		if (cursor == null) {
+			if (DebugLog.WARNING) Log.w(TAG, "DataUploader.sendBatch - data cursor is empty");
+			return BATCH_RETRY;
+		}
+		int count = 0;
+		long lastTime = task.afterTime;
+		long lastId = task.afterId;
+		payload.reset();
+		try {
+			CsvExporter encoder = new CsvExporter(payload, true);
+			try {
+				while (cursor.moveToNext()) {
+					lastId = cursor.getLong(0);
+					lastTime = cursor.getLong(1);
+					encoder.write(lastId).write('\t').write(lastTime).write('\t')
+							.write(cursor.getFloat(2)).newLine();
+					count++;
+				}
+			} finally {
+				encoder.close();
+			}
+		} catch (IOException e) {
+			// payload is written to memory
+			if (DebugLog.ERROR) Log.e(TAG, "DataUploader.sendBatch - encoding failed: " + e);
+			return BATCH_FAILED;
+		} finally {
+			cursor.close();
+		}
+		if (count == 0) {
+			return BATCH_EMPTY;
+		}
+		
+		String request = Uri.parse(url).buildUpon()
+				.appendQueryParameter(PARAM_TYPE, TYPE_DATA)
+				.appendQueryParameter(PARAM_VERSION, String.valueOf(FORMAT_VERSION))
+				.appendQueryParameter(PARAM_DEVICE, deviceId)
+				.appendQueryParameter(PARAM_MONITOR, String.valueOf(task.monitorId))
+				.appendQueryParameter(PARAM_METRIC, String.valueOf(task.metricId))
+				.appendQueryParameter(PARAM_COUNT, String.valueOf(count))
+				.build().toString();
+		int result = send(request, CONTENT_TYPE, true);
+		if (result != BATCH_SENT) {
+			return result;
+		}
+		task.afterTime = lastTime;
+		task.afterId = lastId;
+		task.samples += count;
+		task.bytes += payload.size();
+		checkpoints.edit().putLong(PREF_TIME + task.monitorId, lastTime)
+				.putLong(PREF_ID + task.monitorId, lastId).commit();
+		return (count < BATCH_SIZE) ? BATCH_EMPTY : BATCH_SENT;
+	}
+	
+	/**
+	 * Post payload to server, and classify the response.
+	 * 
+	 * @param request        request url
+	 * @param contentType    content type of payload
+	 * @param gzip           true if payload is gzip compressed
+	 * @return    BATCH_SENT if any 2xx status acknowledged the request, 
+	 *              BATCH_RETRY if it may succeed on retry, or BATCH_FAILED
+	 */
+	private int send(String request, String contentType, boolean gzip) {
+		int status;
+		try {
+			status = post(request, contentType, gzip);
+		} catch (IOException e) {
+			if (DebugLog.INFO) Log.i(TAG, "DataUploader.send - post failed: " + e);
+			return BATCH_RETRY;
+		}
+		if ((status >= 200) && (status < 300)) {
+			return BATCH_SENT;
+		}
+		if (DebugLog.WARNING) Log.w(TAG, "DataUploader.send - request not acknowledged, status:" 
+				+ status);
+		// server errors, timeouts and throttling may succeed on retry
+		if ((status >= 500) || (status == 408) || (status == 429)) {
+			return BATCH_RETRY;
+		}
+		return BATCH_FAILED;
+	}
+	
+	/**
+	 * Post payload to server.  Response is read to the end and discarded.  The
+	 * connection is only disconnected on failure, so it may be reused.
+	 * 
+	 * @param request        request url
+	 * @param contentType    content type of payload
+	 * @param gzip           true if payload is gzip compressed
+	 * @return    http status code
+	 * @throws IOException if request could not be completed
+	 */
+	private int post(String request, String contentType, boolean gzip) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(request).openConnection();
+		try {
+			connection.setDoOutput(true);
+			connection.setRequestMethod("POST");
+			connection.setConnectTimeout(CONNECT_TIMEOUT);
+			connection.setReadTimeout(READ_TIMEOUT);
+			connection.setRequestProperty("Content-Type", contentType);
+			if (gzip) {
+				connection.setRequestProperty("Content-Encoding", "gzip");
+			}
+			connection.setFixedLengthStreamingMode(payload.size());
+			
+			OutputStream out = connection.getOutputStream();
+			payload.writeTo(out);
+			out.close();
+			
+			int status = connection.getResponseCode();
+			InputStream in = (status < 400) ? connection.getInputStream() : 
+				connection.getErrorStream();
+			readResponse(in);
+			return status;
+		} catch (IOException e) {
+			connection.disconnect();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Read response to end, discarding it.  The stream must be read to the end 
+	 * for the connection to be reused.
+	 */
+	private void readResponse(InputStream in) throws IOException {
+		if (in == null) return;
+		try {
+			while (in.read(discard) >= 0);
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Delay before retry, doubling with each attempt up to {@link #MAX_BACKOFF}, 
+	 * with random jitter so that retries of several devices do not align.
+	 */
+	private long backoff(int attempt) {
+		long delay = Math.min(INITIAL_BACKOFF << Math.min(attempt - 1, 16), MAX_BACKOFF);
+		return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+	}
+	
+	/**
+	 * Reusable request body.  The buffer grows to the size of the largest batch and
+	 * is written to the connection without copying.
+	 */
+	private static final class Payload extends ByteArrayOutputStream {
+		
+		Payload() {
+			super(64 * 1024);
+		}
+		
+		@Override
+		public void close() {
+			// payload is reused, closing the encoder must not invalidate it
+		}
+	}
+	
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * Monitoring service for I/O of block devices, such as internal flash (mmcblk0), 
+ * SD cards and zram swap.  Unlike {@link FileAccessService}, which counts file 
+ * events on external storage, this group measures the I/O actually reaching each
+ * device.  Metrics of this group are allocated dynamically, 
+ * {@link Metrics#DISK_FIELDS} per device, beginning at {@link Metrics#DISKIO_CATEGORY}.
+ * Use {@link Metrics#diskMetric(int, int)} to obtain the metric for a field of a device.
+ * <p>
+ * Per-device metrics:
+ * <li>Reads	: reads completed since previous update
+ * <li>Writes	: writes completed since previous update
+ * <li>Sectors read	: sectors read since previous update
+ * <li>Sectors written	: sectors written since previous update
+ * <li>Busy time	: time device was busy with I/O since previous update (ms)
+ * <li>Queue time	: weighted time requests spent in queue since previous update (ms)
+ * 
+ * @author darts
+ * 
+ * @see FloatMetricService
+ * @see DiskStats
+ *
+ */
+public final class DiskIoService extends FloatMetricService {
+	
+	private static final String TAG = "NDroid";
+	private static final long FIVE_SECONDS = 5000;
+	private static final int ONE_SECOND = 1000;
+	private static final String DISKSTATS = "/proc/diskstats";
+	
+	// NOTE: title and string array must be defined above instance,
+	//   otherwise, they will be null in constructor
+	private static final String title = "Disk I/O";
+	private static final String[] fields = {"reads", 
+											"writes", 
+											"sectors read", 
+											"sectors written", 
+											"busy time", 
+											"queue time"};
+	private static final String[] units = {"reads", 
+											"writes", 
+											"sectors", 
+											"sectors", 
+											"ms", 
+											"ms"};
+	private static final DiskIoService INSTANCE = new DiskIoService();
+	
+	private final DiskStats stats;
+	/** Statistics of one-shot reads, with a baseline of their own. */
+	private DiskStats fetchStats = null;
+	private float[] fetchedValues;
+	
+	private DiskIoService() {
+		if (DebugLog.DEBUG) Log.d(TAG, "DiskIoService - constructor");
+		if (INSTANCE != null) {
+			throw new IllegalStateException("DiskIoService already instantiated");
+		}
+		stats = new DiskStats(DISKSTATS, DiskStats.findDevices(DISKSTATS, "/sys/block", 
+				Metrics.MAX_DISKS));
+		groupId = Metrics.DISKIO_CATEGORY;
+		metricsCount = stats.getDevices() * Metrics.DISK_FIELDS;
+		
+		floatValues = new float[metricsCount];
+		valueNodes = new SparseArray<ValueNode<Float>>();
+		freshnessThreshold = FIVE_SECONDS;
+//		observerHandler = new Handler();
+		adminObserver = SystemObserver.getInstance();
+		adminObserver.registerObservable(this, groupId);
+		schedules = new ScheduleIndex();
+			init();
+	}
+	
+	public static DiskIoService getInstance() {
+		if (DebugLog.DEBUG) Log.d(TAG, "DiskIoService.getInstance - get single instance");
+		if (!INSTANCE.supportedMetric) return null;
+		return INSTANCE;
+	}
+	
+	/**
+	 * Get instance of service if metric refers to a block device present in this device.
+	 * 
+	 * @param metric    integer representing per-device metric
+	 * @return    single instance of service, null if block device is not present
+	 */
+	public static DiskIoService getInstance(int metric) {
+		if (metric >= (Metrics.DISKIO_CATEGORY + INSTANCE.metricsCount)) {
+			if (DebugLog.INFO) Log.i(TAG, "DiskIoService.getInstance - metric " + metric + 
+					" beyond block devices of device");
+			return null;
+		}
+		return getInstance();
+	}
+
+	@Override
+	void insertDatabaseEntries() {
+		CimonDatabaseAdapter database = CimonDatabaseAdapter.getInstance(
+				MyApplication.getAppContext());
+		
+		int devices = stats.getDevices();
+		// insert metric group information in database
+		database.insertOrReplaceMetricInfo(groupId, title, devices + " block devices", 
+				SUPPORTED, 0, ONE_SECOND, "Counts since previous update", "1", 
+				Metrics.TYPE_SYSTEM);
+		// insert information for metrics in group into database
+		for (int i = 0; i < devices; i++) {
+			for (int j = 0; j < Metrics.DISK_FIELDS; j++) {
+				database.insertOrReplaceMetrics(Metrics.diskMetric(i, j), groupId, 
+						stats.getDevice(i) + " " + fields[j], units[j], 100000);
+			}
+		}
+	}
+	
+	@Override
+	void getMetricInfo() {
+		fetchValues();
+		
+		performUpdates();
+	}
+
+	/**
+	 * Obtain updated values for all block devices, in a single pass of diskstats.
+	 */
+	private void fetchValues() {
+		if (DebugLog.DEBUG) Log.d(TAG, "DiskIoService.fetchValues - updating disk values");
+		if (stats.update(floatValues) < 0) {
+			if (DebugLog.WARNING) Log.w(TAG, "DiskIoService.fetchValues - read diskstats failed!");
+		}
+	}
+
+	/**
+	 * Counts of a one-shot read are taken since the previous one-shot read, 
+	 * through statistics of their own, so the next scheduled update still counts
+	 * since the previous scheduled update.  The first one-shot read reports 0.
+	 */
+	@Override
+	protected boolean refreshValues() {
+		if (fetchStats == null) {
+			final String[] devices = new String[stats.getDevices()];
+			for (int i = 0; i < devices.length; i++) {
+				devices[i] = stats.getDevice(i);
+			}
+			fetchStats = new DiskStats(DISKSTATS, devices);
+			fetchedValues = new float[metricsCount];
+		}
+		if (fetchStats.update(fetchedValues) < 0) {
+			if (DebugLog.WARNING) Log.w(TAG, "DiskIoService.refreshValues - read diskstats failed!");
+			return false;
+		}
+		publishValues(fetchedValues, SystemClock.uptimeMillis());
+		return true;
+	}
+
+	/**
+	 * Values are counts since the previous update, so diskstats is not read here,
+	 * and the last published values are returned.
+	 */
+	@Override
+	double getMetricDouble(int metric) {
+		return getPublishedDouble(metric);
+	}
+	
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import android.util.Log;
+
+/**
+ * Block device I/O statistics, for {@link DiskIoService}.  Each update reads 
+ * /proc/diskstats in a single pass, matching the device name of each line through
+ * a {@link ProcKeyTable}, and computes the reads, writes, sectors and time of each 
+ * monitored device since the previous update.  Devices missing from an update 
+ * (such as removed media) report 0 for all fields.
+ * <p>
+ * Values are stored at index (device * {@link Metrics#DISK_FIELDS}) + field, 
+ * matching the offsets of metrics from {@link Metrics#DISKIO_CATEGORY}.
+ * 
+ * @author darts
+ * 
+ * @see DiskIoService
+ *
+ */
+final class DiskStats {
+	
+	private static final String TAG = "NDroid";
+	/** 
+	 * Counters of /proc/diskstats used per device, in order of the file: reads, 
+	 * sectors read, writes, sectors written, time busy, weighted time in queue.
+	 */
+	private static final int COUNTERS = 6;
+	
+	private final String[] devices;
+	private final ProcKeyTable deviceKeys;
+	private final ProcFileReader statReader;
+	private final long[] counters;
+	private final long[] previous;
+	private final boolean[] primed;
+	private final boolean[] present;
+	
+	/**
+	 * Create statistics for block devices.
+	 * 
+	 * @param path    path of diskstats file, typically /proc/diskstats
+	 * @param devices    names of devices to monitor, such as "mmcblk0"
+	 */
+	DiskStats(String path, String[] devices) {
+		this.devices = devices.clone();
+		final int[] slots = new int[devices.length];
+		for (int i = 0; i < devices.length; i++) {
+			slots[i] = i;
+		}
+		deviceKeys = new ProcKeyTable(devices, slots);
+		statReader = new ProcFileReader(path, 4096);
+		counters = new long[devices.length * COUNTERS];
+		previous = new long[devices.length * COUNTERS];
+		primed = new boolean[devices.length];
+		present = new boolean[devices.length];
+	}
+	
+	/**
+	 * Find block devices to monitor: those of diskstats which are whole disks (listed 
+	 * in the block directory), excluding ram and loop devices.
+	 * 
+	 * @param path    path of diskstats file, typically /proc/diskstats
+	 * @param blockDir    directory of block devices, typically /sys/block
+	 * @param max    maximum number of devices
+	 * @return    names of devices, in order of diskstats
+	 */
+	static String[] findDevices(String path, String blockDir, int max) {
+		if (DebugLog.DEBUG) Log.d(TAG, "DiskStats.findDevices - finding block devices");
+		ArrayList<String> devices = new ArrayList<String>();
+		BufferedReader reader = null;
+		try {
+			reader = new BufferedReader(new FileReader(path), 1024);
+			String line;
+			while (((line = reader.readLine()) != null) && (devices.size() < max)) {
+				String[] tokens = line.trim().split("\\s+");
+				if (tokens.length < 14) {
+					continue;
+				}
+				String name = tokens[2];
+				if (name.startsWith("ram") || name.startsWith("loop")) {
+					continue;
+				}
+				if (new File(blockDir, name).exists()) {
+					devices.add(name);
+				}
+			}
+		}
+		catch (IOException e) {
+			if (DebugLog.WARNING) Log.w(TAG, "DiskStats.findDevices - read diskstats failed!");
+		}
+		finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				}
+				catch (IOException ie) {
+					if (DebugLog.WARNING) Log.w(TAG, "DiskStats.findDevices - close reader failed!");
+				}
+			}
+		}
+		return devices.toArray(new String[devices.size()]);
+	}
+	
+	/**
+	 * Number of devices monitored.
+	 * 
+	 * @return    count of devices
+	 */
+	int getDevices() {
+		return devices.length;
+	}
+	
+	/**
+	 * Name of device.
+	 * 
+	 * @param index    index of device
+	 * @return    name of device, such as "mmcblk0"
+	 */
+	String getDevice(int index) {
+		return devices[index];
+	}
+	
+	/**
+	 * Read current statistics of all devices, and store values since previous update.
+	 * The first update of a device stores 0.
+	 * 
+	 * @param values    array to store values in, of at least 
+	 *                    devices * {@link Metrics#DISK_FIELDS} entries
+	 * @return    number of devices present, -1 if diskstats could not be read
+	 */
+	int update(float[] values) {
+		if (!statReader.read()) {
+			return -1;
+		}
+		for (int i = 0; i < devices.length; i++) {
+			present[i] = false;
+		}
+		int count = 0;
+		do {
+			// major and minor numbers precede name of device
+			if (!statReader.skipTokens(2)) {
+				continue;
+			}
+			final int device = statReader.lookupKey(deviceKeys);
+			if ((device < 0) || present[device]) {
+				continue;
+			}
+			final int base = device * COUNTERS;
+			counters[base] = statReader.nextLong(0);		// reads completed
+			statReader.skipTokens(1);						// reads merged
+			counters[base + 1] = statReader.nextLong(0);	// sectors read
+			statReader.skipTokens(1);						// time reading
+			counters[base + 2] = statReader.nextLong(0);	// writes completed
+			statReader.skipTokens(1);						// writes merged
+			counters[base + 3] = statReader.nextLong(0);	// sectors written
+			statReader.skipTokens(2);						// time writing, in flight
+			counters[base + 4] = statReader.nextLong(0);	// time busy
+			counters[base + 5] = statReader.nextLong(0);	// weighted time in queue
+			present[device] = true;
+			count++;
+		} while (statReader.nextLine());
+		for (int i = 0; i < devices.length; i++) {
+			final int base = i * COUNTERS;
+			final int field = i * Metrics.DISK_FIELDS;
+			if (!present[i]) {
+				primed[i] = false;
+				for (int j = 0; j < Metrics.DISK_FIELDS; j++) {
+					values[field + j] = 0;
+				}
+				continue;
+			}
+			values[field + Metrics.DISK_READS] = delta(i, base);
+			values[field + Metrics.DISK_READ_SECTORS] = delta(i, base + 1);
+			values[field + Metrics.DISK_WRITES] = delta(i, base + 2);
+			values[field + Metrics.DISK_WRITE_SECTORS] = delta(i, base + 3);
+			values[field + Metrics.DISK_BUSY_TIME] = delta(i, base + 4);
+			values[field + Metrics.DISK_QUEUE_TIME] = delta(i, base + 5);
+			for (int j = 0; j < COUNTERS; j++) {
+				previous[base + j] = counters[base + j];
+			}
+			primed[i] = true;
+		}
+		return count;
+	}
+	
+	/**
+	 * Difference of counter since previous update, 0 on first update of device or if
+	 * counter was reset.
+	 */
+	private float delta(int device, int counter) {
+		if (!primed[device] || (counters[counter] < previous[counter])) {
+			return 0;
+		}
+		return counters[counter] - previous[counter];
+	}
+	
+}
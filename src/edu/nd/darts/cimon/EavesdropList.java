@@ -25,14 +25,18 @@ import android.os.SystemClock;
 /**
  * List of opportunistic periodic monitor requests for a specific metric, sorted 
  * by maximum allowed update period.  Monitors in this list will be updated each
- * time an updated value is made available due to another monitor.  Extends 
- * {@link TimerList} to override functionality of insert() and pophead().
+ * time an updated value is made available due to another monitor.  Provides the
+ * same interface as {@link TimerList}, but since every node in this list is visited
+ * on each update, nodes are kept in a linked list sorted by maximum allowed period
+ * rather than in a heap.
  * 
  * @author darts
  *
  */
-public class EavesdropList extends TimerList {
+public class EavesdropList {
 
+	private TimerNode head;
+	
 	/**
 	 * List of opportunistic periodic monitor requests for a specific metric, sorted 
 	 * by maximum allowed update period.  Monitors in this list will be updated each
@@ -41,7 +45,20 @@ public class EavesdropList extends TimerList {
 	 *
 	 */
 	public EavesdropList() {	//SparseArray<TimerNode> schedules
-		super(null);
+		head = null;
+	}
+	
+	/**
+	 * Returns head of opportunistic monitor list.
+	 * 
+	 * @return    {@link TimerNode} at head of list
+	 */
+	public TimerNode getHead() {
+		return head;
+	}
+
+	public boolean isEmpty() {
+		return (head == null);
 	}
 	
 	/**
@@ -50,12 +67,26 @@ public class EavesdropList extends TimerList {
 	 * @return minimum of allowable periods for opportunistic monitors
 	 */
 	long getMinPeriod() {
-		return getHead().getPeriod();
+		return head.getPeriod();
 	}
 
-	@Override
+	/**
+	 * Remove timer node at head of list.
+	 */
+	public void removeHead() {
+		TimerNode temp = head;
+		
+		head = temp.next;
+		temp.next = null;
+	}
+	
+	/**
+	 * Remove head of list if monitor has reached end of duration.
+	 * 
+	 * @return    former head of list, if end of duration has been reached, null otherwise
+	 */
 	public TimerNode popHead() {
-		TimerNode temp = getHead();
+		TimerNode temp = head;
 		
 		long curTime = SystemClock.uptimeMillis();
 		if (curTime > temp.getDuration()) {
@@ -85,14 +116,71 @@ public class EavesdropList extends TimerList {
 		return null;
 	}
 
-	@Override
+	/**
+	 * Insert a new opportunistic monitor into list.  Creates new {@link TimerNode}
+	 * and inserts it in sorted order based on maximum allowed period.
+	 * Key is equivalent to period for opportunistic monitor nodes.
+	 * 
+	 * @param monitorId    unique id of monitor
+	 * @param period       maximum allowed time between updates in milliseconds
+	 * @param callback     client handler to handle update messages
+	 * @param duration     total duration to monitor metric, in milliseconds
+	 * @return    newly created {@link TimerNode} inserted into list
+	 */
 	public TimerNode insert(int monitorId, long period, Messenger callback,
 			long duration) {
 		TimerNode tnode = new TimerNode(monitorId, period, callback, duration);
 		tnode.setKey(period);
-		insertNode(tnode);
 		
+		if (head == null) {
+			head = tnode;
+			return tnode;
+		}
+		if (tnode.getKey() < head.getKey()) {
+			tnode.next = head;
+			head = tnode;
+			return tnode;
+		}
+		TimerNode iter = head;
+		while (iter.next != null) {
+			// otherwise, order by maximum allowed period
+			if (tnode.getKey() < iter.next.getKey()) {
+				tnode.next = iter.next;
+				iter.next = tnode;
+				return tnode;
+			}
+			iter = iter.next;
+		}
+		iter.next = tnode;
 		return tnode;
 	}
+	
+	/**
+	 * Remove opportunistic monitor with this monitor id.  The next link of the
+	 * removed node is left intact, so that callers iterating over the list may 
+	 * continue from the removed node.
+	 * 
+	 * @param monitorId    unique id of monitor
+	 * @return    node that was removed if match was found, null otherwise
+	 */
+	public TimerNode remove(int monitorId) {
+		if (head == null) return null;
+		TimerNode iter = head;
+		if (iter.getMonitorId() == monitorId) {
+			head = iter.next;
+			return iter;
+		}
+		TimerNode prev = iter;
+		iter = iter.next;
+		while (iter != null) {
+			if (iter.getMonitorId() == monitorId) {
+				prev.next = iter.next;
+				return iter;
+			}
+			prev = iter;
+			iter = iter.next;
+		}
+		return null;
+	}
 
 }
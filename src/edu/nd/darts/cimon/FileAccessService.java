@@ -114,7 +114,7 @@ public final class FileAccessService extends MetricService<Long> {
 //		observerHandler = new Handler();
 		adminObserver = SystemObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
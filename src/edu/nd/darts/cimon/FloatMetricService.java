@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Definition of abstract class for monitoring agents of metrics represented by 
+ * primitive floats, such as the values provided by most sensors. Values are kept
+ * in a primitive array and passed to {@link FloatValueNode}s as primitives, so that
+ * acquiring a new value does not box it.
+ * <p>
+ * Subclasses must instantiate floatValues in place of values.  Index i of floatValues 
+ * should correspond to (metricId - groupId).
+ * 
+ * @author darts
+ * 
+ * @see MetricService
+ * @see FloatValueNode
+ *
+ */
+public abstract class FloatMetricService extends MetricService<Float> {
+
+	private static final String TAG = "NDroid";
+	
+	protected float[] floatValues;
+	
+	@Override
+	protected ValueNode<Float> createValueNode(int metric) {
+		return new FloatValueNode(metric, schedules, dbHandler, adminObserver);
+	}
+	
+	@Override
+	Float getMetricValue(int metric) {
+		final double value = getMetricDouble(metric);
+		if (Double.isNaN(value)) {
+			return null;
+		}
+		return Float.valueOf((float) value);
+	}
+	
+	@Override
+	double getMetricDouble(int metric) {
+		final long curTime = SystemClock.uptimeMillis();
+		if ((curTime - lastUpdate) > freshnessThreshold) {
+			return Double.NaN;
+		}
+		if ((metric < groupId) || (metric >= (groupId + floatValues.length))) {
+			if (DebugLog.INFO) Log.i(TAG, "FloatMetricService.getMetricDouble - metric value " + metric +
+					", not valid for group " + groupId);
+			return Double.NaN;
+		}
+		return floatValues[metric - groupId];
+	}
+	
+	@Override
+	protected long updateValueNodes() {
+		lastUpdate = SystemClock.uptimeMillis();
+		long nextUpdate = Long.MAX_VALUE;
+		long updateTime;
+		measurementCnt++;
+		for (int i = 0; i < floatValues.length; i++) {
+			FloatValueNode node = (FloatValueNode) valueNodes.get(groupId + i);
+			if (node != null) {
+				if ((updateTime = node.updateValue(floatValues[i], lastUpdate)) < 0)
+					continue;
+				if (updateTime < nextUpdate)
+					nextUpdate = updateTime;
+			}
+		}
+		publishValues(lastUpdate);
+		signalFetch();
+		if (nextUpdate == Long.MAX_VALUE) {
+			active = false;
+			updateMetric = null;
+			return -1;
+		}
+		updateCount++;
+		return nextUpdate;
+	}
+	
+	@Override
+	protected void publishValues(long timestamp) {
+		publishValues(floatValues, timestamp);
+	}
+	
+	/**
+	 * Publish values of the group held outside of floatValues, such as values read
+	 * for a one-shot read by {@link #refreshValues()}.
+	 * 
+	 * @param source    values of the group, indexed by offset from group id
+	 * @param timestamp    uptime at which values were read (milliseconds)
+	 */
+	protected final void publishValues(float[] source, long timestamp) {
+		final ValueSnapshot current = beginPublish();
+		final int count = Math.min(source.length, metricsCount);
+		for (int i = 0; i < count; i++) {
+			current.set(i, source[i]);
+		}
+		current.end(timestamp);
+	}
+	
+	@Override
+	protected void updateObserver() {
+		if (active) {
+			if (updateCount == 0) {
+				if (DebugLog.WARNING) Log.w(TAG, "FloatMetricService.updateObserver - updateCount is 0: " +
+						"This should never happen.");
+				updateCount = 1;
+			}
+			adminObserver.setPeriod(groupId, (lastUpdate - prevUpdate)/updateCount);
+			for (int i = 0; i < floatValues.length; i++) {
+				adminObserver.setValue(groupId + i, floatValues[i]);
+			}
+		}
+		else {
+			adminObserver.setPeriod(groupId, 0);
+			for (int i = 0; i < floatValues.length; i++) {
+				adminObserver.setValue(groupId + i, 0);
+			}
+		}
+		prevUpdate = lastUpdate;
+		updateCount = 0;
+	}
+
+}
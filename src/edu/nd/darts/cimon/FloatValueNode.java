@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import android.os.Handler;
+import android.util.Log;
+
+/**
+ * {@link ValueNode} for metrics represented by primitive floats.  Values are provided
+ * by {@link FloatMetricService} as primitives and compared against thresholds without
+ * boxing. The current value is only boxed when it is needed as an object, such as
+ * for update messages to clients, and at most once per update.
+ * 
+ * @author darts
+ * 
+ * @see FloatMetricService
+ *
+ */
+public class FloatValueNode extends ValueNode<Float> {
+	
+	private static final String TAG = "NDroid";
+	
+	private float value;
+	private FloatThresholdList floatMaxList;
+	private FloatThresholdList floatMinList;
+	
+	/**
+	 * Node which maintains monitoring lists for an actively monitored float metric.
+	 * 
+	 * @param metric      integer representing metric to be monitored (as specified 
+	 *                      in {@link Metrics})
+	 * @param schedules    schedule shared by all metrics in group to synchronize updates
+	 * @param handler     handler to thread used for database updates
+	 * @param observer    observer which should be notified of monitor status changes
+	 */
+	public FloatValueNode(int metric, ScheduleIndex schedules, Handler handler, 
+			AdminObserver observer) {
+		super(metric, schedules, handler, observer);
+		floatMaxList = new FloatThresholdList(false);
+		floatMinList = new FloatThresholdList(true);
+		maxList = floatMaxList;
+		minList = floatMinList;
+	}
+	
+	/**
+	 * Update value of node for metric.  Return time in milliseconds when next 
+	 * update is needed for this metric.
+	 * 
+	 * @param value        new current value for metric
+	 * @param timestamp    timestamp for this update
+	 * @return   time in milliseconds when next update is needed, -1 for empty
+	 */
+	public long updateValue(float value, long timestamp) {
+		this.value = value;
+		key = null;
+		if (DebugLog.DEBUG) Log.d(TAG, "FloatValueNode.updateValue - updated values");
+		
+		// thresholds first, event triggers should not wait behind client delivery
+		while (floatMaxList.thresholdPassed(value)) {
+			if (!triggerHead(floatMaxList)) break;
+			if (DebugLog.DEBUG) Log.d(TAG, "FloatValueNode.updateValue - max list pop");
+		}
+		
+		while (floatMinList.thresholdPassed(value)) {
+			if (!triggerHead(floatMinList)) break;
+			if (DebugLog.DEBUG) Log.d(TAG, "FloatValueNode.updateValue - min list pop");
+		}
+		
+		updateMonitors(value, timestamp);
+		
+		return minPeriod(timestamp);
+	}
+	
+	@Override
+	public long updateValue(Float value, long timestamp) {
+		return updateValue(value.floatValue(), timestamp);
+	}
+	
+	@Override
+	protected Object getMessageValue() {
+		if (key == null) {
+			key = Float.valueOf(value);
+		}
+		return key;
+	}
+
+	@Override
+	public Float getValue() {
+		return (Float) getMessageValue();
+	}
+	
+	/**
+	 * Return current value of metric as a primitive.
+	 * 
+	 * @return    current value of metric
+	 */
+	public float getFloatValue() {
+		return value;
+	}
+
+}
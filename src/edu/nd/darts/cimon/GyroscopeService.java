@@ -44,7 +44,7 @@ import android.util.SparseArray;
  * @see MetricService
  *
  */
-public final class GyroscopeService extends MetricService<Float> implements
+public final class GyroscopeService extends FloatMetricService implements
 		SensorEventListener {
 
 	private static final String TAG = "NDroid";
@@ -70,6 +70,7 @@ public final class GyroscopeService extends MetricService<Float> implements
 		}
 		groupId = Metrics.GYROSCOPE;
 		metricsCount = GYRO_METRICS;
+		lane = MetricExecutor.LANE_DEDICATED;
 		Context context = MyApplication.getAppContext();
 		
 		mSensorManager = (SensorManager)context.getSystemService(Context.SENSOR_SERVICE);
@@ -80,13 +81,13 @@ public final class GyroscopeService extends MetricService<Float> implements
 			supportedMetric = false;
 			return;
 		}
-		values = new Float[GYRO_METRICS];
+		floatValues = new float[GYRO_METRICS];
 		valueNodes = new SparseArray<ValueNode<Float>>();
 		freshnessThreshold = FIVE_SECONDS;
 //		observerHandler = new Handler();
 		adminObserver = SensorObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -152,10 +153,10 @@ public final class GyroscopeService extends MetricService<Float> implements
 	private void getGyroData(SensorEvent event) {
 		float magnitude = 0;
 		for (int i = 0; i < (GYRO_METRICS - 1); i++) {
-			values[i] = event.values[i];
+			floatValues[i] = event.values[i];
 			magnitude += event.values[i] * event.values[i];
 		}
-		values[GYRO_METRICS - 1] = FloatMath.sqrt(magnitude);
+		floatValues[GYRO_METRICS - 1] = FloatMath.sqrt(magnitude);
 		
 		performUpdates();
 	}
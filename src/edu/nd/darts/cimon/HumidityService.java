@@ -38,7 +38,7 @@ import android.util.SparseArray;
  * @see MetricService
  *
  */
-public final class HumidityService extends MetricService<Float> implements
+public final class HumidityService extends FloatMetricService implements
 		SensorEventListener {
 
 	private static final String TAG = "NDroid";
@@ -62,6 +62,7 @@ public final class HumidityService extends MetricService<Float> implements
 		}
 		groupId = Metrics.HUMIDITY;
 		metricsCount = HUMID_METRICS;
+		lane = MetricExecutor.LANE_DEDICATED;
 		Context context = MyApplication.getAppContext();
 		
 		mSensorManager = (SensorManager)context.getSystemService(Context.SENSOR_SERVICE);
@@ -72,13 +73,13 @@ public final class HumidityService extends MetricService<Float> implements
 			supportedMetric = false;
 			return;
 		}
-		values = new Float[HUMID_METRICS];
+		floatValues = new float[HUMID_METRICS];
 		valueNodes = new SparseArray<ValueNode<Float>>();
 		freshnessThreshold = THIRTY_SECONDS;
 //		observerHandler = new Handler();
 		adminObserver = SensorObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -140,7 +141,7 @@ public final class HumidityService extends MetricService<Float> implements
 	 * @param event    humidity sensor data received from onSensorChanged() event
 	 */
 	private void getHumidityData(SensorEvent event) {
-		values[0] = event.values[0];
+		floatValues[0] = event.values[0];
 		
 		performUpdates();
 	}
@@ -75,7 +75,7 @@ public final class InstructionCntService extends MetricService<Long> {
 //		observerHandler = new Handler();
 		adminObserver = SystemObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -46,7 +46,7 @@ import android.util.SparseArray;
  * @see MetricService
  *
  */
-public final class LinearAccelService extends MetricService<Float> implements
+public final class LinearAccelService extends FloatMetricService implements
 		SensorEventListener {
 
 	private static final String TAG = "NDroid";
@@ -72,6 +72,7 @@ public final class LinearAccelService extends MetricService<Float> implements
 		}
 		groupId = Metrics.LINEAR_ACCEL;
 		metricsCount = ACCEL_METRICS;
+		lane = MetricExecutor.LANE_DEDICATED;
 		Context context = MyApplication.getAppContext();
 		
 		mSensorManager = (SensorManager)context.getSystemService(Context.SENSOR_SERVICE);
@@ -82,13 +83,13 @@ public final class LinearAccelService extends MetricService<Float> implements
 			mSensorManager = null;
 			return;
 		}
-		values = new Float[ACCEL_METRICS];
+		floatValues = new float[ACCEL_METRICS];
 		valueNodes = new SparseArray<ValueNode<Float>>();
 		freshnessThreshold = FIVE_SECONDS;
 //		observerHandler = new Handler();
 		adminObserver = SensorObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -141,10 +142,10 @@ public final class LinearAccelService extends MetricService<Float> implements
 	private void getAccelData(SensorEvent event) {
 		float magnitude = 0;
 		for (int i = 0; i < (ACCEL_METRICS - 1); i++) {
-			values[i] = event.values[i];
+			floatValues[i] = event.values[i];
 			magnitude += event.values[i] * event.values[i];
 		}
-		values[ACCEL_METRICS - 1] = FloatMath.sqrt(magnitude);
+		floatValues[ACCEL_METRICS - 1] = FloatMath.sqrt(magnitude);
 		
 		performUpdates();
 	}
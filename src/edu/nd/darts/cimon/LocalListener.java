@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+/**
+ * Listener for updates of a metric, for consumers in the same process as the
+ * CIMON service (such as the administration app, or embedded analytics).
+ * Listeners are called directly by the metric group, without binder, message 
+ * or task, and receive primitive values.
+ * <p>
+ * Listeners are called on the thread of the metric group (see 
+ * {@link MetricExecutor}), so they must return quickly and must not block. 
+ * Work which takes longer should be handed off to another thread.
+ * 
+ * @author darts
+ * 
+ * @see LocalMetrics
+ *
+ */
+public interface LocalListener {
+
+	/**
+	 * Called with each new value of the metric provided to the monitor.
+	 * 
+	 * @param metric    integer representing metric (per {@link Metrics})
+	 * @param value    new value of metric
+	 * @param timestamp    timestamp of value, from system uptime in milliseconds
+	 */
+	public void onUpdate(int metric, float value, long timestamp);
+	
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import android.os.SystemClock;
+import android.util.Log;
+import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+import edu.nd.darts.cimon.database.SampleLog;
+
+/**
+ * Monitoring API for consumers in the same process as the CIMON service.
+ * Monitors registered here behave as periodic monitors registered through 
+ * {@link CimonInterface}, and are logged to the database in the same way, but
+ * values are passed directly to a {@link LocalListener} on the thread of the 
+ * metric group, rather than sent through binder.
+ * 
+ * @author darts
+ * 
+ * @see LocalListener
+ * @see AdminObserver
+ *
+ */
+public final class LocalMetrics {
+	
+	private static final String TAG = "NDroid";
+	
+	private LocalMetrics() {
+	}
+	
+	/**
+	 * Register a new periodic monitor with a local listener.
+	 * 
+	 * @param metric    integer representing metric (per {@link Metrics}) to monitor
+	 * @param period    period between updates (milliseconds), if eavesdrop is true this will
+	 *                     represent the maximum allowable period between updates
+	 * @param duration    duration to monitor (in milliseconds), 0 for continuous
+	 * @param eavesdrop    if true, will provide updates as frequently as they are available
+	 *                        due to any active monitors
+	 * @param listener    listener to call with each update
+	 * @return    unique id of registered monitor, -1 on failure (typically because metric
+	 *             is not supported on this system)
+	 */
+	public static int register(int metric, long period, long duration, boolean eavesdrop, 
+			LocalListener listener) {
+		if (DebugLog.DEBUG) Log.d(TAG, "LocalMetrics.register - metric: " + metric);
+		final MetricService<?> metricService = MetricService.getService(metric);
+		if (metricService == null) {
+			if (DebugLog.DEBUG) Log.d(TAG, "LocalMetrics.register - Error, unknown " +
+					"metric: " + metric);
+			return -1;
+		}
+		final long curTime = System.currentTimeMillis();
+		final long upTime = SystemClock.uptimeMillis();
+		CimonDatabaseAdapter database = CimonDatabaseAdapter.getInstance(
+				MyApplication.getAppContext());
+		int monitorId = database.insertMonitor(curTime - upTime, 
+				period < SampleLog.HIGH_RATE_PERIOD);
+		if (monitorId < 0) {
+			return -1;
+		}
+		metricService.registerLocalClient(metric, monitorId, period, duration, eavesdrop, 
+				listener);
+		return monitorId;
+	}
+	
+	/**
+	 * Unregister monitor registered with a local listener.  The listener may still
+	 * be called with updates already in progress.
+	 * 
+	 * @param metric    integer representing metric (per {@link Metrics}) of monitor
+	 * @param monitorId    unique id of monitor, from 
+	 *                       {@link #register(int, long, long, boolean, LocalListener)}
+	 */
+	public static void unregister(int metric, int monitorId) {
+		if (DebugLog.DEBUG) Log.d(TAG, "LocalMetrics.unregister - metric: " + metric);
+		final MetricService<?> metricService = MetricService.getService(metric);
+		if (metricService == null) {
+			if (DebugLog.DEBUG) Log.d(TAG, "LocalMetrics.unregister - Error, unknown " +
+					"metric: " + metric);
+			return;
+		}
+		metricService.unregisterClient(metric, monitorId);
+	}
+}
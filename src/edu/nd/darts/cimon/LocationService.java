@@ -91,7 +91,7 @@ public final class LocationService extends MetricService<Double> implements
 //		observerHandler = new Handler();
 		adminObserver = SensorObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -344,6 +344,8 @@ public final class LocationService extends MetricService<Double> implements
 					nextUpdate = updateTime;
 			}
 		}
+		publishValues(lastUpdate);
+		signalFetch();
 		if (nextUpdate == Long.MAX_VALUE) {
 			active = false;
 			updateMetric = null;
@@ -404,6 +406,20 @@ public final class LocationService extends MetricService<Double> implements
 		}
 	}
 
+	@Override
+	void insertAdaptive(final int metric, final int monitorId, final long minPeriod, 
+			final long maxPeriod, final float tolerance, final long duration, 
+			final Messenger callback) {
+		if (metric == Metrics.LOCATION_COORDINATE) {
+			// coordinates are not a scalar value, monitor at minimum period instead
+			insertClient(metric, monitorId, minPeriod, duration, false, callback);
+		}
+		else {
+			super.insertAdaptive(metric, monitorId, minPeriod, maxPeriod, tolerance, 
+					duration, callback);
+		}
+	}
+
 	@Override
 	void removeClient(final int metric, final int monitorId) {
 		if (metric == Metrics.LOCATION_COORDINATE) {
@@ -416,6 +432,11 @@ public final class LocationService extends MetricService<Double> implements
 		}
 	}
 
+	@Override
+	protected boolean hasMonitors() {
+		return ((coordValNode != null) && !coordValNode.isEmpty()) || super.hasMonitors();
+	}
+	
 	@Override
 	void insertEvent(final int metric, final int monitorId, final Object threshold, final long period,
 			final ExpressionNode enode, final boolean max) {
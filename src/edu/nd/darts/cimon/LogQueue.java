@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import android.content.Context;
+import android.os.Handler;
+import android.util.Log;
+import android.util.SparseArray;
+import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+import edu.nd.darts.cimon.database.MonitorTable;
+
+/**
+ * Bounded queue of data batches of a metric waiting to be written to the 
+ * database.  Logging is best-effort work: batches are handed to the database 
+ * thread through this queue, which holds at most {@link #MAX_PENDING} batches.
+ * While the database thread is backlogged (for example by a report export), 
+ * further batches are dropped rather than queued, so a slow database never 
+ * accumulates unbounded work or memory, and never holds up the metric thread.
+ * Readings dropped are counted per monitor, and added to the 
+ * {@link MonitorTable#COLUMN_DROPPED} count of the monitor once the database 
+ * thread catches up.
+ * <p>
+ * The final batch of a monitor which has completed or been removed is never 
+ * dropped.  When the queue is full, it is held apart until the database thread 
+ * catches up.  A monitor has a single final batch, so these are bounded by the 
+ * number of monitors.
+ * <p>
+ * A single task is posted to the database thread when the queue becomes 
+ * non-empty, which writes all queued batches, so no task is allocated per batch.
+ * 
+ * @author darts
+ * 
+ * @see ValueNode
+ * @see MetricExecutor
+ *
+ */
+final class LogQueue implements Runnable {
+	
+	private static final String TAG = "NDroid";
+	/** Maximum number of batches waiting to be written. */
+	static final int MAX_PENDING = 16;
+	
+	private final int metric;
+	private final Handler handler;
+	private final int[] monitorIds = new int[MAX_PENDING];
+	private final DataBatch[] batches = new DataBatch[MAX_PENDING];
+	private int head = 0;
+	private int count = 0;
+	private boolean scheduled = false;
+	private long dropped = 0;
+	/** Final batches of monitors which did not fit in the queue, by monitor id. */
+	private final SparseArray<DataBatch> finalBatches = new SparseArray<DataBatch>();
+	/** Single counter of readings dropped but not yet recorded, by monitor id. */
+	private final SparseArray<long[]> unrecorded = new SparseArray<long[]>();
+	
+	/**
+	 * Create queue for batches of a metric.
+	 * 
+	 * @param metric    integer representing metric (per {@link Metrics}) of batches
+	 * @param handler    handler to thread used for database updates
+	 */
+	LogQueue(int metric, Handler handler) {
+		this.metric = metric;
+		this.handler = handler;
+	}
+	
+	/**
+	 * Queue batch of data to be written to the database.  The batch is recycled 
+	 * once it has been written, or immediately if it is dropped.
+	 * 
+	 * @param monitorId    ID of monitor batched data is collected for
+	 * @param data    batch of data (timestamp, value pairs)
+	 * @param last    true if this is the final batch of a monitor which has 
+	 *                   completed or been removed, which is never dropped
+	 * @return    true if batch was queued, false if it was dropped because the 
+	 *             queue is full
+	 */
+	boolean offer(int monitorId, DataBatch data, boolean last) {
+		boolean post;
+		synchronized (this) {
+			if (count == MAX_PENDING) {
+				if (last) {
+					finalBatches.put(monitorId, data);
+					return true;
+				}
+				dropped += data.size();
+				long[] counter = unrecorded.get(monitorId);
+				if (counter == null) {
+					counter = new long[1];
+					unrecorded.put(monitorId, counter);
+				}
+				counter[0] += data.size();
+				if (DebugLog.WARNING) Log.w(TAG, "LogQueue.offer - database backlogged, " +
+						"dropped " + data.size() + " entries of monitor " + monitorId + 
+						" of metric " + metric + " (total " + dropped + ")");
+				data.recycle();
+				return false;
+			}
+			final int tail = (head + count) % MAX_PENDING;
+			monitorIds[tail] = monitorId;
+			batches[tail] = data;
+			count++;
+			post = !scheduled;
+			scheduled = true;
+		}
+		if (post) {
+			handler.post(this);
+		}
+		return true;
+	}
+	
+	/**
+	 * Number of entries dropped because the database was backlogged.
+	 * 
+	 * @return    count of dropped entries
+	 */
+	synchronized long getDropped() {
+		return dropped;
+	}
+	
+	/**
+	 * Write all queued batches, on the database thread, followed by final batches
+	 * held apart and the counts of readings dropped meanwhile.
+	 */
+	public void run() {
+		Context context = MyApplication.getAppContext();
+		CimonDatabaseAdapter database = CimonDatabaseAdapter.getInstance(context);
+		while (true) {
+			int monitorId;
+			DataBatch data;
+			long drops = 0;
+			synchronized (this) {
+				if (count > 0) {
+					monitorId = monitorIds[head];
+					data = batches[head];
+					batches[head] = null;
+					head = (head + 1) % MAX_PENDING;
+					count--;
+				}
+				else if (finalBatches.size() > 0) {
+					monitorId = finalBatches.keyAt(0);
+					data = finalBatches.valueAt(0);
+					finalBatches.removeAt(0);
+				}
+				else if (unrecorded.size() > 0) {
+					monitorId = unrecorded.keyAt(0);
+					data = null;
+					drops = unrecorded.valueAt(0)[0];
+					unrecorded.removeAt(0);
+				}
+				else {
+					scheduled = false;
+					return;
+				}
+			}
+			if (data != null) {
+				database.insertBatchData(metric, monitorId, data);
+				data.recycle();
+			}
+			else {
+				database.addDropped(monitorId, drops);
+			}
+		}
+	}
+	
+}
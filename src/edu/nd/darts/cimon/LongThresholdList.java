@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+/**
+ * {@link ThresholdList} for metrics represented by primitive longs.  Thresholds are
+ * compared directly against primitive values, so that checking a new value against
+ * the list does not require boxing the value.
+ * 
+ * @author darts
+ * 
+ * @see LongValueNode
+ *
+ */
+public class LongThresholdList extends ThresholdList<Long> {
+
+	/**
+	 * Sorted list which holds condition monitoring requests for event monitors of
+	 * long metrics.
+	 * 
+	 * @param descend    True to indicate a descending order sorted list (minimum threshold),
+	 *                    False to indicate ascending order sorted list (maximum threshold)
+	 */
+	public LongThresholdList(boolean descend) {
+		super(descend);
+	}
+	
+	/**
+	 * Determine if threshold at head of list has been surpassed.
+	 * 
+	 * @param current   current value of metric 
+	 * @return          true if threshold has been surpassed by current value
+	 */
+	public boolean thresholdPassed(long current) {
+		if (head == null) return false;
+		
+		long threshold = head.getThreshold().longValue();
+		if (current == threshold) {
+			return true;
+		}
+		return ((current > threshold) ^ descending);
+	}
+	
+}
@@ -136,7 +136,7 @@ public final class MMSService extends MetricService<Long> {
 		resolver = MyApplication.getAppContext().getContentResolver();
 		adminObserver = UserObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 		init();
 	}
 	
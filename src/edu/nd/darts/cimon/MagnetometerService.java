@@ -45,7 +45,7 @@ import android.util.SparseArray;
  * @see MetricService
  *
  */
-public final class MagnetometerService extends MetricService<Float> implements
+public final class MagnetometerService extends FloatMetricService implements
 		SensorEventListener {
 	
 	private static final String TAG = "NDroid";
@@ -80,6 +80,9 @@ public final class MagnetometerService extends MetricService<Float> implements
 		}
 		groupId = Metrics.MAGNETOMETER;
 		metricsCount = MAGNET_METRICS;
+		// orientation is computed from accelerometer and magnetometer callbacks
+		lane = MetricExecutor.LANE_DEDICATED;
+		affinity = Metrics.ACCELEROMETER;
 		Context context = MyApplication.getAppContext();
 		
 		mSensorManager = (SensorManager)context.getSystemService(Context.SENSOR_SERVICE);
@@ -90,7 +93,7 @@ public final class MagnetometerService extends MetricService<Float> implements
 			mSensorManager = null;
 			return;
 		}
-		values = new Float[MAGNET_METRICS];
+		floatValues = new float[MAGNET_METRICS];
 		valueNodes = new SparseArray<ValueNode<Float>>();
 		freshnessThreshold = FIVE_SECONDS;
 //		observerHandler = new Handler();
@@ -98,7 +101,7 @@ public final class MagnetometerService extends MetricService<Float> implements
 		avgStartup = minInterval;
 		adminObserver = SensorObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -154,6 +157,11 @@ public final class MagnetometerService extends MetricService<Float> implements
 		}
 	}
 
+	@Override
+	protected boolean hasMonitors() {
+		return (orientService != null) || super.hasMonitors();
+	}
+	
 	@Override
 	void getMetricInfo() {
 		if (DebugLog.DEBUG) Log.d(TAG, "MagnetometerService.getMetricInfo - updating magnetometer values");
@@ -174,10 +182,10 @@ public final class MagnetometerService extends MetricService<Float> implements
 	private void getMagnetData(SensorEvent event) {
 		float magnitude = 0;
 		for (int i = 0; i < (MAGNET_METRICS - 1); i++) {
-			values[i] = event.values[i];
+			floatValues[i] = event.values[i];
 			magnitude += event.values[i] * event.values[i];
 		}
-		values[MAGNET_METRICS - 1] = FloatMath.sqrt(magnitude);
+		floatValues[MAGNET_METRICS - 1] = FloatMath.sqrt(magnitude);
 		
 		// override of performUpdates();
 		// inserted here to provide access to *event* for orientService call
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * Monitoring service for memory pressure.
+ * Reclaim activity is measured from counters of /proc/vmstat, and stalls from 
+ * pressure stall information (PSI) of /proc/pressure, on kernels which provide it.
+ * Counters are reported as the difference since the previous update.
+ * <p>
+ * Memory pressure metrics:
+ * <li>Major faults	: page faults requiring I/O
+ * <li>Pages scanned	: pages scanned for reclaim
+ * <li>Pages reclaimed	: pages reclaimed
+ * <li>Allocation stalls	: allocations stalled for direct reclaim
+ * <li>Memory some	: percent of time some tasks stalled on memory (10 seconds)
+ * <li>Memory full	: percent of time all tasks stalled on memory (10 seconds)
+ * <li>Memory stall	: time some tasks stalled on memory (microseconds)
+ * <li>CPU some	: percent of time some tasks waited for processor (10 seconds)
+ * <li>CPU stall	: time some tasks waited for processor (microseconds)
+ * 
+ * @author darts
+ * 
+ * @see FloatMetricService
+ * @see MemPressureStats
+ *
+ */
+public final class MemPressureService extends FloatMetricService {
+	
+	private static final String TAG = "NDroid";
+	private static final int PRESSURE_METRICS = 9;
+	private static final long FIVE_SECONDS = 5000;
+	private static final int ONE_SECOND = 1000;
+	
+	// NOTE: title and string array must be defined above instance,
+	//   otherwise, they will be null in constructor
+	private static final String title = "Memory pressure";
+	private static final String[] metrics = {"Major faults", 
+											"Pages scanned", 
+											"Pages reclaimed", 
+											"Allocation stalls", 
+											"Memory some (10 s)", 
+											"Memory full (10 s)", 
+											"Memory stall", 
+											"CPU some (10 s)", 
+											"CPU stall"};
+	private static final String[] units = {"faults", 
+											"pages", 
+											"pages", 
+											"stalls", 
+											"%", 
+											"%", 
+											"us", 
+											"%", 
+											"us"};
+	private static final float[] maximums = {10000, 
+											1000000, 
+											1000000, 
+											10000, 
+											100, 
+											100, 
+											1000000, 
+											100, 
+											1000000};
+	private static final MemPressureService INSTANCE = new MemPressureService();
+	
+	private final MemPressureStats stats = new MemPressureStats("/proc/vmstat", 
+			"/proc/pressure");
+	/** Statistics of one-shot reads, with a baseline of their own. */
+	private MemPressureStats fetchStats = null;
+	private float[] fetchedValues;
+	
+	private MemPressureService() {
+		if (DebugLog.DEBUG) Log.d(TAG, "MemPressureService - constructor");
+		if (INSTANCE != null) {
+			throw new IllegalStateException("MemPressureService already instantiated");
+		}
+		groupId = Metrics.MEMPRESSURE_CATEGORY;
+		metricsCount = PRESSURE_METRICS;
+		
+		floatValues = new float[PRESSURE_METRICS];
+		valueNodes = new SparseArray<ValueNode<Float>>();
+		freshnessThreshold = FIVE_SECONDS;
+//		observerHandler = new Handler();
+		adminObserver = SystemObserver.getInstance();
+		adminObserver.registerObservable(this, groupId);
+		schedules = new ScheduleIndex();
+			init();
+	}
+	
+	public static MemPressureService getInstance() {
+		if (DebugLog.DEBUG) Log.d(TAG, "MemPressureService.getInstance - get single instance");
+		if (!INSTANCE.supportedMetric) return null;
+		return INSTANCE;
+	}
+
+	@Override
+	void insertDatabaseEntries() {
+		CimonDatabaseAdapter database = CimonDatabaseAdapter.getInstance(
+				MyApplication.getAppContext());
+		
+		String description = stats.hasPressure() ? "Reclaim and pressure stall information" : 
+				"Reclaim (no pressure stall information)";
+		// insert metric group information in database
+		database.insertOrReplaceMetricInfo(groupId, title, description, SUPPORTED, 0, 
+				ONE_SECOND, "Counts since previous update", "1", Metrics.TYPE_SYSTEM);
+		// insert information for metrics in group into database
+		for (int i = 0; i < PRESSURE_METRICS; i++) {
+			database.insertOrReplaceMetrics(groupId + i, groupId, metrics[i], units[i], 
+					maximums[i]);
+		}
+	}
+	
+	@Override
+	void getMetricInfo() {
+		fetchValues();
+		
+		performUpdates();
+	}
+
+	/**
+	 * Obtain updated values of reclaim counters and pressure stalls.
+	 */
+	private void fetchValues() {
+		if (DebugLog.DEBUG) Log.d(TAG, "MemPressureService.fetchValues - updating pressure values");
+		if (!stats.update(floatValues)) {
+			if (DebugLog.WARNING) Log.w(TAG, "MemPressureService.fetchValues - read vmstat failed!");
+		}
+	}
+
+	/**
+	 * Counters and stall times of a one-shot read are taken since the previous 
+	 * one-shot read, through statistics of their own, so the next scheduled update
+	 * still covers its whole period.  The first one-shot read reports 0 for them.
+	 */
+	@Override
+	protected boolean refreshValues() {
+		if (fetchStats == null) {
+			fetchStats = new MemPressureStats("/proc/vmstat", "/proc/pressure");
+			fetchedValues = new float[metricsCount];
+		}
+		if (!fetchStats.update(fetchedValues)) {
+			if (DebugLog.WARNING) Log.w(TAG, "MemPressureService.refreshValues - read vmstat failed!");
+			return false;
+		}
+		publishValues(fetchedValues, SystemClock.uptimeMillis());
+		return true;
+	}
+
+	/**
+	 * Reclaim counters and stall times are differences since the previous update,
+	 * so they are not read here, and the last published values are returned.
+	 */
+	@Override
+	double getMetricDouble(int metric) {
+		return getPublishedDouble(metric);
+	}
+	
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import java.io.File;
+
+/**
+ * Memory pressure statistics, for {@link MemPressureService}.  Each update reads
+ * reclaim counters of /proc/vmstat in a single pass, matching lines through a 
+ * {@link ProcKeyTable} so that neither the order nor the set of lines (which vary 
+ * between kernel versions) matters, and reads pressure stall information (PSI) of
+ * /proc/pressure/memory and /proc/pressure/cpu where the kernel provides it.
+ * <p>
+ * Counters are reported as the difference since the previous update; the first 
+ * update reports 0.  Values are stored at the offset of their metric from 
+ * {@link Metrics#MEMPRESSURE_CATEGORY}.
+ * 
+ * @author darts
+ * 
+ * @see MemPressureService
+ *
+ */
+final class MemPressureStats {
+	
+	private static final int PGMAJFAULT = Metrics.VM_PGMAJFAULT - Metrics.MEMPRESSURE_CATEGORY;
+	private static final int PGSCAN = Metrics.VM_PGSCAN - Metrics.MEMPRESSURE_CATEGORY;
+	private static final int PGSTEAL = Metrics.VM_PGSTEAL - Metrics.MEMPRESSURE_CATEGORY;
+	private static final int ALLOCSTALL = Metrics.VM_ALLOCSTALL - Metrics.MEMPRESSURE_CATEGORY;
+	private static final int VM_COUNTERS = 4;
+	/**
+	 * Counters of /proc/vmstat summed into each metric.  Kernels before 4.8 count
+	 * scans, steals and stalls per zone, later kernels per node.  pgscan_anon and 
+	 * pgscan_file (and the pgsteal equivalents) split the same pages by type, and 
+	 * pgscan_direct_throttle counts throttling events, so these are not included.
+	 */
+	private static final String[] vmTypes = {"pgmajfault",
+										"pgscan_kswapd",
+										"pgscan_direct",
+										"pgscan_khugepaged",
+										"pgscan_kswapd_dma",
+										"pgscan_kswapd_dma32",
+										"pgscan_kswapd_normal",
+										"pgscan_kswapd_high",
+										"pgscan_kswapd_movable",
+										"pgscan_direct_dma",
+										"pgscan_direct_dma32",
+										"pgscan_direct_normal",
+										"pgscan_direct_high",
+										"pgscan_direct_movable",
+										"pgsteal_kswapd",
+										"pgsteal_direct",
+										"pgsteal_khugepaged",
+										"pgsteal_kswapd_dma",
+										"pgsteal_kswapd_dma32",
+										"pgsteal_kswapd_normal",
+										"pgsteal_kswapd_high",
+										"pgsteal_kswapd_movable",
+										"pgsteal_direct_dma",
+										"pgsteal_direct_dma32",
+										"pgsteal_direct_normal",
+										"pgsteal_direct_high",
+										"pgsteal_direct_movable",
+										"allocstall",
+										"allocstall_dma",
+										"allocstall_dma32",
+										"allocstall_normal",
+										"allocstall_movable",
+										"allocstall_device"};
+	private static final int[] mapping = {PGMAJFAULT,
+										PGSCAN, PGSCAN, PGSCAN, 
+										PGSCAN, PGSCAN, PGSCAN, PGSCAN, PGSCAN,
+										PGSCAN, PGSCAN, PGSCAN, PGSCAN, PGSCAN,
+										PGSTEAL, PGSTEAL, PGSTEAL, 
+										PGSTEAL, PGSTEAL, PGSTEAL, PGSTEAL, PGSTEAL,
+										PGSTEAL, PGSTEAL, PGSTEAL, PGSTEAL, PGSTEAL,
+										ALLOCSTALL, ALLOCSTALL, ALLOCSTALL, ALLOCSTALL, 
+										ALLOCSTALL, ALLOCSTALL};
+	private static final ProcKeyTable vmKeys = new ProcKeyTable(vmTypes, mapping);
+	private static final byte[] SOME_KEY = ProcFileReader.key("some avg10=");
+	private static final byte[] FULL_KEY = ProcFileReader.key("full avg10=");
+	private static final byte EQUALS = '=';
+	
+	private final ProcFileReader vmReader;
+	private final ProcFileReader memoryReader;
+	private final ProcFileReader cpuReader;
+	private final long[] counters = new long[VM_COUNTERS];
+	private final long[] previous = new long[VM_COUNTERS];
+	private long memoryStall = -1;
+	private long cpuStall = -1;
+	private boolean primed = false;
+	
+	/**
+	 * Create statistics for memory pressure.
+	 * 
+	 * @param vmstatPath    path of vmstat file, typically /proc/vmstat
+	 * @param pressureDir    directory of pressure stall information, typically 
+	 *                         /proc/pressure
+	 */
+	MemPressureStats(String vmstatPath, String pressureDir) {
+		vmReader = new ProcFileReader(vmstatPath, 4096);
+		final String memoryPath = pressureDir + "/memory";
+		final String cpuPath = pressureDir + "/cpu";
+		memoryReader = new File(memoryPath).canRead() ? new ProcFileReader(memoryPath, 128) : null;
+		cpuReader = new File(cpuPath).canRead() ? new ProcFileReader(cpuPath, 128) : null;
+	}
+	
+	/**
+	 * Check if kernel provides pressure stall information.
+	 * 
+	 * @return    true if pressure of memory is available
+	 */
+	boolean hasPressure() {
+		return (memoryReader != null);
+	}
+	
+	/**
+	 * Read current statistics, and store values since previous update.
+	 * 
+	 * @param values    array to store values in, of at least the size of the group
+	 * @return    true if vmstat was read
+	 */
+	boolean update(float[] values) {
+		if (!vmReader.read()) {
+			return false;
+		}
+		for (int i = 0; i < VM_COUNTERS; i++) {
+			counters[i] = 0;
+		}
+		do {
+			final int slot = vmReader.lookupKey(vmKeys);
+			if (slot >= 0) {
+				counters[slot] += vmReader.nextLong(0);
+			}
+		} while (vmReader.nextLine());
+		for (int i = 0; i < VM_COUNTERS; i++) {
+			values[i] = primed ? delta(counters[i], previous[i]) : 0;
+			previous[i] = counters[i];
+		}
+		primed = true;
+		
+		final int memorySome = Metrics.PSI_MEMORY_SOME - Metrics.MEMPRESSURE_CATEGORY;
+		final int memoryFull = Metrics.PSI_MEMORY_FULL - Metrics.MEMPRESSURE_CATEGORY;
+		final int memoryTotal = Metrics.PSI_MEMORY_STALL - Metrics.MEMPRESSURE_CATEGORY;
+		if ((memoryReader != null) && memoryReader.read() && memoryReader.startsWith(SOME_KEY)) {
+			values[memorySome] = memoryReader.nextFloat(0);
+			final long stall = readTotal(memoryReader);
+			values[memoryTotal] = (memoryStall < 0) ? 0 : delta(stall, memoryStall);
+			memoryStall = stall;
+			values[memoryFull] = (memoryReader.nextLine() && memoryReader.startsWith(FULL_KEY)) ? 
+					memoryReader.nextFloat(0) : 0;
+		}
+		else {
+			values[memorySome] = 0;
+			values[memoryFull] = 0;
+			values[memoryTotal] = 0;
+		}
+		
+		final int cpuSome = Metrics.PSI_CPU_SOME - Metrics.MEMPRESSURE_CATEGORY;
+		final int cpuTotal = Metrics.PSI_CPU_STALL - Metrics.MEMPRESSURE_CATEGORY;
+		if ((cpuReader != null) && cpuReader.read() && cpuReader.startsWith(SOME_KEY)) {
+			values[cpuSome] = cpuReader.nextFloat(0);
+			final long stall = readTotal(cpuReader);
+			values[cpuTotal] = (cpuStall < 0) ? 0 : delta(stall, cpuStall);
+			cpuStall = stall;
+		}
+		else {
+			values[cpuSome] = 0;
+			values[cpuTotal] = 0;
+		}
+		return true;
+	}
+	
+	/**
+	 * Parse total stall time, the last field of a line of pressure stall information.
+	 */
+	private static long readTotal(ProcFileReader reader) {
+		if (!reader.skipPastLast(EQUALS)) {
+			return 0;
+		}
+		return reader.nextLong(0);
+	}
+	
+	/**
+	 * Difference of counter since previous update, 0 if counter was reset.
+	 */
+	private static float delta(long current, long previous) {
+		return (current >= previous) ? (current - previous) : 0;
+	}
+	
+}
@@ -19,12 +19,6 @@
  */
 package edu.nd.darts.cimon;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
-
 import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
 
 import android.content.Context;
@@ -76,9 +70,8 @@ public final class MemoryService extends MetricService<Integer> {
 //	private static int[] values = new int[MEM_METRICS];
 	/**
 	 * Memory metrics of interest in /proc/meminfo file. These are listed
-	 * in typical order observed. This order is not guaranteed by procfs!!!
-	 * We are sacrificing generality for performance here to avoid having
-	 * to compare with every string in the array for each line.
+	 * in typical order observed, but lines are matched through a hash of
+	 * their key, so this order is not required.
 	 */
 	private static final String[] memTypes = {"MemTotal",
 										"MemFree",
@@ -91,7 +84,7 @@ public final class MemoryService extends MetricService<Integer> {
 										"SwapFree",
 										"Dirty",
 										"AnonPages"};
-	// map procfs order to order desired for admin app
+	// map procfs keys to order desired for admin app
 	private static final int[] mapping = {0,	// MEM_TOTAL
 										1,		// MEM_FREE
 										6,		// MEM_BUFFERS
@@ -114,7 +107,10 @@ public final class MemoryService extends MetricService<Integer> {
 										7,		// MEM_SWAPTOTAL
 										8,		// MEM_SWAPFREE
 										4};		// MEM_SWAPCACHED*/
+	private static final ProcKeyTable memKeys = new ProcKeyTable(memTypes, mapping);
 	private static final MemoryService INSTANCE = new MemoryService();
+	
+	private final ProcFileReader memReader = new ProcFileReader("/proc/meminfo", 2048);
 //	private static long lastUpdate = 0;
 //	private static SystemData memData;
 //	private static CimonDatabaseAdapter database;
@@ -133,7 +129,7 @@ public final class MemoryService extends MetricService<Integer> {
 //		observerHandler = new Handler();
 		adminObserver = SystemObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -170,87 +166,85 @@ public final class MemoryService extends MetricService<Integer> {
 	}
 
 	/**
-	 * Extract value in kilobytes from line.
+	 * Extract value in kilobytes from the remainder of the current line of 
+	 * meminfo reader, following the key.
 	 * 
-	 * @param line	String representing one line from meminfo file
-	 * @return    value of metric in kilobytes
+	 * @return    value of metric in kilobytes, -1 if line holds no value
 	 */
-	private int getMemValue(String line) {
-		try {
-			String[] params = line.split("\\s+");
-			if (params.length >= 2) {
-				
-				int value = Integer.parseInt(params[1]);
-				
-				// return value in kilobytes
-				if (params.length == 3) {
-					if ("kb".equalsIgnoreCase(params[2])) {
-						return value;
-					}
-					else if ("mb".equalsIgnoreCase(params[2])) {
-						value *= 1024;
-					}
-					else if ("gb".equalsIgnoreCase(params[2])) {
-						value *= 1024 * 1024;
-					}
-					else {
-						// must be in bytes - convert to kb
-						value /= 1024;
-					}
-				}
-				return value;
-			}
+	private int getMemValue() {
+		long value = memReader.nextLong(-1);
+		if (value < 0) {
+			if (DebugLog.WARNING) Log.w(TAG, "MemoryService.getMemValue - parse value failed!");
+			return -1;
 		}
-		catch (Exception e) {
-			if (DebugLog.WARNING) Log.w(TAG, "MemoryService.getMemValue - parse string failed!");
+		// return value in kilobytes
+		switch (memReader.peekToken()) {
+			case 0:
+			case 'k':
+			case 'K':
+				break;
+			case 'm':
+			case 'M':
+				value *= 1024;
+				break;
+			case 'g':
+			case 'G':
+				value *= 1024 * 1024;
+				break;
+			default:
+				// must be in bytes - convert to kb
+				value /= 1024;
+				break;
 		}
-		return -1;
+		return (int) value;
 	}
 	
 	/**
-	 * Obtain updated values related to memory usage from /proc/meminfo.
+	 * Obtain updated values related to memory usage from /proc/meminfo.  Values are
+	 * only replaced when they change, so values which remain constant are not boxed
+	 * again.
+	 * 
+	 * @return    true if meminfo was read
 	 */
-	private void fetchValues() {
-		BufferedReader reader = null;
-		
+	private synchronized boolean fetchValues() {
 		if (DebugLog.DEBUG) Log.d(TAG, "MemoryService.fetchValues - updating mem values");
-		try {
-			reader = new BufferedReader(new InputStreamReader(
-					new FileInputStream(new File("/proc/meminfo"))), 1024);
-			String line;
-			int index = 0;
-			while ( (line = reader.readLine()) != null) {
-				if (line.startsWith(memTypes[index])) {
-					values[ mapping[index++] ] = getMemValue(line);
-					if (index == MEM_METRICS) {
-						break;
-					}
-				}
-			}
-		}
-		catch (Exception e) {
+		if (!memReader.read()) {
 			if (DebugLog.WARNING) Log.w(TAG, "MemoryService.fetchValues - read mem values failed!");
+			return false;
 		}
-		finally {
-			if (reader != null) {
-				try {
-					reader.close();
+		int found = 0;
+		do {
+			final int metric = memReader.lookupKey(memKeys);
+			if (metric >= 0) {
+				final int value = getMemValue();
+				if ((values[metric] == null) || (values[metric].intValue() != value)) {
+					values[metric] = value;
 				}
-				catch (IOException ie) {
-					if (DebugLog.WARNING) Log.w(TAG, "MemoryService.fetchValues - close reader failed!");
+				if (++found == MEM_METRICS) {
+					break;
 				}
 			}
+		} while (memReader.nextLine());
+		return true;
+	}
+	
+	@Override
+	protected boolean refreshValues() {
+		if (!fetchValues()) {
+			return false;
 		}
+		publishValues(SystemClock.uptimeMillis());
+		return true;
 	}
 
+	/**
+	 * Returns the last published value, as /proc/meminfo is only read on the metric
+	 * thread, by updates and by one-shot reads ({@link #refreshValues()}).
+	 */
 	@Override
 	Integer getMetricValue(int metric) {
-		final long curTime = SystemClock.uptimeMillis();
-		if ((curTime - lastUpdate) >= THIRTY_SECONDS) {
-			fetchValues();
-			lastUpdate = curTime;
-		}
-		return (Integer) super.getMetricValue(metric);
+		final double value = getPublishedDouble(metric);
+		return Double.isNaN(value) ? null : Integer.valueOf((int) value);
 	}
 	
 }
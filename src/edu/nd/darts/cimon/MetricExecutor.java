@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * Execution engine for metric monitoring agents ({@link MetricService}).
+ * Each metric group runs all of its updates, sensor callbacks and observer updates
+ * on a single looper, assigned once when the group is initialized, so the state
+ * of a group remains confined to one thread.  Groups are assigned to one of two lanes:
+ * <ul>
+ * <li>{@link #LANE_DEDICATED} - a looper owned by the group (or by the groups 
+ * sharing its affinity), used for high rate sensor groups
+ * <li>{@link #LANE_POOL} - one of a bounded pool of worker loopers, shared by groups
+ * which read /proc files or query content providers
+ * </ul>
+ * A slow update of one group therefore only delays groups assigned to the same 
+ * looper.  Groups which call each other directly (such as orientation and the 
+ * accelerometer and magnetometer which feed it) must declare the same affinity, 
+ * so they share a looper.
+ * <p>
+ * Work handed off by metric groups runs on two further threads, prioritized by 
+ * latency requirement: the event thread, which evaluates condition trees and
+ * notifies clients of events, runs at {@link #PRIORITY_EVENT}, while the database
+ * thread, which logs data through bounded {@link LogQueue}s, runs at 
+ * {@link #PRIORITY_LOG}.
+ * 
+ * @author darts
+ * 
+ * @see MetricService
+ *
+ */
+final class MetricExecutor {
+	
+	private static final String TAG = "NDroid";
+	private static final String THREADTAG = "metric";
+	
+	/** Lane of loopers dedicated to a single affinity. */
+	static final int LANE_DEDICATED = 0;
+	/** Lane of worker loopers shared by all groups of pool lane. */
+	static final int LANE_POOL = 1;
+	/** 
+	 * Thread priority of event lane, which evaluates conditions and notifies clients
+	 * of events ({@link NDroidService#eventHandler}).
+	 */
+	static final int PRIORITY_EVENT = Process.THREAD_PRIORITY_FOREGROUND;
+	/** 
+	 * Thread priority of logging lane, which writes batched data to the database
+	 * ({@link LogQueue}).
+	 */
+	static final int PRIORITY_LOG = Process.THREAD_PRIORITY_BACKGROUND;
+	/** Number of worker loopers in pool lane. */
+	static final int POOL_SIZE = Math.max(2, 
+			Math.min(4, Runtime.getRuntime().availableProcessors()));
+	
+	private static final SparseArray<Handler> dedicated = new SparseArray<Handler>();
+	private static final SparseArray<Handler> assigned = new SparseArray<Handler>();
+	private static final Handler[] workers = new Handler[POOL_SIZE];
+	private static final int[] workerLoad = new int[POOL_SIZE];
+	
+	private MetricExecutor() {
+	}
+	
+	/**
+	 * Get handler for all tasks of metric group.  Groups with the same lane and 
+	 * affinity always receive the same handler.  The looper thread is started 
+	 * if necessary.
+	 * 
+	 * @param lane        execution lane, {@link #LANE_DEDICATED} or {@link #LANE_POOL}
+	 * @param affinity    affinity of group, typically the group id
+	 * @return    handler of looper assigned to group
+	 */
+	static synchronized Handler getHandler(int lane, int affinity) {
+		if (lane == LANE_DEDICATED) {
+			Handler handler = dedicated.get(affinity);
+			if (handler == null) {
+				handler = startLooper(THREADTAG + "-" + affinity, 
+						Process.THREAD_PRIORITY_MORE_FAVORABLE);
+				dedicated.put(affinity, handler);
+			}
+			return handler;
+		}
+		Handler handler = assigned.get(affinity);
+		if (handler != null) {
+			return handler;
+		}
+		// assign to least loaded worker
+		int worker = 0;
+		for (int i = 1; i < POOL_SIZE; i++) {
+			if (workerLoad[i] < workerLoad[worker]) {
+				worker = i;
+			}
+		}
+		if (workers[worker] == null) {
+			workers[worker] = startLooper(THREADTAG + "-pool-" + worker, 
+					Process.THREAD_PRIORITY_DEFAULT);
+		}
+		workerLoad[worker]++;
+		assigned.put(affinity, workers[worker]);
+		if (DebugLog.DEBUG) Log.d(TAG, "MetricExecutor.getHandler - affinity " + affinity + 
+				" assigned to worker " + worker);
+		return workers[worker];
+	}
+	
+	/**
+	 * Start new looper thread.  Blocks until looper is prepared.
+	 */
+	private static Handler startLooper(String name, int priority) {
+		HandlerThread thread = new HandlerThread(name, priority);
+		thread.start();
+		if (DebugLog.DEBUG) Log.d(TAG, "MetricExecutor.startLooper - started " + name);
+		return new Handler(thread.getLooper());
+	}
+	
+}
@@ -21,6 +21,7 @@ package edu.nd.darts.cimon;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import android.os.Handler;
 import android.os.HandlerThread;
@@ -49,6 +50,9 @@ import android.util.SparseArray;
  * <li>values
  * <li>valueNodes
  * <p>
+ * Subclasses may also define lane and affinity, to select the looper used for the
+ * group (see {@link MetricExecutor}).  By default, groups run on the shared pool.
+ * <p>
  * values and valueNodes should be the same size, index i of values should
  * correspond to (metricId - groupId), key of valueNodes should correspond to metricId 
  *  
@@ -59,11 +63,10 @@ import android.util.SparseArray;
 public abstract class MetricService<T extends Comparable<T>> implements ObservableUpdate {
 	
 	private static final String TAG = "NDroid";
-	private static String THREADTAG = "metric";
 	private static String DBTHREADTAG = "datatable";
 	protected static final int SUPPORTED = 1;
 	protected static final int NOTSUPPORTED = 0;
-	protected static Handler metricHandler;
+	protected Handler metricHandler;
 	protected static Handler dbHandler;
 	protected UpdateMetric updateMetric = null;
 	protected boolean supportedMetric = true;
@@ -71,7 +74,7 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 	protected int groupId;
 	protected int metricsCount;
 	protected AdminObserver adminObserver;
-	protected long lastUpdate = 0;
+	protected volatile long lastUpdate = 0;
 	protected long prevUpdate = 0;
 	protected long updateCount = 0;
 	protected long minInterval = 0;
@@ -84,28 +87,23 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 	protected SparseArray<ValueNode<T>> valueNodes;
 	protected boolean threadAlive = false;
 	protected long freshnessThreshold;
-	protected SparseArray<TimerNode> schedules;	
-	
-	/**
-	 * Thread used for all tasks related to updates to a metric management node 
-	 * ({@link CurrentNode}).
-	 */
-	private static final HandlerThread metricThread = new HandlerThread(THREADTAG) {
-
-		@Override
-		protected void onLooperPrepared() {
-			if (DebugLog.DEBUG) Log.d(TAG, "MetricService.onLooperPrepared - metric handler " + THREADTAG);
-			metricHandler = new Handler(getLooper());
-			
-			super.onLooperPrepared();
-		}
-	};
+	protected ScheduleIndex schedules;	
+	protected int lane = MetricExecutor.LANE_POOL;
+	protected int affinity = -1;
+	private volatile long lagMax = 0;
+	private volatile long lagTotal = 0;
+	private volatile long lagCount = 0;
+	private final Object fetchLock = new Object();
+	private volatile int fetchWaiters = 0;
+	private volatile boolean fetchPending = false;
+	private volatile ValueSnapshot snapshot = null;
 	
 	/**
 	 * Thread used for all tasks related to updates to the database data table. 
 	 * 
 	 */
-	private static final HandlerThread dbThread = new HandlerThread(DBTHREADTAG) {
+	private static final HandlerThread dbThread = new HandlerThread(DBTHREADTAG, 
+			MetricExecutor.PRIORITY_LOG) {
 
 		@Override
 		protected void onLooperPrepared() {
@@ -121,7 +119,19 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 	 * 
 	 */
 	protected class UpdateMetric implements Runnable{
+		/** Uptime by which update was required to run. */
+		private long scheduled;
+		
+		public UpdateMetric() {
+			this(SystemClock.uptimeMillis());
+		}
+		
+		public UpdateMetric(long scheduled) {
+			this.scheduled = scheduled;
+		}
+		
 		public void run() {
+			recordLag(SystemClock.uptimeMillis() - scheduled);
 			active = true;
 			getMetricInfo();
 		}}
@@ -171,6 +181,224 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 		return values[metric - groupId];
 	}
 	
+	/**
+	 * Obtain current value of metric as a primitive, or NaN if not currently 
+	 * available.  Services which keep their values in primitive arrays override 
+	 * this to read them without boxing.
+	 * 
+	 * @param metric    integer representing metric (per {@link Metrics}) to acquire
+	 * @return    current value of metric, or NaN if not available
+	 */
+	double getMetricDouble(int metric) {
+		final Object value = getMetricValue(metric);
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+		return Double.NaN;
+	}
+	
+	/**
+	 * Obtain value of metric last published to the {@link ValueSnapshot}, or NaN if
+	 * not available.  Services whose values are differences between scheduled 
+	 * updates (such as jiffies or sectors since the previous update) return this 
+	 * from {@link #getMetricDouble(int)}, as reading their files outside of the 
+	 * schedule would shorten the interval of the next update.  Safe to call from 
+	 * any thread.
+	 * 
+	 * @param metric    integer representing metric (per {@link Metrics}) to acquire
+	 * @return    published value of metric, or NaN if not valid for this group, not
+	 *             published yet, or older than freshnessThreshold
+	 */
+	protected final double getPublishedDouble(int metric) {
+		if ((metric < groupId) || (metric >= (groupId + metricsCount))) {
+			if (DebugLog.INFO) Log.i(TAG, "MetricService.getPublishedDouble - metric value " + 
+					metric + ", not valid for group " + groupId);
+			return Double.NaN;
+		}
+		if ((SystemClock.uptimeMillis() - publishedTime()) > freshnessThreshold) {
+			return Double.NaN;
+		}
+		return publishedValue(metric);
+	}
+	
+	/**
+	 * Obtain current value of metric in synchronous call, for the  
+	 * {@link CimonInterface} getMetric methods.  If the group published values 
+	 * within its freshnessThreshold, the published value is returned immediately.
+	 * Otherwise a one-shot read of the group ({@link #refreshValues()}) is posted 
+	 * to its looper, and the caller waits up to timeout milliseconds for values to
+	 * be published, by the one-shot read or by a scheduled update.  Values are
+	 * only read from the {@link ValueSnapshot}, never from the fields of the group,
+	 * which belong to the metric thread.  Concurrent readers of a stale group share
+	 * a single read.  This must not be called from the looper of the group.
+	 * 
+	 * @param metric    integer representing metric (per {@link Metrics}) to acquire
+	 * @param timeout    maximum time to wait for a fresh value (milliseconds), if 0
+	 *                     the published value is returned however old it is
+	 * @return    current value of metric, or NaN if not available or no value was
+	 *             published within timeout
+	 */
+	double fetchMetricDouble(int metric, long timeout) {
+		if ((metric < groupId) || (metric >= (groupId + metricsCount))) {
+			if (DebugLog.INFO) Log.i(TAG, "MetricService.fetchMetricDouble - metric value " + metric +
+					", not valid for group " + groupId);
+			return Double.NaN;
+		}
+		final long requested = SystemClock.uptimeMillis();
+		if (((requested - publishedTime()) <= freshnessThreshold) || (timeout <= 0) || 
+				(metricHandler == null)) {
+			return publishedValue(metric);
+		}
+		final long expires = requested + timeout;
+		synchronized (fetchLock) {
+			fetchWaiters++;
+			try {
+				if (!fetchPending) {
+					fetchPending = true;
+					metricHandler.post(fetchMetric);
+				}
+				long remaining = timeout;
+				while ((publishedTime() < requested) && (remaining > 0)) {
+					fetchLock.wait(remaining);
+					remaining = expires - SystemClock.uptimeMillis();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				fetchWaiters--;
+			}
+		}
+		if (publishedTime() < requested) {
+			if (DebugLog.DEBUG) Log.d(TAG, "MetricService.fetchMetricDouble - metric " + metric + 
+					" timed out after " + timeout + "ms");
+			return Double.NaN;
+		}
+		if (DebugLog.DEBUG) Log.d(TAG, "MetricService.fetchMetricDouble - metric " + metric + 
+				" waited " + (SystemClock.uptimeMillis() - requested) + "ms");
+		return publishedValue(metric);
+	}
+	
+	/**
+	 * Uptime of the values last published to the {@link ValueSnapshot}.
+	 * 
+	 * @return    uptime of update (milliseconds), -1 if no values were published yet
+	 */
+	private long publishedTime() {
+		final ValueSnapshot current = snapshot;
+		return (current == null) ? -1 : current.getTimestamp();
+	}
+	
+	/**
+	 * Value of metric last published to the {@link ValueSnapshot}.
+	 * 
+	 * @param metric    integer representing metric (per {@link Metrics}) of this group
+	 * @return    value of metric, NaN if not available
+	 */
+	private double publishedValue(int metric) {
+		final ValueSnapshot current = snapshot;
+		return (current == null) ? Double.NaN : current.get(metric - groupId);
+	}
+	
+	/**
+	 * One-shot read posted by {@link #fetchMetricDouble(int, long)}.  Refreshes the
+	 * published values of the group, unless values were published meanwhile.
+	 */
+	private final Runnable fetchMetric = new Runnable() {
+
+		public void run() {
+			fetchPending = false;
+			if (((SystemClock.uptimeMillis() - publishedTime()) > freshnessThreshold) && 
+					!refreshValues()) {
+				if (DebugLog.DEBUG) Log.d(TAG, "MetricService.fetchMetric - no one-shot read " +
+						"for group " + groupId + ", waiting for scheduled update");
+			}
+			signalFetch();
+		}
+	};
+	
+	/**
+	 * Read current values of the group for a one-shot read, and publish them with
+	 * {@link #publishValues(long)} (or {@link #beginPublish()}).  Unlike a scheduled
+	 * update, values are not delivered to the {@link ValueNode}s of the group, no 
+	 * update is scheduled, and lastUpdate is left alone.  Groups whose values are 
+	 * differences since the previous update must keep a baseline for one-shot 
+	 * reads separate from that of their scheduled updates, so the next scheduled
+	 * update still covers its whole period.  Runs on the looper of the group.
+	 * <p>
+	 * By default, nothing is read, and callers of 
+	 * {@link #fetchMetricDouble(int, long)} wait for the next scheduled update.
+	 * Groups whose values are only obtained through callbacks (such as sensors)
+	 * keep this default.
+	 * 
+	 * @return    true if values were published
+	 */
+	protected boolean refreshValues() {
+		return false;
+	}
+	
+	/**
+	 * Wake callers of {@link #fetchMetricDouble(int, long)} waiting for a new value.
+	 * Called after every update of the group, so it returns without locking when
+	 * no caller is waiting.
+	 */
+	protected void signalFetch() {
+		if (fetchWaiters == 0) return;
+		synchronized (fetchLock) {
+			fetchLock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Publish current values of the group to its {@link ValueSnapshot}, for readers
+	 * on other threads.  Called on the metric thread after each update of values.
+	 * Values which are not numeric are published as NaN.
+	 * 
+	 * @param timestamp    uptime at which values were read (milliseconds)
+	 */
+	protected void publishValues(long timestamp) {
+		final ValueSnapshot current = beginPublish();
+		final int count = Math.min(values.length, metricsCount);
+		for (int i = 0; i < count; i++) {
+			current.set(i, (values[i] instanceof Number) ? 
+					((Number) values[i]).doubleValue() : Double.NaN);
+		}
+		current.end(timestamp);
+	}
+	
+	/**
+	 * Start publishing values of a new update.  Subclasses which keep values 
+	 * outside of {@link #values} store them in the returned snapshot, followed by
+	 * a call to {@link ValueSnapshot#end(long)}.
+	 * 
+	 * @return    snapshot of this group
+	 */
+	protected ValueSnapshot beginPublish() {
+		ValueSnapshot current = snapshot;
+		if (current == null) {
+			current = new ValueSnapshot(metricsCount);
+			snapshot = current;
+		}
+		current.begin();
+		return current;
+	}
+	
+	/**
+	 * Copy current values of all metrics of this group, taken from the same update,
+	 * without locking or waiting on the metric thread.
+	 * 
+	 * @param dest    array to store values in, indexed by offset from group id, of at 
+	 *                  least metricsCount entries
+	 * @return    uptime of the update the values belong to (milliseconds), -1 if
+	 *             no values have been published yet
+	 */
+	long readValues(double[] dest) {
+		final ValueSnapshot current = snapshot;
+		if (current == null) {
+			return -1;
+		}
+		return current.read(dest);
+	}
+	
 	/*
 	 * Return metric node associated for this metric.
 	 * This is the node which manages active monitors for this metric and provides
@@ -182,7 +410,8 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 //	abstract CurrentNode<T> getMetricNode(int metric);
 	
 	/**
-	 * Initialize valid metric monitoring agents by starting metric thread, if thread
+	 * Initialize valid metric monitoring agents by obtaining the looper assigned to 
+	 * the group from {@link MetricExecutor}, and starting database thread, if thread 
 	 * is not already started.  For unsupported metrics, nothing is done.
 	 * 
 	 */
@@ -191,10 +420,6 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 //		if (!supportedMetric) {
 //			return false;
 //		}
-		if (!metricThread.isAlive()) {
-			metricThread.start();
-			if (DebugLog.DEBUG) Log.d(TAG, "MetricService.init - metricThread is " + metricThread.getName());
-		}
 		if (!dbThread.isAlive()) {
 			dbThread.start();
 			if (DebugLog.DEBUG) Log.d(TAG, "MetricService.init - dbThread is " + dbThread.getName());
@@ -204,7 +429,7 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 //		}
 		
 		if (schedules == null) {
-			throw new IllegalStateException("SparseArray<TimerNode> schedules - not " +
+			throw new IllegalStateException("ScheduleIndex schedules - not " +
 					"initialized by service for metric group: " + groupId);
 		}
 		if (adminObserver == null) {
@@ -212,11 +437,12 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 					"initialized by service for metric group: " + groupId);
 		}
 		
-		observerHandler = new Handler(metricThread.getLooper());
+		metricHandler = MetricExecutor.getHandler(lane, (affinity < 0) ? groupId : affinity);
+		observerHandler = metricHandler;
 		// empty method to initialize single instance
 //		return true;
-		if (DebugLog.DEBUG) Log.d(TAG, "MetricService.init - threads exist : " + metricThread.getName()
-					+ " and " + dbThread.getName());
+		if (DebugLog.DEBUG) Log.d(TAG, "MetricService.init - threads exist : " + 
+					metricHandler.getLooper().getThread().getName() + " and " + dbThread.getName());
 //		threadAlive = (metricThread.isAlive() && dbThread.isAlive());
 		return;
 	}
@@ -259,6 +485,104 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 		});
 	}
 	
+	/**
+	 * Register a new periodic monitor whose samples are delivered to the client in
+	 * batches ({@link SampleBatch}), rather than one message per sample.  Metrics 
+	 * which are not managed through a {@link ValueNode} (such as location 
+	 * coordinates) fall back to one message per sample.
+	 * 
+	 * @param metric    integer representing metric (per {@link Metrics}) to monitor
+	 * @param monitorId    unique id of monitor, used for database logging
+	 * @param period    period between updates (milliseconds), if eavesdrop is true this will
+	 *                     represent the maximum allowable period between updates
+	 * @param duration    duration to monitor (in milliseconds), 0 for continuous
+	 * @param eavesdrop    if true, will provide updates as frequently as they are available
+	 *                        due to any active monitors
+	 * @param maxLatency    maximum time a sample may be held before it is sent
+	 *                        (milliseconds)
+	 * @param maxCount    maximum number of samples per batch
+	 * @param callback    messenger for client callback handler to handle batches
+	 * 
+	 * @see #registerClient(int, int, long, long, boolean, Messenger)
+	 */
+	public void registerBatchedClient(final int metric, final int monitorId, 
+			final long period, final long duration, final boolean eavesdrop, 
+			final long maxLatency, final int maxCount, final Messenger callback) {
+		if (DebugLog.DEBUG) Log.d(TAG, "MetricService.registerBatchedClient - register batched client");
+		if ((metric < groupId) || (metric >= (groupId + metricsCount))) {
+			if (DebugLog.INFO) Log.i(TAG, "MetricService.registerBatchedClient - metric value " + 
+					metric + ", not valid for group " + groupId);
+			return;
+		}
+		while (metricHandler == null) {
+			SystemClock.sleep(100);
+			if (DebugLog.DEBUG) Log.d(TAG, "MetricService.registerBatchedClient - waiting for handler");
+			
+		}
+		
+		metricHandler.post(new Runnable() {
+
+			public void run() {
+				insertClient(metric, monitorId, period, duration, eavesdrop, callback);
+				ValueNode<T> node = valueNodes.get(metric);
+				if (node != null) {
+					node.setDelivery(monitorId, maxLatency, maxCount, metricHandler);
+				}
+				if (!active) {
+					updateMetric = new UpdateMetric();
+					metricHandler.post(updateMetric);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Register a new periodic monitor whose values are passed directly to a 
+	 * listener in this process.  Metrics which are not managed through a 
+	 * {@link ValueNode} (such as location coordinates) can not be passed to a 
+	 * listener, and are only logged.
+	 * 
+	 * @param metric    integer representing metric (per {@link Metrics}) to monitor
+	 * @param monitorId    unique id of monitor, used for database logging
+	 * @param period    period between updates (milliseconds), if eavesdrop is true this will
+	 *                     represent the maximum allowable period between updates
+	 * @param duration    duration to monitor (in milliseconds), 0 for continuous
+	 * @param eavesdrop    if true, will provide updates as frequently as they are available
+	 *                        due to any active monitors
+	 * @param listener    listener to call with each update, on the metric thread
+	 * 
+	 * @see LocalMetrics
+	 */
+	void registerLocalClient(final int metric, final int monitorId, final long period, 
+			final long duration, final boolean eavesdrop, final LocalListener listener) {
+		if (DebugLog.DEBUG) Log.d(TAG, "MetricService.registerLocalClient - register local client");
+		if ((metric < groupId) || (metric >= (groupId + metricsCount))) {
+			if (DebugLog.INFO) Log.i(TAG, "MetricService.registerLocalClient - metric value " + 
+					metric + ", not valid for group " + groupId);
+			return;
+		}
+		while (metricHandler == null) {
+			SystemClock.sleep(100);
+			if (DebugLog.DEBUG) Log.d(TAG, "MetricService.registerLocalClient - waiting for handler");
+			
+		}
+		
+		metricHandler.post(new Runnable() {
+
+			public void run() {
+				insertClient(metric, monitorId, period, duration, eavesdrop, null);
+				ValueNode<T> node = valueNodes.get(metric);
+				if (node != null) {
+					node.setListener(monitorId, listener);
+				}
+				if (!active) {
+					updateMetric = new UpdateMetric();
+					metricHandler.post(updateMetric);
+				}
+			}
+		});
+	}
+	
 	/**
 	 * Insert new periodic monitor into metric management node ({@link CurrentNode}).
 	 * This method is called from {@link #registerClient(int, int, long, long, boolean, Messenger)}.
@@ -277,8 +601,7 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 	void insertClient(final int metric, final int monitorId, final long period, 
 			final long duration, final boolean eavesdrop, final Messenger callback) {
 		if (valueNodes.get(metric) == null) {
-			valueNodes.put(metric, new ValueNode<T>(metric, schedules, dbHandler, 
-					adminObserver));
+			valueNodes.put(metric, createValueNode(metric));
 		}
 		if (eavesdrop) {
 			valueNodes.get(metric).insertOpportunistic(monitorId, period, callback, duration);
@@ -288,6 +611,87 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 		}
 	}
 	
+	/**
+	 * Register a new adaptive monitor.  Updates are provided at intervals between
+	 * minPeriod and maxPeriod, stretched while the metric is flat and tightened when
+	 * it changes, so that values between updates stay within the error tolerance.
+	 * 
+	 * @param metric       integer representing metric (per {@link Metrics}) to monitor
+	 * @param monitorId    unique id of monitor, used for database logging
+	 * @param minPeriod    minimum period between updates (milliseconds)
+	 * @param maxPeriod    maximum period between updates (milliseconds)
+	 * @param tolerance    error tolerance, in units of the metric
+	 * @param duration     duration to monitor (in milliseconds), 0 for continuous
+	 * @param callback     messenger for client callback handler to handle updates
+	 * 
+	 * @see AdaptiveTimerNode
+	 */
+	public void registerAdaptive(final int metric, final int monitorId, final long minPeriod, 
+			final long maxPeriod, final float tolerance, final long duration, 
+			final Messenger callback) {
+		if (DebugLog.DEBUG) Log.d(TAG, "MetricService.registerAdaptive - register adaptive client");
+		if ((metric < groupId) || (metric >= (groupId + metricsCount))) {
+			if (DebugLog.INFO) Log.i(TAG, "MetricService.registerAdaptive - metric value " + metric +
+					", not valid for group " + groupId);
+			return;
+		}
+		while (metricHandler == null) {
+			SystemClock.sleep(100);
+			if (DebugLog.DEBUG) Log.d(TAG, "MetricService.registerAdaptive - waiting for handler");
+			
+		}
+		
+		metricHandler.post(new Runnable() {
+
+			public void run() {
+				insertAdaptive(metric, monitorId, minPeriod, maxPeriod, tolerance, duration, 
+						callback);
+				if (!active) {
+					updateMetric = new UpdateMetric();
+					metricHandler.post(updateMetric);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Insert new adaptive monitor into metric management node ({@link ValueNode}).
+	 * This method is called from 
+	 * {@link #registerAdaptive(int, int, long, long, float, long, Messenger)}.
+	 * Subclasses of {@link MetricService} which manage some metrics outside of
+	 * valueNodes should override this method.  Adaptive monitors are removed with
+	 * {@link #unregisterClient(int, int)}.
+	 * 
+	 * @param metric       integer representing metric (per {@link Metrics}) to monitor
+	 * @param monitorId    unique id of monitor, used for database logging
+	 * @param minPeriod    minimum period between updates (milliseconds)
+	 * @param maxPeriod    maximum period between updates (milliseconds)
+	 * @param tolerance    error tolerance, in units of the metric
+	 * @param duration     duration to monitor (in milliseconds), 0 for continuous
+	 * @param callback     messenger for client callback handler to handle updates
+	 */
+	void insertAdaptive(final int metric, final int monitorId, final long minPeriod, 
+			final long maxPeriod, final float tolerance, final long duration, 
+			final Messenger callback) {
+		if (valueNodes.get(metric) == null) {
+			valueNodes.put(metric, createValueNode(metric));
+		}
+		valueNodes.get(metric).insertAdaptive(monitorId, minPeriod, maxPeriod, tolerance, 
+				callback, duration);
+	}
+	
+	/**
+	 * Create new metric management node ({@link ValueNode}) for a metric of this group.
+	 * Subclasses of {@link MetricService} may override this method to provide a
+	 * specialized node for their value type.
+	 * 
+	 * @param metric    integer representing metric (per {@link Metrics}) to manage
+	 * @return    new value node for metric
+	 */
+	protected ValueNode<T> createValueNode(int metric) {
+		return new ValueNode<T>(metric, schedules, dbHandler, adminObserver);
+	}
+	
 	/**
 	 * Unregister periodic monitor.
 	 * 
@@ -326,6 +730,193 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 		if (valueNodes.get(metric) != null) {
 			valueNodes.get(metric).removeTimer(monitorId);
 		}
+		stopIfIdle();
+	}
+	
+	/**
+	 * Register several new periodic monitors of this group in a single message to
+	 * the metric thread.  Entries of the arrays are selected by indices, so that the
+	 * arrays of a batch spanning several groups may be shared between them.
+	 * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) to monitor
+	 * @param monitorIds    unique ids of monitors, used for database logging
+	 * @param periods    period between updates for each monitor (milliseconds)
+	 * @param indices    indices of entries of the batch which belong to this group
+	 * @param duration    duration to monitor (in milliseconds), 0 for continuous
+	 * @param eavesdrop    if true, will provide updates as frequently as they are available
+	 *                        due to any active monitors
+	 * @param callback    messenger for client callback handler to handle periodic updates
+	 * 
+	 * @see #registerClient(int, int, long, long, boolean, Messenger)
+	 */
+	public void registerClients(final int[] metrics, final int[] monitorIds, 
+			final long[] periods, final int[] indices, final long duration, 
+			final boolean eavesdrop, final Messenger callback) {
+		if (DebugLog.DEBUG) Log.d(TAG, "MetricService.registerClients - register " + 
+				indices.length + " timed clients");
+		while (metricHandler == null) {
+			SystemClock.sleep(100);
+			if (DebugLog.DEBUG) Log.d(TAG, "MetricService.registerClients - waiting for handler");
+			
+		}
+		
+		metricHandler.post(new Runnable() {
+
+			public void run() {
+				for (int i : indices) {
+					if ((metrics[i] < groupId) || (metrics[i] >= (groupId + metricsCount))) {
+						continue;
+					}
+					insertClient(metrics[i], monitorIds[i], periods[i], duration, eavesdrop, 
+							callback);
+				}
+				if (!active) {
+					updateMetric = new UpdateMetric();
+					metricHandler.post(updateMetric);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Register several new periodic monitors of this group whose samples are 
+	 * streamed through shared memory, in a single message to the metric thread.
+	 * The stream must be acquired once for each monitor before this call; it is
+	 * released when the monitor is removed.  Metrics which are not managed through 
+	 * a {@link ValueNode} (such as location coordinates) can not be streamed, and 
+	 * release the stream immediately.
+	 * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) to monitor
+	 * @param monitorIds    unique ids of monitors, used for database logging
+	 * @param period    period between updates (milliseconds)
+	 * @param indices    indices of entries of the batch which belong to this group
+	 * @param duration    duration to monitor (in milliseconds), 0 for continuous
+	 * @param stream    stream channel to write samples to
+	 * 
+	 * @see StreamChannel
+	 */
+	void registerStreamClients(final int[] metrics, final int[] monitorIds, 
+			final long period, final int[] indices, final long duration, 
+			final StreamChannel stream) {
+		if (DebugLog.DEBUG) Log.d(TAG, "MetricService.registerStreamClients - register " + 
+				indices.length + " streamed clients");
+		while (metricHandler == null) {
+			SystemClock.sleep(100);
+			if (DebugLog.DEBUG) Log.d(TAG, "MetricService.registerStreamClients - waiting for handler");
+			
+		}
+		
+		metricHandler.post(new Runnable() {
+
+			public void run() {
+				for (int i : indices) {
+					ValueNode<T> node = null;
+					if ((metrics[i] >= groupId) && (metrics[i] < (groupId + metricsCount))) {
+						insertClient(metrics[i], monitorIds[i], period, duration, false, null);
+						node = valueNodes.get(metrics[i]);
+					}
+					if (node == null) {
+						stream.release();
+						continue;
+					}
+					node.setStream(monitorIds[i], stream);
+				}
+				if (!active) {
+					updateMetric = new UpdateMetric();
+					metricHandler.post(updateMetric);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Unregister several periodic monitors of this group in a single message to the
+	 * metric thread.
+	 * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) of monitors
+	 * @param monitorIds    unique ids of the registered monitors
+	 * @param indices    indices of entries of the batch which belong to this group
+	 * 
+	 * @see #unregisterClient(int, int)
+	 */
+	public void unregisterClients(final int[] metrics, final int[] monitorIds, 
+			final int[] indices) {
+		if (DebugLog.DEBUG) Log.d(TAG, "MetricService.unregisterClients - unregister " + 
+				indices.length + " timed clients");
+		metricHandler.post(new Runnable() {
+
+			public void run() {
+				for (int i : indices) {
+					if ((metrics[i] < groupId) || (metrics[i] >= (groupId + metricsCount))) {
+						continue;
+					}
+					removeClient(metrics[i], monitorIds[i]);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Copy current values of metrics of this group into snapshot from the published
+	 * {@link ValueSnapshot}, without posting to the metric thread.  This only
+	 * succeeds if the published values are within freshnessThreshold, otherwise
+	 * {@link #postSnapshot(int[], int[], double[], CountDownLatch)} should be used to
+	 * obtain fresh values.
+	 * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) to read
+	 * @param indices    indices of entries of the batch which belong to this group
+	 * @param snapshot    array to store values in, at the same index as metrics.  If
+	 *                      published values are stale, entries of this group may 
+	 *                      have been overwritten, and are expected to be filled by
+	 *                      {@link #postSnapshot(int[], int[], double[], CountDownLatch)}
+	 * @return    true if values were stored, false if published values are stale
+	 */
+	boolean readSnapshot(int[] metrics, int[] indices, double[] snapshot) {
+		final ValueSnapshot current = this.snapshot;
+		if (current == null) {
+			return false;
+		}
+		final long timestamp = current.read(metrics, indices, groupId, snapshot);
+		return (timestamp >= 0) && 
+				((SystemClock.uptimeMillis() - timestamp) <= freshnessThreshold);
+	}
+	
+	/**
+	 * Copy current values of metrics of this group into snapshot.  On the metric
+	 * thread, published values which are still stale are refreshed by a one-shot
+	 * read ({@link #refreshValues()}), and all metrics of the group are then read
+	 * from the same published update.  Groups which cannot be read outside of 
+	 * their updates are read through {@link #getMetricDouble(int)}.  Metrics 
+	 * without a numeric value are stored as NaN.
+	 * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) to read
+	 * @param indices    indices of entries of the batch which belong to this group
+	 * @param snapshot    array to store values in, at the same index as metrics
+	 * @param done    latch counted down once values have been stored
+	 */
+	void postSnapshot(final int[] metrics, final int[] indices, final double[] snapshot, 
+			final CountDownLatch done) {
+		if (metricHandler == null) {
+			done.countDown();
+			return;
+		}
+		metricHandler.post(new Runnable() {
+
+			public void run() {
+				// values may have been published since the caller found them stale
+				if (!readSnapshot(metrics, indices, snapshot)) {
+					if (refreshValues()) {
+						readSnapshot(metrics, indices, snapshot);
+					}
+					else {
+						for (int i : indices) {
+							snapshot[i] = getMetricDouble(metrics[i]);
+						}
+					}
+				}
+				done.countDown();
+			}
+		});
 	}
 	
 	/**
@@ -381,8 +972,7 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 	void insertEvent(final int metric, final int monitorId, final Object threshold, 
 				final long period, final ExpressionNode enode, final boolean max) {
 		if (valueNodes.get(metric) == null) {
-			valueNodes.put(metric, new ValueNode<T>(metric, schedules, dbHandler, 
-					adminObserver));
+			valueNodes.put(metric, createValueNode(metric));
 		}
 		valueNodes.get(metric).insertThresh(monitorId, (T) threshold, period, enode, max);
 	}
@@ -428,6 +1018,39 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 		if (valueNodes.get(metric) != null) {
 			valueNodes.get(metric).removeThresh(monitorId, max);
 		}
+		stopIfIdle();
+	}
+	
+	/**
+	 * Check whether any monitors remain for metrics of this group.  Subclasses of
+	 * {@link MetricService} which manage monitors outside of {@link #valueNodes}
+	 * should override this method to include them.
+	 * 
+	 * @return    true if any metric of this group has an active monitor
+	 */
+	protected boolean hasMonitors() {
+		for (int i = 0; i < metricsCount; i++) {
+			ValueNode<T> node = valueNodes.get(groupId + i);
+			if ((node != null) && !node.isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Stop updates of this group once its last monitor is removed, cancelling the
+	 * update pending in the {@link WakeupScheduler}, rather than waking once more
+	 * only to find nothing to update.
+	 */
+	private void stopIfIdle() {
+		if ((updateMetric == null) || hasMonitors()) return;
+		WakeupScheduler.getInstance().cancel(groupId);
+		metricHandler.removeCallbacks(updateMetric);
+		active = false;
+		updateMetric = null;
+		if (DebugLog.DEBUG) Log.d(TAG, "MetricService.stopIfIdle - updates stopped: " +
+				"metric " + groupId);
 	}
 	
 	/**
@@ -464,6 +1087,8 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 					nextUpdate = updateTime;
 			}
 		}
+		publishValues(lastUpdate);
+		signalFetch();
 		if (nextUpdate == Long.MAX_VALUE) {
 			active = false;
 			updateMetric = null;
@@ -477,14 +1102,20 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 	 * Schedule next update of metric values.
 	 * This method should be called by any subclasses of {@link MetricService} after 
 	 * updating all value nodes, if the next update time returned is positive value.
+	 * The update is scheduled through {@link WakeupScheduler}, and may be delayed
+	 * within its tolerance to run together with the updates of other groups
+	 * sharing the looper of this group.
 	 * 
 	 * @param nextUpdate    delay before next update (in milliseconds), -1 if no active 
 	 *                       monitors remain
 	 */
 	protected void scheduleNextUpdate(long nextUpdate) {
 		if (nextUpdate < 0) return;
-		updateMetric = new UpdateMetric();	// is this needed (nothing static)?
-		metricHandler.postAtTime(updateMetric, lastUpdate + nextUpdate);
+		long deadline = lastUpdate + nextUpdate;
+		UpdateMetric update = new UpdateMetric(deadline);
+		update.scheduled = WakeupScheduler.getInstance().schedule(groupId, metricHandler, 
+				update, deadline, WakeupScheduler.tolerance(nextUpdate));
+		updateMetric = update;
 		if (DebugLog.DEBUG) Log.d(TAG, "MetricService.scheduleNextUpdate - new update scheduled: " +
 				"metric " + groupId);
 	}
@@ -531,6 +1162,38 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 		
 	}
 	
+	/**
+	 * Record delay between scheduled and actual start of update.
+	 * 
+	 * @param lag    delay in milliseconds
+	 */
+	private void recordLag(long lag) {
+		if (lag < 0) lag = 0;
+		if (lag > lagMax) lagMax = lag;
+		lagTotal += lag;
+		lagCount++;
+	}
+	
+	/**
+	 * Maximum delay between the latest allowed and actual start of an update of this
+	 * group, as a measure of contention for the looper of the group.
+	 * 
+	 * @return    maximum scheduling lag, in milliseconds
+	 */
+	public long getMaxLag() {
+		return lagMax;
+	}
+	
+	/**
+	 * Mean delay between the latest allowed and actual start of updates of this group.
+	 * 
+	 * @return    mean scheduling lag, in milliseconds, 0 if no updates have run
+	 */
+	public long getMeanLag() {
+		long count = lagCount;
+		return (count == 0) ? 0 : (lagTotal / count);
+	}
+	
 	protected Runnable executeUpdates = new Runnable() {
 
 		public void run() {
@@ -610,6 +1273,17 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 			case Metrics.CPU_LOAD15:
 				if (DebugLog.DEBUG) Log.d(TAG, "MetricService.getService - fetch cpu service");
 				return CpuService.getInstance();
+			case Metrics.VM_PGMAJFAULT:
+			case Metrics.VM_PGSCAN:
+			case Metrics.VM_PGSTEAL:
+			case Metrics.VM_ALLOCSTALL:
+			case Metrics.PSI_MEMORY_SOME:
+			case Metrics.PSI_MEMORY_FULL:
+			case Metrics.PSI_MEMORY_STALL:
+			case Metrics.PSI_CPU_SOME:
+			case Metrics.PSI_CPU_STALL:
+				if (DebugLog.DEBUG) Log.d(TAG, "MetricService.getService - fetch memory pressure service");
+				return MemPressureService.getInstance();
 			case Metrics.PROC_TOTAL:
 			case Metrics.PROC_USER:
 			case Metrics.PROC_NICE:
@@ -731,6 +1405,18 @@ public abstract class MetricService<T extends Comparable<T>> implements Observab
 				if (DebugLog.DEBUG) Log.d(TAG, "MetricService.getService - fetch mms activity service");
 				return MMSService.getInstance();
 			default:
+				if (Metrics.isCpuCoreMetric(metric)) {
+					if (DebugLog.DEBUG) Log.d(TAG, "MetricService.getService - fetch cpu core service");
+					return CpuCoreService.getInstance(metric);
+				}
+				if (Metrics.isProcessMetric(metric)) {
+					if (DebugLog.DEBUG) Log.d(TAG, "MetricService.getService - fetch process service");
+					return ProcessService.getInstance();
+				}
+				if (Metrics.isDiskMetric(metric)) {
+					if (DebugLog.DEBUG) Log.d(TAG, "MetricService.getService - fetch disk i/o service");
+					return DiskIoService.getInstance(metric);
+				}
 				if (DebugLog.INFO) Log.i(TAG, "MetricService.getService - unrecognized metric");
 				return null;
 		}
@@ -214,6 +214,197 @@ public final class Metrics {
 	 * Units: N/A
 	 */
 	public static final int PROC_CTXT = 42;
+	
+	/** 
+	 * Category of metrics related to utilization and frequency of each processor core.
+	 * Metrics of this category are numbered by core, starting at this value, see
+	 * {@link #cpuCoreMetric(int, int)}.  The number of metrics depends on the number
+	 * of cores of the device.
+	 */
+	public static final int CPUCORE_CATEGORY = 1000;
+	/** Maximum number of processor cores with per-core metrics. */
+	public static final int MAX_CPU_CORES = 256;
+	/** Number of per-core metrics for each processor core. */
+	public static final int CORE_FIELDS = 5;
+	/** 
+	 * Per-core field: time core spent executing at user-level since previous 
+	 * update. <br>
+	 * Type: Float <br>
+	 * Units: jiffies (approx. 10 ms on many ARM architectures)
+	 */
+	public static final int CORE_USER = 0;
+	/** 
+	 * Per-core field: time core spent executing at system-level since previous 
+	 * update. <br>
+	 * Type: Float <br>
+	 * Units: jiffies (approx. 10 ms on many ARM architectures)
+	 */
+	public static final int CORE_SYSTEM = 1;
+	/** 
+	 * Per-core field: time core was idle since previous update. <br>
+	 * Type: Float <br>
+	 * Units: jiffies (approx. 10 ms on many ARM architectures)
+	 */
+	public static final int CORE_IDLE = 2;
+	/** 
+	 * Per-core field: time core spent idle waiting for I/O since previous update. <br>
+	 * Type: Float <br>
+	 * Units: jiffies (approx. 10 ms on many ARM architectures)
+	 */
+	public static final int CORE_IOWAIT = 3;
+	/** 
+	 * Per-core field: current frequency of core, 0 while core is offline. <br>
+	 * Type: Float <br>
+	 * Units: kHz
+	 */
+	public static final int CORE_FREQ = 4;
+
+	/** 
+	 * Category of metrics related to the processes consuming the most processor time
+	 * and memory.  Metrics of this category are numbered by rank, starting at this 
+	 * value, see {@link #processMetric(int, int)}.  Rank 0 is the highest consumer.
+	 */
+	public static final int PROCESS_CATEGORY = 2300;
+	/** Number of ranks of top consuming processes. */
+	public static final int PROCESS_TOP_N = 5;
+	/** Number of metrics for each rank of top consuming processes. */
+	public static final int PROCESS_FIELDS = 4;
+	/** 
+	 * Per-rank field: process id of process at this rank of processor time consumed, 
+	 * 0 if there is no such process. <br>
+	 * Type: Float <br>
+	 * Units: N/A
+	 */
+	public static final int PROCESS_CPU_PID = 0;
+	/** 
+	 * Per-rank field: processor time (user and system) of process at this rank of 
+	 * processor time consumed, since previous update. <br>
+	 * Type: Float <br>
+	 * Units: jiffies (approx. 10 ms on many ARM architectures)
+	 */
+	public static final int PROCESS_CPU = 1;
+	/** 
+	 * Per-rank field: process id of process at this rank of resident memory, 0 if 
+	 * there is no such process. <br>
+	 * Type: Float <br>
+	 * Units: N/A
+	 */
+	public static final int PROCESS_MEM_PID = 2;
+	/** 
+	 * Per-rank field: resident memory of process at this rank of resident memory. <br>
+	 * Type: Float <br>
+	 * Units: kB
+	 */
+	public static final int PROCESS_MEM = 3;
+	
+	/** Category for metrics related to memory pressure, reclaim and stalls. */
+	public static final int MEMPRESSURE_CATEGORY = 2400;
+	/** 
+	 * Major page faults (requiring I/O) since previous update. <br>
+	 * Type: Float <br>
+	 * Units: faults
+	 */
+	public static final int VM_PGMAJFAULT = 2400;
+	/** 
+	 * Pages scanned for reclaim, by kswapd and direct reclaim, since previous update. <br>
+	 * Type: Float <br>
+	 * Units: pages
+	 */
+	public static final int VM_PGSCAN = 2401;
+	/** 
+	 * Pages reclaimed, by kswapd and direct reclaim, since previous update. <br>
+	 * Type: Float <br>
+	 * Units: pages
+	 */
+	public static final int VM_PGSTEAL = 2402;
+	/** 
+	 * Allocations which stalled for direct reclaim since previous update. <br>
+	 * Type: Float <br>
+	 * Units: stalls
+	 */
+	public static final int VM_ALLOCSTALL = 2403;
+	/** 
+	 * Share of time some tasks were stalled on memory, over past 10 seconds.  
+	 * 0 if kernel does not provide pressure stall information. <br>
+	 * Type: Float <br>
+	 * Units: percent
+	 */
+	public static final int PSI_MEMORY_SOME = 2404;
+	/** 
+	 * Share of time all non-idle tasks were stalled on memory, over past 10 seconds.
+	 * 0 if kernel does not provide pressure stall information. <br>
+	 * Type: Float <br>
+	 * Units: percent
+	 */
+	public static final int PSI_MEMORY_FULL = 2405;
+	/** 
+	 * Time some tasks were stalled on memory since previous update. <br>
+	 * Type: Float <br>
+	 * Units: microseconds
+	 */
+	public static final int PSI_MEMORY_STALL = 2406;
+	/** 
+	 * Share of time some runnable tasks waited for a processor, over past 10 seconds.
+	 * 0 if kernel does not provide pressure stall information. <br>
+	 * Type: Float <br>
+	 * Units: percent
+	 */
+	public static final int PSI_CPU_SOME = 2407;
+	/** 
+	 * Time some runnable tasks waited for a processor since previous update. <br>
+	 * Type: Float <br>
+	 * Units: microseconds
+	 */
+	public static final int PSI_CPU_STALL = 2408;
+	
+	/** 
+	 * Category of metrics related to I/O of block devices (whole disks, not 
+	 * partitions).  Metrics of this category are numbered by device, starting at this
+	 * value, see {@link #diskMetric(int, int)}.  The number of metrics depends on the 
+	 * number of block devices of the device.
+	 */
+	public static final int DISKIO_CATEGORY = 2500;
+	/** Maximum number of block devices with I/O metrics. */
+	public static final int MAX_DISKS = 16;
+	/** Number of I/O metrics for each block device. */
+	public static final int DISK_FIELDS = 6;
+	/** 
+	 * Per-device field: reads completed since previous update. <br>
+	 * Type: Float <br>
+	 * Units: reads
+	 */
+	public static final int DISK_READS = 0;
+	/** 
+	 * Per-device field: writes completed since previous update. <br>
+	 * Type: Float <br>
+	 * Units: writes
+	 */
+	public static final int DISK_WRITES = 1;
+	/** 
+	 * Per-device field: sectors read since previous update. <br>
+	 * Type: Float <br>
+	 * Units: sectors (512 bytes)
+	 */
+	public static final int DISK_READ_SECTORS = 2;
+	/** 
+	 * Per-device field: sectors written since previous update. <br>
+	 * Type: Float <br>
+	 * Units: sectors (512 bytes)
+	 */
+	public static final int DISK_WRITE_SECTORS = 3;
+	/** 
+	 * Per-device field: time device was busy with I/O since previous update. <br>
+	 * Type: Float <br>
+	 * Units: milliseconds
+	 */
+	public static final int DISK_BUSY_TIME = 4;
+	/** 
+	 * Per-device field: time requests spent in queue (weighted by number of requests
+	 * in flight) since previous update. <br>
+	 * Type: Float <br>
+	 * Units: milliseconds
+	 */
+	public static final int DISK_QUEUE_TIME = 5;
 
 	/** Category for all metrics related to battery status and resources. */
 	public static final int BATTERY_CATEGORY = 46;
@@ -603,12 +794,17 @@ public final class Metrics {
 	 */
 	public static final int INCOMINGMMS = 181;
 	
-	public static final int MAX_METRIC = 185;
+	/** One past the highest metric, the last block device I/O metric. */
+	public static final int MAX_METRIC = DISKIO_CATEGORY + (MAX_DISKS * DISK_FIELDS);
 //	public static final int CATEGORY_SIZE = 10;
 	
 	public static final int[] SYSTEM_METRICS = {MEMORY_CATEGORY,
 												CPULOAD_CATEGORY,
 												PROCESSOR_CATEGORY,
+												CPUCORE_CATEGORY,
+												PROCESS_CATEGORY,
+												MEMPRESSURE_CATEGORY,
+												DISKIO_CATEGORY,
 												BATTERY_CATEGORY,
 												NETBYTES_CATEGORY,
 												NETSTATUS_CATEGORY,
@@ -635,6 +831,76 @@ public final class Metrics {
 												MMS_CATEGORY
 	};
 
+	/**
+	 * Return metric for a field of a processor core.
+	 * 
+	 * @param core    index of core, from 0
+	 * @param field    per-core field, such as {@link #CORE_USER} or {@link #CORE_FREQ}
+	 * @return    integer representing metric
+	 */
+	public static int cpuCoreMetric(int core, int field) {
+		return CPUCORE_CATEGORY + (core * CORE_FIELDS) + field;
+	}
+	
+	/**
+	 * Check if metric belongs to the per-core processor category.  Whether the core
+	 * exists on this device is determined by {@link CpuCoreService}.
+	 * 
+	 * @param metric    integer representing metric
+	 * @return    true if metric is in range of per-core metrics
+	 */
+	public static boolean isCpuCoreMetric(int metric) {
+		return (metric >= CPUCORE_CATEGORY) && 
+				(metric < (CPUCORE_CATEGORY + (MAX_CPU_CORES * CORE_FIELDS)));
+	}
+	
+	/**
+	 * Return metric for a field of a rank of top consuming processes.
+	 * 
+	 * @param rank    rank of process, from 0 (highest consumer) to 
+	 *                  {@link #PROCESS_TOP_N} - 1
+	 * @param field    per-rank field, such as {@link #PROCESS_CPU} or {@link #PROCESS_MEM}
+	 * @return    integer representing metric
+	 */
+	public static int processMetric(int rank, int field) {
+		return PROCESS_CATEGORY + (rank * PROCESS_FIELDS) + field;
+	}
+	
+	/**
+	 * Check if metric belongs to the top consuming processes category.
+	 * 
+	 * @param metric    integer representing metric
+	 * @return    true if metric is in range of process metrics
+	 */
+	public static boolean isProcessMetric(int metric) {
+		return (metric >= PROCESS_CATEGORY) && 
+				(metric < (PROCESS_CATEGORY + (PROCESS_TOP_N * PROCESS_FIELDS)));
+	}
+	
+	/**
+	 * Return metric for an I/O field of a block device.
+	 * 
+	 * @param disk    index of block device, from 0
+	 * @param field    per-device field, such as {@link #DISK_READS} or 
+	 *                   {@link #DISK_QUEUE_TIME}
+	 * @return    integer representing metric
+	 */
+	public static int diskMetric(int disk, int field) {
+		return DISKIO_CATEGORY + (disk * DISK_FIELDS) + field;
+	}
+	
+	/**
+	 * Check if metric belongs to the block device I/O category.  Whether the device 
+	 * exists is determined by {@link DiskIoService}.
+	 * 
+	 * @param metric    integer representing metric
+	 * @return    true if metric is in range of block device metrics
+	 */
+	public static boolean isDiskMetric(int metric) {
+		return (metric >= DISKIO_CATEGORY) && 
+				(metric < (DISKIO_CATEGORY + (MAX_DISKS * DISK_FIELDS)));
+	}
+	
 	/**
 	 * Converts {@link SystemData} metric category index to Metrics category index
 	 * 
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import android.os.Messenger;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+import edu.nd.darts.cimon.database.SampleLog;
+
+/**
+ * Registration of monitors of several metrics in one call, for the batch calls of
+ * {@link CimonInterface}.  Entries of a batch are grouped by the metric service
+ * which manages them, the monitors of all groups are allocated in a single 
+ * database transaction, and each group is sent a single message to its metric 
+ * thread.
+ * 
+ * @author darts
+ * 
+ * @see NDroidService
+ *
+ */
+final class MonitorBatch {
+	
+	private static final String TAG = "NDroid";
+	
+	private MonitorBatch() {
+	}
+	
+	/**
+	 * Group entries of a batch call by the metric service which manages them.
+	 * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) of batch
+	 * @return    indices into metrics of the entries of each metric service, keyed by
+	 *             group id of the service.  Unknown metrics are omitted.
+	 */
+	static SparseArray<int[]> group(int[] metrics) {
+		SparseArray<ArrayList<Integer>> lists = new SparseArray<ArrayList<Integer>>();
+		for (int i = 0; i < metrics.length; i++) {
+			final MetricService<?> metricService = MetricService.getService(metrics[i]);
+			if (metricService == null) {
+				if (DebugLog.DEBUG) Log.d(TAG, "MonitorBatch.group - Error, unknown " +
+						"metric: " + metrics[i]);
+				continue;
+			}
+			ArrayList<Integer> list = lists.get(metricService.groupId);
+			if (list == null) {
+				list = new ArrayList<Integer>();
+				lists.put(metricService.groupId, list);
+			}
+			list.add(i);
+		}
+		SparseArray<int[]> groups = new SparseArray<int[]>(lists.size());
+		for (int g = 0; g < lists.size(); g++) {
+			ArrayList<Integer> list = lists.valueAt(g);
+			int[] indices = new int[list.size()];
+			for (int j = 0; j < indices.length; j++) {
+				indices[j] = list.get(j);
+			}
+			groups.put(lists.keyAt(g), indices);
+		}
+		return groups;
+	}
+	
+	/**
+	 * Register periodic monitors of a batch.  Monitor rows of all groups are 
+	 * inserted in a single transaction, and each group is then sent a single 
+	 * message to register its monitors.  If any row can not be inserted, no 
+	 * monitor is registered.
+	 * 
+	 * @param database    database adapter to insert monitor rows with
+	 * @param metrics    integers representing metrics (per {@link Metrics}) to monitor
+	 * @param periods    period between updates for each monitor (milliseconds)
+	 * @param duration    duration to monitor (in milliseconds), 0 for continuous
+	 * @param eavesdrop    if true, will provide updates as frequently as they are available
+	 *                        due to any active monitors
+	 * @param callback    messenger for client callback handler to handle periodic updates
+	 * @return    unique ids of monitors, in order of metrics.  -1 for unknown metrics,
+	 *             and for all metrics if the monitors could not be inserted.
+	 */
+	static int[] register(CimonDatabaseAdapter database, int[] metrics, long[] periods, 
+			long duration, boolean eavesdrop, Messenger callback) {
+		final SparseArray<int[]> groups = group(metrics);
+		int count = 0;
+		for (int g = 0; g < groups.size(); g++) {
+			count += groups.valueAt(g).length;
+		}
+		// monitors of all groups are allocated in a single transaction
+		final boolean[] useSampleLog = new boolean[count];
+		count = 0;
+		for (int g = 0; g < groups.size(); g++) {
+			for (int i : groups.valueAt(g)) {
+				useSampleLog[count++] = periods[i] < SampleLog.HIGH_RATE_PERIOD;
+			}
+		}
+		final long curTime = System.currentTimeMillis();
+		final long upTime = SystemClock.uptimeMillis();
+		final int[] inserted = database.insertMonitors(curTime - upTime, useSampleLog);
+		
+		final int[] monitorIds = new int[metrics.length];
+		Arrays.fill(monitorIds, -1);
+		if ((count > 0) && (inserted[0] < 0)) {
+			// monitor rows are inserted in a single transaction, so none remain
+			if (DebugLog.WARNING) Log.w(TAG, "MonitorBatch.register - " +
+					"unable to insert monitors");
+			return monitorIds;
+		}
+		count = 0;
+		for (int g = 0; g < groups.size(); g++) {
+			for (int i : groups.valueAt(g)) {
+				monitorIds[i] = inserted[count++];
+			}
+		}
+		for (int g = 0; g < groups.size(); g++) {
+			final int[] indices = groups.valueAt(g);
+			MetricService.getService(metrics[indices[0]]).registerClients(metrics, 
+					monitorIds, periods, indices, duration, eavesdrop, callback);
+		}
+		return monitorIds;
+	}
+	
+	/**
+	 * Unregister monitors of a batch, with a single message to the metric thread
+	 * of each group.
+	 * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) of monitors
+	 * @param monitorIds    unique ids of monitors, entries of -1 match no monitor
+	 */
+	static void unregister(int[] metrics, int[] monitorIds) {
+		final SparseArray<int[]> groups = group(metrics);
+		for (int g = 0; g < groups.size(); g++) {
+			final int[] indices = groups.valueAt(g);
+			MetricService.getService(metrics[indices[0]]).unregisterClients(metrics, 
+					monitorIds, indices);
+		}
+	}
+	
+}
@@ -19,17 +19,10 @@
  */
 package edu.nd.darts.cimon;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import edu.nd.darts.cimon.contentprovider.CimonContentProvider;
-import edu.nd.darts.cimon.database.DataCommunicator;
-import edu.nd.darts.cimon.database.DataTable;
 import edu.nd.darts.cimon.database.MetricsTable;
 import edu.nd.darts.cimon.database.MonitorTable;
 import android.app.Notification;
@@ -217,82 +210,7 @@ public class MonitorReport {
 				}
 
 				// Send data to server
-				new Thread(new Runnable() {
-					public void run() {
-						// Create data communicator
-						String url = "http://10.0.0.4:8100/Update_Data/";
-						DataCommunicator comm = new DataCommunicator(url);
-
-						//Create sensor information
-						JSONObject sensorList = new JSONObject();
-						try {
-							sensorList.accumulate("type", "Sensor_Table");
-							sensorList.accumulate("Sensor_ID", "abc");
-							sensorList.accumulate("Description", "abc");
-							sensorList.accumulate("Max", "1996");
-							sensorList.accumulate("Unit", "kw");
-							sensorList.accumulate("Resolution", "kw");
-							sensorList.accumulate("Power", "kw");
-						} catch (JSONException e) {
-							// TODO Auto-generated catch block
-							e.printStackTrace();
-						}
-
-						if (!comm.Post_Data(sensorList).equals("Success")) {
-							// Start abnormal network handling here
-						}
-						
-						// Create and send device_list package
-						JSONObject deviceList = new JSONObject();
-						try {
-							deviceList.accumulate("type", "Device_List");
-							deviceList.accumulate("Device_ID", "1235");
-							deviceList.accumulate("Description", "abc");
-							deviceList.accumulate("Last_Update", "1996");
-							deviceList.accumulate("Sensor 1", "True");
-						} catch (JSONException e) {
-							// TODO Auto-generated catch block
-							e.printStackTrace();
-						}
-
-						if (!comm.Post_Data(deviceList).equals("Success")) {
-							// Start abnormal network handling here
-						}
-
-						// Create and send data package
-						JSONObject dataTable = new JSONObject();
-						try {
-							dataTable.accumulate("type", "Data_Table");
-							dataTable.accumulate("Device_ID", "1235");
-							dataTable.accumulate("Sensor_ID", "abcd");
-							dataTable.accumulate("Date", "1994");
-							dataTable.accumulate("Timestamp", "123456");
-							dataTable.accumulate("Value", "123123");
-							dataTable.accumulate("Label", "sitting");
-						} catch (JSONException e) {
-							// TODO Auto-generated catch block
-							e.printStackTrace();
-						}
-						if (!comm.Post_Data(dataTable).equals("Success")) {
-							//Start abnormal network handling here
-						}
-						
-						//Update labelling freq
-						JSONObject Label = new JSONObject();
-						try {
-							Label.accumulate("type", "Labeling_Freq");
-							Label.accumulate("Device_ID", "1235");
-							Label.accumulate("Average_Label", "123");
-						} catch (JSONException e) {
-							// TODO Auto-generated catch block
-							e.printStackTrace();
-						}
-						if (!comm.Post_Data(Label).equals("Success")) {
-							//Start abnormal network handling here
-						}
-						
-					}
-				}).start();
+				DataUploader.getInstance(context).upload(monitorId, metricId);
 
 			} else {
 				if (DebugLog.WARNING)
@@ -325,13 +243,12 @@ public class MonitorReport {
 		}
 		File file = new File(context.getExternalFilesDir(null), "monitor"
 				+ monitorId + ".csv");
-		BufferedWriter writer;
+		CsvExporter writer;
 		try {
-			writer = new BufferedWriter(new FileWriter(file));
+			writer = new CsvExporter(file, false);
 
 			if (metadata) {
-				writer.write("sep=\t");
-				writer.newLine();
+				writer.write("sep=\t").newLine();
 				Uri metricUri = Uri.withAppendedPath(
 						CimonContentProvider.METRICS_URI,
 						String.valueOf(metricId));
@@ -354,8 +271,7 @@ public class MonitorReport {
 						} else {
 							metricName = metricCursor.getString(nameCol);
 						}
-						writer.write("Metric: " + metricName);
-						writer.newLine();
+						writer.write("Metric: ").write(String.valueOf(metricName)).newLine();
 
 						if (unitsCol < 0) {
 							if (DebugLog.WARNING)
@@ -363,8 +279,7 @@ public class MonitorReport {
 										"MonitorReport.createFile - metric name column not found");
 						} else {
 							String units = metricCursor.getString(unitsCol);
-							writer.write("Units: " + units);
-							writer.newLine();
+							writer.write("Units: ").write(String.valueOf(units)).newLine();
 						}
 					} else {
 						if (DebugLog.WARNING)
@@ -393,9 +308,8 @@ public class MonitorReport {
 										"MonitorReport.createFile - epoch offset column not found");
 						} else {
 							long offset = monitorCursor.getLong(offsetCol);
-							writer.write("Offset from epoch (milliseconds): "
-									+ offset);
-							writer.newLine();
+							writer.write("Offset from epoch (milliseconds): ")
+									.write(offset).newLine();
 						}
 					} else {
 						if (DebugLog.WARNING)
@@ -407,56 +321,19 @@ public class MonitorReport {
 
 				writer.newLine();
 			}
-			writer.write("Timestamp\tValue");
-			writer.newLine();
+			writer.write("Timestamp\tValue").newLine();
 
-			String[] projection = { DataTable.COLUMN_TIMESTAMP,
-					DataTable.COLUMN_VALUE };
-			Uri monitorUri = Uri.withAppendedPath(
-					CimonContentProvider.MONITOR_DATA_URI,
-					String.valueOf(monitorId));
-			Cursor mCursor = context.getContentResolver().query(monitorUri,
-					projection, null, null, null);
-			if (mCursor == null) {
+			long rows = writer.writeMonitor(context.getContentResolver(), monitorId);
+			if (rows < 0) {
 				if (DebugLog.WARNING)
 					Log.w(TAG,
 							"MonitorReport.createFile - data cursor is empty");
 				writer.close();
 				return false;
 			}
-			int timestampCol = mCursor
-					.getColumnIndex(DataTable.COLUMN_TIMESTAMP);
-			if (timestampCol < 0) {
-				if (DebugLog.WARNING)
-					Log.w(TAG,
-							"MonitorReport.createFile - timestamp column not found");
-				mCursor.close();
-				writer.close();
-				return false;
-			}
-			int valueCol = mCursor.getColumnIndex(DataTable.COLUMN_VALUE);
-			if (valueCol < 0) {
-				if (DebugLog.WARNING)
-					Log.w(TAG,
-							"MonitorReport.createFile - value column not found");
-				mCursor.close();
-				writer.close();
-				return false;
-			}
-			long timestamp;
-			float value;
-			if (mCursor.moveToFirst()) {
-				while (!mCursor.isAfterLast()) {
-					timestamp = mCursor.getLong(timestampCol);
-					value = mCursor.getFloat(valueCol);
-					writer.write(timestamp + "\t" + value);
-					writer.newLine();
-					mCursor.moveToNext();
-				}
-			}
-			mCursor.close();
+			if (DebugLog.DEBUG)
+				Log.d(TAG, "MonitorReport.createFile - rows written: " + rows);
 
-			writer.flush();
 			writer.close();
 		} catch (IOException e) {
 			if (DebugLog.WARNING)
@@ -46,7 +46,6 @@ import android.widget.TabHost;
 import android.widget.Toast;
 import edu.nd.darts.cimon.R;
 
-import edu.nd.darts.cimon.database.DataCommunicator;
 
 /**
  * Administration application for viewing and testing activity of CIMON service.
@@ -19,6 +19,12 @@
  */
 package edu.nd.darts.cimon;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import android.app.Notification;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
@@ -29,11 +35,14 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Messenger;
+import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
 import android.os.SystemClock;
 import android.util.Log;
+import android.util.SparseArray;
 import edu.nd.darts.cimon.R;
 import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+import edu.nd.darts.cimon.database.SampleLog;
 
 /**
  * Background service which provides CIMON API.
@@ -70,6 +79,10 @@ public class NDroidService extends Service {
 	private static final String TAG = "NDroid";
 	private static final int NOTIFICATION_ID = 1;
 	private static final String THREADTAG = "EventThread";
+	/** Upper bound on time a synchronous read may block a binder thread (milliseconds). */
+	private static final long MAX_READ_TIMEOUT = 5000;
+	/** Maximum time to wait for metric threads to provide values of a snapshot (milliseconds). */
+	private static final long SNAPSHOT_TIMEOUT = 1000;
 	/**
 	 * Handler for thread which manages all tasks related to event notification monitors.
 	 * This provides synchronization and thread safety for event trees and condition nodes.
@@ -79,7 +92,8 @@ public class NDroidService extends Service {
 	 * Thread which manages all tasks related to event notification monitors.
 	 * This provides synchronization and thread safety for event trees and condition nodes.
 	 */
-	private static final HandlerThread eventThread = new HandlerThread(THREADTAG) {
+	private static final HandlerThread eventThread = new HandlerThread(THREADTAG, 
+			MetricExecutor.PRIORITY_EVENT) {
 
 		@Override
 		protected void onLooperPrepared() {
@@ -151,6 +165,32 @@ public class NDroidService extends Service {
 		return mBinder;
 	}
 
+	/**
+	 * Read current value of metric for the synchronous getMetric calls.  The cached
+	 * value of the metric group is used if it is within the freshness threshold of the
+	 * group, otherwise a one-shot update is requested and waited for, bounded by
+	 * timeout (and {@link #MAX_READ_TIMEOUT}).
+	 *
+	 * @param metric    integer representing metric (per {@link Metrics})
+	 * @param timeout    maximum time to wait for a fresh value (milliseconds)
+	 * @return    current value of metric, or NaN if unknown metric or not available
+	 */
+	private static double readMetric(int metric, long timeout) {
+		final MetricService<?> metricService = MetricService.getService(metric);
+		if (metricService == null) {
+			if (DebugLog.DEBUG) Log.d(TAG, "NDroidService.readMetric - Error, unknown " +
+					"metric: " + metric);
+			return Double.NaN;
+		}
+		double value = metricService.fetchMetricDouble(metric,
+				Math.min(timeout, MAX_READ_TIMEOUT));
+		if (Double.isNaN(value)) {
+			if (DebugLog.DEBUG) Log.d(TAG, "NDroidService.readMetric - no numeric value for " +
+					"metric: " + metric);
+		}
+		return value;
+	}
+
 	private final CimonInterface.Stub mBinder = new CimonInterface.Stub() {
 		
 		public int registerPeriodic(int metric, long period, long duration, boolean eavesdrop,
@@ -168,12 +208,208 @@ public class NDroidService extends Service {
 			//final long upTime = SystemClock.elapsedRealtime();
 			CimonDatabaseAdapter database = CimonDatabaseAdapter.getInstance(
 					MyApplication.getAppContext());
-			int monitorId = database.insertMonitor(curTime - upTime);
+			int monitorId = database.insertMonitor(curTime - upTime, 
+					period < SampleLog.HIGH_RATE_PERIOD);
 			
 			metricService.registerClient(metric, monitorId, period, duration, eavesdrop, callback);
 			return monitorId;
 		}
 		
+		public int registerBatchedPeriodic(int metric, long period, long duration, 
+				boolean eavesdrop, long maxLatency, int maxCount, Messenger callback) 
+				throws RemoteException {
+			if (DebugLog.DEBUG) Log.d(TAG, "NDroidService.registerBatchedPeriodic - metric: " + 
+				metric);
+			final MetricService<?> metricService = MetricService.getService(metric);
+			if (metricService == null) {
+				if (DebugLog.DEBUG) Log.d(TAG, "NDroidService.registerBatchedPeriodic - Error, " +
+						"unknown metric: " + metric);
+				return -1;
+			}
+			final long curTime = System.currentTimeMillis();
+			final long upTime = SystemClock.uptimeMillis();
+			CimonDatabaseAdapter database = CimonDatabaseAdapter.getInstance(
+					MyApplication.getAppContext());
+			int monitorId = database.insertMonitor(curTime - upTime, 
+					period < SampleLog.HIGH_RATE_PERIOD);
+			if (monitorId < 0) {
+				return -1;
+			}
+			
+			metricService.registerBatchedClient(metric, monitorId, period, duration, eavesdrop, 
+					Math.max(0, maxLatency), 
+					Math.max(1, Math.min(maxCount, SampleBatch.MAX_COUNT)), callback);
+			return monitorId;
+		}
+		
+		public int[] registerPeriodicBatch(int[] metrics, long[] periods, long duration, 
+				boolean eavesdrop, Messenger callback) throws RemoteException {
+			if (DebugLog.DEBUG) Log.d(TAG, "NDroidService.registerPeriodicBatch - metrics: " + 
+				metrics.length);
+			if (periods.length != metrics.length) {
+				throw new IllegalArgumentException("periods length " + periods.length + 
+						" does not match metrics length " + metrics.length);
+			}
+			CimonDatabaseAdapter database = CimonDatabaseAdapter.getInstance(
+					MyApplication.getAppContext());
+			return MonitorBatch.register(database, metrics, periods, duration, eavesdrop, 
+					callback);
+		}
+		
+		public ParcelFileDescriptor openStream(final int[] metrics, long period, 
+				long duration, int capacity, IBinder token, int[] monitorIds) 
+				throws RemoteException {
+			if (DebugLog.DEBUG) Log.d(TAG, "NDroidService.openStream - metrics: " + 
+				metrics.length);
+			if (monitorIds.length != metrics.length) {
+				throw new IllegalArgumentException("monitorIds length " + monitorIds.length + 
+						" does not match metrics length " + metrics.length);
+			}
+			if ((token == null) && (duration <= 0)) {
+				throw new IllegalArgumentException("continuous stream requires client token");
+			}
+			Arrays.fill(monitorIds, -1);
+			final SparseArray<int[]> groups = MonitorBatch.group(metrics);
+			if (groups.size() == 0) {
+				return null;
+			}
+			final StreamChannel stream;
+			try {
+				stream = StreamChannel.open(new File(getCacheDir(), StreamChannel.DIRECTORY), 
+						SampleRing.validCapacity(capacity));
+			} catch (IOException e) {
+				if (DebugLog.WARNING) Log.w(TAG, "NDroidService.openStream - unable to " +
+						"create stream: " + e.getMessage());
+				return null;
+			}
+			int count = 0;
+			for (int g = 0; g < groups.size(); g++) {
+				count += groups.valueAt(g).length;
+			}
+			final boolean[] useSampleLog = new boolean[count];
+			Arrays.fill(useSampleLog, period < SampleLog.HIGH_RATE_PERIOD);
+			final long curTime = System.currentTimeMillis();
+			final long upTime = SystemClock.uptimeMillis();
+			CimonDatabaseAdapter database = CimonDatabaseAdapter.getInstance(
+					MyApplication.getAppContext());
+			final int[] inserted = database.insertMonitors(curTime - upTime, useSampleLog);
+			
+			count = 0;
+			for (int g = 0; g < groups.size(); g++) {
+				for (int i : groups.valueAt(g)) {
+					monitorIds[i] = inserted[count++];
+				}
+			}
+			if (inserted[0] < 0) {
+				// monitor rows are inserted in a single transaction, so all failed
+				try {
+					stream.getDescriptor().close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				return null;
+			}
+			for (int i = 0; i < inserted.length; i++) {
+				stream.acquire();
+			}
+			for (int g = 0; g < groups.size(); g++) {
+				final int[] indices = groups.valueAt(g);
+				MetricService.getService(metrics[indices[0]]).registerStreamClients(metrics, 
+						monitorIds, period, indices, duration, stream);
+			}
+			if (token != null) {
+				final int[] streamIds = monitorIds.clone();
+				final boolean linked = stream.linkToClient(token, new IBinder.DeathRecipient() {
+					
+					public void binderDied() {
+						if (DebugLog.INFO) Log.i(TAG, "NDroidService.openStream - client died, " +
+								"removing " + streamIds.length + " streamed monitors");
+						MonitorBatch.unregister(metrics, streamIds);
+					}
+				});
+				if (!linked) {
+					MonitorBatch.unregister(metrics, streamIds);
+					return null;
+				}
+			}
+			return stream.getDescriptor();
+		}
+		
+		public void unregisterBatch(int[] metrics, int[] monitorIds) throws RemoteException {
+			if (DebugLog.DEBUG) Log.d(TAG, "NDroidService.unregisterBatch - metrics: " + 
+				metrics.length);
+			if (monitorIds.length != metrics.length) {
+				throw new IllegalArgumentException("monitorIds length " + monitorIds.length + 
+						" does not match metrics length " + metrics.length);
+			}
+			MonitorBatch.unregister(metrics, monitorIds);
+		}
+		
+		public double[] getSnapshot(int[] metrics) throws RemoteException {
+			if (DebugLog.DEBUG) Log.d(TAG, "NDroidService.getSnapshot - metrics: " + 
+				metrics.length);
+			final double[] snapshot = new double[metrics.length];
+			Arrays.fill(snapshot, Double.NaN);
+			final SparseArray<int[]> groups = MonitorBatch.group(metrics);
+			// groups with fresh published values are read without involving their thread
+			int stale = 0;
+			for (int g = 0; g < groups.size(); g++) {
+				final int[] indices = groups.valueAt(g);
+				if (MetricService.getService(metrics[indices[0]]).readSnapshot(metrics, 
+						indices, snapshot)) {
+					groups.setValueAt(g, null);
+				}
+				else {
+					stale++;
+				}
+			}
+			if (stale == 0) {
+				return snapshot;
+			}
+			final CountDownLatch done = new CountDownLatch(stale);
+			for (int g = 0; g < groups.size(); g++) {
+				final int[] indices = groups.valueAt(g);
+				if (indices == null) continue;
+				MetricService.getService(metrics[indices[0]]).postSnapshot(metrics, indices, 
+						snapshot, done);
+			}
+			try {
+				if (done.await(SNAPSHOT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+					return snapshot;
+				}
+				if (DebugLog.WARNING) Log.w(TAG, "NDroidService.getSnapshot - timed out " +
+						"waiting for " + done.getCount() + " metric groups");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			// late groups may still write into snapshot
+			return snapshot.clone();
+		}
+		
+		public int registerAdaptive(int metric, long minPeriod, long maxPeriod, 
+				float tolerance, long duration, Messenger callback) throws RemoteException {
+			if (DebugLog.DEBUG) Log.d(TAG, "NDroidService.registerAdaptive - metric: " + metric);
+			final MetricService<?> metricService = MetricService.getService(metric);
+			if (metricService == null) {
+				if (DebugLog.DEBUG) Log.i(TAG, "NDroidService.registerAdaptive - Error, unknown " +
+						"metric: " + metric);
+				return -1;
+			}
+			final long curTime = System.currentTimeMillis();
+			final long upTime = SystemClock.uptimeMillis();
+			CimonDatabaseAdapter database = CimonDatabaseAdapter.getInstance(
+					MyApplication.getAppContext());
+			int monitorId = database.insertMonitor(curTime - upTime, 
+					minPeriod < SampleLog.HIGH_RATE_PERIOD);
+			if (monitorId < 0) {
+				return -1;
+			}
+			
+			metricService.registerAdaptive(metric, monitorId, minPeriod, maxPeriod, tolerance, 
+					duration, callback);
+			return monitorId;
+		}
+		
 		public int registerEvent(String expression, long period,
 				PendingIntent callback) throws RemoteException {
 			if (DebugLog.DEBUG) Log.d(TAG, "NDroidService.registerEvent - callback: " + 
@@ -206,7 +442,21 @@ public class NDroidService extends Service {
 		public long getMetricLong(int metric, long timeout)
 				throws RemoteException {
 			if (DebugLog.DEBUG) Log.d(TAG, "NDroidService.getMetricLong - metric: " + metric);
-			return 0;
+			double value = readMetric(metric, timeout);
+			if (Double.isNaN(value)) return Long.MIN_VALUE;
+			return (long) value;
+		}
+		
+		public float getMetricFloat(int metric, long timeout)
+				throws RemoteException {
+			if (DebugLog.DEBUG) Log.d(TAG, "NDroidService.getMetricFloat - metric: " + metric);
+			return (float) readMetric(metric, timeout);
+		}
+		
+		public double getMetricDouble(int metric, long timeout)
+				throws RemoteException {
+			if (DebugLog.DEBUG) Log.d(TAG, "NDroidService.getMetricDouble - metric: " + metric);
+			return readMetric(metric, timeout);
 		}
 
 		public void unregisterPeriodic(int metric,
@@ -297,6 +547,10 @@ public class NDroidService extends Service {
 			}
 			return metricService.getMeasureCnt();
 		}
+
+		public long[] getWakeupStats() throws RemoteException {
+			return WakeupScheduler.getInstance().getStats();
+		}
 	};
 	
 }
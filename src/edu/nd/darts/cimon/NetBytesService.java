@@ -100,7 +100,7 @@ public final class NetBytesService extends MetricService<Long> {
 //		observerHandler = new Handler();
 		adminObserver = SystemObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -209,15 +209,22 @@ public final class NetBytesService extends MetricService<Long> {
 	}
 
 	@Override
-	Long getMetricValue(int metric) {
-		final long curTime = SystemClock.uptimeMillis();
-		if ((curTime - lastUpdate) > THIRTY_SECONDS) {
-			if (fetchValues() == NET_STATS) {
-				return null;
-			}
-			lastUpdate = curTime;
+	protected boolean refreshValues() {
+		if (fetchValues() == NET_STATS) {
+			return false;
 		}
-		return (Long) super.getMetricValue(metric);
+		publishValues(SystemClock.uptimeMillis());
+		return true;
+	}
+
+	/**
+	 * Returns the last published count of bytes, or null if none is fresh.  The
+	 * counters of TrafficStats are only read on the metric thread.
+	 */
+	@Override
+	Long getMetricValue(int metric) {
+		final double value = getPublishedDouble(metric);
+		return Double.isNaN(value) ? null : Long.valueOf((long) value);
 	}
 
 }
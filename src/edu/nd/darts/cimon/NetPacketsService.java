@@ -73,6 +73,7 @@ public final class NetPacketsService extends MetricService<Long> {
 			updateMetric = null;
 			return;
 		}
+		signalFetch();
 		long nextUpdate = Long.MAX_VALUE;
 		for (int i = 0; i < NET_STATS; i++) {
 //			final ValueNode<Long> node = (ValueNode<Long>) MetricNodes.getInstance().<Long>getNode(Metrics.NETPACKETS_CATEGORY + i);
@@ -42,7 +42,7 @@ import android.util.SparseArray;
  * @see MetricService
  *
  */
-public final class OrientationService extends MetricService<Float> {
+public final class OrientationService extends FloatMetricService {
 
 	private static final String TAG = "NDroid";
 	private static final int ORIENT_METRICS = 3;
@@ -72,6 +72,9 @@ public final class OrientationService extends MetricService<Float> {
 		}
 		groupId = Metrics.ORIENTATION;
 		metricsCount = ORIENT_METRICS;
+		// orientation is computed from accelerometer and magnetometer callbacks
+		lane = MetricExecutor.LANE_DEDICATED;
+		affinity = Metrics.ACCELEROMETER;
 		
 		if (AccelerometerService.getInstance() == null) {
 			if (DebugLog.INFO) Log.i(TAG, "OrientationService - sensor not supported on this system (accelerometer)");
@@ -83,14 +86,14 @@ public final class OrientationService extends MetricService<Float> {
 			supportedMetric = false;
 			return;
 		}
-		values = new Float[ORIENT_METRICS];
+		floatValues = new float[ORIENT_METRICS];
 		valueNodes = new SparseArray<ValueNode<Float>>();
 		freshnessThreshold = FIVE_SECONDS;
 //		observerHandler = new Handler();
 		adminObserver = SensorObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
 //		finishUpdates = new FinishPerformUpdates();
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -197,7 +200,7 @@ public final class OrientationService extends MetricService<Float> {
 		acceleration = null;
 		magnet = null;
 		for (int i = 0; i < ORIENT_METRICS; i++) {
-			values[i] = orientation[i];
+			floatValues[i] = orientation[i];
 		}
 		
 		// override of performUpdates();
@@ -104,7 +104,7 @@ public final class PhoneStateService extends MetricService<Long> {
 //		observerHandler = new Handler();
 		adminObserver = UserObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 		init();
 	}
 	
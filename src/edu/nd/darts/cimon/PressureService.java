@@ -36,7 +36,7 @@ import android.util.SparseArray;
  * @author darts
  *
  */
-public final class PressureService extends MetricService<Float> implements
+public final class PressureService extends FloatMetricService implements
 		SensorEventListener {
 
 	private static final String TAG = "NDroid";
@@ -60,6 +60,7 @@ public final class PressureService extends MetricService<Float> implements
 		}
 		groupId = Metrics.ATMOSPHERIC_PRESSURE;
 		metricsCount = PRESSURE_METRICS;
+		lane = MetricExecutor.LANE_DEDICATED;
 		Context context = MyApplication.getAppContext();
 		
 		mSensorManager = (SensorManager)context.getSystemService(Context.SENSOR_SERVICE);
@@ -70,13 +71,13 @@ public final class PressureService extends MetricService<Float> implements
 			mSensorManager = null;
 			return;
 		}
-		values = new Float[PRESSURE_METRICS];
+		floatValues = new float[PRESSURE_METRICS];
 		valueNodes = new SparseArray<ValueNode<Float>>();
 		freshnessThreshold = FIVE_MINUTES;
 //		observerHandler = new Handler();
 		adminObserver = SensorObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -138,7 +139,7 @@ public final class PressureService extends MetricService<Float> implements
 	 * @param event    barometer data received from onSensorChanged() event
 	 */
 	private void getPressureData(SensorEvent event) {
-		values[0] = event.values[0];
+		floatValues[0] = event.values[0];
 		
 		performUpdates();
 	}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import android.util.Log;
+
+/**
+ * Reader for files of the proc filesystem which are read on every update of a 
+ * metric group, such as /proc/stat or /proc/meminfo.  The file is kept open, and
+ * each {@link #read()} reads it again from offset 0 into the same buffer, where 
+ * it is parsed in place.  Numbers are parsed directly from the bytes of the file,
+ * so reading and parsing a file allocates no objects once the buffer has reached
+ * the size of the file.
+ * <p>
+ * Parsing follows a cursor through the buffer.  {@link #findLine(byte[])} and 
+ * {@link #nextLine()} move the cursor between lines, and {@link #nextLong(long)}
+ * and {@link #nextFloat(float)} parse the next number of the current line.  Keys
+ * to search for should be converted once with {@link #key(String)}, or placed in
+ * a {@link ProcKeyTable} to match lines regardless of their order with 
+ * {@link #lookupKey(ProcKeyTable)}.
+ * <p>
+ * A reader is not thread safe; callers which may read from several threads must
+ * synchronize.
+ * 
+ * @author darts
+ * 
+ * @see CpuService
+ * @see CpuUtilService
+ * @see MemoryService
+ *
+ */
+final class ProcFileReader {
+	
+	private static final String TAG = "NDroid";
+	/** Maximum size of buffer, larger files are truncated. */
+	private static final int MAX_CAPACITY = 65536;
+	
+	private final String path;
+	private RandomAccessFile file = null;
+	private byte[] buffer;
+	private int length = 0;
+	private int position = 0;
+	
+	/**
+	 * Create reader for file.  The file is opened on first read.
+	 * 
+	 * @param path    path of file
+	 * @param capacity    initial size of buffer, typically the expected file size.  
+	 *                      The buffer grows if the file is larger.
+	 */
+	ProcFileReader(String path, int capacity) {
+		this.path = path;
+		this.buffer = new byte[capacity];
+	}
+	
+	/**
+	 * Convert key to bytes, for searching with {@link #findLine(byte[])}.
+	 * 
+	 * @param key    ASCII key, such as "ctxt" or "MemTotal:"
+	 * @return    bytes of key
+	 */
+	static byte[] key(String key) {
+		final byte[] bytes = new byte[key.length()];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) key.charAt(i);
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Read current contents of file, and place cursor at start of file.
+	 * 
+	 * @return    true if file was read, false on failure
+	 */
+	boolean read() {
+		length = 0;
+		position = 0;
+		try {
+			if (file == null) {
+				file = new RandomAccessFile(path, "r");
+			}
+			while (true) {
+				file.seek(0);
+				length = 0;
+				int count;
+				while ((count = file.read(buffer, length, buffer.length - length)) > 0) {
+					length += count;
+				}
+				if ((length < buffer.length) || (buffer.length >= MAX_CAPACITY)) {
+					return true;
+				}
+				// file did not fit, grow buffer and read again
+				buffer = new byte[Math.min(buffer.length * 2, MAX_CAPACITY)];
+				if (DebugLog.DEBUG) Log.d(TAG, "ProcFileReader.read - buffer of " + path + 
+						" grown to " + buffer.length);
+			}
+		}
+		catch (IOException e) {
+			if (DebugLog.WARNING) Log.w(TAG, "ProcFileReader.read - read " + path + " failed!");
+			close();
+			length = 0;
+			return false;
+		}
+	}
+	
+	/**
+	 * Move cursor to start of next line.
+	 * 
+	 * @return    true if there is a next line, false at end of file
+	 */
+	boolean nextLine() {
+		while ((position < length) && (buffer[position] != '\n')) {
+			position++;
+		}
+		if (position >= length) {
+			return false;
+		}
+		position++;
+		return (position < length);
+	}
+	
+	/**
+	 * Check if current line starts with key, and if so, move cursor past key.  
+	 * Cursor must be at the start of a line.
+	 * 
+	 * @param key    key to compare, from {@link #key(String)}
+	 * @return    true if line starts with key
+	 */
+	boolean startsWith(byte[] key) {
+		if (position + key.length > length) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (buffer[position + i] != key[i]) {
+				return false;
+			}
+		}
+		position += key.length;
+		return true;
+	}
+	
+	/**
+	 * Look up next token of current line as key, such as the key at the start of a 
+	 * line of /proc/meminfo or the device name of /proc/diskstats.  The key ends at 
+	 * the first blank or ':', and the cursor is moved past the key and its ':'.
+	 * 
+	 * @param table    table of keys to look up
+	 * @return    slot of key in table, -1 if key is not in table
+	 */
+	int lookupKey(ProcKeyTable table) {
+		if (!skipBlanks()) {
+			return -1;
+		}
+		final int start = position;
+		while (position < length) {
+			final byte b = buffer[position];
+			if ((b == ' ') || (b == '\t') || (b == ':') || (b == '\n')) {
+				break;
+			}
+			position++;
+		}
+		final int slot = table.get(buffer, start, position);
+		if ((position < length) && (buffer[position] == ':')) {
+			position++;
+		}
+		return slot;
+	}
+	
+	/**
+	 * Move cursor past key at start of next line which starts with key, searching 
+	 * from the current line (which must be at its start) onwards.
+	 * 
+	 * @param key    key to search for, from {@link #key(String)}
+	 * @return    true if line was found, false if no further line starts with key
+	 */
+	boolean findLine(byte[] key) {
+		do {
+			if (startsWith(key)) {
+				return true;
+			}
+		} while (nextLine());
+		return false;
+	}
+	
+	/**
+	 * Skip spaces and tabs of current line.
+	 * 
+	 * @return    true if cursor is at a token of current line
+	 */
+	private boolean skipBlanks() {
+		while (position < length) {
+			final byte b = buffer[position];
+			if ((b != ' ') && (b != '\t')) {
+				return (b != '\n');
+			}
+			position++;
+		}
+		return false;
+	}
+	
+	/**
+	 * Parse next integer of current line.  Cursor is moved past the number.
+	 * 
+	 * @param defaultValue    value to return if current line holds no further number
+	 * @return    value of number
+	 */
+	long nextLong(long defaultValue) {
+		if (!skipBlanks()) {
+			return defaultValue;
+		}
+		boolean negative = false;
+		if (buffer[position] == '-') {
+			negative = true;
+			position++;
+		}
+		final int start = position;
+		long value = 0;
+		while (position < length) {
+			final int digit = buffer[position] - '0';
+			if ((digit < 0) || (digit > 9)) {
+				break;
+			}
+			value = value * 10 + digit;
+			position++;
+		}
+		if (position == start) {
+			return defaultValue;
+		}
+		return negative ? -value : value;
+	}
+	
+	/**
+	 * Parse next decimal number of current line, such as "0.57".  Cursor is moved
+	 * past the number.
+	 * 
+	 * @param defaultValue    value to return if current line holds no further number
+	 * @return    value of number
+	 */
+	float nextFloat(float defaultValue) {
+		if (!skipBlanks()) {
+			return defaultValue;
+		}
+		final boolean negative = (buffer[position] == '-');
+		final long whole = nextLong(Long.MIN_VALUE);
+		if (whole == Long.MIN_VALUE) {
+			return defaultValue;
+		}
+		if ((position >= length) || (buffer[position] != '.')) {
+			return whole;
+		}
+		position++;
+		long fraction = 0;
+		double scale = 1;
+		while (position < length) {
+			final int digit = buffer[position] - '0';
+			if ((digit < 0) || (digit > 9)) {
+				break;
+			}
+			fraction = fraction * 10 + digit;
+			scale *= 10;
+			position++;
+		}
+		final double magnitude = Math.abs(whole) + (fraction / scale);
+		return (float) (negative ? -magnitude : magnitude);
+	}
+	
+	/**
+	 * Return first character of next token of current line, without moving past it.
+	 * 
+	 * @return    first character of token, 0 if current line holds no further token
+	 */
+	byte peekToken() {
+		if (!skipBlanks()) {
+			return 0;
+		}
+		return buffer[position];
+	}
+	
+	/**
+	 * Move cursor past the following tokens of current line, of any content.
+	 * 
+	 * @param count    number of tokens to skip
+	 * @return    true if all tokens were skipped, false at end of line
+	 */
+	boolean skipTokens(int count) {
+		for (int i = 0; i < count; i++) {
+			if (!skipBlanks()) {
+				return false;
+			}
+			while (position < length) {
+				final byte b = buffer[position];
+				if ((b == ' ') || (b == '\t') || (b == '\n')) {
+					break;
+				}
+				position++;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Move cursor past the last occurrence of character in current line, such as
+	 * the ')' closing the command name of /proc/[pid]/stat, which may itself hold
+	 * spaces and parentheses.
+	 * 
+	 * @param c    character to search for
+	 * @return    true if character was found, false if cursor was not moved
+	 */
+	boolean skipPastLast(byte c) {
+		int found = -1;
+		for (int i = position; (i < length) && (buffer[i] != '\n'); i++) {
+			if (buffer[i] == c) {
+				found = i;
+			}
+		}
+		if (found < 0) {
+			return false;
+		}
+		position = found + 1;
+		return true;
+	}
+	
+	/**
+	 * Close file.  It is opened again on the next read.
+	 */
+	void close() {
+		if (file != null) {
+			try {
+				file.close();
+			}
+			catch (IOException e) {
+				if (DebugLog.WARNING) Log.w(TAG, "ProcFileReader.close - close " + path + " failed!");
+			}
+			file = null;
+		}
+	}
+	
+}
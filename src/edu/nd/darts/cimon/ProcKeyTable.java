@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+/**
+ * Hash table mapping keys of proc files, such as "MemTotal" of /proc/meminfo or 
+ * "pgmajfault" of /proc/vmstat, to slots of a metric group.  Lookups hash the key 
+ * directly from the buffer of a {@link ProcFileReader}, so matching the lines of a 
+ * file against the table neither allocates nor depends on the order of the file.  
+ * Several keys may map to the same slot, for counters which are summed.
+ * <p>
+ * The table uses open addressing, and is immutable once constructed.
+ * 
+ * @author darts
+ * 
+ * @see ProcFileReader#lookupKey(ProcKeyTable)
+ *
+ */
+final class ProcKeyTable {
+	
+	private final byte[][] keys;
+	private final int[] slots;
+	private final int mask;
+	
+	/**
+	 * Create table of keys.
+	 * 
+	 * @param names    ASCII keys, without trailing ':'
+	 * @param slots    slot for each key, at the same index as its key
+	 */
+	ProcKeyTable(String[] names, int[] slots) {
+		int capacity = 8;
+		while (capacity < (names.length * 2)) {
+			capacity <<= 1;
+		}
+		mask = capacity - 1;
+		keys = new byte[capacity][];
+		this.slots = new int[capacity];
+		for (int i = 0; i < names.length; i++) {
+			final byte[] key = ProcFileReader.key(names[i]);
+			int index = hash(key, 0, key.length) & mask;
+			while (keys[index] != null) {
+				index = (index + 1) & mask;
+			}
+			keys[index] = key;
+			this.slots[index] = slots[i];
+		}
+	}
+	
+	/**
+	 * Look up key held in buffer.
+	 * 
+	 * @param buffer    buffer holding key
+	 * @param start    offset of first byte of key
+	 * @param end    offset following last byte of key
+	 * @return    slot of key, -1 if key is not in table
+	 */
+	int get(byte[] buffer, int start, int end) {
+		int index = hash(buffer, start, end) & mask;
+		byte[] key;
+		while ((key = keys[index]) != null) {
+			if (matches(key, buffer, start, end)) {
+				return slots[index];
+			}
+			index = (index + 1) & mask;
+		}
+		return -1;
+	}
+	
+	private static boolean matches(byte[] key, byte[] buffer, int start, int end) {
+		if (key.length != (end - start)) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (key[i] != buffer[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * FNV-1a hash of bytes.
+	 */
+	private static int hash(byte[] buffer, int start, int end) {
+		int hash = 0x811c9dc5;
+		for (int i = start; i < end; i++) {
+			hash ^= buffer[i];
+			hash *= 0x01000193;
+		}
+		return hash ^ (hash >>> 16);
+	}
+	
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * Monitoring service for the processes consuming the most processor time and memory.
+ * For each rank, from 0 (highest consumer) to {@link Metrics#PROCESS_TOP_N} - 1, 
+ * the group provides the process id and processor time of the process at that rank 
+ * of processor time consumed, and the process id and resident memory of the process 
+ * at that rank of memory.  Use {@link Metrics#processMetric(int, int)} to obtain the 
+ * metric for a field of a rank.  As these are ordinary metrics, they may be used in
+ * conditions of {@link ConditionTree} expressions, such as an event when the top 
+ * process consumes more than a threshold of processor time.
+ * <p>
+ * Per-rank metrics:
+ * <li>CPU process	: process id of process at rank of processor time
+ * <li>CPU 	: jiffies (user and system) of that process since previous update
+ * <li>Memory process	: process id of process at rank of resident memory
+ * <li>Memory	: resident memory of that process (kB)
+ * <p>
+ * By default all processes are ranked.  This may be limited to a watched set of 
+ * processes with {@link #setWatched(int[], String[])}.
+ * 
+ * @author darts
+ * 
+ * @see FloatMetricService
+ * @see ProcessStats
+ *
+ */
+public final class ProcessService extends FloatMetricService {
+	
+	private static final String TAG = "NDroid";
+	private static final int PROCESS_METRICS = Metrics.PROCESS_TOP_N * Metrics.PROCESS_FIELDS;
+	private static final long FIVE_SECONDS = 5000;
+	private static final int ONE_SECOND = 1000;
+	
+	// NOTE: title and string array must be defined above instance,
+	//   otherwise, they will be null in constructor
+	private static final String title = "Top processes";
+	private static final String[] fields = {"CPU process", 
+											"CPU", 
+											"Memory process", 
+											"Memory"};
+	private static final ProcessService INSTANCE = new ProcessService();
+	
+	private final ProcessStats stats = new ProcessStats("/proc");
+	
+	private ProcessService() {
+		if (DebugLog.DEBUG) Log.d(TAG, "ProcessService - constructor");
+		if (INSTANCE != null) {
+			throw new IllegalStateException("ProcessService already instantiated");
+		}
+		groupId = Metrics.PROCESS_CATEGORY;
+		metricsCount = PROCESS_METRICS;
+		
+		floatValues = new float[PROCESS_METRICS];
+		valueNodes = new SparseArray<ValueNode<Float>>();
+		freshnessThreshold = FIVE_SECONDS;
+//		observerHandler = new Handler();
+		adminObserver = SystemObserver.getInstance();
+		adminObserver.registerObservable(this, groupId);
+		schedules = new ScheduleIndex();
+			init();
+	}
+	
+	public static ProcessService getInstance() {
+		if (DebugLog.DEBUG) Log.d(TAG, "ProcessService.getInstance - get single instance");
+		if (!INSTANCE.supportedMetric) return null;
+		return INSTANCE;
+	}
+
+	@Override
+	void insertDatabaseEntries() {
+		Context context = MyApplication.getAppContext();
+		CimonDatabaseAdapter database = CimonDatabaseAdapter.getInstance(context);
+		
+		// insert metric group information in database
+		database.insertOrReplaceMetricInfo(groupId, title, "Top " + Metrics.PROCESS_TOP_N + 
+				" processes", SUPPORTED, 0, ONE_SECOND, "Jiffies per process, memory in kB", 
+				"1 jiffie", Metrics.TYPE_SYSTEM);
+		// insert information for metrics in group into database
+		for (int i = 0; i < Metrics.PROCESS_TOP_N; i++) {
+			for (int j = 0; j < Metrics.PROCESS_FIELDS; j++) {
+				final String units;
+				final float max;
+				switch (j) {
+					case Metrics.PROCESS_CPU:
+						units = "jiffies";
+						max = 1000;
+						break;
+					case Metrics.PROCESS_MEM:
+						units = "kB";
+						max = 4194304;
+						break;
+					default:
+						units = "";
+						max = 65536;
+						break;
+				}
+				database.insertOrReplaceMetrics(Metrics.processMetric(i, j), groupId, 
+						"Top " + (i + 1) + " " + fields[j], units, max);
+			}
+		}
+	}
+	
+	/**
+	 * Limit processes ranked by this service to a watched set.  Processes are watched
+	 * if either their id or their name (package name for applications) is listed.  
+	 * If both are null, all processes are watched.
+	 * 
+	 * @param pids    process ids to watch, may be null
+	 * @param names    process or package names to watch, may be null
+	 */
+	public synchronized void setWatched(int[] pids, String[] names) {
+		if (DebugLog.DEBUG) Log.d(TAG, "ProcessService.setWatched - update watched processes");
+		stats.setWatched(pids, names);
+	}
+	
+	/**
+	 * Return name of process, such as a process id reported by this service.
+	 * 
+	 * @param pid    process id
+	 * @return    name of process (package name for applications), null if unknown
+	 */
+	public synchronized String getProcessName(int pid) {
+		return stats.getName(pid);
+	}
+	
+	@Override
+	void getMetricInfo() {
+		fetchValues();
+		
+		performUpdates();
+	}
+
+	/**
+	 * Sample watched processes, and rank top consumers.
+	 */
+	private synchronized void fetchValues() {
+		if (DebugLog.DEBUG) Log.d(TAG, "ProcessService.fetchValues - updating process values");
+		stats.update(floatValues);
+	}
+
+	/**
+	 * Processor time is counted in jiffies since the previous update, so processes
+	 * are only sampled on the schedule of the group (one-shot reads wait for the 
+	 * next update), and the last published values are returned here.
+	 */
+	@Override
+	double getMetricDouble(int metric) {
+		return getPublishedDouble(metric);
+	}
+	
+}
@@ -0,0 +1,471 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * Per-process statistics, for {@link ProcessService}.  Each update samples 
+ * /proc/[pid]/stat of every watched process, computing the processor time (user and 
+ * system jiffies) it consumed since the previous update along with its resident 
+ * memory, and ranks the top {@link Metrics#PROCESS_TOP_N} consumers of each.
+ * <p>
+ * The list of processes is cached.  /proc is listed again only when the count of
+ * forks since boot (the processes line of /proc/stat) changed, and at most once 
+ * per {@link #REFRESH_INTERVAL}, as threads are counted as forks too.  A process 
+ * which can no longer be sampled (it exited, or its id was reused) is dropped 
+ * without listing /proc; a process which reuses its id is found by the next 
+ * listing.  The watched set may be limited to process ids and/or process names 
+ * (the package name for application processes, from /proc/[pid]/cmdline); by 
+ * default all processes are watched.  When only process ids are watched, /proc is
+ * never listed, and ids which can no longer be sampled are dropped from the set.
+ * 
+ * @author darts
+ * 
+ * @see ProcessService
+ *
+ */
+final class ProcessStats {
+	
+	private static final String TAG = "NDroid";
+	/** Size of memory pages counted by resident memory of /proc/[pid]/stat. */
+	private static final int PAGE_KB = 4;
+	/** 
+	 * Maximum stat files kept open between updates.  Stat files of further processes 
+	 * are opened and closed on each update, to bound the file descriptors in use.
+	 */
+	private static final int KEEP_OPEN = 256;
+	/** 
+	 * Times the name of a process which is not watched is checked again.  Application 
+	 * processes are forked from zygote, and take their package name shortly after.
+	 */
+	private static final int NAME_CHECKS = 3;
+	private static final byte CLOSE_PAREN = ')';
+	private static final byte[] PROCESSES_KEY = ProcFileReader.key("processes ");
+	/** Minimum time between listings of /proc (milliseconds). */
+	static final long REFRESH_INTERVAL = 5000;
+	
+	/**
+	 * Cached state of a single process.
+	 */
+	private static final class Entry {
+		final int pid;
+		final ProcFileReader stat;
+		String name = null;
+		boolean watched = false;
+		int nameChecks = 0;
+		boolean present = true;
+		boolean open = false;
+		long startTime = -1;
+		long jiffies = 0;
+		float cpu = 0;
+		float rss = 0;
+		
+		Entry(int pid, String path) {
+			this.pid = pid;
+			stat = new ProcFileReader(path, 512);
+		}
+	}
+	
+	private final String procDir;
+	private final ProcFileReader statReader;
+	private final SparseArray<Entry> entries = new SparseArray<Entry>();
+	private final Entry[] cpuTop = new Entry[Metrics.PROCESS_TOP_N];
+	private final Entry[] memTop = new Entry[Metrics.PROCESS_TOP_N];
+	private final byte[] nameBuffer = new byte[128];
+	private int[] watchedPids = null;
+	private String[] watchedNames = null;
+	private int openFiles = 0;
+	private long forks = -1;
+	private long lastRefresh = 0;
+	/** True if list of processes must be refreshed on next update, such as when 
+	 *  the watched set changed. */
+	private boolean stale = true;
+	private int refreshCount = 0;
+	
+	/**
+	 * Create statistics for processes of proc filesystem.
+	 * 
+	 * @param procDir    mount point of proc filesystem, typically /proc
+	 */
+	ProcessStats(String procDir) {
+		this.procDir = procDir;
+		statReader = new ProcFileReader(procDir + "/stat", 4096);
+	}
+	
+	/**
+	 * Limit processes sampled to a watched set.  Processes are watched if either their
+	 * id or their name is listed.  If both are null, all processes are watched.
+	 * 
+	 * @param pids    process ids to watch, may be null
+	 * @param names    process or package names to watch, may be null
+	 */
+	void setWatched(int[] pids, String[] names) {
+		watchedPids = ((pids == null) || (pids.length == 0)) ? null : pids.clone();
+		watchedNames = ((names == null) || (names.length == 0)) ? null : names.clone();
+		for (int i = entries.size() - 1; i >= 0; i--) {
+			entries.valueAt(i).stat.close();
+		}
+		entries.clear();
+		openFiles = 0;
+		stale = true;
+	}
+	
+	/**
+	 * Return name of process, from its command line.
+	 * 
+	 * @param pid    process id
+	 * @return    name of process, null if process is not known
+	 */
+	String getName(int pid) {
+		final Entry entry = entries.get(pid);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.name == null) {
+			entry.name = readName(pid);
+		}
+		return entry.name;
+	}
+	
+	/**
+	 * Number of times the list of processes was refreshed.
+	 * 
+	 * @return    count of refreshes
+	 */
+	int getRefreshCount() {
+		return refreshCount;
+	}
+	
+	/**
+	 * Sample all watched processes, and store top consumers in values.
+	 * 
+	 * @param values    array to store values in, of at least 
+	 *                    {@link Metrics#PROCESS_TOP_N} * {@link Metrics#PROCESS_FIELDS} 
+	 *                    entries
+	 * @return    number of processes sampled
+	 */
+	int update(float[] values) {
+		if (checkChurn()) {
+			refresh();
+		}
+		for (int i = 0; i < Metrics.PROCESS_TOP_N; i++) {
+			cpuTop[i] = null;
+			memTop[i] = null;
+		}
+		int count = 0;
+		for (int i = entries.size() - 1; i >= 0; i--) {
+			final Entry entry = entries.valueAt(i);
+			if (!entry.watched) {
+				continue;
+			}
+			if (!sample(entry)) {
+				// process exited, or its id was reused by a new process
+				unwatchPid(entry.pid);
+				removeAt(i);
+				continue;
+			}
+			rank(cpuTop, entry, entry.cpu, false);
+			rank(memTop, entry, entry.rss, true);
+			count++;
+		}
+		for (int i = 0; i < Metrics.PROCESS_TOP_N; i++) {
+			final int field = i * Metrics.PROCESS_FIELDS;
+			final Entry cpu = cpuTop[i];
+			final Entry mem = memTop[i];
+			values[field + Metrics.PROCESS_CPU_PID] = (cpu == null) ? 0 : cpu.pid;
+			values[field + Metrics.PROCESS_CPU] = (cpu == null) ? 0 : cpu.cpu;
+			values[field + Metrics.PROCESS_MEM_PID] = (mem == null) ? 0 : mem.pid;
+			values[field + Metrics.PROCESS_MEM] = (mem == null) ? 0 : mem.rss;
+		}
+		return count;
+	}
+	
+	/**
+	 * Check for processes created since the previous listing, from the count of 
+	 * forks of /proc/stat.  The count is only read once {@link #REFRESH_INTERVAL} 
+	 * has passed since the previous listing.  If it cannot be read, /proc is listed 
+	 * every interval.
+	 * 
+	 * @return    true if list of processes must be refreshed
+	 */
+	private boolean checkChurn() {
+		if ((watchedNames == null) && (watchedPids != null)) {
+			// only watched ids, new processes are never watched
+			return stale;
+		}
+		if (!stale && ((SystemClock.uptimeMillis() - lastRefresh) < REFRESH_INTERVAL)) {
+			return false;
+		}
+		final long count = readForks();
+		if (!stale && (count >= 0) && (count == forks)) {
+			return false;
+		}
+		forks = count;
+		return true;
+	}
+	
+	/**
+	 * Read count of forks since boot, from /proc/stat.
+	 * 
+	 * @return    count of forks, -1 if it could not be read
+	 */
+	private long readForks() {
+		if (!statReader.read() || !statReader.findLine(PROCESSES_KEY)) {
+			return -1;
+		}
+		return statReader.nextLong(-1);
+	}
+	
+	/**
+	 * Remove process id from watched ids, once it can no longer be sampled.
+	 */
+	private void unwatchPid(int pid) {
+		if (watchedPids == null) {
+			return;
+		}
+		for (int i = 0; i < watchedPids.length; i++) {
+			if (watchedPids[i] == pid) {
+				final int[] pids = new int[watchedPids.length - 1];
+				System.arraycopy(watchedPids, 0, pids, 0, i);
+				System.arraycopy(watchedPids, i + 1, pids, i, pids.length - i);
+				watchedPids = pids;
+				if (DebugLog.DEBUG) Log.d(TAG, "ProcessStats.unwatchPid - pid " + pid + 
+						" no longer watched");
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Refresh cached list of processes.  Processes which are new are added, and 
+	 * those which no longer exist are removed.
+	 */
+	private void refresh() {
+		if (DebugLog.DEBUG) Log.d(TAG, "ProcessStats.refresh - refresh process list");
+		stale = false;
+		lastRefresh = SystemClock.uptimeMillis();
+		refreshCount++;
+		if (watchedNames == null) {
+			if (watchedPids != null) {
+				// only watched ids, no need to list processes
+				for (int pid : watchedPids) {
+					if (entries.get(pid) == null) {
+						addEntry(pid).watched = true;
+					}
+				}
+				return;
+			}
+		}
+		final String[] files = new File(procDir).list();
+		if (files == null) {
+			if (DebugLog.WARNING) Log.w(TAG, "ProcessStats.refresh - list " + procDir + " failed!");
+			return;
+		}
+		for (int i = entries.size() - 1; i >= 0; i--) {
+			entries.valueAt(i).present = false;
+		}
+		for (String file : files) {
+			final int pid = parsePid(file);
+			if (pid <= 0) {
+				continue;
+			}
+			Entry entry = entries.get(pid);
+			if (entry == null) {
+				entry = addEntry(pid);
+			}
+			entry.present = true;
+			if (!entry.watched && (entry.nameChecks < NAME_CHECKS)) {
+				entry.watched = isWatched(entry);
+			}
+		}
+		for (int i = entries.size() - 1; i >= 0; i--) {
+			if (!entries.valueAt(i).present) {
+				removeAt(i);
+			}
+		}
+	}
+	
+	private Entry addEntry(int pid) {
+		final Entry entry = new Entry(pid, procDir + "/" + pid + "/stat");
+		entries.put(pid, entry);
+		return entry;
+	}
+	
+	private void removeAt(int index) {
+		final Entry entry = entries.valueAt(index);
+		if (entry.open) {
+			entry.stat.close();
+			openFiles--;
+		}
+		entries.removeAt(index);
+	}
+	
+	/**
+	 * Check if process belongs to watched set, reading its name if required.
+	 */
+	private boolean isWatched(Entry entry) {
+		if ((watchedPids == null) && (watchedNames == null)) {
+			return true;
+		}
+		if (watchedPids != null) {
+			for (int pid : watchedPids) {
+				if (pid == entry.pid) {
+					return true;
+				}
+			}
+		}
+		if (watchedNames != null) {
+			entry.nameChecks++;
+			entry.name = readName(entry.pid);
+			if (entry.name != null) {
+				for (String name : watchedNames) {
+					if (name.equals(entry.name)) {
+						return true;
+					}
+				}
+			}
+		}
+		else {
+			entry.nameChecks = NAME_CHECKS;
+		}
+		return false;
+	}
+	
+	/**
+	 * Sample stat of process.  Fields follow the command name, which is enclosed in
+	 * parentheses: utime and stime are fields 14 and 15, starttime field 22, and rss
+	 * field 24.
+	 * 
+	 * @return    true if process was sampled, false if it no longer exists
+	 */
+	private boolean sample(Entry entry) {
+		final ProcFileReader stat = entry.stat;
+		final boolean read = stat.read();
+		if (!entry.open) {
+			if (openFiles < KEEP_OPEN) {
+				entry.open = true;
+				openFiles++;
+			}
+			else {
+				stat.close();
+			}
+		}
+		if (!read || !stat.skipPastLast(CLOSE_PAREN) || !stat.skipTokens(11)) {
+			return false;
+		}
+		final long jiffies = stat.nextLong(0) + stat.nextLong(0);
+		stat.skipTokens(6);
+		final long startTime = stat.nextLong(-1);
+		stat.skipTokens(1);
+		final long rss = stat.nextLong(0);
+		if (startTime != entry.startTime) {
+			if (entry.startTime >= 0) {
+				return false;
+			}
+			entry.startTime = startTime;
+			entry.cpu = 0;
+		}
+		else {
+			entry.cpu = (jiffies >= entry.jiffies) ? (jiffies - entry.jiffies) : 0;
+		}
+		entry.jiffies = jiffies;
+		entry.rss = rss * PAGE_KB;
+		return true;
+	}
+	
+	/**
+	 * Insert process into ranking of top consumers, if it ranks high enough.
+	 */
+	private static void rank(Entry[] top, Entry entry, float value, boolean memory) {
+		int i = top.length;
+		while ((i > 0) && ((top[i - 1] == null) || 
+				(value > (memory ? top[i - 1].rss : top[i - 1].cpu)))) {
+			i--;
+		}
+		if (i >= top.length) {
+			return;
+		}
+		for (int j = top.length - 1; j > i; j--) {
+			top[j] = top[j - 1];
+		}
+		top[i] = entry;
+	}
+	
+	/**
+	 * Parse process id from name of directory in /proc.
+	 * 
+	 * @return    process id, -1 if name is not numeric
+	 */
+	private static int parsePid(String file) {
+		int pid = 0;
+		final int length = file.length();
+		if (length == 0) {
+			return -1;
+		}
+		for (int i = 0; i < length; i++) {
+			final int digit = file.charAt(i) - '0';
+			if ((digit < 0) || (digit > 9)) {
+				return -1;
+			}
+			pid = pid * 10 + digit;
+		}
+		return pid;
+	}
+	
+	/**
+	 * Read name of process, which is the first argument of its command line.
+	 * 
+	 * @return    name of process, null for kernel threads or if process has exited
+	 */
+	private String readName(int pid) {
+		FileInputStream stream = null;
+		try {
+			stream = new FileInputStream(procDir + "/" + pid + "/cmdline");
+			final int count = stream.read(nameBuffer);
+			int length = 0;
+			while ((length < count) && (nameBuffer[length] != 0) && 
+					(nameBuffer[length] != '\n')) {
+				length++;
+			}
+			return (length == 0) ? null : new String(nameBuffer, 0, length);
+		}
+		catch (IOException e) {
+			return null;
+		}
+		finally {
+			if (stream != null) {
+				try {
+					stream.close();
+				}
+				catch (IOException ie) {
+					if (DebugLog.WARNING) Log.w(TAG, "ProcessStats.readName - close cmdline failed!");
+				}
+			}
+		}
+	}
+	
+}
@@ -36,7 +36,7 @@ import android.util.SparseArray;
  * @author darts
  *
  */
-public final class ProximityService extends MetricService<Float> implements
+public final class ProximityService extends FloatMetricService implements
 		SensorEventListener {
 
 	private static final String TAG = "NDroid";
@@ -60,6 +60,7 @@ public final class ProximityService extends MetricService<Float> implements
 		}
 		groupId = Metrics.PROXIMITY;
 		metricsCount = PROXIMITY_METRICS;
+		lane = MetricExecutor.LANE_DEDICATED;
 		Context context = MyApplication.getAppContext();
 		
 		mSensorManager = (SensorManager)context.getSystemService(Context.SENSOR_SERVICE);
@@ -70,13 +71,13 @@ public final class ProximityService extends MetricService<Float> implements
 			mSensorManager = null;
 			return;
 		}
-		values = new Float[PROXIMITY_METRICS];
+		floatValues = new float[PROXIMITY_METRICS];
 		valueNodes = new SparseArray<ValueNode<Float>>();
 		freshnessThreshold = FIVE_SECONDS;
 //		observerHandler = new Handler();
 		adminObserver = SensorObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -138,7 +139,7 @@ public final class ProximityService extends MetricService<Float> implements
 	 * @param event    proximity sensor data received from onSensorChanged() event
 	 */
 	private void getProximityData(SensorEvent event) {
-		values[0] = event.values[0];
+		floatValues[0] = event.values[0];
 		
 		performUpdates();
 	}
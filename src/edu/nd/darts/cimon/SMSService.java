@@ -118,7 +118,7 @@ public final class SMSService extends MetricService<Long> {
 		resolver = MyApplication.getAppContext().getContentResolver();
 		adminObserver = UserObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 		init();
 	}
 	
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import java.util.Arrays;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Batch of samples of a metric delivered to a client in a single message.
+ * Monitors registered with batched delivery receive messages with the "what"
+ * field set to metric, arg1 set to the count of samples, and the batch stored
+ * in the message data under {@link #KEY}.  Timestamps and values are held in
+ * parallel primitive arrays, so no object is created per sample.
+ * <p>
+ * Clients should set the class loader of the message data before reading the 
+ * batch:
+ * <pre>
+ * Bundle data = msg.getData();
+ * data.setClassLoader(SampleBatch.class.getClassLoader());
+ * SampleBatch batch = data.getParcelable(SampleBatch.KEY);
+ * </pre>
+ * 
+ * @author darts
+ * 
+ * @see CimonInterface
+ * @see ValueNode
+ *
+ */
+public final class SampleBatch implements Parcelable {
+
+	/** Key of batch in data bundle of delivery messages. */
+	public static final String KEY = "samples";
+	/** Maximum number of samples delivered in one batch, to stay well within 
+	 *  binder transaction limits. */
+	public static final int MAX_COUNT = 1000;
+	/** Initial capacity of batch arrays. */
+	private static final int INITIAL_CAPACITY = 16;
+	
+	private final int metric;
+	private long[] timestamps;
+	private float[] values;
+	private int size;
+	
+	/**
+	 * Empty batch of samples for metric.
+	 * 
+	 * @param metric    integer representing metric (per {@link Metrics})
+	 * @param capacity    expected number of samples in batch
+	 */
+	SampleBatch(int metric, int capacity) {
+		this.metric = metric;
+		capacity = Math.max(1, Math.min(capacity, INITIAL_CAPACITY));
+		timestamps = new long[capacity];
+		values = new float[capacity];
+		size = 0;
+	}
+	
+	private SampleBatch(Parcel source) {
+		metric = source.readInt();
+		timestamps = source.createLongArray();
+		values = source.createFloatArray();
+		size = timestamps.length;
+	}
+	
+	/**
+	 * Append a new sample to batch, growing arrays if needed.
+	 * 
+	 * @param timestamp    timestamp of sample, from system uptime in milliseconds
+	 * @param value    value of sample
+	 * @return    count of samples in batch
+	 */
+	int add(long timestamp, float value) {
+		if (size == timestamps.length) {
+			int capacity = Math.min(size * 2, MAX_COUNT);
+			timestamps = Arrays.copyOf(timestamps, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		timestamps[size] = timestamp;
+		values[size] = value;
+		return ++size;
+	}
+	
+	/**
+	 * Trim arrays to count of samples, before batch is sent.  Batch must not be 
+	 * modified afterwards, as clients in this process receive the same object.
+	 */
+	void trim() {
+		if (size < timestamps.length) {
+			timestamps = Arrays.copyOf(timestamps, size);
+			values = Arrays.copyOf(values, size);
+		}
+	}
+	
+	/**
+	 * Return metric which samples belong to.
+	 * 
+	 * @return    integer representing metric (per {@link Metrics})
+	 */
+	public int getMetric() {
+		return metric;
+	}
+	
+	/**
+	 * Return number of samples in batch.
+	 * 
+	 * @return    count of samples
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Return timestamp of first sample in batch.
+	 * 
+	 * @return    timestamp, from system uptime in milliseconds, or 0 if batch is empty
+	 */
+	public long getFirstTimestamp() {
+		return (size == 0) ? 0 : timestamps[0];
+	}
+	
+	/**
+	 * Return timestamps of samples, from system uptime in milliseconds.  Only the 
+	 * first {@link #size()} entries are valid.
+	 * 
+	 * @return    array of timestamps
+	 */
+	public long[] getTimestamps() {
+		return timestamps;
+	}
+	
+	/**
+	 * Return values of samples.  Only the first {@link #size()} entries are valid.
+	 * 
+	 * @return    array of values
+	 */
+	public float[] getValues() {
+		return values;
+	}
+	
+	public int describeContents() {
+		return 0;
+	}
+
+	public void writeToParcel(Parcel dest, int flags) {
+		trim();
+		dest.writeInt(metric);
+		dest.writeLongArray(timestamps);
+		dest.writeFloatArray(values);
+	}
+	
+	public static final Parcelable.Creator<SampleBatch> CREATOR = 
+			new Parcelable.Creator<SampleBatch>() {
+
+		public SampleBatch createFromParcel(Parcel source) {
+			return new SampleBatch(source);
+		}
+
+		public SampleBatch[] newArray(int size) {
+			return new SampleBatch[size];
+		}
+	};
+}
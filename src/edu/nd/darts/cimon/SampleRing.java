@@ -0,0 +1,291 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Single-producer, single-consumer ring of samples in a shared memory region,
+ * used for streaming high rate metrics to clients without a message per sample.
+ * The region is typically a memory-mapped file shared between processes, but 
+ * any {@link ByteBuffer} may be used.  This class depends only on java.nio.
+ * <p>
+ * The producer never waits for the consumer: once the ring is full, the oldest
+ * records are overwritten.  The consumer keeps its own read position, reads at
+ * its own pace, and detects records it missed (overruns).  The region holds:
+ * <pre>
+ *   int   magic
+ *   int   version
+ *   int   capacity (records, power of 2)
+ *   int   state (1 open, 0 closed)
+ *   ...   padding to 64 bytes
+ *   long  write sequence (count of records written)
+ *   ...   padding to 128 bytes
+ *   records of 24 bytes:
+ *     long   stamp (sequence of record + 1, 0 while being written)
+ *     long   timestamp
+ *     int    metric
+ *     float  value
+ * </pre>
+ * Each record is stamped after it is written, and the consumer accepts a record
+ * only if its stamp is the expected sequence both before and after reading it.
+ * Plain stores to the region are ordered with a write and read of a volatile 
+ * field, which acts as a full memory barrier.
+ * <p>
+ * Each side uses its own instance: the producer {@link #create(ByteBuffer, int)
+ * creates} the ring and is the only caller of {@link #write(long, int, float)}, the
+ * consumer {@link #attach(ByteBuffer) attaches} to it and calls 
+ * {@link #read(long[], int[], float[], int)}.  Neither instance is thread-safe.
+ * 
+ * @author darts
+ * 
+ * @see StreamChannel
+ *
+ */
+public final class SampleRing {
+	
+	/** Size of region header (bytes). */
+	public static final int HEADER_SIZE = 128;
+	/** Size of each record (bytes). */
+	public static final int RECORD_SIZE = 24;
+	/** Minimum capacity of ring (records). */
+	public static final int MIN_CAPACITY = 64;
+	/** Maximum capacity of ring (records). */
+	public static final int MAX_CAPACITY = 1 << 16;
+	
+	private static final int MAGIC = 0x43524e47;	// "CRNG"
+	private static final int VERSION = 1;
+	private static final int OFFSET_CAPACITY = 8;
+	private static final int OFFSET_STATE = 12;
+	private static final int OFFSET_WRITE = 64;
+	private static final int STATE_CLOSED = 0;
+	private static final int STATE_OPEN = 1;
+	
+	private static volatile int barrier;
+	
+	private final ByteBuffer buffer;
+	private final int capacity;
+	private final int mask;
+	/** Next sequence to write (producer) or read (consumer). */
+	private long sequence;
+	private long overruns = 0;
+	
+	private SampleRing(ByteBuffer buffer, int capacity, long sequence) {
+		this.buffer = buffer;
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.sequence = sequence;
+	}
+	
+	/**
+	 * Return size of region needed for a ring of given capacity.
+	 * 
+	 * @param capacity    capacity of ring (records)
+	 * @return    size of region (bytes)
+	 */
+	public static int regionSize(int capacity) {
+		return HEADER_SIZE + capacity * RECORD_SIZE;
+	}
+	
+	/**
+	 * Round requested capacity to a valid capacity: a power of 2 between 
+	 * {@link #MIN_CAPACITY} and {@link #MAX_CAPACITY}.
+	 * 
+	 * @param capacity    requested capacity (records)
+	 * @return    valid capacity (records)
+	 */
+	public static int validCapacity(int capacity) {
+		if (capacity <= MIN_CAPACITY) return MIN_CAPACITY;
+		if (capacity >= MAX_CAPACITY) return MAX_CAPACITY;
+		return Integer.highestOneBit(capacity - 1) << 1;
+	}
+	
+	/**
+	 * Format region as a new, empty ring, for the producer.
+	 * 
+	 * @param buffer    region of at least {@link #regionSize(int)} bytes
+	 * @param capacity    capacity of ring (records, power of 2)
+	 * @return    producer side of ring
+	 */
+	public static SampleRing create(ByteBuffer buffer, int capacity) {
+		if ((capacity <= 0) || ((capacity & (capacity - 1)) != 0)) {
+			throw new IllegalArgumentException("capacity must be a power of 2: " + capacity);
+		}
+		if (buffer.capacity() < regionSize(capacity)) {
+			throw new IllegalArgumentException("region too small for capacity " + capacity);
+		}
+		buffer.order(ByteOrder.nativeOrder());
+		for (int i = 0; i < capacity; i++) {
+			buffer.putLong(HEADER_SIZE + i * RECORD_SIZE, 0);
+		}
+		buffer.putLong(OFFSET_WRITE, 0);
+		buffer.putInt(OFFSET_CAPACITY, capacity);
+		buffer.putInt(OFFSET_STATE, STATE_OPEN);
+		buffer.putInt(4, VERSION);
+		fence();
+		buffer.putInt(0, MAGIC);
+		return new SampleRing(buffer, capacity, 0);
+	}
+	
+	/**
+	 * Attach to ring created by producer, for the consumer.  Reading starts at the 
+	 * oldest record still held by the ring.
+	 * 
+	 * @param buffer    region formatted by {@link #create(ByteBuffer, int)}
+	 * @return    consumer side of ring
+	 */
+	public static SampleRing attach(ByteBuffer buffer) {
+		buffer.order(ByteOrder.nativeOrder());
+		if (buffer.getInt(0) != MAGIC) {
+			throw new IllegalArgumentException("region is not a sample ring");
+		}
+		fence();
+		if (buffer.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("unsupported ring version: " + buffer.getInt(4));
+		}
+		int capacity = buffer.getInt(OFFSET_CAPACITY);
+		if ((capacity <= 0) || ((capacity & (capacity - 1)) != 0) || 
+				(buffer.capacity() < regionSize(capacity))) {
+			throw new IllegalArgumentException("invalid ring capacity: " + capacity);
+		}
+		long written = buffer.getLong(OFFSET_WRITE);
+		return new SampleRing(buffer, capacity, Math.max(0, written - capacity));
+	}
+	
+	/**
+	 * Full memory barrier, ordering plain accesses to the region before and after it.
+	 */
+	private static void fence() {
+		barrier = 0;
+		if (barrier != 0) {
+			throw new IllegalStateException();
+		}
+	}
+	
+	/**
+	 * Append record to ring, overwriting the oldest record if the ring is full.
+	 * Called only by the producer.
+	 * 
+	 * @param timestamp    timestamp of sample, from system uptime in milliseconds
+	 * @param metric    integer representing metric (per {@link Metrics})
+	 * @param value    value of sample
+	 */
+	public void write(long timestamp, int metric, float value) {
+		int offset = HEADER_SIZE + (int) (sequence & mask) * RECORD_SIZE;
+		buffer.putLong(offset, 0);
+		fence();
+		buffer.putLong(offset + 8, timestamp);
+		buffer.putInt(offset + 16, metric);
+		buffer.putFloat(offset + 20, value);
+		fence();
+		buffer.putLong(offset, ++sequence);
+		buffer.putLong(OFFSET_WRITE, sequence);
+	}
+	
+	/**
+	 * Mark ring as closed, once no more records will be written.  Called only by 
+	 * the producer.
+	 */
+	public void close() {
+		fence();
+		buffer.putInt(OFFSET_STATE, STATE_CLOSED);
+	}
+	
+	/**
+	 * Check if producer closed ring.  Records written before it was closed may 
+	 * still be read.
+	 * 
+	 * @return    true if no more records will be written
+	 */
+	public boolean isClosed() {
+		return buffer.getInt(OFFSET_STATE) == STATE_CLOSED;
+	}
+	
+	/**
+	 * Read available records into arrays, in order.  Called only by the consumer.
+	 * If the producer overwrote records before they were read, they are skipped
+	 * and counted in {@link #getOverruns()}.
+	 * 
+	 * @param timestamps    array for timestamps of records
+	 * @param metrics    array for metrics of records
+	 * @param values    array for values of records
+	 * @param max    maximum number of records to read (at most length of arrays)
+	 * @return    number of records read, 0 if none available
+	 */
+	public int read(long[] timestamps, int[] metrics, float[] values, int max) {
+		long written = buffer.getLong(OFFSET_WRITE);
+		fence();
+		if (written - sequence > capacity) {
+			overruns += written - capacity - sequence;
+			sequence = written - capacity;
+		}
+		int count = 0;
+		while ((count < max) && (sequence < written)) {
+			int offset = HEADER_SIZE + (int) (sequence & mask) * RECORD_SIZE;
+			long stamp = buffer.getLong(offset);
+			fence();
+			timestamps[count] = buffer.getLong(offset + 8);
+			metrics[count] = buffer.getInt(offset + 16);
+			values[count] = buffer.getFloat(offset + 20);
+			fence();
+			if ((stamp != sequence + 1) || (buffer.getLong(offset) != stamp)) {
+				// producer lapped reader while reading: skip to oldest record held
+				written = buffer.getLong(OFFSET_WRITE);
+				long oldest = Math.max(sequence + 1, written - capacity);
+				overruns += oldest - sequence;
+				sequence = oldest;
+				continue;
+			}
+			sequence++;
+			count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Return number of records available to read.  Called only by the consumer.
+	 * 
+	 * @return    count of records written and not yet read, which may exceed 
+	 *             capacity if the consumer has fallen behind
+	 */
+	public long available() {
+		return buffer.getLong(OFFSET_WRITE) - sequence;
+	}
+	
+	/**
+	 * Return number of records overwritten by the producer before the consumer 
+	 * read them.
+	 * 
+	 * @return    count of missed records
+	 */
+	public long getOverruns() {
+		return overruns;
+	}
+	
+	/**
+	 * Return capacity of ring.
+	 * 
+	 * @return    capacity (records)
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import java.util.HashMap;
+
+import android.util.SparseArray;
+
+/**
+ * Schedule of periodic monitors shared by all metrics of a metric group, used to 
+ * align the updates of new monitors with those already scheduled.  Monitors are 
+ * indexed by monitor id, and also by period, so that the node which provides the 
+ * most synchronicity for a new period (the least common multiple of periods) is 
+ * found from the distinct periods in the schedule, rather than from every monitor.
+ * A period which is already scheduled is found in constant time.
+ * 
+ * @author darts
+ * 
+ * @see TimerList
+ *
+ */
+public class ScheduleIndex {
+	
+	private final SparseArray<TimerNode> monitors;
+	/** First node of the chain of scheduled nodes with each period. */
+	private final HashMap<Long, TimerNode> periods;
+	
+	public ScheduleIndex() {
+		monitors = new SparseArray<TimerNode>();
+		periods = new HashMap<Long, TimerNode>();
+	}
+	
+	/**
+	 * Add node of monitor to schedule, replacing any node of the same monitor.
+	 * 
+	 * @param monitorId    unique id of monitor
+	 * @param tnode    timer node of monitor
+	 */
+	public void put(int monitorId, TimerNode tnode) {
+		remove(monitorId);
+		monitors.put(monitorId, tnode);
+		final Long period = Long.valueOf(tnode.getPeriod());
+		final TimerNode first = periods.get(period);
+		tnode.schedulePrev = null;
+		tnode.scheduleNext = first;
+		if (first != null) {
+			first.schedulePrev = tnode;
+		}
+		periods.put(period, tnode);
+	}
+	
+	/**
+	 * Remove node of monitor from schedule.
+	 * 
+	 * @param monitorId    unique id of monitor
+	 */
+	public void remove(int monitorId) {
+		final TimerNode tnode = monitors.get(monitorId);
+		if (tnode == null) return;
+		monitors.remove(monitorId);
+		if (tnode.scheduleNext != null) {
+			tnode.scheduleNext.schedulePrev = tnode.schedulePrev;
+		}
+		if (tnode.schedulePrev != null) {
+			tnode.schedulePrev.scheduleNext = tnode.scheduleNext;
+		}
+		else {
+			final Long period = Long.valueOf(tnode.getPeriod());
+			if (tnode.scheduleNext == null) {
+				periods.remove(period);
+			}
+			else {
+				periods.put(period, tnode.scheduleNext);
+			}
+		}
+		tnode.schedulePrev = null;
+		tnode.scheduleNext = null;
+	}
+	
+	/**
+	 * Returns node of monitor.
+	 * 
+	 * @param monitorId    unique id of monitor
+	 * @return    node of monitor, null if monitor is not scheduled
+	 */
+	public TimerNode get(int monitorId) {
+		return monitors.get(monitorId);
+	}
+	
+	/**
+	 * Returns number of monitors in schedule.
+	 * 
+	 * @return    count of monitors
+	 */
+	public int size() {
+		return monitors.size();
+	}
+	
+	/**
+	 * Find scheduled node to align a new monitor with, the node whose period has the
+	 * least common multiple with _period_.
+	 * 
+	 * @param period    period of new monitor, in milliseconds
+	 * @param best    node to align with unless a scheduled node is better, may be null
+	 * @return    node to align with, null if schedule is empty and _best_ is null
+	 */
+	public TimerNode getAligned(long period, TimerNode best) {
+		long minLCM = (best == null) ? Long.MAX_VALUE : getLCM(period, best.getPeriod());
+		if (minLCM == period) {
+			return best;
+		}
+		final TimerNode same = periods.get(Long.valueOf(period));
+		if (same != null) {
+			return same;
+		}
+		for (TimerNode first : periods.values()) {
+			if (minLCM == period) break;
+			final long lcm = getLCM(period, first.getPeriod());
+			if (lcm < minLCM) {
+				minLCM = lcm;
+				best = first;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Number of distinct periods in schedule.
+	 * 
+	 * @return    count of distinct periods
+	 */
+	int getPeriodCount() {
+		return periods.size();
+	}
+	
+	private static long getLCM(long arg1, long arg2) {
+		if ((arg1 <= 0) || (arg2 <= 0)) {
+			return Long.MAX_VALUE;
+		}
+		long a = arg1;
+		long b = arg2;
+		long temp;
+		while (b > 0) {
+			temp = b;
+			b = a % b;
+			a = temp;
+		}
+		
+		long gcd = a;
+		return (arg1 * (arg2 / gcd));
+	}
+	
+}
@@ -70,7 +70,7 @@ public final class ScreenService extends MetricService<Byte> {
 //		observerHandler = new Handler();
 		adminObserver = UserObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 		init();
 	}
 	
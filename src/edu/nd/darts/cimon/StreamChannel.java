@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.os.IBinder;
+import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
+import android.util.Log;
+
+/**
+ * Streaming channel of samples to a client through shared memory.  Samples of 
+ * the monitors of a stream are written into a {@link SampleRing} in a 
+ * memory-mapped file, and the client maps the same file through a read-only
+ * {@link ParcelFileDescriptor}.  The file is unlinked as soon as the descriptor 
+ * is opened, so the region only remains reachable through the mapping and the 
+ * descriptor passed to the client.
+ * <p>
+ * Monitors of a stream may belong to several metric groups, which run on 
+ * different threads.  Writes are serialized by this channel, so the ring has a 
+ * single producer.  The ring is closed once all monitors of the stream are removed,
+ * either by the client, or when the client process dies (through a binder token 
+ * of the client, see {@link #linkToClient(IBinder, IBinder.DeathRecipient)}).
+ * 
+ * @author darts
+ * 
+ * @see SampleRing
+ * @see ValueNode
+ *
+ */
+final class StreamChannel {
+	
+	private static final String TAG = "NDroid";
+	/** Directory for stream files, under the cache directory of the application. */
+	static final String DIRECTORY = "streams";
+	
+	private final SampleRing ring;
+	private final ParcelFileDescriptor descriptor;
+	private int monitors = 0;
+	private IBinder token = null;
+	private IBinder.DeathRecipient recipient = null;
+	
+	private StreamChannel(SampleRing ring, ParcelFileDescriptor descriptor) {
+		this.ring = ring;
+		this.descriptor = descriptor;
+	}
+	
+	/**
+	 * Create new stream, with a ring of given capacity in a new file.
+	 * 
+	 * @param directory    directory to create stream file in
+	 * @param capacity    capacity of ring (records, power of 2)
+	 * @return    new stream channel
+	 * @throws IOException    if file could not be created and mapped
+	 */
+	static StreamChannel open(File directory, int capacity) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("unable to create stream directory " + directory);
+		}
+		File file = File.createTempFile("stream", ".ring", directory);
+		int size = SampleRing.regionSize(capacity);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(size);
+			// mapping remains valid after the file is closed and deleted
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 
+					0, size);
+			SampleRing ring = SampleRing.create(buffer, capacity);
+			ParcelFileDescriptor descriptor = ParcelFileDescriptor.open(file, 
+					ParcelFileDescriptor.MODE_READ_ONLY);
+			if (DebugLog.DEBUG) Log.d(TAG, "StreamChannel.open - new stream of " + capacity + 
+					" records");
+			return new StreamChannel(ring, descriptor);
+		} finally {
+			raf.close();
+			if (!file.delete()) {
+				if (DebugLog.WARNING) Log.w(TAG, "StreamChannel.open - unable to delete " + file);
+			}
+		}
+	}
+	
+	/**
+	 * Return read-only descriptor of stream file, to be passed to the client.
+	 * The descriptor is closed once it has been sent.
+	 * 
+	 * @return    descriptor of stream file
+	 */
+	ParcelFileDescriptor getDescriptor() {
+		return descriptor;
+	}
+	
+	/**
+	 * Register monitor which writes to this stream.
+	 */
+	synchronized void acquire() {
+		monitors++;
+	}
+	
+	/**
+	 * Unregister monitor which writes to this stream.  Once no monitors remain,
+	 * the ring is closed, so the client knows no more samples will arrive.
+	 */
+	synchronized void release() {
+		if (--monitors == 0) {
+			ring.close();
+			if (token != null) {
+				token.unlinkToDeath(recipient, 0);
+				token = null;
+			}
+			if (DebugLog.DEBUG) Log.d(TAG, "StreamChannel.release - stream closed");
+		}
+	}
+	
+	/**
+	 * Watch binder token of client, so that monitors of the stream are removed if 
+	 * the client process dies without removing them.  The token is released once 
+	 * the stream is closed.
+	 * 
+	 * @param token    binder token held by client
+	 * @param recipient    called if client process dies, to remove monitors of stream
+	 * @return    false if client process has already died
+	 */
+	synchronized boolean linkToClient(IBinder token, IBinder.DeathRecipient recipient) {
+		if (monitors == 0) return true;
+		try {
+			token.linkToDeath(recipient, 0);
+		} catch (RemoteException e) {
+			if (DebugLog.INFO) Log.i(TAG, "StreamChannel.linkToClient - client already died");
+			return false;
+		}
+		this.token = token;
+		this.recipient = recipient;
+		return true;
+	}
+	
+	/**
+	 * Write sample to stream.
+	 * 
+	 * @param timestamp    timestamp of sample, from system uptime in milliseconds
+	 * @param metric    integer representing metric (per {@link Metrics})
+	 * @param value    value of sample
+	 */
+	synchronized void write(long timestamp, int metric, float value) {
+		ring.write(timestamp, metric, value);
+	}
+}
@@ -36,7 +36,7 @@ import android.util.SparseArray;
  * @author darts
  *
  */
-public final class TemperatureService extends MetricService<Float> implements
+public final class TemperatureService extends FloatMetricService implements
 		SensorEventListener {
 
 	private static final String TAG = "NDroid";
@@ -60,6 +60,7 @@ public final class TemperatureService extends MetricService<Float> implements
 		}
 		groupId = Metrics.TEMPERATURE;
 		metricsCount = TEMP_METRICS;
+		lane = MetricExecutor.LANE_DEDICATED;
 		Context context = MyApplication.getAppContext();
 		
 		mSensorManager = (SensorManager)context.getSystemService(Context.SENSOR_SERVICE);
@@ -76,13 +77,13 @@ public final class TemperatureService extends MetricService<Float> implements
 				return;
 //			}
 		}
-		values = new Float[TEMP_METRICS];
+		floatValues = new float[TEMP_METRICS];
 		valueNodes = new SparseArray<ValueNode<Float>>();
 		freshnessThreshold = FIVE_SECONDS;
 //		observerHandler = new Handler();
 		adminObserver = SensorObserver.getInstance();
 		adminObserver.registerObservable(this, groupId);
-		schedules = new SparseArray<TimerNode>();
+		schedules = new ScheduleIndex();
 			init();
 	}
 	
@@ -144,7 +145,7 @@ public final class TemperatureService extends MetricService<Float> implements
 	 * @param event    temperature sensor data received from onSensorChanged() event
 	 */
 	private void getTemperatureData(SensorEvent event) {
-		values[0] = event.values[0];
+		floatValues[0] = event.values[0];
 		
 		performUpdates();
 	}
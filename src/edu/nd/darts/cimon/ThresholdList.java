@@ -31,10 +31,10 @@ package edu.nd.darts.cimon;
  *
  */
 public class ThresholdList<T extends Comparable<T>> {	//Number & 
-	private ThresholdNode<T> head;
+	protected ThresholdNode<T> head;
 	private int size;
 	private long minPeriod;
-	private boolean descending;
+	protected boolean descending;
 	
 	/**
 	 * 
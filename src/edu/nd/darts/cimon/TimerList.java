@@ -24,6 +24,11 @@ import android.os.Messenger;
 import android.util.SparseArray;
 /**
  * List of periodic monitor requests for a specific metric, sorted by update time.
+ * <p>
+ * Nodes are kept in an indexed binary min-heap ordered by next update time, so
+ * that access to the earliest update is O(1), and insertion, rescheduling and 
+ * removal of a monitor are O(log n).  Each {@link TimerNode} stores its own
+ * position in the heap, and monitors are indexed by monitor id for removal.
  * 
  * @author darts
  *
@@ -31,9 +36,11 @@ import android.util.SparseArray;
 public class TimerList {
 	
 //	private static final long MARGIN_BUFFER = 2;
-	private TimerNode head;
-	private SparseArray<TimerNode> schedules;
-//	private int size;
+	private static final int INITIAL_CAPACITY = 8;
+	private TimerNode[] heap;
+	private int size;
+	private SparseArray<TimerNode> nodes;
+	private ScheduleIndex schedules;
 	
 	/**
 	 * List of periodic monitor requests for a specific metric, sorted by update time.
@@ -41,10 +48,11 @@ public class TimerList {
 	 * 
 	 * @param schedules    schedule shared by all metrics in group to synchronize updates
 	 */
-	public TimerList(SparseArray<TimerNode> schedules) {
-		head = null;
+	public TimerList(ScheduleIndex schedules) {
+		heap = new TimerNode[INITIAL_CAPACITY];
+		size = 0;
+		nodes = new SparseArray<TimerNode>();
 		this.schedules = schedules;
-//		size = 0;
 	}
 	
 	/**
@@ -53,11 +61,21 @@ public class TimerList {
 	 * @return    {@link TimerNode} at head of list
 	 */
 	public TimerNode getHead() {
-		return head;
+		if (size == 0) return null;
+		return heap[0];
 	}
 
 	public boolean isEmpty() {
-		return (head == null);
+		return (size == 0);
+	}
+	
+	/**
+	 * Returns number of periodic monitors in list.
+	 * 
+	 * @return    count of monitors in list
+	 */
+	public int size() {
+		return size;
 	}
 	
 	/**
@@ -68,21 +86,16 @@ public class TimerList {
 	 * @return    true if current time greater than (or equal) update time for head node
 	 */
 	public boolean headTimePassed(long time) {
-		if (head == null) return false;
-		return head.nodeTimePassed(time);
+		if (size == 0) return false;
+		return heap[0].nodeTimePassed(time);
 	}
 
 	/**
 	 * Remove timer node at head of list.
 	 */
 	public void removeHead() {
-		TimerNode temp = head;
-		
-		head = temp.next;
-//		temp.callback = null;
-		temp.next = null;
-		temp = null;
-//		size--;
+		if (size == 0) return;
+		removeAt(0);
 	}
 	
 	/**
@@ -93,31 +106,14 @@ public class TimerList {
 	 * @return    former head of list, if end of duration has been reached, null otherwise
 	 */
 	public TimerNode popHead() {
-		TimerNode temp = head;
+		TimerNode temp = heap[0];
 		
 		if (temp.setNextUpdate()) {
-			head = temp.next;
-//			temp.callback = null;
-			temp.next = null;
-//			temp = null;
-//			size--;
+			removeAt(0);
 			return temp;
 		}
-		if (temp.next == null) return null;
-		if (temp.getKey() <= temp.next.getKey()) return null;
-		head = temp.next;
-		temp.next = null;
-		TimerNode iter = head;
-		while (iter.next != null) {
-			// otherwise, order by next scheduled time
-			if (temp.getKey() < iter.next.getKey()) {
-				temp.next = iter.next;
-				iter.next = temp;
-				return null;
-			}
-			iter = iter.next;
-		}
-		iter.next = temp;
+		// key only increases, so node can only move down the heap
+		siftDown(0);
 		return null;
 	}
 	
@@ -133,76 +129,59 @@ public class TimerList {
 	 */
 	public TimerNode insert(int monitorId, long period, Messenger callback, long duration) {
 		TimerNode tnode = new TimerNode(monitorId, period, callback, duration);
-		if (head == null) {
-			head = tnode;
+		if (size == 0) {
+			insertNode(tnode);
 			return tnode;
 		}
 		// set update time for new node to match with schedule of monitor which provides
 		//    the most synchronicity, for efficiency
-		long lcm = getLCM(period, head.getPeriod());
-		long minLCM = lcm;
-		TimerNode minNode = head;
-		TimerNode iter;
-		for (int i = 0; i < schedules.size(); i++) {
-			if (minLCM == period) break;
-			iter = schedules.valueAt(i);
-			if (iter == null) continue;
-			lcm = getLCM(period, iter.getPeriod());
-			if (lcm < minLCM) {
-				minLCM = lcm;
-				minNode = iter;
-			}
-		}
+		TimerNode minNode = schedules.getAligned(period, heap[0]);
 		tnode.setInsertKey(minNode.getKey());
 		
 		// now insert new node in sorted order by next update time
-		if (tnode.getKey() < head.getKey()) {
-			tnode.next = head;
-			head = tnode;
-			return tnode;
-		}
-		iter = head;
-		while (iter.next != null) {
-			// otherwise, order by next scheduled time
-			if (tnode.getKey() < iter.next.getKey()) {
-				tnode.next = iter.next;
-				iter.next = tnode;
-				return tnode;
-			}
-			iter = iter.next;
-		}
-		iter.next = tnode;
+		insertNode(tnode);
+		return tnode;
+	}
+	
+	/**
+	 * Insert a new adaptive monitor into timer list.  Creates new 
+	 * {@link AdaptiveTimerNode} and inserts it in sorted order based on next update 
+	 * time.  Adaptive monitors are not aligned with other schedules, since their 
+	 * period varies.
+	 * 
+	 * @param monitorId    unique id of monitor
+	 * @param minPeriod    minimum time between updates in milliseconds
+	 * @param maxPeriod    maximum time between updates in milliseconds
+	 * @param tolerance    error tolerance, in units of the metric
+	 * @param callback     client handler to handle update messages
+	 * @param duration     total duration to monitor metric, in milliseconds
+	 * @return    newly created {@link AdaptiveTimerNode} inserted into list
+	 */
+	public TimerNode insertAdaptive(int monitorId, long minPeriod, long maxPeriod, 
+			float tolerance, Messenger callback, long duration) {
+		TimerNode tnode = new AdaptiveTimerNode(monitorId, minPeriod, maxPeriod, tolerance, 
+				callback, duration);
+		insertNode(tnode);
 		return tnode;
 	}
 	
 	/**
-	 * Insert {@link TimerNode} into list.  Used by {@link EavesdropList} subclass.
-	 * Key is equivalent to period for opportunistic monitor nodes.
+	 * Insert {@link TimerNode} into list in sorted order based on its key.
+	 * If a node is already registered with the same monitor id, it is replaced.
 	 * 
 	 * @param tnode    TimerNode to insert in monitor list
 	 */
 	protected void insertNode(TimerNode tnode) {
-		TimerNode iter;
-		if (head == null) {
-			head = tnode;
-			return;
-		}
-		if (tnode.getKey() < head.getKey()) {
-			tnode.next = head;
-			head = tnode;
-			return;
-		}
-		iter = head;
-		while (iter.next != null) {
-			// otherwise, order by maximum allowed period
-			if (tnode.getKey() < iter.next.getKey()) {
-				tnode.next = iter.next;
-				iter.next = tnode;
-				return;
-			}
-			iter = iter.next;
+		remove(tnode.getMonitorId());
+		if (size == heap.length) {
+			TimerNode[] grown = new TimerNode[heap.length * 2];
+			System.arraycopy(heap, 0, grown, 0, size);
+			heap = grown;
 		}
-		iter.next = tnode;
+		tnode.heapIndex = size;
+		heap[size++] = tnode;
+		nodes.put(tnode.getMonitorId(), tnode);
+		siftUp(tnode.heapIndex);
 	}
 	
 	/**
@@ -212,62 +191,110 @@ public class TimerList {
 	 * @return    node that was removed if match was found, null otherwise
 	 */
 	public TimerNode remove(int monitorId) {
-		if (head == null) return null;
-		TimerNode iter = head;
-		if (iter.getMonitorId() == monitorId) {
-//			iter.callback = null;
-			head = iter.next;
-			iter.next = null;
-//			iter = null;
-//			size--;
-			return iter;
+		TimerNode tnode = nodes.get(monitorId);
+		if (tnode == null) return null;
+		removeAt(tnode.heapIndex);
+		return tnode;
+	}
+	
+	/**
+	 * Determine time before next update is needed by any monitor in list.  Monitors
+	 * which have already passed their update time contribute their period, all others
+	 * contribute the time remaining until their next update.  Unless the head has
+	 * passed its update time, this is the time remaining for the head.  Otherwise 
+	 * only the monitors which have passed their update time are visited, as these 
+	 * form the top of the heap.
+	 * 
+	 * @param current    current system time
+	 * @return    time in milliseconds before next update, Long.MAX_VALUE if list is empty
+	 */
+	public long getNextUpdate(long current) {
+		if (size == 0) return Long.MAX_VALUE;
+		if (!heap[0].nodeTimePassed(current)) {
+			return heap[0].getKey() - current;
 		}
-		TimerNode prev = iter;
-		iter = iter.next;
-		while (iter != null) {
-			if (iter.getMonitorId() == monitorId) {
-//				iter.callback = null;
-				prev.next = iter.next;
-				iter.next = null;
-//				iter = null;
-//				size--;
-				return iter;
+		// passed monitors form the top of the heap, so levels are visited until one 
+		//    holds no passed monitor, skipping subtrees of monitors not yet passed
+		long nextUpdate = Long.MAX_VALUE;
+		int levelEnd = 1;
+		boolean levelPassed = false;
+		for (int i = 0; i < size; i++) {
+			if (i == levelEnd) {
+				if (!levelPassed) break;
+				levelPassed = false;
+				levelEnd = (levelEnd << 1) + 1;
+			}
+			if ((i > 0) && !heap[(i - 1) >>> 1].nodeTimePassed(current)) continue;
+			TimerNode tNode = heap[i];
+			if (tNode.nodeTimePassed(current)) {
+				levelPassed = true;
+				if ((tNode.getPeriod() > 0) && (tNode.getPeriod() < nextUpdate)) {
+					nextUpdate = tNode.getPeriod();
+				}
+			}
+			else if ((tNode.getKey() - current) < nextUpdate) {
+				nextUpdate = tNode.getKey() - current;
 			}
-			prev = iter;
-			iter = iter.next;
 		}
-		return null;
+		return nextUpdate;
 	}
 	
-	private long getLCM(long arg1, long arg2) {
-		
-		long a = arg1;
-		long b = arg2;
-		long temp;
-		while (b > 0) {
-			temp = b;
-			b = a % b;
-			a = temp;
+	/**
+	 * Remove node at position _index_ of heap, and restore heap ordering.
+	 * 
+	 * @param index    position in heap of node to remove
+	 */
+	private void removeAt(int index) {
+		TimerNode tnode = heap[index];
+		nodes.remove(tnode.getMonitorId());
+		tnode.heapIndex = -1;
+		size--;
+		if (index == size) {
+			heap[size] = null;
+			return;
 		}
-		
-		long gcd = a;
-		return (arg1 * (arg2 / gcd));
-		
-/*		long max, min;
-		if (arg1 > arg2) {
-			max = arg1;
-			min = arg2;
+		TimerNode last = heap[size];
+		heap[size] = null;
+		heap[index] = last;
+		last.heapIndex = index;
+		if ((index > 0) && (last.getKey() < heap[(index - 1) >>> 1].getKey())) {
+			siftUp(index);
 		}
 		else {
-			max = arg2;
-			min = arg1;
+			siftDown(index);
 		}
-		
-		for (long i = 1; i <= min; i++) {
-			if (((max * i) % min) == 0) {
-				return (max * i);
+	}
+	
+	private void siftUp(int index) {
+		TimerNode tnode = heap[index];
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			TimerNode pnode = heap[parent];
+			if (tnode.getKey() >= pnode.getKey()) break;
+			heap[index] = pnode;
+			pnode.heapIndex = index;
+			index = parent;
+		}
+		heap[index] = tnode;
+		tnode.heapIndex = index;
+	}
+	
+	private void siftDown(int index) {
+		TimerNode tnode = heap[index];
+		int half = size >>> 1;
+		while (index < half) {
+			int child = (index << 1) + 1;
+			int right = child + 1;
+			if ((right < size) && (heap[right].getKey() < heap[child].getKey())) {
+				child = right;
 			}
+			TimerNode cnode = heap[child];
+			if (tnode.getKey() <= cnode.getKey()) break;
+			heap[index] = cnode;
+			cnode.heapIndex = index;
+			index = child;
 		}
-		return -1;*/
+		heap[index] = tnode;
+		tnode.heapIndex = index;
 	}
 }
@@ -41,6 +41,11 @@ public class TimerNode {
 	private int monitorId;
 	private Messenger callback;
 	public TimerNode next;
+	/** Position of node in heap of {@link TimerList}, -1 if not in a heap. */
+	int heapIndex;
+	/** Neighbours among nodes of the same period in {@link ScheduleIndex}. */
+	TimerNode schedulePrev;
+	TimerNode scheduleNext;
 
 	/**
 	 * Node which holds periodic monitoring request. Specifies period and duration 
@@ -59,6 +64,7 @@ public class TimerNode {
 		this.period = period;
 		this.monitorId = monitorId;
 		next = null;
+		heapIndex = -1;
 	}
 
 	/**
@@ -93,7 +99,8 @@ public class TimerNode {
 		//added by Rumana
 		long curTime = SystemClock.uptimeMillis();
 		//long curTime = SystemClock.elapsedRealtime();
-		while (key <= curTime) {
+		// advance past margin as well, so node is no longer considered passed
+		while (key <= (curTime + MARGIN_BUFFER)) {
 			key += period;
 			if (key > duration) return true;
 		}
@@ -120,6 +127,25 @@ public class TimerNode {
 		key = _key;
 	}
 	
+	/**
+	 * Set period between updates, applied from the next update.
+	 * 
+	 * @param period    time between updates in milliseconds
+	 */
+	protected void setPeriod(long period) {
+		this.period = period;
+	}
+	
+	/**
+	 * Observe value delivered to this monitor, before its next update time is set.
+	 * Periodic monitors ignore values; subclasses may use them to adapt the period.
+	 * 
+	 * @param value        value delivered to monitor
+	 * @param timestamp    timestamp of value
+	 */
+	void observe(float value, long timestamp) {
+	}
+	
 	/**
 	 * Returns maximum allowed period for this monitored condition.
 	 * 
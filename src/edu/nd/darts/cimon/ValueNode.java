@@ -19,11 +19,7 @@
  */
 package edu.nd.darts.cimon;
 
-import java.util.ArrayList;
-
-import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
-
-import android.content.Context;
+import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
 import android.os.Messenger;
@@ -46,18 +42,59 @@ import android.util.SparseArray;
 public class ValueNode<T extends Comparable<T>> implements CurrentNode<T> {	//Number & //
 	
 	private static final String TAG = "NDroid";
-	private static final int BATCH_SIZE = 1000;
 	
 	private int metric;
-	private T key;
-	private Handler dbHandler;
+	protected T key;
+	private final LogQueue logQueue;
 	private AdminObserver adminObserver;
 	private TimerList timerList;
 	private EavesdropList eavesdropList;
-	private ThresholdList<T> maxList;
-	private ThresholdList<T> minList;
-	private SparseArray<TimerNode> schedules;
-	private SparseArray<ArrayList<DataEntry>> batchedData;
+	protected ThresholdList<T> maxList;
+	protected ThresholdList<T> minList;
+	private ScheduleIndex schedules;
+	private SparseArray<DataBatch> batchedData;
+	private SparseArray<Delivery> deliveries;
+	
+	/**
+	 * Delivery settings of a monitor which is not sent one message per sample: 
+	 * either batched, with the batch of samples not yet sent to its client, 
+	 * streamed through shared memory, or passed to a local listener.
+	 */
+	private static final class Delivery {
+		final long maxLatency;
+		final int maxCount;
+		final StreamChannel stream;
+		final LocalListener listener;
+		/** Handler of metric thread, for flush of batch once maxLatency expires. */
+		final Handler handler;
+		Runnable flush;
+		Messenger messenger;
+		SampleBatch batch;
+		
+		Delivery(long maxLatency, int maxCount, Handler handler) {
+			this.maxLatency = maxLatency;
+			this.maxCount = maxCount;
+			this.stream = null;
+			this.listener = null;
+			this.handler = handler;
+		}
+		
+		Delivery(StreamChannel stream) {
+			this.maxLatency = 0;
+			this.maxCount = 0;
+			this.stream = stream;
+			this.listener = null;
+			this.handler = null;
+		}
+		
+		Delivery(LocalListener listener) {
+			this.maxLatency = 0;
+			this.maxCount = 0;
+			this.stream = null;
+			this.listener = listener;
+			this.handler = null;
+		}
+	}
 	
 	/**
 	 * Node which maintains triple-linked-list structure for an actively monitored metric.
@@ -68,10 +105,10 @@ public class ValueNode<T extends Comparable<T>> implements CurrentNode<T> {	//Nu
 	 * @param handler     handler to thread used for database updates
 	 * @param observer    observer which should be notified of monitor status changes
 	 */
-	public ValueNode(int metric, SparseArray<TimerNode> schedules, Handler handler, 
+	public ValueNode(int metric, ScheduleIndex schedules, Handler handler, 
 			AdminObserver observer) {
 		this.metric = metric;
-		this.dbHandler = handler;
+		this.logQueue = new LogQueue(metric, handler);
 		this.adminObserver = observer;
 		this.schedules = schedules;
 		this.key = null;
@@ -79,7 +116,8 @@ public class ValueNode<T extends Comparable<T>> implements CurrentNode<T> {	//Nu
 		eavesdropList = new EavesdropList();
 		maxList = new ThresholdList<T>(false);
 		minList = new ThresholdList<T>(true);
-		batchedData = new SparseArray<ArrayList<DataEntry>>();
+		batchedData = new SparseArray<DataBatch>();
+		deliveries = new SparseArray<Delivery>();
 	}
 
 	// this is deprecated.  the extra variable is to invalidate callers
@@ -136,7 +174,7 @@ public class ValueNode<T extends Comparable<T>> implements CurrentNode<T> {	//Nu
 	 * @return    time for next update (in milliseconds from current time), -1 if lists 
 	 *             are empty
 	 */
-	private long minPeriod(long current) {
+	protected long minPeriod(long current) {
 		long nextUpdate = Long.MAX_VALUE;
 		if (!timerList.isEmpty()) {
 			nextUpdate = timerList.getHead().getKey() - current;
@@ -170,44 +208,68 @@ public class ValueNode<T extends Comparable<T>> implements CurrentNode<T> {	//Nu
 		key = value;
 		if (DebugLog.DEBUG) Log.d(TAG, "ValueNode.updateValue - updated values");
 		
+		// thresholds first, event triggers should not wait behind client delivery
+		while (maxList.thresholdPassed(value)) {
+			if (!triggerHead(maxList)) break;
+			if (DebugLog.DEBUG) Log.d(TAG, "ValueNode.updateValue - max list pop");
+		}
+		
+		while (minList.thresholdPassed(value)) {
+			if (!triggerHead(minList)) break;
+			if (DebugLog.DEBUG) Log.d(TAG, "ValueNode.updateValue - min list pop");
+		}
+		
+		updateMonitors(((Number) value).floatValue(), timestamp);
+		
+		return minPeriod(timestamp);
+	}
+	
+	/**
+	 * Provide updated value to opportunistic and periodic monitors which are due
+	 * for an update, batching the value for the database and sending it to the
+	 * client callback of each monitor.
+	 * 
+	 * @param value        new value of metric, as stored in database
+	 * @param timestamp    timestamp for this update
+	 */
+	protected void updateMonitors(float value, long timestamp) {
 		TimerNode iter = eavesdropList.getHead();
 		while (iter != null) {
 			int monitorId = iter.getMonitorId();
-			ArrayList<DataEntry> dataList = batchedData.get(monitorId);
+			DataBatch dataList = batchedData.get(monitorId);
 			if (dataList == null) {
-				dataList = new ArrayList<DataEntry>();
+				dataList = DataBatch.obtain();
 				batchedData.put(monitorId, dataList);
 			}
-			dataList.add(new DataEntry(timestamp, ((Number) value).floatValue()));
+			boolean batchFull = dataList.add(timestamp, value);
 			
 			try {
-				Messenger messenger = iter.getCallback();
-				if (messenger != null) {
-					Message msg = Message.obtain(null, metric, key);
-					messenger.send(msg);
-				}
+				deliver(iter, value, timestamp);
 			} catch (RemoteException e) {
 				if (DebugLog.INFO) Log.i(TAG, "ValueNode.updateValue - DeadObjectException - removing opportunistic node");
 				e.printStackTrace();
 				eavesdropList.remove(monitorId);
-				insertBatch(monitorId, dataList);
+				deliveries.remove(monitorId);
+				insertBatch(monitorId, dataList, true);
 				batchedData.remove(monitorId);
 //				schedules.remove(monitorId);
 				adminObserver.setInactive(metric, monitorId);
+				iter = iter.next;
 				continue;
 			}
 			
 			if (DebugLog.DEBUG) Log.d(TAG, "ValueNode.updateValue - opportunistic list pop");
 			TimerNode tNode = eavesdropList.popNode(iter, monitorId);
 			if (tNode != null) {
-				insertBatch(monitorId, dataList);
+				finishDelivery(tNode);
+				insertBatch(monitorId, dataList, true);
 				batchedData.remove(monitorId);
 //				schedules.remove(monitorId);
 				adminObserver.setInactive(metric, monitorId);
 			}
-			else if (dataList.size() >= BATCH_SIZE) {
-				insertBatch(monitorId, dataList);
-				batchedData.put(monitorId, new ArrayList<DataEntry>());
+			else if (batchFull) {
+				insertBatch(monitorId, dataList, false);
+				batchedData.remove(monitorId);
 			}
 			
 			iter = iter.next;
@@ -215,96 +277,255 @@ public class ValueNode<T extends Comparable<T>> implements CurrentNode<T> {	//Nu
 		
 		while (timerList.headTimePassed(timestamp)) {
 			int monitorId = timerList.getHead().getMonitorId();
-			ArrayList<DataEntry> dataList = batchedData.get(monitorId);
+			DataBatch dataList = batchedData.get(monitorId);
 			if (dataList == null) {
-				dataList = new ArrayList<DataEntry>();
+				dataList = DataBatch.obtain();
 				batchedData.put(monitorId, dataList);
 			}
-			dataList.add(new DataEntry(timestamp, ((Number) value).floatValue()));
+			boolean batchFull = dataList.add(timestamp, value);
 			
 			try {
-//				Bundle b = new Bundle();
-//				b.putLong("value", value);
-				Messenger messenger = timerList.getHead().getCallback();
-				if (messenger != null) {
-					Message msg = Message.obtain(null, metric, key);
-					messenger.send(msg);
-				}
-//				msg.setData(b);
+				deliver(timerList.getHead(), value, timestamp);
 			} catch (RemoteException e) {
 				if (DebugLog.INFO) Log.i(TAG, "ValueNode.updateValue - DeadObjectException - removing node");
 				e.printStackTrace();
 				timerList.removeHead();
-				insertBatch(monitorId, dataList);
+				deliveries.remove(monitorId);
+				insertBatch(monitorId, dataList, true);
 				batchedData.remove(monitorId);
 				schedules.remove(monitorId);
 				adminObserver.setInactive(metric, monitorId);
 				continue;
 			}
 			if (DebugLog.DEBUG) Log.d(TAG, "ValueNode.updateValue - timer list pop");
+			timerList.getHead().observe(value, timestamp);
 			TimerNode tNode = timerList.popHead();
 			if (tNode != null) {
-				insertBatch(monitorId, dataList);
+				finishDelivery(tNode);
+				insertBatch(monitorId, dataList, true);
 				batchedData.remove(monitorId);
 				schedules.remove(monitorId);
 				adminObserver.setInactive(metric, monitorId);
 			}
-			else if (dataList.size() >= BATCH_SIZE) {
-				insertBatch(monitorId, dataList);
-				batchedData.put(monitorId, new ArrayList<DataEntry>());
+			else if (batchFull) {
+				insertBatch(monitorId, dataList, false);
+				batchedData.remove(monitorId);
 			}
 		}
-		
-		while (maxList.thresholdPassed(value)) {
-			final ExpressionNode enode = maxList.pophead().getCondition();
-			if (enode == null) {
-				if (DebugLog.DEBUG) Log.d(TAG, "ValueNode.updateValue - max list pop head returned empty");
-				break;
+	}
+	
+	/**
+	 * Send new sample to the client callback of a monitor.  Monitors with batched
+	 * delivery accumulate samples into a {@link SampleBatch}, which is sent once it
+	 * holds maxCount samples, or once waiting for the next sample would hold the
+	 * first sample of the batch longer than maxLatency.  A flush is also posted for
+	 * maxLatency after the first sample, so the batch is sent on time even if the
+	 * next sample is late or never comes (such as for eavesdropping monitors).  Streamed monitors write
+	 * the sample to their {@link StreamChannel}, and local monitors pass it to their
+	 * {@link LocalListener}.  Other monitors receive one message per sample, with 
+	 * the value in the object field.
+	 * 
+	 * @param node    timer node of monitor due for update
+	 * @param value        new value of metric
+	 * @param timestamp    timestamp for this update
+	 * @throws RemoteException    if client callback is no longer available
+	 */
+	private void deliver(TimerNode node, float value, long timestamp) 
+			throws RemoteException {
+		Delivery delivery = deliveries.get(node.getMonitorId());
+		if (delivery != null) {
+			if (delivery.listener != null) {
+				delivery.listener.onUpdate(metric, value, timestamp);
+				return;
 			}
-			enode.getHandler().post(new Runnable() {
-
-				public void run() {
-					enode.triggered(null);
-				}
-			});
-			if (DebugLog.DEBUG) Log.d(TAG, "ValueNode.updateValue - max list pop");
-		}
-		
-		while (minList.thresholdPassed(value)) {
-			final ExpressionNode enode = minList.pophead().getCondition();
-			if (enode == null) {
-				if (DebugLog.INFO) Log.i(TAG, "ValueNode.updateValue - min list pop head returned empty");
-				break;
+			if (delivery.stream != null) {
+				delivery.stream.write(timestamp, metric, value);
+				return;
 			}
-			enode.getHandler().post(new Runnable() {
-
+		}
+		Messenger messenger = node.getCallback();
+		if (messenger == null) return;
+		if (delivery == null) {
+			Message msg = Message.obtain(null, metric, getMessageValue());
+			messenger.send(msg);
+			return;
+		}
+		if (delivery.batch == null) {
+			delivery.batch = new SampleBatch(metric, delivery.maxCount);
+			scheduleFlush(messenger, delivery, timestamp);
+		}
+		int count = delivery.batch.add(timestamp, value);
+		if ((count >= delivery.maxCount) || ((timestamp + node.getPeriod() - 
+				delivery.batch.getFirstTimestamp()) > delivery.maxLatency)) {
+			sendBatch(messenger, delivery);
+		}
+	}
+	
+	/**
+	 * Post flush of the batch just opened by a sample, at maxLatency after the
+	 * sample.  The flush is removed when the batch is sent earlier.
+	 * 
+	 * @param messenger    client callback of monitor
+	 * @param delivery    delivery settings and pending batch of monitor
+	 * @param timestamp    timestamp of first sample of batch
+	 */
+	private void scheduleFlush(Messenger messenger, final Delivery delivery, 
+			long timestamp) {
+		if (delivery.handler == null) return;
+		delivery.messenger = messenger;
+		if (delivery.flush == null) {
+			delivery.flush = new Runnable() {
+				
 				public void run() {
-					enode.triggered(null);
+					if (delivery.batch == null) return;
+					try {
+						sendBatch(delivery.messenger, delivery);
+					} catch (RemoteException e) {
+						if (DebugLog.INFO) Log.i(TAG, "ValueNode.flush - DeadObjectException - dropping batch");
+					}
 				}
-			});
-			if (DebugLog.DEBUG) Log.d(TAG, "ValueNode.updateValue - min list pop");
+			};
 		}
-		
-		return minPeriod(timestamp);
+		delivery.handler.postAtTime(delivery.flush, timestamp + delivery.maxLatency);
 	}
 	
 	/**
-	 * Schedules runnable which will insert batched data into database.
+	 * Send pending samples of monitor with batched delivery to its client, or 
+	 * release its stream, and remove its delivery settings.  Called when monitor 
+	 * completes or is removed.
 	 * 
-	 * @param monitorId    ID of monitor batched data is collected for
-	 * @param data    array list of batched data (data, timestamp pairs)
+	 * @param node    timer node of monitor
+	 */
+	private void finishDelivery(TimerNode node) {
+		Delivery delivery = deliveries.get(node.getMonitorId());
+		if (delivery == null) return;
+		deliveries.remove(node.getMonitorId());
+		if (delivery.stream != null) {
+			delivery.stream.release();
+			return;
+		}
+		Messenger messenger = node.getCallback();
+		if ((messenger == null) || (delivery.batch == null)) return;
+		try {
+			sendBatch(messenger, delivery);
+		} catch (RemoteException e) {
+			if (DebugLog.INFO) Log.i(TAG, "ValueNode.finishDelivery - DeadObjectException - dropping batch");
+		}
+	}
+	
+	/**
+	 * Send batch of samples of monitor as a single message.  A new batch is 
+	 * started with the next sample, as the sent batch may be held by the client.
+	 * 
+	 * @param messenger    client callback of monitor
+	 * @param delivery    delivery settings and pending batch of monitor
+	 * @throws RemoteException    if client callback is no longer available
+	 */
+	private void sendBatch(Messenger messenger, Delivery delivery) 
+			throws RemoteException {
+		SampleBatch batch = delivery.batch;
+		delivery.batch = null;
+		if (delivery.flush != null) {
+			delivery.handler.removeCallbacks(delivery.flush);
+		}
+		batch.trim();
+		Bundle data = new Bundle();
+		data.putParcelable(SampleBatch.KEY, batch);
+		Message msg = Message.obtain(null, metric, batch.size(), 0);
+		msg.setData(data);
+		messenger.send(msg);
+		if (DebugLog.DEBUG) Log.d(TAG, "ValueNode.sendBatch - sent " + batch.size() + 
+				" samples of metric " + metric);
+	}
+	
+	/**
+	 * Use batched delivery of samples for a monitor of this node, rather than one 
+	 * message per sample.  Must be called after the monitor is inserted.
+	 * 
+	 * @param monitorId    unique id of monitor
+	 * @param maxLatency    maximum time a sample may be held before it is sent
+	 *                        (milliseconds)
+	 * @param maxCount    maximum number of samples per batch, at most 
+	 *                      {@link SampleBatch#MAX_COUNT}
+	 * @param handler    handler of metric thread, used to send a batch once its 
+	 *                     first sample is held for maxLatency
+	 */
+	public void setDelivery(int monitorId, long maxLatency, int maxCount, 
+			Handler handler) {
+		deliveries.put(monitorId, new Delivery(maxLatency, maxCount, handler));
+	}
+	
+	/**
+	 * Stream samples of a monitor of this node through shared memory, rather than
+	 * sending messages.  Must be called after the monitor is inserted.  The stream
+	 * is released once the monitor completes or is removed.
+	 * 
+	 * @param monitorId    unique id of monitor
+	 * @param stream    stream channel to write samples to, already acquired for 
+	 *                    this monitor
 	 */
-	private void insertBatch(final int monitorId, final ArrayList<DataEntry> data) {
-		dbHandler.post(new Runnable() {
+	void setStream(int monitorId, StreamChannel stream) {
+		deliveries.put(monitorId, new Delivery(stream));
+	}
+	
+	/**
+	 * Pass samples of a monitor of this node directly to a listener in this 
+	 * process, rather than sending messages.  Must be called after the monitor is 
+	 * inserted.
+	 * 
+	 * @param monitorId    unique id of monitor
+	 * @param listener    listener to call with each sample
+	 */
+	void setListener(int monitorId, LocalListener listener) {
+		deliveries.put(monitorId, new Delivery(listener));
+	}
+	
+	/**
+	 * Pop condition at head of threshold list, and schedule notification of its
+	 * expression node on the expression node's handler.
+	 * 
+	 * @param list    threshold list whose head threshold has been passed
+	 * @return    false if threshold list returned no condition to trigger
+	 */
+	protected boolean triggerHead(ThresholdList<T> list) {
+		final ExpressionNode enode = list.pophead().getCondition();
+		if (enode == null) {
+			if (DebugLog.DEBUG) Log.d(TAG, "ValueNode.triggerHead - pop head returned empty");
+			return false;
+		}
+		enode.getHandler().post(new Runnable() {
 
 			public void run() {
-				Context context = MyApplication.getAppContext();
-				CimonDatabaseAdapter database = CimonDatabaseAdapter.getInstance(context);
-				database.insertBatchData(metric, monitorId, data);
+				enode.triggered(null);
 			}
 		});
+		return true;
+	}
+	
+	/**
+	 * Return value object sent to clients in update messages.
+	 * 
+	 * @return    current value of metric
+	 */
+	protected Object getMessageValue() {
+		return key;
 	}
 	
+	/**
+	 * Queue batched data to be inserted into database, through the bounded 
+	 * {@link LogQueue} of this node.  The batch is returned to its pool once it has
+	 * been inserted, or dropped.
+	 * 
+	 * @param monitorId    ID of monitor batched data is collected for
+	 * @param data    batch of data (timestamp, value pairs)
+	 * @param last    true if monitor has completed or been removed, so batch is 
+	 *                   never dropped
+	 */
+	private void insertBatch(int monitorId, DataBatch data, boolean last) {
+		logQueue.offer(monitorId, data, last);
+	}
+
+	
 	public boolean removeThresh(int monitorId, boolean max) {
 		if (max) {
 			maxList.remove(monitorId);
@@ -320,20 +541,22 @@ public class ValueNode<T extends Comparable<T>> implements CurrentNode<T> {	//Nu
 		TimerNode tNode = timerList.remove(monitorId);
 		if (tNode != null) {
 //			int monitorId = tNode.getMonitorId();
+			finishDelivery(tNode);
 			schedules.remove(monitorId);
-			ArrayList<DataEntry> dataList = batchedData.get(monitorId);
+			DataBatch dataList = batchedData.get(monitorId);
 			if (dataList != null) {
-				insertBatch(monitorId, dataList);
+				insertBatch(monitorId, dataList, true);
 				batchedData.remove(monitorId);
 			}
 		}
 		else {
 			tNode = eavesdropList.remove(monitorId);
 			if (tNode != null) {
+				finishDelivery(tNode);
 //				schedules.remove(monitorId);
-				ArrayList<DataEntry> dataList = batchedData.get(monitorId);
+				DataBatch dataList = batchedData.get(monitorId);
 				if (dataList != null) {
-					insertBatch(monitorId, dataList);
+					insertBatch(monitorId, dataList, true);
 					batchedData.remove(monitorId);
 				}
 			}
@@ -360,6 +583,25 @@ public class ValueNode<T extends Comparable<T>> implements CurrentNode<T> {	//Nu
 		schedules.put(monitorId, tNode);
 	}
 
+	/**
+	 * Insert adaptive monitor, which provides updated values at intervals between
+	 * _minPeriod_ and _maxPeriod_, following the variability of the metric.
+	 * 
+	 * @param monitorId    unique id of monitor
+	 * @param minPeriod    minimum period in milliseconds between updates
+	 * @param maxPeriod    maximum period in milliseconds between updates
+	 * @param tolerance    error tolerance, in units of the metric
+	 * @param callback     messenger to handle callback with updated values
+	 * @param duration     duration to monitor, in milliseconds (0 for continuous)
+	 * 
+	 * @see AdaptiveTimerNode
+	 */
+	public void insertAdaptive(int monitorId, long minPeriod, long maxPeriod, float tolerance,
+			Messenger callback, long duration) {
+		// period varies, so adaptive monitors are not used to align other schedules
+		timerList.insertAdaptive(monitorId, minPeriod, maxPeriod, tolerance, callback, duration);
+	}
+
 	public void insertOpportunistic(int monitorId, long maxperiod, Messenger callback, long duration) {
 		TimerNode tNode = eavesdropList.insert(monitorId, maxperiod, callback, duration);
 	}
@@ -371,23 +613,7 @@ public class ValueNode<T extends Comparable<T>> implements CurrentNode<T> {	//Nu
 	public long getNextUpdate() {
 		long current = SystemClock.elapsedRealtime();
 				
-		long nextUpdate = Long.MAX_VALUE;
-		if (!timerList.isEmpty()) {
-			TimerNode tNode = timerList.getHead();
-			while (tNode.nodeTimePassed(current)) {
-				if ((tNode.getPeriod() > 0) && (tNode.getPeriod() < nextUpdate)) {
-					nextUpdate = tNode.getPeriod();
-				}
-				tNode = tNode.next;
-				if (tNode == null) break;
-			}
-			if (tNode != null) {
-				long nextKey = tNode.getKey() - current;
-				if (nextKey < nextUpdate) {
-					nextUpdate = nextKey;
-				}
-			}
-		}
+		long nextUpdate = timerList.getNextUpdate(current);
 		if (!eavesdropList.isEmpty()) {
 			if (eavesdropList.getMinPeriod() < nextUpdate) {
 				nextUpdate = eavesdropList.getMinPeriod();
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Versioned snapshot of the current values of a metric group, which may be read 
+ * from any thread without locking.  The metric thread publishes all values of the 
+ * group after each update, and readers obtain values which all belong to the same 
+ * update.
+ * <p>
+ * This is a sequence lock: the sequence number is odd while the writer is storing 
+ * values, and is incremented again once it is done.  A reader copies the values
+ * and retries if the sequence number was odd, or changed while copying.  The writer
+ * never waits for readers.  Values are stored as raw double bits in an atomic array,
+ * so the reads of the values can not be reordered past the second read of the 
+ * sequence number.
+ * 
+ * @author darts
+ * 
+ * @see MetricService
+ *
+ */
+final class ValueSnapshot {
+	
+	/** Failed attempts after which readers yield between attempts. */
+	private static final int SPIN_LIMIT = 64;
+	
+	private final int size;
+	/** Raw bits of values, followed by the timestamp of the update. */
+	private final AtomicLongArray slots;
+	/** Sequence number, odd while values are being stored. */
+	private volatile long sequence = 0;
+	
+	/**
+	 * Create snapshot with all values unavailable (NaN).
+	 * 
+	 * @param size    number of metrics in the group
+	 */
+	ValueSnapshot(int size) {
+		this.size = size;
+		slots = new AtomicLongArray(size + 1);
+		final long nan = Double.doubleToRawLongBits(Double.NaN);
+		for (int i = 0; i < size; i++) {
+			slots.set(i, nan);
+		}
+		slots.set(size, -1);
+	}
+	
+	/**
+	 * Number of metrics in the snapshot.
+	 * 
+	 * @return    number of values
+	 */
+	int size() {
+		return size;
+	}
+	
+	/**
+	 * Start storing values of a new update.  Only a single thread (the metric thread 
+	 * of the group) may store values.
+	 */
+	void begin() {
+		sequence = sequence + 1;
+	}
+	
+	/**
+	 * Store value of a metric.  Must be called between {@link #begin()} and
+	 * {@link #end(long)}.
+	 * 
+	 * @param index    offset of metric from group id
+	 * @param value    new value, NaN if unavailable
+	 */
+	void set(int index, double value) {
+		slots.lazySet(index, Double.doubleToRawLongBits(value));
+	}
+	
+	/**
+	 * Publish values stored since {@link #begin()} to readers.
+	 * 
+	 * @param timestamp    uptime of update (milliseconds)
+	 */
+	void end(long timestamp) {
+		slots.lazySet(size, timestamp);
+		sequence = sequence + 1;
+	}
+	
+	/**
+	 * Copy values of all metrics from the same update.
+	 * 
+	 * @param dest    array to store values in, of at least {@link #size()} entries
+	 * @return    uptime of update (milliseconds), -1 if no update was published yet
+	 */
+	long read(double[] dest) {
+		for (int attempt = 1; ; attempt++) {
+			final long seq = sequence;
+			if ((seq & 1) == 0) {
+				for (int i = 0; i < size; i++) {
+					dest[i] = Double.longBitsToDouble(slots.get(i));
+				}
+				final long timestamp = slots.get(size);
+				if (sequence == seq) {
+					return timestamp;
+				}
+			}
+			if (attempt >= SPIN_LIMIT) {
+				Thread.yield();
+			}
+		}
+	}
+	
+	/**
+	 * Copy values of selected metrics from the same update, straight into the 
+	 * caller's array.  Entries are overwritten again if the copy must be retried.
+	 * 
+	 * @param metrics    integers representing metrics (per {@link Metrics}) of a batch
+	 * @param indices    indices of the entries of the batch which belong to this group
+	 * @param groupId    id of metric group, the metric at offset 0 of the snapshot
+	 * @param dest    array to store values in, at the same index as metrics
+	 * @return    uptime of update (milliseconds), -1 if no update was published yet
+	 */
+	long read(int[] metrics, int[] indices, int groupId, double[] dest) {
+		for (int attempt = 1; ; attempt++) {
+			final long seq = sequence;
+			if ((seq & 1) == 0) {
+				for (int i : indices) {
+					dest[i] = Double.longBitsToDouble(slots.get(metrics[i] - groupId));
+				}
+				final long timestamp = slots.get(size);
+				if (sequence == seq) {
+					return timestamp;
+				}
+			}
+			if (attempt >= SPIN_LIMIT) {
+				Thread.yield();
+			}
+		}
+	}
+	
+	/**
+	 * Uptime of the most recently published update.
+	 * 
+	 * @return    uptime of update (milliseconds), -1 if no update was published yet
+	 */
+	long getTimestamp() {
+		return slots.get(size);
+	}
+	
+	/**
+	 * Obtain most recently published value of a single metric.
+	 * 
+	 * @param index    offset of metric from group id
+	 * @return    value of metric, NaN if unavailable
+	 */
+	double get(int index) {
+		return Double.longBitsToDouble(slots.get(index));
+	}
+	
+}
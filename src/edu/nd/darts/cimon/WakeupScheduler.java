@@ -0,0 +1,323 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon;
+
+import java.util.ArrayList;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * Process wide scheduler of metric updates, which coalesces the timed updates of
+ * metric groups sharing a looper into as few wakeups of that looper as possible.
+ * <p>
+ * Each group schedules its next update with a deadline, and a tolerance for how 
+ * late the update may run.  For each looper, the scheduler posts a single wakeup,
+ * at the earliest time by which any update pending on that looper must run (the
+ * smallest deadline plus tolerance).  When it runs, every pending update of the
+ * looper whose deadline has been reached runs in the same wakeup, on the looper
+ * itself, so groups remain confined to their own threads and no other thread is
+ * woken.  Choosing the earliest latest time runs the most updates per wakeup for
+ * any set of tolerance windows.
+ * <p>
+ * Only groups sharing a looper (such as the groups of a pool worker of
+ * {@link MetricExecutor}) can share its wakeups, so the tolerance is only used
+ * while other groups are scheduled on the same looper.  The update of a group
+ * alone on its looper runs at its deadline.
+ * <p>
+ * Updates never run before their deadline, so monitors are not updated early,
+ * only late by at most their tolerance.  Since monitors are rescheduled on their own period, the 
+ * delay does not accumulate.
+ * <p>
+ * Wakeups are posted with {@link Handler#postAtTime(Runnable, long)}, on uptime,
+ * which stops while the device is asleep.  Coalescing therefore saves looper wakeups
+ * (and context switches) of the service while the device is awake; it does not
+ * wake the device, nor reduce how often the device itself wakes.
+ * 
+ * @author darts
+ * 
+ * @see MetricService#scheduleNextUpdate(long)
+ * @see MetricExecutor
+ *
+ */
+final class WakeupScheduler {
+	
+	private static final String TAG = "NDroid";
+	
+	/** Tolerance of an update, as a fraction (1/n) of the delay before its deadline. */
+	static final int TOLERANCE_DIVISOR = 10;
+	/** Maximum tolerance of an update, in milliseconds. */
+	static final long MAX_TOLERANCE = 1000;
+	
+	private static WakeupScheduler mInstance = null;
+	
+	/** Wakeup of each looper with scheduled groups. */
+	private final ArrayList<LooperWakeup> loopers = new ArrayList<LooperWakeup>();
+	/** Wakeup of looper of each scheduled group. */
+	private final SparseArray<LooperWakeup> groups = new SparseArray<LooperWakeup>();
+	private long wakeups = 0;
+	private long releases = 0;
+	
+	/**
+	 * Pending update of a metric group.
+	 */
+	private static final class Request {
+		final int groupId;
+		Runnable update;
+		long deadline;
+		long latest;
+		boolean pending;
+		
+		Request(int groupId) {
+			this.groupId = groupId;
+		}
+	}
+	
+	/**
+	 * Single wakeup of a looper, which runs the due updates of all groups scheduled
+	 * on that looper.
+	 */
+	private final class LooperWakeup implements Runnable {
+		final Handler handler;
+		final SparseArray<Request> requests = new SparseArray<Request>();
+		/** Updates due in current wakeup, reused between wakeups. */
+		final ArrayList<Request> due = new ArrayList<Request>();
+		long armedTime = Long.MAX_VALUE;
+		
+		LooperWakeup(Handler handler) {
+			this.handler = handler;
+		}
+		
+		public void run() {
+			int released = 0;
+			synchronized (WakeupScheduler.this) {
+				armedTime = Long.MAX_VALUE;
+				collectDue(this, SystemClock.uptimeMillis());
+			}
+			for (int i = 0; i < due.size(); i++) {
+				Request request = due.get(i);
+				Runnable update;
+				synchronized (WakeupScheduler.this) {
+					// skip groups cancelled by updates run before them
+					if ((requests.get(request.groupId) != request) || request.pending) continue;
+					update = request.update;
+				}
+				update.run();
+				released++;
+			}
+			synchronized (WakeupScheduler.this) {
+				for (int i = 0; i < due.size(); i++) {
+					Request request = due.get(i);
+					// groups which did not reschedule no longer share this looper
+					if ((requests.get(request.groupId) == request) && !request.pending) {
+						requests.remove(request.groupId);
+						groups.remove(request.groupId);
+					}
+				}
+				due.clear();
+				if (released > 0) {
+					wakeups++;
+					releases += released;
+				}
+				arm(this);
+			}
+			if (DebugLog.DEBUG) Log.d(TAG, "WakeupScheduler.run - ran " + released + 
+					" updates, looper wakeups saved: " + getWakeupsSaved());
+		}
+	}
+	
+	/**
+	 * Get process wide scheduler.
+	 * 
+	 * @return    single instance of scheduler
+	 */
+	static synchronized WakeupScheduler getInstance() {
+		if (mInstance == null) {
+			mInstance = new WakeupScheduler();
+		}
+		return mInstance;
+	}
+	
+	/**
+	 * Tolerance for update with the given delay before its deadline.
+	 * 
+	 * @param delay    delay before deadline, in milliseconds
+	 * @return    time update may be delayed past deadline, in milliseconds
+	 */
+	static long tolerance(long delay) {
+		return Math.min(Math.max(delay, 0) / TOLERANCE_DIVISOR, MAX_TOLERANCE);
+	}
+	
+	/**
+	 * Schedule update of metric group.  Replaces any pending update of the group.
+	 * The tolerance is ignored while no other group is scheduled on the looper
+	 * of the handler.
+	 * 
+	 * @param groupId      id of metric group
+	 * @param handler      handler of looper of metric group
+	 * @param update       update to run on looper of handler
+	 * @param deadline     uptime at which update is due
+	 * @param tolerance    time update may be delayed past deadline, in milliseconds
+	 * @return    uptime by which update will run
+	 */
+	synchronized long schedule(int groupId, Handler handler, Runnable update, 
+			long deadline, long tolerance) {
+		LooperWakeup wakeup = groups.get(groupId);
+		if ((wakeup != null) && (wakeup.handler.getLooper() != handler.getLooper())) {
+			cancel(groupId);
+			wakeup = null;
+		}
+		if (wakeup == null) {
+			wakeup = wakeupOf(handler);
+			groups.put(groupId, wakeup);
+		}
+		Request request = wakeup.requests.get(groupId);
+		if (request == null) {
+			request = new Request(groupId);
+			wakeup.requests.put(groupId, request);
+		}
+		request.update = update;
+		request.deadline = deadline;
+		request.latest = (wakeup.requests.size() > 1) ? deadline + tolerance : deadline;
+		request.pending = true;
+		arm(wakeup);
+		return request.latest;
+	}
+	
+	/**
+	 * Cancel pending update of metric group.
+	 * 
+	 * @param groupId    id of metric group
+	 */
+	synchronized void cancel(int groupId) {
+		LooperWakeup wakeup = groups.get(groupId);
+		if (wakeup == null) return;
+		groups.remove(groupId);
+		wakeup.requests.remove(groupId);
+		arm(wakeup);
+	}
+	
+	/**
+	 * Time at which the looper of handler must next wake: the earliest time by
+	 * which any update pending on that looper must run.
+	 * 
+	 * @param handler    handler of looper
+	 * @return    uptime of next wakeup, Long.MAX_VALUE if no updates are pending
+	 */
+	synchronized long nextWakeup(Handler handler) {
+		for (int i = 0; i < loopers.size(); i++) {
+			if (loopers.get(i).handler.getLooper() == handler.getLooper()) {
+				return nextWakeup(loopers.get(i));
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+	
+	/**
+	 * Number of looper wakeups which ran updates.
+	 * 
+	 * @return    count of wakeups
+	 */
+	synchronized long getWakeups() {
+		return wakeups;
+	}
+	
+	/**
+	 * Number of updates run by the scheduler.
+	 * 
+	 * @return    count of updates
+	 */
+	synchronized long getReleases() {
+		return releases;
+	}
+	
+	/**
+	 * Number of looper wakeups avoided by running updates together, compared to
+	 * waking the looper once for each update.
+	 * 
+	 * @return    count of wakeups saved
+	 */
+	synchronized long getWakeupsSaved() {
+		return releases - wakeups;
+	}
+	
+	/**
+	 * Counters of scheduler, as reported by {@link CimonInterface#getWakeupStats()}.
+	 * 
+	 * @return    array of looper wakeups, updates run and wakeups saved
+	 */
+	synchronized long[] getStats() {
+		return new long[] {wakeups, releases, releases - wakeups};
+	}
+	
+	/**
+	 * Wakeup of looper of handler, created on first use.
+	 */
+	private LooperWakeup wakeupOf(Handler handler) {
+		for (int i = 0; i < loopers.size(); i++) {
+			if (loopers.get(i).handler.getLooper() == handler.getLooper()) {
+				return loopers.get(i);
+			}
+		}
+		LooperWakeup wakeup = new LooperWakeup(handler);
+		loopers.add(wakeup);
+		return wakeup;
+	}
+	
+	/**
+	 * Move pending updates of looper which are due at time now to its due list.
+	 */
+	private static void collectDue(LooperWakeup wakeup, long now) {
+		for (int i = 0; i < wakeup.requests.size(); i++) {
+			Request request = wakeup.requests.valueAt(i);
+			if (!request.pending || (request.deadline > now)) continue;
+			request.pending = false;
+			wakeup.due.add(request);
+		}
+	}
+	
+	private static long nextWakeup(LooperWakeup wakeup) {
+		long time = Long.MAX_VALUE;
+		for (int i = 0; i < wakeup.requests.size(); i++) {
+			Request request = wakeup.requests.valueAt(i);
+			if (request.pending && (request.latest < time)) {
+				time = request.latest;
+			}
+		}
+		return time;
+	}
+	
+	/**
+	 * Post wakeup of looper for the earliest latest time of its pending updates,
+	 * if not already posted for that time.
+	 */
+	private static void arm(LooperWakeup wakeup) {
+		long time = nextWakeup(wakeup);
+		if (time == wakeup.armedTime) return;
+		wakeup.handler.removeCallbacks(wakeup);
+		wakeup.armedTime = time;
+		if (time != Long.MAX_VALUE) {
+			wakeup.handler.postAtTime(wakeup, time);
+		}
+	}
+	
+}
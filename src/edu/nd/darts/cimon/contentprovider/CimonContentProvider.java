@@ -27,6 +27,7 @@ import edu.nd.darts.cimon.database.MetricInfoTable;
 import edu.nd.darts.cimon.database.MetricStatusTable;
 import edu.nd.darts.cimon.database.MetricsTable;
 import edu.nd.darts.cimon.database.MonitorTable;
+import edu.nd.darts.cimon.database.RollupTable;
 import android.content.ContentProvider;
 import android.content.ContentResolver;
 import android.content.ContentValues;
@@ -81,6 +82,18 @@ public class CimonContentProvider extends ContentProvider {
 	private final static int STATUS = 70;
 	/** MetricStatus table item (active status). */
 	private final static int STATUS_ID = 75;
+	/** Minute rollup table. */
+	private final static int MINUTE = 80;
+	/** Minute rollup table, for a single monitor. */
+	private final static int MONITOR_MINUTE = 82;
+	/** Minute rollup table, for a single metric. */
+	private final static int METRIC_MINUTE = 84;
+	/** Hour rollup table. */
+	private final static int HOUR = 90;
+	/** Hour rollup table, for a single monitor. */
+	private final static int MONITOR_HOUR = 92;
+	/** Hour rollup table, for a single metric. */
+	private final static int METRIC_HOUR = 94;
 	
 	private final static String AUTHORITY = "edu.nd.darts.cimon.contentprovider";
 //	private final static String BASE_PATH = "cimon";
@@ -94,6 +107,12 @@ public class CimonContentProvider extends ContentProvider {
 	private final static String METRIC_DATA_PATH = "metricdata";
 //	private final static String GROUP_DATA_PATH = "groupdata";
 	private final static String MONITOR_DATA_PATH = "monitordata";
+	private final static String MINUTE_PATH = "minute";
+	private final static String MONITOR_MINUTE_PATH = "monitorminute";
+	private final static String METRIC_MINUTE_PATH = "metricminute";
+	private final static String HOUR_PATH = "hour";
+	private final static String MONITOR_HOUR_PATH = "monitorhour";
+	private final static String METRIC_HOUR_PATH = "metrichour";
 	/** Metric group information.
 	 *  @see MetricInfoTable
 	 */
@@ -143,6 +162,52 @@ public class CimonContentProvider extends ContentProvider {
 	 */
 	public final static Uri METRIC_DATA_URI = Uri.parse("content://" + 
 								AUTHORITY + "/" + METRIC_DATA_PATH);
+	/** Minute rollups of readings.
+	 *  @see RollupTable
+	 */
+	public final static Uri MINUTE_URI = Uri.parse("content://" + 
+								AUTHORITY + "/" + MINUTE_PATH);
+	/** Minute rollups of readings for a specific monitor.
+	 *  @see RollupTable
+	 *  @see MonitorTable
+	 */
+	public final static Uri MONITOR_MINUTE_URI = Uri.parse("content://" + 
+								AUTHORITY + "/" + MONITOR_MINUTE_PATH);
+	/** Minute rollups of readings for a specific metric.
+	 *  @see RollupTable
+	 *  @see MetricsTable
+	 */
+	public final static Uri METRIC_MINUTE_URI = Uri.parse("content://" + 
+								AUTHORITY + "/" + METRIC_MINUTE_PATH);
+	/** Hour rollups of readings.
+	 *  @see RollupTable
+	 */
+	public final static Uri HOUR_URI = Uri.parse("content://" + 
+								AUTHORITY + "/" + HOUR_PATH);
+	/** Hour rollups of readings for a specific monitor.
+	 *  @see RollupTable
+	 *  @see MonitorTable
+	 */
+	public final static Uri MONITOR_HOUR_URI = Uri.parse("content://" + 
+								AUTHORITY + "/" + MONITOR_HOUR_PATH);
+	/** Hour rollups of readings for a specific metric.
+	 *  @see RollupTable
+	 *  @see MetricsTable
+	 */
+	public final static Uri METRIC_HOUR_URI = Uri.parse("content://" + 
+								AUTHORITY + "/" + METRIC_HOUR_PATH);
+	
+	/** Query parameter for {@link #MONITOR_DATA_URI}: maximum number of readings 
+	 *  returned, ordered by timestamp and row id.  Use with {@link #PARAM_AFTER_TIME} 
+	 *  and {@link #PARAM_AFTER_ID} to page through readings.
+	 *  @see #monitorPageUri(int, long, long, int) */
+	public final static String PARAM_LIMIT = "limit";
+	/** Query parameter for {@link #MONITOR_DATA_URI}: timestamp of last reading
+	 *  of previous page. */
+	public final static String PARAM_AFTER_TIME = "aftertime";
+	/** Query parameter for {@link #MONITOR_DATA_URI}: row id of last reading
+	 *  of previous page. */
+	public final static String PARAM_AFTER_ID = "afterid";
 	
 	public final static String CONTENT_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE
 			+ "/cimon";
@@ -164,6 +229,34 @@ public class CimonContentProvider extends ContentProvider {
 		sURIMatcher.addURI(AUTHORITY, METRIC_GROUP_PATH + "/#", GRP_METRICS);
 		sURIMatcher.addURI(AUTHORITY, MONITOR_DATA_PATH + "/#", MONITOR_DATA);
 		sURIMatcher.addURI(AUTHORITY, METRIC_DATA_PATH + "/#", METRIC_DATA);
+		sURIMatcher.addURI(AUTHORITY, MINUTE_PATH, MINUTE);
+		sURIMatcher.addURI(AUTHORITY, MONITOR_MINUTE_PATH + "/#", MONITOR_MINUTE);
+		sURIMatcher.addURI(AUTHORITY, METRIC_MINUTE_PATH + "/#", METRIC_MINUTE);
+		sURIMatcher.addURI(AUTHORITY, HOUR_PATH, HOUR);
+		sURIMatcher.addURI(AUTHORITY, MONITOR_HOUR_PATH + "/#", MONITOR_HOUR);
+		sURIMatcher.addURI(AUTHORITY, METRIC_HOUR_PATH + "/#", METRIC_HOUR);
+	}
+
+	/**
+	 * Build uri for a page of readings of a monitor.  Pages are ordered by 
+	 * timestamp and row id, and should be queried with a projection which 
+	 * includes both.
+	 * 
+	 * @param monitor           id of monitor
+	 * @param afterTimestamp    timestamp of last reading of previous page, or
+	 *                            {@link Long#MIN_VALUE} for first page
+	 * @param afterId           row id of last reading of previous page, or -1 for
+	 *                            first page
+	 * @param limit             maximum number of readings in page
+	 * @return    uri of page
+	 */
+	public static Uri monitorPageUri(int monitor, long afterTimestamp, long afterId, 
+			int limit) {
+		return Uri.withAppendedPath(MONITOR_DATA_URI, String.valueOf(monitor)).buildUpon()
+				.appendQueryParameter(PARAM_AFTER_TIME, String.valueOf(afterTimestamp))
+				.appendQueryParameter(PARAM_AFTER_ID, String.valueOf(afterId))
+				.appendQueryParameter(PARAM_LIMIT, String.valueOf(limit))
+				.build();
 	}
 
 	@Override
@@ -194,6 +287,12 @@ public class CimonContentProvider extends ContentProvider {
 			case DATA:
 			case MONITOR_DATA:
 			case STATUS:
+			case MINUTE:
+			case MONITOR_MINUTE:
+			case METRIC_MINUTE:
+			case HOUR:
+			case MONITOR_HOUR:
+			case METRIC_HOUR:
 				return CONTENT_TYPE;
 			case INFO_ID:
 			case METRICS_ID:
@@ -241,6 +340,16 @@ public class CimonContentProvider extends ContentProvider {
 			case MONITOR_ID:
 				queryBuilder.setTables(MonitorTable.TABLE_MONITOR);
 				break;
+			case MINUTE:
+			case MONITOR_MINUTE:
+			case METRIC_MINUTE:
+				queryBuilder.setTables(RollupTable.TABLE_MINUTE);
+				break;
+			case HOUR:
+			case MONITOR_HOUR:
+			case METRIC_HOUR:
+				queryBuilder.setTables(RollupTable.TABLE_HOUR);
+				break;
 			default:
 				throw new IllegalArgumentException("Unknown URI: " + uri);
 		}
@@ -248,6 +357,8 @@ public class CimonContentProvider extends ContentProvider {
 			case INFO:
 			case METRICS:
 			case DATA:
+			case MINUTE:
+			case HOUR:
 				break;
 			case INFO_ID:
 			case METRICS_ID:
@@ -274,8 +385,36 @@ public class CimonContentProvider extends ContentProvider {
 				queryBuilder.appendWhere(DataTable.COLUMN_MONITOR_ID + "="
 						+ uri.getLastPathSegment());
 				break;
+			case MONITOR_MINUTE:
+			case MONITOR_HOUR:
+				queryBuilder.appendWhere(RollupTable.COLUMN_MONITOR_ID + "="
+						+ uri.getLastPathSegment());
+				break;
+			case METRIC_MINUTE:
+			case METRIC_HOUR:
+				queryBuilder.appendWhere(RollupTable.COLUMN_METRIC_ID + "="
+						+ uri.getLastPathSegment());
+				break;
+		}
+		Cursor cursor;
+		String limit = uri.getQueryParameter(PARAM_LIMIT);
+		if ((uriType == MONITOR_DATA) && (limit != null)) {
+			cursor = queryPage(uri, projection, limit);
+		}
+		else if (uriType == MONITOR_DATA) {
+			// monitor may be stored in sample log rather than data table
+			cursor = database.queryMonitorData(Integer.parseInt(uri.getLastPathSegment()), 
+					queryBuilder, projection, selection, selectionArgs, sortOrder);
+		}
+		else if ((uriType == DATA) || (uriType == METRIC_DATA)) {
+			// include readings of monitors stored in sample log
+			cursor = database.queryData((uriType == DATA) ? -1 : 
+					Integer.parseInt(uri.getLastPathSegment()), queryBuilder, projection, 
+					selection, selectionArgs, sortOrder);
+		}
+		else {
+			cursor = database.query(queryBuilder, projection, selection, selectionArgs, sortOrder);
 		}
-		Cursor cursor = database.query(queryBuilder, projection, selection, selectionArgs, sortOrder);
 		
 		cursor.setNotificationUri(getContext().getContentResolver(), uri);
 		return cursor;
@@ -289,6 +428,23 @@ public class CimonContentProvider extends ContentProvider {
 //		return 0;
 	}
 	
+	/**
+	 * Query page of monitor readings, using keyset paging parameters of uri.
+	 */
+	private Cursor queryPage(Uri uri, String[] projection, String limit) {
+		String afterTime = uri.getQueryParameter(PARAM_AFTER_TIME);
+		String afterId = uri.getQueryParameter(PARAM_AFTER_ID);
+		try {
+			return database.queryMonitorPage(Integer.parseInt(uri.getLastPathSegment()), 
+					projection, 
+					(afterTime == null) ? Long.MIN_VALUE : Long.parseLong(afterTime), 
+					(afterId == null) ? -1 : Long.parseLong(afterId), 
+					Integer.parseInt(limit));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid paging parameters: " + uri);
+		}
+	}
+	
 	private void checkColumns(int uriType, String[] projection) {
 		if (DebugLog.DEBUG) Log.d(TAG, "CimonContentProvider.checkColumns - verifying projection list");
 		
@@ -19,44 +19,110 @@
  */
 package edu.nd.darts.cimon.database;
 
-import java.util.ArrayList;
+import java.io.File;
+import java.util.Arrays;
 
 import org.json.JSONObject;
 
-import edu.nd.darts.cimon.DataEntry;
+import edu.nd.darts.cimon.DataBatch;
 import edu.nd.darts.cimon.DebugLog;
 import edu.nd.darts.cimon.contentprovider.CimonContentProvider;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.MergeCursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
+import android.util.SparseArray;
 
 /**
  * Adapter for accessing CIMON database.
+ * All modifications are performed on a single writer connection, and are
+ * serialized by this adapter.  Queries are performed on a pool of read-only
+ * connections, and may run concurrently with inserts.
+ * <p>
+ * Readings are stored in day partitions of the Data table, and aggregated into
+ * minute and hour rollups as they are inserted.  Partitions and rollups older
+ * than the {@link #setRetention(int, int, int) retention periods} are dropped
+ * as new partitions are created.  Data is retained indefinitely until retention
+ * periods are set.
+ * <p>
+ * Readings of high rate monitors may instead be stored in the {@link SampleLog},
+ * if requested when the monitor is {@link #insertMonitor(long, boolean) inserted}.
+ * Rollups are maintained for these monitors as well.
  * 
  * @author darts
  * 
  * @see CimonDatabaseHelper
+ * @see CimonReaderPool
+ * @see DataPartitions
+ * @see SampleLog
  *
  */
 public final class CimonDatabaseAdapter {
 	
 	private static final String TAG = "NDroid";
+	/** Rows inserted by each execution of multi-row insert statement. Keeps bound 
+	 *  parameters well below SQLite limit of 999. */
+	private static final int ROWS_PER_STATEMENT = 50;
+	/** First platform release with SQLite 3.7.11, which added multi-row VALUES 
+	 *  (Jelly Bean). */
+	private static final int MULTI_ROW_SDK = 16;
+	/** Retention period which retains data indefinitely (the default).  Raw
+	 *  readings are still dropped beyond {@link DataTable#MAX_PARTITIONS} days. */
+	public static final int RETAIN_ALL = DataPartitions.RETAIN_ALL;
+	/** Default maximum rows inserted in a single transaction by bulk inserts. */
+	public static final int DEFAULT_ROWS_PER_TRANSACTION = 1000;
+	/** Index of single row insert statement of data partitions. */
+	private static final int STATEMENT_ROW = 0;
+	/** Index of multi-row insert statement of data partitions. */
+	private static final int STATEMENT_ROWS = 1;
+	// Keyset paging of monitor readings, by timestamp then row id
+	private static final String PAGE_SELECTION = "(" + DataTable.COLUMN_TIMESTAMP + " > ? or (" 
+			+ DataTable.COLUMN_TIMESTAMP + " = ? and " + DataTable.COLUMN_ID + " > ?))";
+	private static final String PAGE_ORDER = DataTable.COLUMN_TIMESTAMP + ", " 
+			+ DataTable.COLUMN_ID;
+	// Name of database attached to in-memory copy of sample log readings
+	private static final String ATTACHED_DATABASE = "store";
+	// Query for time offset of monitor
+	private static final String MONITOR_OFFSET_QUERY = "select " 
+			+ MonitorTable.COLUMN_TIME_OFFSET + " from " + MonitorTable.TABLE_MONITOR 
+			+ " where " + MonitorTable.COLUMN_ID + " = ?";
+	// Update of count of dropped readings of monitor
+	private static final String MONITOR_DROPPED_UPDATE = "update " 
+			+ MonitorTable.TABLE_MONITOR + " set " + MonitorTable.COLUMN_DROPPED + " = " 
+			+ MonitorTable.COLUMN_DROPPED + " + ? where " + MonitorTable.COLUMN_ID + " = ?";
 	
 	private static CimonDatabaseAdapter mInstance = null;
 	private static SQLiteDatabase database;
 	private static CimonDatabaseHelper dbHelper;
+	private static SampleLog sampleLog;
+	private static volatile CimonReaderPool readerPool;
 	private static Context context;
+	private DataPartitions partitions;
+	private RollupWriter minuteRollup;
+	private RollupWriter hourRollup;
+	private SQLiteStatement monitorOffsetStatement;
+	private final SparseArray<Long> monitorOffsets = new SparseArray<Long>();
+	private int rowsPerTransaction = DEFAULT_ROWS_PER_TRANSACTION;
+	/** Rows per statement of bulk inserts, 1 where multi-row VALUES is unsupported. */
+	private int rowsPerStatement = 1;
 //	private String[] allColumns = { MySQLiteHelper.COLUMN_ID,
 //			MySQLiteHelper.COLUMN_COMMENT };
 
 	private CimonDatabaseAdapter(Context context) {
 		if (DebugLog.DEBUG) Log.d(TAG, "CimonDatabaseAdapter - constructor");
 		dbHelper = new CimonDatabaseHelper(context);
+		sampleLog = new SampleLog(new File(context.getFilesDir(), SampleLog.DIRECTORY));
 		CimonDatabaseAdapter.context = context;
 		this.open();
 	}
@@ -71,14 +137,75 @@ public final class CimonDatabaseAdapter {
 	
 	public void open() throws SQLException {
 		database = dbHelper.getWritableDatabase();
+		readerPool = CimonReaderPool.open(database, dbHelper.isWriteAheadLogging(), 
+				CimonStorageConfig.READER_CONNECTIONS);
+		minuteRollup = new RollupWriter(database, RollupTable.TABLE_MINUTE, 
+				RollupTable.MINUTE_PERIOD);
+		hourRollup = new RollupWriter(database, RollupTable.TABLE_HOUR, 
+				RollupTable.HOUR_PERIOD);
+		if (Build.VERSION.SDK_INT >= MULTI_ROW_SDK) {
+			rowsPerStatement = ROWS_PER_STATEMENT;
+		}
+		else {
+			rowsPerStatement = 1;
+		}
+		partitions = new DataPartitions(database, minuteRollup, hourRollup, sampleLog,
+				1, rowsPerStatement);
+		partitions.dropExpired();
+		monitorOffsetStatement = database.compileStatement(MONITOR_OFFSET_QUERY);
 	}
 
 	/**
 	 * Close open database object.
 	 */
 	public void close() {
+		partitions.close();
+		minuteRollup.close();
+		hourRollup.close();
+		monitorOffsetStatement.close();
+		sampleLog.close();
+		readerPool.close();
 		dbHelper.close();
 	}
+	
+	/**
+	 * Set maximum number of rows inserted in a single transaction by
+	 * {@link #insertBulkData(int, int, long[], float[], int)}.  Larger
+	 * transactions improve throughput, but hold the database lock longer.
+	 * 
+	 * @param rows    maximum rows per transaction (must be positive)
+	 */
+	public synchronized void setRowsPerTransaction(int rows) {
+		if (rows <= 0) {
+			throw new IllegalArgumentException("rows per transaction must be positive: " + rows);
+		}
+		rowsPerTransaction = rows;
+	}
+	
+	/**
+	 * Set retention periods of stored data, and drop any data which has expired.
+	 * Raw readings are dropped a whole day at a time, so up to one additional
+	 * day of readings may be retained.  Readings of each day are a partition of
+	 * the Data view, so raw readings are retained for less than
+	 * {@link DataTable#MAX_PARTITIONS} days.
+	 * 
+	 * @param dataDays      days of raw readings to retain (less than 
+	 *                        {@link DataTable#MAX_PARTITIONS}), or {@link #RETAIN_ALL}
+	 * @param minuteDays    days of minute rollups to retain, or {@link #RETAIN_ALL}
+	 * @param hourDays      days of hour rollups to retain, or {@link #RETAIN_ALL}
+	 */
+	public synchronized void setRetention(int dataDays, int minuteDays, int hourDays) {
+		if ((dataDays < 0) || (minuteDays < 0) || (hourDays < 0)) {
+			throw new IllegalArgumentException("retention periods must not be negative: " + 
+					dataDays + "/" + minuteDays + "/" + hourDays);
+		}
+		if (dataDays >= DataTable.MAX_PARTITIONS) {
+			throw new IllegalArgumentException("retention of raw readings must be less than " + 
+					DataTable.MAX_PARTITIONS + " days: " + dataDays);
+		}
+		partitions.setRetention(dataDays, minuteDays, hourDays);
+		partitions.dropExpired();
+	}
 
 	/**
 	 * Insert new metric group into MetricInfo table, or replace if the id already exist.
@@ -155,26 +282,46 @@ public final class CimonDatabaseAdapter {
 	}
 	
 	/**
-	 * Insert new reading into Data table.
+	 * Insert new reading into Data table, and add it to rollups.
 	 * 
 	 * @param metric       id of metric
 	 * @param monitor      id of monitor
 	 * @param timestamp    timestamp measured from uptime (milliseconds)
 	 * @param value        value of reading
-	 * @return    rowid of inserted row, -1 on failure
+	 * @return    rowid of inserted row, -1 on failure or if reading is older than
+	 *              retention period
 	 * 
 	 * @see DataTable
 	 */
 	public synchronized long insertData(int metric, int monitor, long timestamp, 
 			float value) {
 		if (DebugLog.DEBUG) Log.d(TAG, "CimonDatabaseAdapter.insertData - insert into Data table: metric-" + metric);
-		ContentValues values = new ContentValues();
-		values.put(DataTable.COLUMN_METRIC_ID, metric);
-		values.put(DataTable.COLUMN_MONITOR_ID, monitor);
-		values.put(DataTable.COLUMN_TIMESTAMP, timestamp);
-		values.put(DataTable.COLUMN_VALUE, value);
+		long time = getMonitorOffset(monitor) + timestamp;
+		int day = DataTable.partitionOf(time);
+		if (partitions.isExpired(day)) {
+			return -1;
+		}
+		partitions.ensurePartition(day);
 		
-		long rowid = database.insert(DataTable.TABLE_DATA, null, values);
+		long rowid = -1;
+		database.beginTransaction();
+		try {
+			SQLiteStatement statement = partitions.getInsertStatement(day, STATEMENT_ROW);
+			bindDataRow(statement, 1, metric, monitor, timestamp, value);
+			rowid = statement.executeInsert();
+			minuteRollup.add(metric, monitor, time, value);
+			hourRollup.add(metric, monitor, time, value);
+			minuteRollup.flush();
+			hourRollup.flush();
+			database.setTransactionSuccessful();
+		} catch(Exception e) {
+			if (DebugLog.ERROR) Log.e(TAG, "Error on insert: " + e.toString());
+			minuteRollup.reset();
+			hourRollup.reset();
+			rowid = -1;
+		} finally {
+			database.endTransaction();
+		}
 		if (rowid >= 0) {
 			Uri uri = Uri.withAppendedPath(CimonContentProvider.DATA_URI, 
 					String.valueOf(rowid));
@@ -185,61 +332,286 @@ public final class CimonDatabaseAdapter {
 	}
 	
 	/**
-	 * Insert batch of new data into Data table.
-	 * Batch comes as array list of {@link DataEntry} (timestamp - data pairs).
+	 * Insert batch of new data into Data table, or sample log if the monitor is 
+	 * stored in the sample log.
+	 * Batch comes as {@link DataBatch} of timestamp - data pairs.  The batch is
+	 * not recycled by this method.
 	 * 
 	 * @param metric       id of metric
 	 * @param monitor      id of monitor
-	 * @param data         array list of {@link DataEntry} pairs
-	 * @return    number of rows inserted (should equal size of _data_ array list on success)
+	 * @param data         batch of timestamp - data pairs
+	 * @return    number of rows inserted (should equal size of _data_ batch on success)
 	 * 
 	 * @see DataTable
+	 * @see SampleLog
 	 */
-	public synchronized long insertBatchData(int metric, int monitor, 
-			ArrayList<DataEntry> data) {
-		if (DebugLog.DEBUG) Log.d(TAG, "CimonDatabaseAdapter.insertBatchData - insert into Data table: " +
-				"metric-" + metric);
-		long rowsInserted = 0;
-		ContentValues values = new ContentValues();
-		values.put(DataTable.COLUMN_METRIC_ID, metric);
-		values.put(DataTable.COLUMN_MONITOR_ID, monitor);
-		
+	public long insertBatchData(int metric, int monitor, DataBatch data) {
+		if (sampleLog.contains(monitor)) {
+			return appendSampleLog(metric, monitor, data.timestamps, data.values, data.size());
+		}
+		return insertBulkData(metric, monitor, data.timestamps, data.values, data.size());
+	}
+	
+	/**
+	 * Append data to sample log, and add it to rollups.  Appending to the sample 
+	 * log does not hold the database lock.
+	 * 
+	 * @param metric        id of metric
+	 * @param monitor       id of monitor, stored in sample log
+	 * @param timestamps    timestamps of readings, measured from uptime (milliseconds)
+	 * @param values        values of readings
+	 * @param count         number of readings to append from start of arrays
+	 * @return    number of readings appended (should equal _count_ on success)
+	 */
+	private long appendSampleLog(int metric, int monitor, long[] timestamps, 
+			float[] values, int count) {
+		if (DebugLog.DEBUG) Log.d(TAG, "CimonDatabaseAdapter.appendSampleLog - append to " +
+				"sample log: metric-" + metric + " rows-" + count);
+		int appended = sampleLog.append(metric, monitor, timestamps, values, count);
+		if (appended > 0) {
+			insertRollups(metric, monitor, timestamps, values, appended);
+			Uri uri = Uri.withAppendedPath(CimonContentProvider.MONITOR_DATA_URI, 
+					String.valueOf(monitor));
+			context.getContentResolver().notifyChange(uri, null);
+		}
+		return appended;
+	}
+	
+	/**
+	 * Add readings to minute and hour rollups, in a single transaction.
+	 * 
+	 * @param metric        id of metric
+	 * @param monitor       id of monitor
+	 * @param timestamps    timestamps of readings, measured from uptime (milliseconds)
+	 * @param values        values of readings
+	 * @param count         number of readings from start of arrays
+	 */
+	private synchronized void insertRollups(int metric, int monitor, long[] timestamps, 
+			float[] values, int count) {
+		final long offset = getMonitorOffset(monitor);
 		database.beginTransaction();
-		try{
-			for (DataEntry entry : data) {
-				ContentValues contentValues=new ContentValues(values);
-				contentValues.put(DataTable.COLUMN_TIMESTAMP, entry.timestamp);
-				contentValues.put(DataTable.COLUMN_VALUE, entry.value);
-				if (database.insert(DataTable.TABLE_DATA,null,contentValues) >= 0) {
-					rowsInserted++;
-				}
+		try {
+			for (int i = 0; i < count; i++) {
+				long time = offset + timestamps[i];
+				minuteRollup.add(metric, monitor, time, values[i]);
+				hourRollup.add(metric, monitor, time, values[i]);
 			}
-			// Transaction is successful and all the records have been inserted
+			minuteRollup.flush();
+			hourRollup.flush();
 			database.setTransactionSuccessful();
 		} catch(Exception e) {
-			if (DebugLog.ERROR) Log.e(TAG, "Error on batch insert: " + e.toString());
+			if (DebugLog.ERROR) Log.e(TAG, "Error on rollup insert: " + e.toString());
+			minuteRollup.reset();
+			hourRollup.reset();
 		} finally {
-			//End the transaction
 			database.endTransaction();
 		}
+		Uri uri = Uri.withAppendedPath(CimonContentProvider.MONITOR_MINUTE_URI, 
+				String.valueOf(monitor));
+		context.getContentResolver().notifyChange(uri, null);
+		uri = Uri.withAppendedPath(CimonContentProvider.MONITOR_HOUR_URI, 
+				String.valueOf(monitor));
+		context.getContentResolver().notifyChange(uri, null);
+	}
+	
+	/**
+	 * Insert bulk data into Data table, from parallel arrays of timestamps and values.
+	 * Rows are inserted using precompiled multi-row insert statements, and committed
+	 * in transactions of at most {@link #setRowsPerTransaction(int) rows per transaction}.
+	 * Multi-row VALUES needs SQLite 3.7.11, so below API 16 each row is inserted by
+	 * the precompiled single-row statement instead.
+	 * If a transaction fails, its rows are rolled back and insertion stops.
+	 * Readings are also added to rollups.  Readings older than the retention
+	 * period are skipped.
+	 * 
+	 * @param metric        id of metric
+	 * @param monitor       id of monitor
+	 * @param timestamps    timestamps of readings, measured from uptime (milliseconds)
+	 * @param values        values of readings
+	 * @param count         number of readings to insert from start of arrays
+	 * @return    number of rows inserted (should equal _count_ on success)
+	 * 
+	 * @see DataTable
+	 */
+	public synchronized long insertBulkData(int metric, int monitor, long[] timestamps, 
+			float[] values, int count) {
+		if (DebugLog.DEBUG) Log.d(TAG, "CimonDatabaseAdapter.insertBulkData - insert into Data table: " +
+				"metric-" + metric + " rows-" + count);
+		final long offset = getMonitorOffset(monitor);
+		long rowsInserted = 0;
+		int index = 0;
+		
+		while (index < count) {
+			int end = Math.min(count, index + rowsPerTransaction);
+			// partitions are created outside of the transaction, which may be rolled back
+			int day = -1;
+			for (int i = index; i < end; i++) {
+				int rowDay = DataTable.partitionOf(offset + timestamps[i]);
+				if (rowDay != day) {
+					day = rowDay;
+					if (!partitions.isExpired(day)) {
+						partitions.ensurePartition(day);
+					}
+				}
+			}
+			database.beginTransaction();
+			try{
+				int inserted = 0;
+				int row = index;
+				while (row < end) {
+					day = DataTable.partitionOf(offset + timestamps[row]);
+					int dayEnd = row + 1;
+					while ((dayEnd < end) && 
+							(DataTable.partitionOf(offset + timestamps[dayEnd]) == day)) {
+						dayEnd++;
+					}
+					if (!partitions.isExpired(day)) {
+						insertRows(metric, monitor, offset, day, timestamps, values, row, dayEnd);
+						inserted += (dayEnd - row);
+					}
+					row = dayEnd;
+				}
+				minuteRollup.flush();
+				hourRollup.flush();
+				// Transaction is successful and all the records have been inserted
+				database.setTransactionSuccessful();
+				rowsInserted += inserted;
+			} catch(Exception e) {
+				if (DebugLog.ERROR) Log.e(TAG, "Error on batch insert: " + e.toString());
+				minuteRollup.reset();
+				hourRollup.reset();
+				break;
+			} finally {
+				//End the transaction
+				database.endTransaction();
+			}
+			index = end;
+		}
 		if (rowsInserted > 0) {
 			Uri uri = Uri.withAppendedPath(CimonContentProvider.MONITOR_DATA_URI, 
 					String.valueOf(monitor));
 			context.getContentResolver().notifyChange(uri, null);
+			uri = Uri.withAppendedPath(CimonContentProvider.MONITOR_MINUTE_URI, 
+					String.valueOf(monitor));
+			context.getContentResolver().notifyChange(uri, null);
+			uri = Uri.withAppendedPath(CimonContentProvider.MONITOR_HOUR_URI, 
+					String.valueOf(monitor));
+			context.getContentResolver().notifyChange(uri, null);
 		}
 		return rowsInserted;
 	}
 	
+	/**
+	 * Insert rows from a single day into its partition, and add them to rollups.
+	 * Must be called within a transaction, after partition has been created.
+	 * 
+	 * @param metric        id of metric
+	 * @param monitor       id of monitor
+	 * @param offset        time offset of monitor, to acquire time from epoch
+	 * @param day           partition of rows
+	 * @param timestamps    timestamps of readings, measured from uptime (milliseconds)
+	 * @param values        values of readings
+	 * @param start         index of first row to insert
+	 * @param end           index after last row to insert
+	 */
+	private void insertRows(int metric, int monitor, long offset, int day, 
+			long[] timestamps, float[] values, int start, int end) {
+		int row = start;
+		if ((rowsPerStatement > 1) && ((end - row) >= rowsPerStatement)) {
+			SQLiteStatement statement = partitions.getInsertStatement(day, STATEMENT_ROWS);
+			while ((end - row) >= rowsPerStatement) {
+				int param = 1;
+				for (int i = row; i < (row + rowsPerStatement); i++) {
+					param = bindDataRow(statement, param, metric, monitor, 
+							timestamps[i], values[i]);
+				}
+				statement.executeInsert();
+				row += rowsPerStatement;
+			}
+		}
+		if (row < end) {
+			SQLiteStatement statement = partitions.getInsertStatement(day, STATEMENT_ROW);
+			for (; row < end; row++) {
+				bindDataRow(statement, 1, metric, monitor, timestamps[row], values[row]);
+				statement.executeInsert();
+			}
+		}
+		for (int i = start; i < end; i++) {
+			long time = offset + timestamps[i];
+			minuteRollup.add(metric, monitor, time, values[i]);
+			hourRollup.add(metric, monitor, time, values[i]);
+		}
+	}
+	
+	/**
+	 * Time offset of monitor, which is applied to timestamps of its readings to 
+	 * acquire time from epoch.  Offsets are cached after first lookup.
+	 * 
+	 * @param monitor    id of monitor
+	 * @return    time offset, in milliseconds
+	 */
+	private long getMonitorOffset(int monitor) {
+		Long offset = monitorOffsets.get(monitor);
+		if (offset == null) {
+			monitorOffsetStatement.bindLong(1, monitor);
+			try {
+				offset = monitorOffsetStatement.simpleQueryForLong();
+			} catch (SQLiteDoneException e) {
+				// unknown monitor, use offset of current boot
+				offset = System.currentTimeMillis() - SystemClock.uptimeMillis();
+			}
+			monitorOffsets.put(monitor, offset);
+		}
+		return offset;
+	}
+	
+	/**
+	 * Bind parameters for one row of a Data table insert statement.
+	 * 
+	 * @param statement    compiled insert statement
+	 * @param param        index of first parameter of row (1-based)
+	 * @param metric       id of metric
+	 * @param monitor      id of monitor
+	 * @param timestamp    timestamp measured from uptime (milliseconds)
+	 * @param value        value of reading
+	 * @return    index of first parameter of following row
+	 */
+	private static int bindDataRow(SQLiteStatement statement, int param, int metric, 
+			int monitor, long timestamp, float value) {
+		statement.bindLong(param++, metric);
+		statement.bindLong(param++, monitor);
+		statement.bindLong(param++, timestamp);
+		statement.bindDouble(param++, value);
+		return param;
+	}
+	
+	/**
+	 * Insert new monitor into Monitor table, automatically generating monitor id.
+	 * 
+	 * @param offsettime    time offset to apply to data table times to acquire time
+	 *                        from epoch, in milliseconds
+	 * @return    new monitor id
+	 * 
+	 * @see MonitorTable
+	 */
+	public int insertMonitor(long offsettime) {
+		return insertMonitor(offsettime, false);
+	}
+	
 	/**
 	 * Insert new monitor into Monitor table, automatically generating monitor id.
 	 * 
 	 * @param offsettime    time offset to apply to data table times to acquire time
 	 *                        from epoch, in milliseconds
+	 * @param useSampleLog  store readings of monitor in sample log, rather than Data
+	 *                        table (recommended for periods below 
+	 *                        {@link SampleLog#HIGH_RATE_PERIOD})
 	 * @return    new monitor id
 	 * 
 	 * @see MonitorTable
+	 * @see SampleLog
 	 */
-	public synchronized int insertMonitor(long offsettime) {
+	public synchronized int insertMonitor(long offsettime, boolean useSampleLog) {
 		if (DebugLog.DEBUG) Log.d(TAG, "CimonDatabaseAdapter.insertMonitor - insert into Monitor table: time-" + offsettime);
 		ContentValues values = new ContentValues();
 		values.put(MonitorTable.COLUMN_TIME_OFFSET, offsettime);
@@ -247,13 +619,108 @@ public final class CimonDatabaseAdapter {
 		
 		long rowid = database.insert(MonitorTable.TABLE_MONITOR, null, values);
 		if (rowid >= 0) {
+			monitorOffsets.put((int) rowid, offsettime);
+			if (useSampleLog) {
+				sampleLog.create((int) rowid);
+			}
 			Uri uri = Uri.withAppendedPath(CimonContentProvider.MONITOR_URI, 
 					String.valueOf(rowid));
 			context.getContentResolver().notifyChange(uri, null);
 		}
 		return (int) rowid;
 	}
+
+	/**
+	 * Insert several new monitors into Monitor table in a single transaction,
+	 * automatically generating monitor ids.  Observers of the Monitor table are
+	 * notified once for the whole batch.
+	 *
+	 * @param offsettime    time offset to apply to data table times to acquire time
+	 *                        from epoch, in milliseconds
+	 * @param useSampleLog  for each new monitor, store its readings in sample log
+	 *                        rather than Data table
+	 * @return    new monitor ids, in order of useSampleLog, all -1 if any insert
+	 *             failed (the inserts are then rolled back together)
+	 *
+	 * @see #insertMonitor(long, boolean)
+	 */
+	public synchronized int[] insertMonitors(long offsettime, boolean[] useSampleLog) {
+		if (DebugLog.DEBUG) Log.d(TAG, "CimonDatabaseAdapter.insertMonitors - insert " +
+				useSampleLog.length + " into Monitor table: time-" + offsettime);
+		int[] monitorIds = new int[useSampleLog.length];
+		ContentValues values = new ContentValues();
+		values.put(MonitorTable.COLUMN_TIME_OFFSET, offsettime);
+		values.put(MonitorTable.COLUMN_ENDTIME, 0);
+
+		database.beginTransaction();
+		try {
+			for (int i = 0; i < monitorIds.length; i++) {
+				monitorIds[i] = (int) database.insert(MonitorTable.TABLE_MONITOR, null, values);
+				if (monitorIds[i] < 0) {
+					throw new SQLException("insert into " + MonitorTable.TABLE_MONITOR + 
+							" failed");
+				}
+			}
+			database.setTransactionSuccessful();
+		} catch(Exception e) {
+			if (DebugLog.ERROR) Log.e(TAG, "Error on insert: " + e.toString());
+			Arrays.fill(monitorIds, -1);
+		} finally {
+			database.endTransaction();
+		}
+		boolean inserted = false;
+		for (int i = 0; i < monitorIds.length; i++) {
+			if (monitorIds[i] < 0) continue;
+			inserted = true;
+			monitorOffsets.put(monitorIds[i], offsettime);
+			if (useSampleLog[i]) {
+				sampleLog.create(monitorIds[i]);
+			}
+		}
+		if (inserted) {
+			context.getContentResolver().notifyChange(CimonContentProvider.MONITOR_URI, null);
+		}
+		return monitorIds;
+	}
+	
+	/**
+	 * Add readings dropped while the database was backlogged to the count of a 
+	 * monitor in the Monitor table.
+	 * 
+	 * @param monitor    id of monitor
+	 * @param count    number of readings dropped
+	 * 
+	 * @see MonitorTable#COLUMN_DROPPED
+	 */
+	public synchronized void addDropped(int monitor, long count) {
+		if (DebugLog.DEBUG) Log.d(TAG, "CimonDatabaseAdapter.addDropped - monitor-" + monitor + 
+				" dropped-" + count);
+		database.execSQL(MONITOR_DROPPED_UPDATE, new Object[] {count, monitor});
+		Uri uri = Uri.withAppendedPath(CimonContentProvider.MONITOR_URI, 
+				String.valueOf(monitor));
+		context.getContentResolver().notifyChange(uri, null);
+	}
 	
+	/**
+	 * Return count of readings of a monitor dropped while the database was 
+	 * backlogged, from the Monitor table.
+	 * 
+	 * @param monitor    id of monitor
+	 * @return    readings dropped, or -1 if monitor is not in the Monitor table
+	 * 
+	 * @see MonitorTable#COLUMN_DROPPED
+	 */
+	public long getDropped(int monitor) {
+		Cursor cursor = database.query(MonitorTable.TABLE_MONITOR, 
+				new String[] {MonitorTable.COLUMN_DROPPED}, MonitorTable.COLUMN_ID + " = ?", 
+				new String[] {String.valueOf(monitor)}, null, null, null);
+		try {
+			return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+		} finally {
+			cursor.close();
+		}
+	}
+
 	/**
 	 * Delete metric group from MetricInfo table.
 	 * 
@@ -292,7 +759,7 @@ public final class CimonDatabaseAdapter {
 	}
 	
 	/**
-	 * Purge old data from Data table.
+	 * Purge old data from Data table and rollups.
 	 * Any records related to monitors older than the provided monitorID will be removed.
 	 * 
 	 * @param monitorID    oldest monitor that should remain in Data table after purge
@@ -302,14 +769,22 @@ public final class CimonDatabaseAdapter {
 	 */
 	public synchronized int purgeData(int monitorID) {
 		if (DebugLog.DEBUG) Log.d(TAG, "CimonDatabaseAdapter.purgeData - delete old records from Data table: monitorID-" + monitorID);
-		int rowsdeleted = database.delete(DataTable.TABLE_DATA, 
-				DataTable.COLUMN_MONITOR_ID + " < " + monitorID, null);
+		int rowsdeleted = partitions.deleteMonitorsBefore(monitorID);
+		sampleLog.deleteMonitorsBefore(monitorID);
+		database.delete(RollupTable.TABLE_MINUTE, 
+				RollupTable.COLUMN_MONITOR_ID + " < " + monitorID, null);
+		database.delete(RollupTable.TABLE_HOUR, 
+				RollupTable.COLUMN_MONITOR_ID + " < " + monitorID, null);
 		context.getContentResolver().notifyChange(CimonContentProvider.DATA_URI, null);
+		context.getContentResolver().notifyChange(CimonContentProvider.MINUTE_URI, null);
+		context.getContentResolver().notifyChange(CimonContentProvider.HOUR_URI, null);
 		return rowsdeleted;
 	}
 	
 	/**
 	 * Perform query on database using pre-constructed query builder.
+	 * Query is performed on a read-only connection, and is not serialized
+	 * with inserts on the writer connection.
 	 *  
 	 * @param queryBuilder     query to perform on database
 	 * @param projection       the list of columns to put into the cursor. If null all 
@@ -323,12 +798,198 @@ public final class CimonDatabaseAdapter {
 	 *                           the provider is free to define the sort order
 	 * @return    a Cursor or null
 	 */
-	public synchronized Cursor query(SQLiteQueryBuilder queryBuilder, String[] projection, 
+	public Cursor query(SQLiteQueryBuilder queryBuilder, String[] projection, 
 			String selection, String[] selectionArgs, String sortOrder) {
-		Cursor cursor = queryBuilder.query(database, projection, selection, selectionArgs, 
+		Cursor cursor = queryBuilder.query(readerPool.acquire(), projection, selection, selectionArgs, 
 				null, null, sortOrder);
 		
 		return cursor;
 	}
 	
+	/**
+	 * Query readings of a single monitor.  If the monitor is stored in the sample
+	 * log, and neither <i>selection</i> nor <i>sortOrder</i> is specified, readings 
+	 * are streamed from the sample log in order of insertion.  With a selection or
+	 * sort order, the readings of the monitor are first {@link SampleLog#copy(int, int)
+	 * copied} to an in-memory database, which costs time and memory in proportion
+	 * to the number of readings.  Otherwise, the query is performed on the 
+	 * database, as by 
+	 * {@link #query(SQLiteQueryBuilder, String[], String, String[], String)}.
+	 *  
+	 * @param monitor          id of monitor
+	 * @param queryBuilder     query to perform on database, for monitors stored in 
+	 *                           Data table
+	 * @param projection       the list of columns to put into the cursor. If null all 
+	 *                           columns are included
+	 * @param selection        A selection criteria to apply when filtering rows. If null 
+	 *                           then all rows are included
+	 * @param selectionArgs    You may include ?s in selection, which will be replaced by 
+	 *                           the values from selectionArgs, in order that they appear 
+	 *                           in the selection. The values will be bound as Strings
+	 * @param sortOrder        How the rows in the cursor should be sorted. If null then 
+	 *                           the provider is free to define the sort order
+	 * @return    a Cursor or null
+	 * 
+	 * @see SampleLog#query(int, String[], long)
+	 */
+	public Cursor queryMonitorData(int monitor, SQLiteQueryBuilder queryBuilder, 
+			String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+		if (sampleLog.contains(monitor)) {
+			if ((selection == null) && (sortOrder == null)) {
+				return sampleLog.query(monitor, projection, Long.MIN_VALUE);
+			}
+			SQLiteDatabase memory = sampleLog.copy(monitor, -1);
+			if (memory != null) {
+				queryBuilder.setTables(SampleLog.TABLE_SAMPLES);
+				return queryMemory(memory, queryBuilder, projection, selection, 
+						selectionArgs, sortOrder);
+			}
+		}
+		return query(queryBuilder, projection, selection, selectionArgs, sortOrder);
+	}
+	
+	/**
+	 * Query readings of all monitors, or of a single metric, including readings
+	 * of monitors stored in the sample log.  If any such monitor matches, its 
+	 * readings are {@link SampleLog#copy(int, int) copied} to an in-memory database,
+	 * and the Data view is attached to it, so that <i>selection</i> and 
+	 * <i>sortOrder</i> apply to both.  This costs time and memory in proportion to 
+	 * the number of readings in the sample log.  Otherwise, the query is performed 
+	 * on the database, as by 
+	 * {@link #query(SQLiteQueryBuilder, String[], String, String[], String)}.
+	 * <p>
+	 * Row ids of readings in the sample log are unique within their monitor only,
+	 * and readings queried by row id are always read from the Data view.
+	 * 
+	 * @param metric           id of metric, or -1 for readings of all metrics
+	 * @param queryBuilder     query to perform on Data view
+	 * @param projection       the list of columns to put into the cursor. If null all 
+	 *                           columns are included
+	 * @param selection        A selection criteria to apply when filtering rows. If null 
+	 *                           then all rows are included
+	 * @param selectionArgs    You may include ?s in selection, which will be replaced by 
+	 *                           the values from selectionArgs, in order that they appear 
+	 *                           in the selection. The values will be bound as Strings
+	 * @param sortOrder        How the rows in the cursor should be sorted. If null then 
+	 *                           the provider is free to define the sort order
+	 * @return    a Cursor or null
+	 */
+	public Cursor queryData(int metric, SQLiteQueryBuilder queryBuilder, 
+			String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+		SQLiteDatabase memory = sampleLog.copy(-1, metric);
+		if (memory == null) {
+			return query(queryBuilder, projection, selection, selectionArgs, sortOrder);
+		}
+		try {
+			memory.execSQL("attach database '" + database.getPath().replace("'", "''") + 
+					"' as " + ATTACHED_DATABASE);
+		} catch (SQLException e) {
+			memory.close();
+			if (DebugLog.WARNING) Log.w(TAG, "CimonDatabaseAdapter.queryData - failed to " +
+					"attach database, sample log omitted: " + e.getMessage());
+			return query(queryBuilder, projection, selection, selectionArgs, sortOrder);
+		}
+		queryBuilder.setTables("(select * from " + ATTACHED_DATABASE + "." + 
+				DataTable.TABLE_DATA + " union all select * from " + 
+				SampleLog.TABLE_SAMPLES + ")");
+		return queryMemory(memory, queryBuilder, projection, selection, selectionArgs, 
+				sortOrder);
+	}
+	
+	/**
+	 * Query in-memory copy of sample log readings.  The database is closed with 
+	 * the returned cursor.
+	 */
+	private static Cursor queryMemory(final SQLiteDatabase memory, 
+			SQLiteQueryBuilder queryBuilder, String[] projection, String selection, 
+			String[] selectionArgs, String sortOrder) {
+		Cursor cursor;
+		try {
+			cursor = queryBuilder.query(memory, projection, selection, selectionArgs, 
+					null, null, sortOrder);
+		} catch (RuntimeException e) {
+			memory.close();
+			throw e;
+		}
+		return new CursorWrapper(cursor) {
+			
+			@Override
+			public void close() {
+				super.close();
+				memory.close();
+			}
+		};
+	}
+	
+	/**
+	 * Query window of readings of a single monitor, following a known reading
+	 * (keyset paging).  Readings are ordered by timestamp and row id, so that 
+	 * windows may be read without re-reading or skipping earlier rows.  For 
+	 * monitors stored in the sample log, readings are in order of insertion,
+	 * and windows are paged by row id only.
+	 * <p>
+	 * Partitions are queried directly, oldest first, until the window is full, 
+	 * rather than through the Data view.  The time offset of a monitor is fixed, 
+	 * so its readings in a later partition follow those of earlier partitions, 
+	 * and each partition is read in order through its monitor/time index.  An 
+	 * ordered query of the view would instead sort the readings of every 
+	 * partition.
+	 * 
+	 * @param monitor          id of monitor
+	 * @param projection       the list of columns to put into the cursor, which must
+	 *                           include timestamp and row id
+	 * @param afterTimestamp   timestamp of last reading of previous window
+	 * @param afterId          row id of last reading of previous window, or -1 with
+	 *                           {@link Long#MIN_VALUE} timestamp for first window
+	 * @param limit            maximum number of readings in window
+	 * @return    a Cursor or null
+	 */
+	public Cursor queryMonitorPage(int monitor, String[] projection, long afterTimestamp, 
+			long afterId, int limit) {
+		if (sampleLog.contains(monitor)) {
+			return sampleLog.queryPage(monitor, projection, afterId, limit);
+		}
+		String after = String.valueOf(afterTimestamp);
+		String[] selectionArgs = { after, after, String.valueOf(afterId) };
+		SQLiteDatabase reader = readerPool.acquire();
+		int[] days = partitions.getDays();
+		Cursor[] cursors = new Cursor[days.length];
+		int count = 0;
+		int remaining = limit;
+		for (int i = 0; (i < days.length) && (remaining > 0); i++) {
+			SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+			queryBuilder.setTables(DataTable.partitionName(days[i]));
+			queryBuilder.appendWhere(DataTable.COLUMN_MONITOR_ID + "=" + monitor);
+			Cursor cursor;
+			try {
+				cursor = queryBuilder.query(reader, projection, PAGE_SELECTION, 
+						selectionArgs, null, null, PAGE_ORDER, String.valueOf(remaining));
+			} catch (SQLiteException e) {
+				// partition was dropped after days were read
+				if (DebugLog.INFO) Log.i(TAG, "CimonDatabaseAdapter.queryMonitorPage - " +
+						"partition dropped: " + days[i]);
+				continue;
+			}
+			int rows = cursor.getCount();
+			if ((rows == 0) && ((count > 0) || (i < days.length - 1))) {
+				// keep an empty cursor only if no partition has readings
+				cursor.close();
+				continue;
+			}
+			remaining -= rows;
+			cursors[count++] = cursor;
+		}
+		if (count == 0) {
+			SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
+			queryBuilder.setTables(DataTable.TABLE_DATA);
+			queryBuilder.appendWhere(DataTable.COLUMN_MONITOR_ID + "=" + monitor);
+			return queryBuilder.query(reader, projection, PAGE_SELECTION, 
+					selectionArgs, null, null, PAGE_ORDER, String.valueOf(limit));
+		}
+		if (count == 1) {
+			return cursors[0];
+		}
+		return new MergeCursor(Arrays.copyOf(cursors, count));
+	}
+	
 }
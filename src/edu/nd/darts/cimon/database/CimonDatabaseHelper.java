@@ -38,7 +38,9 @@ import android.util.Log;
  * @see DataTable
  * @see MonitorTable
  * @see MetricStatusTable
+ * @see RollupTable
  * @see CimonDatabaseAdapter
+ * @see CimonStorageConfig
  *
  */
 public class CimonDatabaseHelper extends SQLiteOpenHelper {
@@ -46,7 +48,9 @@ public class CimonDatabaseHelper extends SQLiteOpenHelper {
 	private final static String TAG = "NDroid";
 	
 	private final static String DATABASE_NAME = "cimon.db";
-	private final static int DATABASE_VERSION = 1;
+	private final static int DATABASE_VERSION = 4;
+	
+	private volatile boolean writeAheadLogging = false;
 	
 	public CimonDatabaseHelper(Context context) {
 		super(context, DATABASE_NAME, null, DATABASE_VERSION);
@@ -62,6 +66,7 @@ public class CimonDatabaseHelper extends SQLiteOpenHelper {
 		MetricStatusTable.onCreate(database);
 		DataTable.onCreate(database);
 		MonitorTable.onCreate(database);
+		RollupTable.onCreate(database);
 
 	}
 
@@ -73,7 +78,25 @@ public class CimonDatabaseHelper extends SQLiteOpenHelper {
 		MetricStatusTable.onUpgrade(db, oldVersion, newVersion);
 		DataTable.onUpgrade(db, oldVersion, newVersion);
 		MonitorTable.onUpgrade(db, oldVersion, newVersion);
+		RollupTable.onUpgrade(db, oldVersion, newVersion);
+
+	}
 
+	@Override
+	public void onOpen(SQLiteDatabase db) {
+		super.onOpen(db);
+		if (!db.isReadOnly()) {
+			writeAheadLogging = CimonStorageConfig.configureWriter(db);
+		}
+	}
+	
+	/**
+	 * Check if write-ahead logging was enabled when writable database was opened.
+	 * 
+	 * @return    true if database is in write-ahead logging mode
+	 */
+	public boolean isWriteAheadLogging() {
+		return writeAheadLogging;
 	}
 
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon.database;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.nd.darts.cimon.DebugLog;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+/**
+ * Pool of read-only connections to the CIMON database.
+ * Queries are distributed round-robin over the connections, so that several
+ * queries (such as a long export and a content provider query) may run
+ * concurrently, without waiting on the writer connection used for inserts.
+ * Connections are not checked out, since cursors returned by a query may
+ * outlive the call which created them.
+ * <p>
+ * Concurrent readers require write-ahead logging.  If the database is in
+ * rollback journal mode, the pool is created around the writer connection
+ * instead, and queries are serialized by that connection.
+ * 
+ * @author darts
+ * 
+ * @see CimonStorageConfig
+ *
+ */
+final class CimonReaderPool {
+	
+	private static final String TAG = "NDroid";
+	
+	private final SQLiteDatabase[] readers;
+	private final boolean ownsConnections;
+	private final AtomicInteger next = new AtomicInteger();
+	
+	private CimonReaderPool(SQLiteDatabase[] readers, boolean ownsConnections) {
+		this.readers = readers;
+		this.ownsConnections = ownsConnections;
+	}
+	
+	/**
+	 * Open pool of read-only connections to database of writer connection.
+	 * 
+	 * @param writer    configured writer connection
+	 * @param wal       true if write-ahead logging is enabled on writer
+	 * @param size      number of read-only connections to open
+	 * @return    new reader pool
+	 */
+	static CimonReaderPool open(SQLiteDatabase writer, boolean wal, int size) {
+		if (!wal || (size <= 0)) {
+			if (DebugLog.DEBUG) Log.d(TAG, "CimonReaderPool.open - sharing writer connection");
+			return new CimonReaderPool(new SQLiteDatabase[] {writer}, false);
+		}
+		SQLiteDatabase[] readers = new SQLiteDatabase[size];
+		try {
+			for (int i = 0; i < size; i++) {
+				readers[i] = SQLiteDatabase.openDatabase(writer.getPath(), null, 
+						SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS);
+				CimonStorageConfig.configureReader(readers[i]);
+			}
+		} catch (SQLException e) {
+			if (DebugLog.WARNING) Log.w(TAG, "CimonReaderPool.open - failed to open reader: " + 
+					e.getMessage());
+			closeAll(readers);
+			return new CimonReaderPool(new SQLiteDatabase[] {writer}, false);
+		}
+		if (DebugLog.DEBUG) Log.d(TAG, "CimonReaderPool.open - opened readers: " + size);
+		return new CimonReaderPool(readers, true);
+	}
+	
+	/**
+	 * Acquire connection for a query.  Connection must not be closed by caller.
+	 * 
+	 * @return    read-only database connection
+	 */
+	SQLiteDatabase acquire() {
+		int index = (next.getAndIncrement() & Integer.MAX_VALUE) % readers.length;
+		return readers[index];
+	}
+	
+	/**
+	 * Close connections opened by this pool.
+	 */
+	void close() {
+		if (ownsConnections) {
+			closeAll(readers);
+		}
+	}
+	
+	private static void closeAll(SQLiteDatabase[] readers) {
+		for (SQLiteDatabase reader : readers) {
+			if (reader != null) {
+				reader.close();
+			}
+		}
+	}
+	
+}
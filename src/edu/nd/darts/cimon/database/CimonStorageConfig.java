@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon.database;
+
+import edu.nd.darts.cimon.DebugLog;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+/**
+ * Storage configuration for CIMON database connections.
+ * The single writer connection enables write-ahead logging, so that readers
+ * are not blocked by batch inserts, and relaxes <i>synchronous</i> to NORMAL,
+ * which is durable across application crashes when used with WAL.  Reader
+ * connections only need the cache and temporary storage settings.
+ * 
+ * @author darts
+ * 
+ * @see CimonDatabaseHelper
+ * @see CimonReaderPool
+ *
+ */
+public final class CimonStorageConfig {
+	
+	private static final String TAG = "NDroid";
+	
+	/** Number of read-only connections used for queries. */
+	public static final int READER_CONNECTIONS = 2;
+	/** Page cache size per connection, in kibibytes (negative value for pragma). */
+	public static final int CACHE_SIZE_KB = 2048;
+	
+	private static final String PRAGMA_SYNCHRONOUS = "PRAGMA synchronous = NORMAL";
+	private static final String PRAGMA_CACHE_SIZE = "PRAGMA cache_size = -" + CACHE_SIZE_KB;
+	private static final String PRAGMA_TEMP_STORE = "PRAGMA temp_store = MEMORY";
+	
+	private CimonStorageConfig() {
+	}
+
+	/**
+	 * Configure writer connection.  Enables write-ahead logging and sets
+	 * pragmas.  Must be called outside of a transaction.
+	 * 
+	 * @param database    writable database connection
+	 * @return    true if write-ahead logging is enabled, false if the
+	 *              database remains in rollback journal mode
+	 */
+	public static boolean configureWriter(SQLiteDatabase database) {
+		boolean wal = database.enableWriteAheadLogging();
+		if (DebugLog.DEBUG) Log.d(TAG, "CimonStorageConfig.configureWriter - write-ahead logging: " + wal);
+		if (wal) {
+			database.execSQL(PRAGMA_SYNCHRONOUS);
+		}
+		configureCommon(database);
+		return wal;
+	}
+	
+	/**
+	 * Configure read-only connection.
+	 * 
+	 * @param database    read-only database connection
+	 */
+	public static void configureReader(SQLiteDatabase database) {
+		if (DebugLog.DEBUG) Log.d(TAG, "CimonStorageConfig.configureReader - configure reader connection");
+		configureCommon(database);
+	}
+	
+	private static void configureCommon(SQLiteDatabase database) {
+		database.execSQL(PRAGMA_CACHE_SIZE);
+		database.execSQL(PRAGMA_TEMP_STORE);
+	}
+	
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon.database;
+
+import edu.nd.darts.cimon.DebugLog;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * Manages day partitions of the Data table, and retention of data.
+ * Tracks existing partitions, creates partitions as readings arrive for a
+ * new day, and drops whole partitions once they are older than the retention
+ * period.  Rollup tables, and segments of the {@link SampleLog}, are trimmed 
+ * at the same time.  Data is retained until a retention period is set, except
+ * that the oldest partitions are dropped beyond {@link DataTable#MAX_PARTITIONS}.
+ * Must only be used on 
+ * the writer connection, while holding the database adapter lock, except for
+ * {@link #getDays()}, which may be called from any thread.
+ * 
+ * @author darts
+ * 
+ * @see DataTable
+ * @see RollupTable
+ * @see SampleLog
+ *
+ */
+final class DataPartitions {
+	
+	private static final String TAG = "NDroid";
+	
+	/** Retention period which retains data indefinitely. */
+	static final int RETAIN_ALL = 0;
+	
+	private final SQLiteDatabase database;
+	private final RollupWriter minuteRollup;
+	private final RollupWriter hourRollup;
+	private final SampleLog sampleLog;
+	private final int[] rowCounts;
+	/** Existing partitions, keyed (and sorted) by day. */
+	private final SparseArray<String> partitions = new SparseArray<String>();
+	/** Days of existing partitions for readers, replaced whenever partitions change. */
+	private volatile int[] days = new int[0];
+	
+	private int dataDays = RETAIN_ALL;
+	private int minuteDays = RETAIN_ALL;
+	private int hourDays = RETAIN_ALL;
+	
+	/** Day of partition used by compiled insert statements, or -1. */
+	private int insertDay = -1;
+	private final SQLiteStatement[] insertStatements;
+	
+	/**
+	 * Load existing partitions of database.
+	 * 
+	 * @param database        writer connection
+	 * @param minuteRollup    minute rollups, trimmed with partitions
+	 * @param hourRollup      hour rollups, trimmed with partitions
+	 * @param sampleLog       sample log, whose segments are expired with partitions
+	 * @param rows            number of rows inserted by each compiled insert statement
+	 */
+	DataPartitions(SQLiteDatabase database, RollupWriter minuteRollup, 
+			RollupWriter hourRollup, SampleLog sampleLog, int... rows) {
+		this.database = database;
+		this.minuteRollup = minuteRollup;
+		this.hourRollup = hourRollup;
+		this.sampleLog = sampleLog;
+		rowCounts = rows;
+		insertStatements = new SQLiteStatement[rows.length];
+		Cursor cursor = DataTable.queryPartitions(database);
+		try {
+			while (cursor.moveToNext()) {
+				String table = cursor.getString(0);
+				int day = DataTable.partitionDay(table);
+				if (day >= 0) {
+					partitions.put(day, table);
+				}
+			}
+		} finally {
+			cursor.close();
+		}
+		days = currentDays();
+		if (DebugLog.DEBUG) Log.d(TAG, "DataPartitions - partitions: " + partitions.size());
+	}
+	
+	/**
+	 * Set retention periods.  Partitions of raw readings are dropped as whole days, 
+	 * so up to one additional day of readings may be retained.
+	 * 
+	 * @param data      days of raw readings to retain, or {@link #RETAIN_ALL}
+	 * @param minute    days of minute rollups to retain, or {@link #RETAIN_ALL}
+	 * @param hour      days of hour rollups to retain, or {@link #RETAIN_ALL}
+	 */
+	void setRetention(int data, int minute, int hour) {
+		dataDays = data;
+		minuteDays = minute;
+		hourDays = hour;
+	}
+	
+	/**
+	 * Check if readings for a day have already expired, and should not be stored.
+	 * 
+	 * @param day    day from epoch
+	 * @return    true if day is older than retention period
+	 */
+	boolean isExpired(int day) {
+		return (dataDays != RETAIN_ALL) && (day < (today() - dataDays));
+	}
+	
+	/**
+	 * Ensure partition exists for specified day, creating it if necessary.
+	 * Creating a new partition also drops expired partitions and rollups.
+	 * Must not be called within a transaction which may be rolled back.
+	 * 
+	 * @param day    day from epoch
+	 */
+	void ensurePartition(int day) {
+		if (partitions.get(day) != null) return;
+		if (DebugLog.DEBUG) Log.d(TAG, "DataPartitions.ensurePartition - create partition: " + day);
+		DataTable.createPartition(database, day);
+		partitions.put(day, DataTable.partitionName(day));
+		dropExpired();
+	}
+	
+	/**
+	 * Days of existing partitions, in ascending order.  May be called from any
+	 * thread.  A partition may be dropped while the caller reads it, so queries
+	 * of a partition must tolerate a missing table.
+	 * 
+	 * @return    days from epoch of partitions, which must not be modified
+	 */
+	int[] getDays() {
+		return days;
+	}
+	
+	/**
+	 * Compiled statement to insert rows into partition.  Statements are cached
+	 * for the most recently used partition.
+	 * 
+	 * @param day      day from epoch of partition, which must exist
+	 * @param index    index of statement, in order of row counts provided to constructor
+	 * @return    compiled insert statement
+	 */
+	SQLiteStatement getInsertStatement(int day, int index) {
+		if (day != insertDay) {
+			closeStatements();
+			insertDay = day;
+		}
+		if (insertStatements[index] == null) {
+			insertStatements[index] = database.compileStatement(DataTable.insertStatement(
+					day, rowCounts[index]));
+		}
+		return insertStatements[index];
+	}
+	
+	/**
+	 * Drop partitions of readings and rollups older than retention period, and 
+	 * rebuild Data view.  Segments of the sample log last written before the
+	 * oldest retained day are deleted.  The oldest partitions beyond the
+	 * maximum of the view are dropped whatever the retention period.
+	 * 
+	 * @return    number of partitions dropped
+	 */
+	int dropExpired() {
+		int oldest = (dataDays == RETAIN_ALL) ? Integer.MIN_VALUE : today() - dataDays;
+		int dropped = 0;
+		while ((partitions.size() > 1) && ((partitions.keyAt(0) < oldest) || 
+				(partitions.size() > DataTable.MAX_PARTITIONS))) {
+			int day = partitions.keyAt(0);
+			if (day >= oldest) {
+				if (DebugLog.WARNING) Log.w(TAG, "DataPartitions.dropExpired - partitions " +
+						"exceed maximum, dropped: " + day);
+			}
+			if (day == insertDay) {
+				closeStatements();
+			}
+			DataTable.dropPartition(database, day);
+			partitions.removeAt(0);
+			dropped++;
+		}
+		rebuildView();
+		long now = System.currentTimeMillis();
+		if (minuteDays != RETAIN_ALL) {
+			minuteRollup.deleteBefore(database, now - minuteDays * DataTable.PARTITION_PERIOD);
+		}
+		if (hourDays != RETAIN_ALL) {
+			hourRollup.deleteBefore(database, now - hourDays * DataTable.PARTITION_PERIOD);
+		}
+		if (dataDays != RETAIN_ALL) {
+			sampleLog.deleteBefore(oldest * DataTable.PARTITION_PERIOD);
+		}
+		if (DebugLog.INFO) Log.i(TAG, "DataPartitions.dropExpired - dropped partitions: " + dropped);
+		return dropped;
+	}
+	
+	/**
+	 * Delete readings of monitors older than specified monitor, from all partitions.
+	 * 
+	 * @param monitorID    oldest monitor to keep
+	 * @return    number of rows deleted
+	 */
+	int deleteMonitorsBefore(int monitorID) {
+		int rowsdeleted = 0;
+		for (int i = 0; i < partitions.size(); i++) {
+			rowsdeleted += database.delete(partitions.valueAt(i), 
+					DataTable.COLUMN_MONITOR_ID + " < " + monitorID, null);
+		}
+		return rowsdeleted;
+	}
+	
+	/**
+	 * Release compiled statements.
+	 */
+	void close() {
+		closeStatements();
+	}
+	
+	private void rebuildView() {
+		int[] current = currentDays();
+		DataTable.createView(database, current, current.length);
+		days = current;
+	}
+	
+	private int[] currentDays() {
+		int count = partitions.size();
+		int[] current = new int[count];
+		for (int i = 0; i < count; i++) {
+			current[i] = partitions.keyAt(i);
+		}
+		return current;
+	}
+	
+	private void closeStatements() {
+		for (int i = 0; i < insertStatements.length; i++) {
+			if (insertStatements[i] != null) {
+				insertStatements[i].close();
+				insertStatements[i] = null;
+			}
+		}
+		insertDay = -1;
+	}
+	
+	private static int today() {
+		return DataTable.partitionOf(System.currentTimeMillis());
+	}
+	
+}
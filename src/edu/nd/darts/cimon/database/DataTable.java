@@ -20,25 +20,46 @@
 package edu.nd.darts.cimon.database;
 
 import edu.nd.darts.cimon.DebugLog;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
+import android.util.SparseArray;
 
 /**
  * Defines the layout of the Data table of the database.
  * This table stores data for all readings of cimon metrics.
  * Links to {@link MetricsTable} for metric information.
+ * <p>
+ * Readings are stored in partition tables, one per day (UTC) of the reading.
+ * The Data table is a view over the union of all partitions, so queries are 
+ * unaffected by partitioning.  Each query of the view reads every partition, 
+ * and an ordered query sorts their combined readings rather than reading them 
+ * in index order, so readings of a monitor are better read in pages with 
+ * {@link CimonDatabaseAdapter#queryMonitorPage}, which reads partitions directly.
+ * The number of partitions is bounded by {@link #MAX_PARTITIONS}, the number of
+ * terms SQLite allows in the compound select of the view.  Expired partitions are dropped as whole tables by {@link DataPartitions}, 
+ * rather than deleting individual rows.  Row ids are unique across partitions, 
+ * as each partition allocates ids starting from <i>day &lt;&lt; 32</i>.
  * 
  * @author chris miller
  * 
  * @see MetricsTable
+ * @see DataPartitions
  *
  */
 public final class DataTable {
 
 	private static final String TAG = "NDroid";
 	
-	// Database table
+	// Database table (view of all partitions)
 	public static final String TABLE_DATA = "data";
+	/** Prefix of partition table names, followed by day number from epoch. */
+	public static final String PARTITION_PREFIX = TABLE_DATA + "_p";
+	/** Period of time covered by each partition, in milliseconds. */
+	public static final long PARTITION_PERIOD = 24 * 60 * 60 * 1000;
+	/** Maximum number of partitions in the Data view, which SQLite limits to 500 
+	 *  terms of a compound select. */
+	public static final int MAX_PARTITIONS = 500;
 	// Table columns
 	/** Unique id (Long) */
 	public static final String COLUMN_ID = "_id";
@@ -52,28 +73,264 @@ public final class DataTable {
 	/** Value of reading (Float). */
 	public static final String COLUMN_VALUE = "value";
 	
-	// Database creation SQL statement
-	private static final String DATABASE_CREATE = "create table " 
-			+ TABLE_DATA
-			+ "(" 
+	/** Suffix of per-partition index for reading data of individual monitor in 
+	 *  time order. Includes value column, so that timestamp/value queries are 
+	 *  covered by the index. */
+	public static final String INDEX_MONITOR_TIME = "_monitor_time";
+	/** Suffix of per-partition index for reading data of individual metric in 
+	 *  time order. Includes value column, so that timestamp/value queries are 
+	 *  covered by the index. */
+	public static final String INDEX_METRIC_TIME = "_metric_time";
+	
+	// Partition creation SQL statement, followed by partition table name
+	private static final String PARTITION_CREATE = "create table if not exists ";
+	private static final String PARTITION_LAYOUT = "(" 
 			+ COLUMN_ID + " integer primary key autoincrement, " 
 			+ COLUMN_METRIC_ID + " integer not null, " 
 			+ COLUMN_MONITOR_ID + " integer not null," 
 			+ COLUMN_TIMESTAMP + " integer not null," 
 			+ COLUMN_VALUE + " real not null" 
 			+ ");";
+	// Index creation SQL statements, each followed by partition table name
+	private static final String INDEX_CREATE = "create index if not exists ";
+	private static final String INDEX_MONITOR_COLUMNS = "("
+			+ COLUMN_MONITOR_ID + ", "
+			+ COLUMN_TIMESTAMP + ", "
+			+ COLUMN_VALUE
+			+ ");";
+	private static final String INDEX_METRIC_COLUMNS = "("
+			+ COLUMN_METRIC_ID + ", "
+			+ COLUMN_TIMESTAMP + ", "
+			+ COLUMN_VALUE
+			+ ");";
+	// Starting row id of partition, in autoincrement sequence table
+	private static final String SEQUENCE_DELETE = "delete from sqlite_sequence "
+			+ "where name = ?";
+	private static final String SEQUENCE_INSERT = "insert into "
+			+ "sqlite_sequence(name, seq) values (?, ?)";
+	// Query for partition tables currently in database
+	private static final String PARTITION_QUERY = "select name from sqlite_master "
+			+ "where type = 'table' and name like '" + PARTITION_PREFIX + "%'";
+	// Version 2 indexes, replaced by per-partition indexes in version 3
+	private static final String[] LEGACY_INDEXES = { "data_monitor_time", 
+			"data_metric_time" };
+	// Version 2 table, while its readings are split into partitions
+	private static final String TABLE_LEGACY = TABLE_DATA + "_legacy";
+	// Day from epoch of version 2 readings, from time offset of their monitor
+	private static final String LEGACY_DAY = "((" + TABLE_LEGACY + "." + COLUMN_TIMESTAMP 
+			+ " + coalesce(" + MonitorTable.TABLE_MONITOR + "." 
+			+ MonitorTable.COLUMN_TIME_OFFSET + ", 0)) / " + PARTITION_PERIOD + ")";
+	private static final String LEGACY_JOIN = " from " + TABLE_LEGACY + " left join " 
+			+ MonitorTable.TABLE_MONITOR + " on " + TABLE_LEGACY + "." + COLUMN_MONITOR_ID 
+			+ " = " + MonitorTable.TABLE_MONITOR + "." + MonitorTable.COLUMN_ID;
+	private static final String LEGACY_DAYS_QUERY = "select distinct " + LEGACY_DAY 
+			+ LEGACY_JOIN + " order by 1";
+	private static final String LEGACY_COPY = "(" + COLUMN_ID + ", " + COLUMN_METRIC_ID 
+			+ ", " + COLUMN_MONITOR_ID + ", " + COLUMN_TIMESTAMP + ", " + COLUMN_VALUE 
+			+ ") select " + TABLE_LEGACY + "." + COLUMN_ID + ", " + COLUMN_METRIC_ID + ", " 
+			+ COLUMN_MONITOR_ID + ", " + COLUMN_TIMESTAMP + ", " + COLUMN_VALUE 
+			+ LEGACY_JOIN + " where " + LEGACY_DAY + " = ?";
+
+	// Insert statement SQL, bind parameters for each row are in column order
+	private static final String DATABASE_INSERT = "insert into ";
+	private static final String DATABASE_INSERT_COLUMNS = "("
+			+ COLUMN_METRIC_ID + ", "
+			+ COLUMN_MONITOR_ID + ", "
+			+ COLUMN_TIMESTAMP + ", "
+			+ COLUMN_VALUE
+			+ ") values ";
+	private static final String DATABASE_INSERT_ROW = "(?,?,?,?)";
+	
+	/**
+	 * Partition (day from epoch) of a reading.
+	 * 
+	 * @param time    time of reading, in milliseconds from epoch
+	 * @return    day from epoch, in UTC
+	 */
+	public static int partitionOf(long time) {
+		return (int) (time / PARTITION_PERIOD);
+	}
+	
+	/**
+	 * Name of partition table.
+	 * 
+	 * @param day    day from epoch
+	 * @return    table name of partition
+	 */
+	public static String partitionName(int day) {
+		return PARTITION_PREFIX + day;
+	}
+	
+	/**
+	 * Build SQL statement to insert multiple rows into a partition of the Data table.  
+	 * Parameters for each row are bound in order: metric id, monitor id, timestamp, value.
+	 * 
+	 * @param day     partition (day from epoch) of inserted rows
+	 * @param rows    number of rows inserted by statement
+	 * @return    SQL insert statement
+	 */
+	public static String insertStatement(int day, int rows) {
+		String table = partitionName(day);
+		StringBuilder sql = new StringBuilder(DATABASE_INSERT.length() + table.length() +
+				DATABASE_INSERT_COLUMNS.length() + rows * (DATABASE_INSERT_ROW.length() + 1));
+		sql.append(DATABASE_INSERT).append(table).append(DATABASE_INSERT_COLUMNS);
+		for (int i = 0; i < rows; i++) {
+			if (i > 0) sql.append(',');
+			sql.append(DATABASE_INSERT_ROW);
+		}
+		return sql.toString();
+	}
 
 	public static void onCreate(SQLiteDatabase database) {
-		database.execSQL(DATABASE_CREATE);
+		int today = partitionOf(System.currentTimeMillis());
+		createPartition(database, today);
+		createView(database, new int[] {today}, 1);
 	}
 
+	/**
+	 * Upgrade table, preserving existing data.
+	 * <ul>
+	 * <li>Version 2: adds monitor/time and metric/time indexes.</li>
+	 * <li>Version 3: partitions data by day.  Existing readings are moved to the
+	 *     partitions of their days, from the time offsets of their monitors, and 
+	 *     the Data table is replaced by a view.</li>
+	 * </ul>
+	 * 
+	 * @param database      database being upgraded
+	 * @param oldVersion    version of existing database
+	 * @param newVersion    new database version
+	 */
 	public static void onUpgrade(SQLiteDatabase database, int oldVersion,
 			int newVersion) {
 		if (DebugLog.INFO) Log.i(TAG, TABLE_DATA + ": Upgrading database from version "
-				+ oldVersion + " to " + newVersion
-				+ ", which will destroy all old data");
-		database.execSQL("DROP TABLE IF EXISTS " + TABLE_DATA);
-		onCreate(database);
+				+ oldVersion + " to " + newVersion);
+		if (oldVersion < 3) {
+			for (String index : LEGACY_INDEXES) {
+				database.execSQL("drop index if exists " + index);
+			}
+			database.execSQL("alter table " + TABLE_DATA + " rename to " + TABLE_LEGACY);
+			int[] days = splitLegacy(database);
+			database.execSQL("drop table " + TABLE_LEGACY);
+			int count = Math.min(days.length, MAX_PARTITIONS);
+			int[] newest = new int[count];
+			System.arraycopy(days, days.length - count, newest, 0, count);
+			createView(database, newest, count);
+		}
+	}
+	
+	/**
+	 * Copy readings of version 2 table into the partitions of their days, and 
+	 * create the partition of the current day.
+	 * 
+	 * @param database    database being upgraded
+	 * @return    days from epoch of partitions, in ascending order
+	 */
+	private static int[] splitLegacy(SQLiteDatabase database) {
+		int today = partitionOf(System.currentTimeMillis());
+		SparseArray<String> partitions = new SparseArray<String>();
+		partitions.put(today, partitionName(today));
+		Cursor cursor = database.rawQuery(LEGACY_DAYS_QUERY, null);
+		try {
+			while (cursor.moveToNext()) {
+				int day = cursor.getInt(0);
+				partitions.put(day, partitionName(day));
+			}
+		} finally {
+			cursor.close();
+		}
+		int[] days = new int[partitions.size()];
+		for (int i = 0; i < days.length; i++) {
+			days[i] = partitions.keyAt(i);
+			createPartition(database, days[i]);
+			database.execSQL("insert into " + partitions.valueAt(i) + LEGACY_COPY, 
+					new Object[] {days[i]});
+		}
+		if (DebugLog.INFO) Log.i(TAG, TABLE_DATA + ": split readings into partitions: " 
+				+ days.length);
+		return days;
+	}
+	
+	/**
+	 * Create partition table and its indexes, if it does not already exist.
+	 * Data view must be recreated to include the new partition.
+	 * 
+	 * @param database    writable database
+	 * @param day         day from epoch of partition
+	 */
+	static void createPartition(SQLiteDatabase database, int day) {
+		String table = partitionName(day);
+		database.execSQL(PARTITION_CREATE + table + PARTITION_LAYOUT);
+		createIndexes(database, table);
+		// autoincrement continues from the larger of sequence and existing row ids
+		database.execSQL(SEQUENCE_DELETE, new Object[] {table});
+		database.execSQL(SEQUENCE_INSERT, new Object[] {table, ((long) day) << 32});
+	}
+	
+	/**
+	 * Drop partition table and its indexes.
+	 * Data view must be recreated to exclude the partition.
+	 * 
+	 * @param database    writable database
+	 * @param day         day from epoch of partition
+	 */
+	static void dropPartition(SQLiteDatabase database, int day) {
+		database.execSQL("drop table if exists " + partitionName(day));
+	}
+	
+	/**
+	 * Recreate Data view as union of partitions.
+	 * 
+	 * @param database    writable database
+	 * @param days        days from epoch of partitions (at least one)
+	 * @param count       number of partitions in _days_
+	 */
+	static void createView(SQLiteDatabase database, int[] days, int count) {
+		StringBuilder sql = new StringBuilder(64 + count * 48);
+		sql.append("create view ").append(TABLE_DATA).append(" as ");
+		for (int i = 0; i < count; i++) {
+			if (i > 0) sql.append(" union all ");
+			sql.append("select * from ").append(partitionName(days[i]));
+		}
+		database.beginTransaction();
+		try {
+			database.execSQL("drop view if exists " + TABLE_DATA);
+			database.execSQL(sql.toString());
+			database.setTransactionSuccessful();
+		} finally {
+			database.endTransaction();
+		}
+	}
+	
+	/**
+	 * Query days of all partitions currently in database.
+	 * 
+	 * @param database    database
+	 * @return    cursor with partition table names in first column
+	 */
+	static Cursor queryPartitions(SQLiteDatabase database) {
+		return database.rawQuery(PARTITION_QUERY, null);
+	}
+	
+	/**
+	 * Day from epoch of partition table.
+	 * 
+	 * @param table    partition table name
+	 * @return    day from epoch, or -1 if _table_ is not a partition
+	 */
+	static int partitionDay(String table) {
+		if (!table.startsWith(PARTITION_PREFIX)) return -1;
+		try {
+			return Integer.parseInt(table.substring(PARTITION_PREFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+	
+	private static void createIndexes(SQLiteDatabase database, String table) {
+		database.execSQL(INDEX_CREATE + table + INDEX_MONITOR_TIME + " on " + table + 
+				INDEX_MONITOR_COLUMNS);
+		database.execSQL(INDEX_CREATE + table + INDEX_METRIC_TIME + " on " + table + 
+				INDEX_METRIC_COLUMNS);
 	}
 	
 }
@@ -115,10 +115,8 @@ public final class MetricInfoTable {
 	public static void onUpgrade(SQLiteDatabase database, int oldVersion,
 			int newVersion) {
 		if (DebugLog.INFO) Log.i(TAG, TABLE_METRICINFO+ ": Upgrading database from version "
-				+ oldVersion + " to " + newVersion
-				+ ", which will destroy all old data");
-		database.execSQL("DROP TABLE IF EXISTS " + TABLE_METRICINFO);
-		onCreate(database);
+				+ oldVersion + " to " + newVersion);
+		// no changes to table layout since version 1
 	}
 
 }
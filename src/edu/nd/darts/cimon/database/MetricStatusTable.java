@@ -76,10 +76,8 @@ public final class MetricStatusTable {
 	public static void onUpgrade(SQLiteDatabase database, int oldVersion,
 			int newVersion) {
 		if (DebugLog.INFO) Log.i(TAG, TABLE_METRICSTATUS+ ": Upgrading database from version "
-				+ oldVersion + " to " + newVersion
-				+ ", which will destroy all old data");
-		database.execSQL("DROP TABLE IF EXISTS " + TABLE_METRICSTATUS);
-		onCreate(database);
+				+ oldVersion + " to " + newVersion);
+		// no changes to table layout since version 1
 	}
 	
 }
@@ -82,10 +82,8 @@ public final class MetricsTable {
 	public static void onUpgrade(SQLiteDatabase database, int oldVersion,
 			int newVersion) {
 		if (DebugLog.INFO) Log.i(TAG, TABLE_METRICS + ": Upgrading database from version "
-				+ oldVersion + " to " + newVersion
-				+ ", which will destroy all old data");
-		database.execSQL("DROP TABLE IF EXISTS " + TABLE_METRICS);
-		onCreate(database);
+				+ oldVersion + " to " + newVersion);
+		// no changes to table layout since version 1
 	}
 	
 }
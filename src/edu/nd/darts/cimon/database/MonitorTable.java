@@ -50,6 +50,8 @@ public final class MonitorTable {
 	public static final String COLUMN_TIME_OFFSET = "timeoffset";
 	/** End time of monitor, system time in milliseconds from epoch (Long). */
 	public static final String COLUMN_ENDTIME = "endtime";
+	/** Readings of monitor dropped while the database was backlogged (Long). */
+	public static final String COLUMN_DROPPED = "dropped";
 
 	// Database creation SQL statement
 	private static final String DATABASE_CREATE = "create table " 
@@ -57,7 +59,8 @@ public final class MonitorTable {
 			+ "(" 
 			+ COLUMN_ID + " integer primary key autoincrement, " 
 			+ COLUMN_TIME_OFFSET + " integer not null, " 
-			+ COLUMN_ENDTIME + " integer not null" 
+			+ COLUMN_ENDTIME + " integer not null, " 
+			+ COLUMN_DROPPED + " integer not null default 0" 
 			+ ");";
 
 	public static void onCreate(SQLiteDatabase database) {
@@ -67,10 +70,11 @@ public final class MonitorTable {
 	public static void onUpgrade(SQLiteDatabase database, int oldVersion,
 			int newVersion) {
 		if (DebugLog.INFO) Log.i(TAG, TABLE_MONITOR + ": Upgrading database from version "
-				+ oldVersion + " to " + newVersion
-				+ ", which will destroy all old data");
-		database.execSQL("DROP TABLE IF EXISTS " + TABLE_MONITOR);
-		onCreate(database);
+				+ oldVersion + " to " + newVersion);
+		if (oldVersion < 4) {
+			database.execSQL("alter table " + TABLE_MONITOR + " add column " 
+					+ COLUMN_DROPPED + " integer not null default 0");
+		}
 	}
 	
 }
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon.database;
+
+import edu.nd.darts.cimon.DebugLog;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+/**
+ * Defines the layout of the rollup tables of the database.
+ * These tables store aggregates (minimum, maximum, mean and count) of
+ * readings from the Data table, over fixed intervals of one minute and one
+ * hour.  Rollups are updated as readings are inserted, and are retained
+ * longer than the raw readings, so that long term trends may be queried
+ * without scanning the Data table.
+ * <p>
+ * Unlike the Data table, timestamps of rollups are system time from epoch, 
+ * with the monitor time offset already applied.
+ * 
+ * @author darts
+ * 
+ * @see DataTable
+ * @see MetricsTable
+ *
+ */
+public final class RollupTable {
+
+	private static final String TAG = "NDroid";
+	
+	// Database tables
+	/** Rollups of one minute intervals. */
+	public static final String TABLE_MINUTE = "rollup_minute";
+	/** Rollups of one hour intervals. */
+	public static final String TABLE_HOUR = "rollup_hour";
+	/** Interval of minute rollups, in milliseconds. */
+	public static final long MINUTE_PERIOD = 60 * 1000;
+	/** Interval of hour rollups, in milliseconds. */
+	public static final long HOUR_PERIOD = 60 * MINUTE_PERIOD;
+	// Table columns
+	/** Unique id (Long) */
+	public static final String COLUMN_ID = "_id";
+	/** Index of metric in SystemMetrics table (Long). */
+	public static final String COLUMN_METRIC_ID = "metricid";
+	/** Index of monitor that registered metric (Long). */
+	public static final String COLUMN_MONITOR_ID = "monitorid";
+	/** Start time of interval, system time from epoch in milliseconds (Long). */
+	public static final String COLUMN_TIMESTAMP = "timestamp";
+	/** Number of readings in interval (Long). */
+	public static final String COLUMN_COUNT = "count";
+	/** Minimum reading in interval (Float). */
+	public static final String COLUMN_MIN = "min";
+	/** Maximum reading in interval (Float). */
+	public static final String COLUMN_MAX = "max";
+	/** Mean of readings in interval (Float). */
+	public static final String COLUMN_MEAN = "mean";
+	
+	// Table creation SQL statement, preceded by table name
+	private static final String TABLE_LAYOUT = "(" 
+			+ COLUMN_ID + " integer primary key autoincrement, " 
+			+ COLUMN_METRIC_ID + " integer not null, " 
+			+ COLUMN_MONITOR_ID + " integer not null," 
+			+ COLUMN_TIMESTAMP + " integer not null," 
+			+ COLUMN_COUNT + " integer not null," 
+			+ COLUMN_MIN + " real not null," 
+			+ COLUMN_MAX + " real not null," 
+			+ COLUMN_MEAN + " real not null" 
+			+ ");";
+	// Index SQL, preceded by index and table name
+	private static final String INDEX_MONITOR_COLUMNS = "("
+			+ COLUMN_MONITOR_ID + ", "
+			+ COLUMN_METRIC_ID + ", "
+			+ COLUMN_TIMESTAMP
+			+ ");";
+	private static final String INDEX_METRIC_COLUMNS = "("
+			+ COLUMN_METRIC_ID + ", "
+			+ COLUMN_TIMESTAMP
+			+ ");";
+	private static final String INDEX_TIME_COLUMNS = "("
+			+ COLUMN_TIMESTAMP
+			+ ");";
+
+	/**
+	 * Build SQL statement to merge aggregate of readings into an existing rollup.
+	 * Parameters are bound in order: count, sum, minimum, maximum, monitor id, 
+	 * metric id, timestamp.
+	 * 
+	 * @param table    rollup table name
+	 * @return    SQL update statement
+	 */
+	static String mergeStatement(String table) {
+		return "update " + table + " set "
+				+ COLUMN_MEAN + " = (" + COLUMN_MEAN + " * " + COLUMN_COUNT + " + ?2) / ("
+						+ COLUMN_COUNT + " + ?1), "
+				+ COLUMN_COUNT + " = " + COLUMN_COUNT + " + ?1, "
+				+ COLUMN_MIN + " = min(" + COLUMN_MIN + ", ?3), "
+				+ COLUMN_MAX + " = max(" + COLUMN_MAX + ", ?4) "
+				+ "where " + COLUMN_MONITOR_ID + " = ?5 and " + COLUMN_METRIC_ID + " = ?6 and "
+				+ COLUMN_TIMESTAMP + " = ?7";
+	}
+	
+	/**
+	 * Build SQL statement to insert new rollup.  Parameters are bound in order: 
+	 * metric id, monitor id, timestamp, count, minimum, maximum, mean.
+	 * 
+	 * @param table    rollup table name
+	 * @return    SQL insert statement
+	 */
+	static String insertStatement(String table) {
+		return "insert into " + table + "("
+				+ COLUMN_METRIC_ID + ", "
+				+ COLUMN_MONITOR_ID + ", "
+				+ COLUMN_TIMESTAMP + ", "
+				+ COLUMN_COUNT + ", "
+				+ COLUMN_MIN + ", "
+				+ COLUMN_MAX + ", "
+				+ COLUMN_MEAN
+				+ ") values (?,?,?,?,?,?,?)";
+	}
+	
+	/**
+	 * Delete rollups older than specified time.
+	 * 
+	 * @param database    writable database
+	 * @param table       rollup table name
+	 * @param time        oldest interval start time to keep, from epoch in milliseconds
+	 * @return    number of rows deleted
+	 */
+	static int deleteBefore(SQLiteDatabase database, String table, long time) {
+		return database.delete(table, COLUMN_TIMESTAMP + " < " + time, null);
+	}
+
+	public static void onCreate(SQLiteDatabase database) {
+		createTable(database, TABLE_MINUTE);
+		createTable(database, TABLE_HOUR);
+	}
+
+	/**
+	 * Upgrade tables, preserving existing data.
+	 * <ul>
+	 * <li>Version 3: tables added.</li>
+	 * </ul>
+	 * 
+	 * @param database      database being upgraded
+	 * @param oldVersion    version of existing database
+	 * @param newVersion    new database version
+	 */
+	public static void onUpgrade(SQLiteDatabase database, int oldVersion,
+			int newVersion) {
+		if (DebugLog.INFO) Log.i(TAG, "rollup: Upgrading database from version "
+				+ oldVersion + " to " + newVersion);
+		if (oldVersion < 3) {
+			onCreate(database);
+		}
+	}
+	
+	private static void createTable(SQLiteDatabase database, String table) {
+		database.execSQL("create table if not exists " + table + TABLE_LAYOUT);
+		database.execSQL("create unique index if not exists " + table + "_monitor on " 
+				+ table + INDEX_MONITOR_COLUMNS);
+		database.execSQL("create index if not exists " + table + "_metric on " 
+				+ table + INDEX_METRIC_COLUMNS);
+		database.execSQL("create index if not exists " + table + "_time on " 
+				+ table + INDEX_TIME_COLUMNS);
+	}
+	
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Accumulates readings into aggregates for one rollup table.
+ * Consecutive readings which fall in the same interval (for the same metric
+ * and monitor) are aggregated in memory, and merged into the rollup table 
+ * when the interval changes or on {@link #flush()}.  Must only be used on the 
+ * writer connection, while holding the database adapter lock.
+ * 
+ * @author darts
+ * 
+ * @see RollupTable
+ *
+ */
+final class RollupWriter {
+	
+	private final String table;
+	private final long period;
+	private final SQLiteStatement mergeStatement;
+	private final SQLiteStatement insertStatement;
+	
+	private int metric;
+	private int monitor;
+	private long interval;
+	private int count = 0;
+	private double sum;
+	private float min;
+	private float max;
+	
+	/**
+	 * Accumulator for rollup table.
+	 * 
+	 * @param database    writer connection
+	 * @param table       rollup table name
+	 * @param period      interval of rollups in table, in milliseconds
+	 */
+	RollupWriter(SQLiteDatabase database, String table, long period) {
+		this.table = table;
+		this.period = period;
+		mergeStatement = database.compileStatement(RollupTable.mergeStatement(table));
+		insertStatement = database.compileStatement(RollupTable.insertStatement(table));
+	}
+	
+	/**
+	 * Add reading to rollup.
+	 * 
+	 * @param metric     id of metric
+	 * @param monitor    id of monitor
+	 * @param time       time of reading, from epoch in milliseconds
+	 * @param value      value of reading
+	 */
+	void add(int metric, int monitor, long time, float value) {
+		long start = time - (time % period);
+		if ((count > 0) && ((start != interval) || (metric != this.metric) || 
+				(monitor != this.monitor))) {
+			flush();
+		}
+		if (count == 0) {
+			this.metric = metric;
+			this.monitor = monitor;
+			interval = start;
+			sum = 0;
+			min = value;
+			max = value;
+		}
+		else if (value < min) {
+			min = value;
+		}
+		else if (value > max) {
+			max = value;
+		}
+		sum += value;
+		count++;
+	}
+	
+	/**
+	 * Merge pending aggregate into rollup table.  Must be called within the
+	 * transaction which inserted the readings.
+	 */
+	void flush() {
+		if (count == 0) return;
+		mergeStatement.bindLong(1, count);
+		mergeStatement.bindDouble(2, sum);
+		mergeStatement.bindDouble(3, min);
+		mergeStatement.bindDouble(4, max);
+		mergeStatement.bindLong(5, monitor);
+		mergeStatement.bindLong(6, metric);
+		mergeStatement.bindLong(7, interval);
+		if (mergeStatement.executeUpdateDelete() == 0) {
+			insertStatement.bindLong(1, metric);
+			insertStatement.bindLong(2, monitor);
+			insertStatement.bindLong(3, interval);
+			insertStatement.bindLong(4, count);
+			insertStatement.bindDouble(5, min);
+			insertStatement.bindDouble(6, max);
+			insertStatement.bindDouble(7, sum / count);
+			insertStatement.executeInsert();
+		}
+		count = 0;
+	}
+	
+	/**
+	 * Discard pending aggregate, such as after its transaction was rolled back.
+	 */
+	void reset() {
+		count = 0;
+	}
+	
+	/**
+	 * Delete rollups older than specified time.
+	 * 
+	 * @param database    writer connection
+	 * @param time        oldest interval start time to keep, from epoch in milliseconds
+	 * @return    number of rollups deleted
+	 */
+	int deleteBefore(SQLiteDatabase database, long time) {
+		return RollupTable.deleteBefore(database, table, time);
+	}
+	
+	/**
+	 * Release compiled statements.
+	 */
+	void close() {
+		mergeStatement.close();
+		insertStatement.close();
+	}
+	
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon.database;
+
+import java.io.IOException;
+
+import edu.nd.darts.cimon.DebugLog;
+import android.database.AbstractCursor;
+import android.util.Log;
+
+/**
+ * Cursor over readings of a monitor stored in the sample log.
+ * Provides the same columns as the {@link DataTable}, so clients may read
+ * readings without regard to how they are stored.  Segments are decoded one
+ * at a time as the cursor moves, so memory use is bounded by the size of a
+ * single segment.  Row ids are positions within the monitor's stream of
+ * readings, which are not reused when old segments expire, so a cursor may
+ * cover a window of readings following a known row id.
+ * 
+ * @author darts
+ * 
+ * @see SampleLog
+ *
+ */
+final class SampleCursor extends AbstractCursor {
+	
+	private static final String TAG = "NDroid";
+	
+	private static final String[] ALL_COLUMNS = { DataTable.COLUMN_ID, 
+		DataTable.COLUMN_METRIC_ID, DataTable.COLUMN_MONITOR_ID, 
+		DataTable.COLUMN_TIMESTAMP, DataTable.COLUMN_VALUE };
+	private static final int ID = 0;
+	private static final int METRIC = 1;
+	private static final int MONITOR = 2;
+	private static final int TIMESTAMP = 3;
+	private static final int VALUE = 4;
+	
+	private final SampleStream.Snapshot snapshot;
+	private final String[] columnNames;
+	private final int[] columns;
+	/** Position of first reading of each segment in snapshot, with total at end. */
+	private final int[] segmentStarts;
+	private final int skipped;
+	private final int count;
+	
+	private int segment = -1;
+	private long[] timestamps;
+	private float[] values;
+	
+	/**
+	 * Cursor over a window of readings of snapshot.
+	 * 
+	 * @param snapshot      segment index of stream
+	 * @param projection    columns to include, or null for all columns
+	 * @param start         position of first reading to include, within snapshot
+	 * @param limit         maximum number of readings to include
+	 * @throws IllegalArgumentException if projection contains an unknown column
+	 */
+	SampleCursor(SampleStream.Snapshot snapshot, String[] projection, int start, int limit) {
+		this.snapshot = snapshot;
+		columnNames = (projection == null) ? ALL_COLUMNS : projection;
+		columns = new int[columnNames.length];
+		for (int i = 0; i < columnNames.length; i++) {
+			columns[i] = columnOf(columnNames[i]);
+		}
+		segmentStarts = segmentStarts(snapshot);
+		int maxCount = 0;
+		for (int i = 0; i < snapshot.counts.length; i++) {
+			maxCount = Math.max(maxCount, snapshot.counts[i]);
+		}
+		timestamps = new long[maxCount];
+		values = new float[maxCount];
+		int total = segmentStarts[segmentStarts.length - 1];
+		skipped = Math.max(0, Math.min(start, total));
+		count = (int) Math.min((long) limit, total - skipped);
+	}
+	
+	/**
+	 * Position of first reading of snapshot at or after specified time.
+	 * Uses segment index to locate segment, and decodes only that segment.
+	 * 
+	 * @param snapshot    segment index of stream
+	 * @param from        timestamp, measured from uptime (milliseconds)
+	 * @return    position of reading
+	 */
+	static int positionOf(SampleStream.Snapshot snapshot, long from) {
+		int[] starts = segmentStarts(snapshot);
+		if ((snapshot.counts.length == 0) || (from <= snapshot.startTimes[0])) {
+			return 0;
+		}
+		int index = snapshot.findSegment(from);
+		long[] segmentTimes = new long[snapshot.counts[index]];
+		float[] segmentValues = new float[snapshot.counts[index]];
+		int decoded;
+		try {
+			decoded = SampleSegment.decode(snapshot.files[index], snapshot.counts[index], 
+					segmentTimes, segmentValues);
+		} catch (IOException e) {
+			if (DebugLog.ERROR) Log.e(TAG, "SampleCursor.positionOf - failed to read segment " + 
+					snapshot.files[index] + ": " + e.getMessage());
+			return starts[index];
+		}
+		int position = 0;
+		while ((position < decoded) && (segmentTimes[position] < from)) {
+			position++;
+		}
+		return starts[index] + position;
+	}
+	
+	private static int[] segmentStarts(SampleStream.Snapshot snapshot) {
+		int segments = snapshot.counts.length;
+		int[] starts = new int[segments + 1];
+		for (int i = 0; i < segments; i++) {
+			starts[i + 1] = starts[i] + snapshot.counts[i];
+		}
+		return starts;
+	}
+
+	@Override
+	public int getCount() {
+		return count;
+	}
+
+	@Override
+	public String[] getColumnNames() {
+		return columnNames;
+	}
+	
+	@Override
+	public boolean onMove(int oldPosition, int newPosition) {
+		return load(newPosition + skipped);
+	}
+
+	@Override
+	public String getString(int column) {
+		if (columns[column] == VALUE) {
+			return String.valueOf(getFloat(column));
+		}
+		return String.valueOf(getLong(column));
+	}
+
+	@Override
+	public short getShort(int column) {
+		return (short) getLong(column);
+	}
+
+	@Override
+	public int getInt(int column) {
+		return (int) getLong(column);
+	}
+
+	@Override
+	public long getLong(int column) {
+		int position = mPos + skipped;
+		switch (columns[column]) {
+			case ID:
+				return snapshot.base + position;
+			case METRIC:
+				return snapshot.metrics[segment];
+			case MONITOR:
+				return snapshot.monitor;
+			case TIMESTAMP:
+				return timestamps[position - segmentStarts[segment]];
+			default:
+				return (long) values[position - segmentStarts[segment]];
+		}
+	}
+
+	@Override
+	public float getFloat(int column) {
+		if (columns[column] == VALUE) {
+			return values[mPos + skipped - segmentStarts[segment]];
+		}
+		return getLong(column);
+	}
+
+	@Override
+	public double getDouble(int column) {
+		return getFloat(column);
+	}
+
+	@Override
+	public boolean isNull(int column) {
+		return false;
+	}
+	
+	/**
+	 * Decode segment containing reading, if not already decoded.
+	 * 
+	 * @param position    position of reading within snapshot
+	 * @return    true if reading is available
+	 */
+	private boolean load(int position) {
+		if ((segment >= 0) && (position >= segmentStarts[segment]) && 
+				(position < segmentStarts[segment + 1])) {
+			return true;
+		}
+		int index = segmentOf(position);
+		if (index < 0) return false;
+		try {
+			SampleSegment.decode(snapshot.files[index], snapshot.counts[index], 
+					timestamps, values);
+		} catch (IOException e) {
+			if (DebugLog.ERROR) Log.e(TAG, "SampleCursor.load - failed to read segment " + 
+					snapshot.files[index] + ": " + e.getMessage());
+			segment = -1;
+			return false;
+		}
+		segment = index;
+		return true;
+	}
+	
+	private int segmentOf(int position) {
+		int low = 0;
+		int high = segmentStarts.length - 2;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (position < segmentStarts[mid]) {
+				high = mid - 1;
+			}
+			else if (position >= segmentStarts[mid + 1]) {
+				low = mid + 1;
+			}
+			else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+	
+	private static int columnOf(String name) {
+		for (int i = 0; i < ALL_COLUMNS.length; i++) {
+			if (ALL_COLUMNS[i].equals(name)) return i;
+		}
+		throw new IllegalArgumentException("Unknown column: " + name);
+	}
+	
+}
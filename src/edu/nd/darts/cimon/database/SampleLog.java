@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import edu.nd.darts.cimon.DebugLog;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+import android.util.SparseArray;
+
+/**
+ * Compact append-only storage of readings, used instead of Data table rows
+ * for high rate monitors.  Each monitor has a directory of segment files,
+ * holding compressed timestamps and values, which typically cost a few bytes
+ * per reading rather than a database row and index entries.
+ * <p>
+ * Readings of monitors stored in the sample log are read through
+ * {@link #query(int, String[], long)}, which provides the same columns as
+ * the Data table.  Queries which filter or sort readings with SQL are run on
+ * a {@link #copy(int, int) copy} of the readings in an in-memory database.
+ * Segments are deleted once older than the retention period of the Data 
+ * table, by {@link #deleteBefore(long)}.
+ * 
+ * @author darts
+ * 
+ * @see SampleSegment
+ * @see CimonDatabaseAdapter#insertMonitor(long, boolean)
+ *
+ */
+public final class SampleLog {
+	
+	private static final String TAG = "NDroid";
+	
+	/** Name of sample log directory, within application files directory. */
+	public static final String DIRECTORY = "samplelog";
+	/** Monitors with a shorter period than this (milliseconds) should be
+	 *  stored in the sample log. */
+	public static final long HIGH_RATE_PERIOD = 100;
+	/** Table of in-memory database holding a {@link #copy(int, int) copy} of readings,
+	 *  with the columns of the Data table. */
+	public static final String TABLE_SAMPLES = "samples";
+	
+	private static final String SAMPLES_CREATE = "create table " + TABLE_SAMPLES + "(" 
+			+ DataTable.COLUMN_ID + " integer not null, " 
+			+ DataTable.COLUMN_METRIC_ID + " integer not null, " 
+			+ DataTable.COLUMN_MONITOR_ID + " integer not null, " 
+			+ DataTable.COLUMN_TIMESTAMP + " integer not null, " 
+			+ DataTable.COLUMN_VALUE + " real not null);";
+	private static final String SAMPLES_INSERT = "insert into " + TABLE_SAMPLES + 
+			" values (?, ?, ?, ?, ?)";
+	private static final String[] SAMPLES_COLUMNS = { DataTable.COLUMN_ID, 
+		DataTable.COLUMN_METRIC_ID, DataTable.COLUMN_MONITOR_ID, 
+		DataTable.COLUMN_TIMESTAMP, DataTable.COLUMN_VALUE };
+	
+	private final File root;
+	private final SparseArray<SampleStream> streams = new SparseArray<SampleStream>();
+	
+	/**
+	 * Open sample log, loading index of existing monitor streams.
+	 * 
+	 * @param root    sample log directory
+	 */
+	public SampleLog(File root) {
+		this.root = root;
+		String[] names = root.list();
+		if (names == null) return;
+		for (String name : names) {
+			try {
+				int monitor = Integer.parseInt(name);
+				streams.put(monitor, new SampleStream(new File(root, name), monitor));
+			} catch (NumberFormatException e) {
+			}
+		}
+		if (DebugLog.DEBUG) Log.d(TAG, "SampleLog - monitor streams: " + streams.size());
+	}
+	
+	/**
+	 * Create stream for new monitor.  Readings of this monitor should be
+	 * appended to the sample log from then on.
+	 * 
+	 * @param monitor    id of monitor
+	 */
+	public synchronized void create(int monitor) {
+		if (streams.get(monitor) == null) {
+			streams.put(monitor, new SampleStream(new File(root, String.valueOf(monitor)), 
+					monitor));
+		}
+	}
+	
+	/**
+	 * Check if readings of monitor are stored in the sample log.
+	 * 
+	 * @param monitor    id of monitor
+	 * @return    true if monitor has a stream in sample log
+	 */
+	public synchronized boolean contains(int monitor) {
+		return streams.get(monitor) != null;
+	}
+	
+	/**
+	 * Append readings of monitor, from parallel arrays of timestamps and values.
+	 * 
+	 * @param metric        id of metric
+	 * @param monitor       id of monitor, which must have been {@link #create(int) created}
+	 * @param timestamps    timestamps of readings, measured from uptime (milliseconds)
+	 * @param values        values of readings
+	 * @param count         number of readings to append from start of arrays
+	 * @return    number of readings appended (should equal _count_ on success)
+	 */
+	public int append(int metric, int monitor, long[] timestamps, float[] values, int count) {
+		SampleStream stream = getStream(monitor);
+		if (stream == null) {
+			if (DebugLog.WARNING) Log.w(TAG, "SampleLog.append - unknown monitor: " + monitor);
+			return 0;
+		}
+		try {
+			return stream.append(metric, timestamps, values, count);
+		} catch (IOException e) {
+			if (DebugLog.ERROR) Log.e(TAG, "SampleLog.append - monitor " + monitor + ": " + 
+					e.getMessage());
+			return 0;
+		}
+	}
+	
+	/**
+	 * Query readings of monitor.  Readings appended after the query are not 
+	 * included in the returned cursor.
+	 * 
+	 * @param monitor       id of monitor
+	 * @param projection    the list of columns of Data table to put into the cursor. 
+	 *                        If null all columns are included
+	 * @param from          earliest timestamp of readings to include, measured from 
+	 *                        uptime (milliseconds)
+	 * @return    cursor of readings in order of insertion, or null if monitor is not 
+	 *              stored in sample log
+	 */
+	public Cursor query(int monitor, String[] projection, long from) {
+		SampleStream stream = getStream(monitor);
+		if (stream == null) return null;
+		SampleStream.Snapshot snapshot = stream.snapshot();
+		return new SampleCursor(snapshot, projection, SampleCursor.positionOf(snapshot, from), 
+				Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Query window of readings of monitor, following a known reading.  Row ids of
+	 * readings in the sample log are positions in order of insertion, so windows
+	 * may be paged by row id.
+	 * 
+	 * @param monitor       id of monitor
+	 * @param projection    the list of columns of Data table to put into the cursor. 
+	 *                        If null all columns are included
+	 * @param afterId       row id of last reading of previous window, or -1 for first
+	 * @param limit         maximum number of readings in window
+	 * @return    cursor of readings in order of insertion, or null if monitor is not 
+	 *              stored in sample log
+	 */
+	public Cursor queryPage(int monitor, String[] projection, long afterId, int limit) {
+		SampleStream stream = getStream(monitor);
+		if (stream == null) return null;
+		SampleStream.Snapshot snapshot = stream.snapshot();
+		// row ids continue from readings of expired segments
+		int start = (int) Math.min(Integer.MAX_VALUE, Math.max(0, afterId + 1 - snapshot.base));
+		return new SampleCursor(snapshot, projection, start, limit);
+	}
+	
+	/**
+	 * Copy readings of monitors stored in the sample log into the 
+	 * {@link #TABLE_SAMPLES} table of a new in-memory database, so they may be 
+	 * queried with SQL selection and sort order.  Row ids are those of 
+	 * {@link #query(int, String[], long)}, which are unique within a monitor only.
+	 * <p>
+	 * Every matching reading is decoded and inserted, so time and memory are 
+	 * proportional to the number of readings copied (roughly 40 bytes of memory
+	 * each).  Readings should be read through {@link #query(int, String[], long)}
+	 * or {@link #queryPage(int, String[], long, int)} where possible.
+	 * 
+	 * @param monitor    id of monitor to copy, or -1 for all monitors
+	 * @param metric     id of metric to copy, or -1 for all metrics
+	 * @return    in-memory database, which caller must close, or null if no stream 
+	 *              of sample log matches
+	 */
+	public SQLiteDatabase copy(int monitor, int metric) {
+		SampleStream[] selected = select(monitor, metric);
+		if (selected.length == 0) return null;
+		SQLiteDatabase memory = SQLiteDatabase.create(null);
+		memory.execSQL(SAMPLES_CREATE);
+		SQLiteStatement insert = memory.compileStatement(SAMPLES_INSERT);
+		int copied = 0;
+		memory.beginTransaction();
+		try {
+			for (SampleStream stream : selected) {
+				Cursor cursor = new SampleCursor(stream.snapshot(), SAMPLES_COLUMNS, 0, 
+						Integer.MAX_VALUE);
+				try {
+					while (cursor.moveToNext()) {
+						insert.bindLong(1, cursor.getLong(0));
+						insert.bindLong(2, cursor.getLong(1));
+						insert.bindLong(3, cursor.getLong(2));
+						insert.bindLong(4, cursor.getLong(3));
+						insert.bindDouble(5, cursor.getFloat(4));
+						insert.executeInsert();
+						copied++;
+					}
+				} finally {
+					cursor.close();
+				}
+			}
+			memory.setTransactionSuccessful();
+		} finally {
+			memory.endTransaction();
+			insert.close();
+		}
+		if (DebugLog.DEBUG) Log.d(TAG, "SampleLog.copy - streams: " + selected.length + 
+				" readings: " + copied);
+		return memory;
+	}
+	
+	/**
+	 * Delete segments of every stream last written before specified time.  The
+	 * segment currently being written by a stream is kept, and closed streams of
+	 * which every segment expired are removed.
+	 * 
+	 * @param time    time from epoch (milliseconds)
+	 * @return    number of readings deleted
+	 */
+	public synchronized long deleteBefore(long time) {
+		long deleted = 0;
+		for (int i = streams.size() - 1; i >= 0; i--) {
+			SampleStream stream = streams.valueAt(i);
+			long expired = stream.deleteBefore(time);
+			deleted += expired;
+			if ((expired > 0) && (stream.getMetric() < 0)) {
+				stream.delete();
+				streams.removeAt(i);
+			}
+		}
+		if (DebugLog.DEBUG) Log.d(TAG, "SampleLog.deleteBefore - deleted readings: " + deleted);
+		return deleted;
+	}
+	
+	/**
+	 * Delete streams of monitors older than specified monitor.
+	 * 
+	 * @param monitorID    oldest monitor to keep
+	 * @return    number of monitor streams deleted
+	 */
+	public synchronized int deleteMonitorsBefore(int monitorID) {
+		int deleted = 0;
+		for (int i = streams.size() - 1; i >= 0; i--) {
+			if (streams.keyAt(i) < monitorID) {
+				streams.valueAt(i).delete();
+				streams.removeAt(i);
+				deleted++;
+			}
+		}
+		return deleted;
+	}
+	
+	private synchronized SampleStream getStream(int monitor) {
+		return streams.get(monitor);
+	}
+	
+	/**
+	 * Streams of monitor and metric, either of which may be -1 to match any.
+	 */
+	private synchronized SampleStream[] select(int monitor, int metric) {
+		SampleStream[] selected = new SampleStream[streams.size()];
+		int count = 0;
+		for (int i = 0; i < streams.size(); i++) {
+			SampleStream stream = streams.valueAt(i);
+			if (((monitor < 0) || (streams.keyAt(i) == monitor)) && 
+					((metric < 0) || (stream.getMetric() == metric))) {
+				selected[count++] = stream;
+			}
+		}
+		return Arrays.copyOf(selected, count);
+	}
+	
+	/**
+	 * Close segments currently being written.  Further appends start new segments.
+	 */
+	public synchronized void close() {
+		for (int i = 0; i < streams.size(); i++) {
+			streams.valueAt(i).close();
+		}
+	}
+	
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Segment file of the sample log.  Stores a compressed sequence of readings
+ * of a single metric, in a memory-mapped file of fixed capacity.
+ * <p>
+ * Timestamps are stored as delta-of-deltas, so that readings at a fixed period
+ * cost a single bit.  Values are stored as the XOR of the previous value, 
+ * reusing the previous window of meaningful bits when possible (as described 
+ * for the Gorilla time series database).  Each segment starts with a header:
+ * <pre>
+ *   int   magic
+ *   int   metric id
+ *   long  timestamp of first reading
+ *   int   number of readings
+ *   int   length of encoded readings (bits)
+ *   long  position of first reading within stream of monitor
+ * </pre>
+ * Header counts are updated after each {@link #commit()}, so a reader only
+ * decodes readings which were completely written.  A segment which is not full
+ * may be {@link #SampleSegment(File) reopened} to append further readings.
+ * 
+ * @author darts
+ * 
+ * @see SampleLog
+ *
+ */
+final class SampleSegment {
+	
+	/** Capacity of segment files (bytes). */
+	static final int SEGMENT_SIZE = 128 * 1024;
+	/** Size of segment header (bytes). */
+	static final int HEADER_SIZE = 32;
+	
+	private static final int MAGIC = 0x43534c31;	// "CSL1"
+	private static final int OFFSET_METRIC = 4;
+	private static final int OFFSET_START = 8;
+	private static final int OFFSET_COUNT = 16;
+	private static final int OFFSET_BITS = 20;
+	private static final int OFFSET_FIRST = 24;
+	/** Worst case encoded size of one reading (bytes): 36 bits of timestamp,
+	 *  44 bits of value. */
+	private static final int MAX_SAMPLE_BYTES = 11;
+	
+	private final File file;
+	private final RandomAccessFile access;
+	private final MappedByteBuffer buffer;
+	private final int metric;
+	private final long startTime;
+	private final long firstPosition;
+	
+	private int count = 0;
+	private int bytePosition = HEADER_SIZE;
+	private int bitOffset = 0;
+	private int currentByte = 0;
+	
+	private long prevTimestamp;
+	private long prevDelta;
+	private int prevValue;
+	private int prevLeading = -1;
+	private int prevTrailing;
+	
+	/**
+	 * Create new segment file for writing.
+	 * 
+	 * @param file         segment file, which must not exist
+	 * @param metric       id of metric stored in segment
+	 * @param startTime    timestamp of first reading
+	 * @param firstPosition    position of first reading within stream of monitor
+	 * @throws IOException if segment file could not be created
+	 */
+	SampleSegment(File file, int metric, long startTime, long firstPosition) 
+			throws IOException {
+		this.file = file;
+		this.metric = metric;
+		this.startTime = startTime;
+		this.firstPosition = firstPosition;
+		access = new RandomAccessFile(file, "rw");
+		buffer = map(access);
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(OFFSET_METRIC, metric);
+		buffer.putLong(OFFSET_START, startTime);
+		buffer.putLong(OFFSET_FIRST, firstPosition);
+		commit();
+	}
+	
+	/**
+	 * Open existing segment file, to append further readings.  The committed 
+	 * readings are decoded to restore the state of the encoder, so appending 
+	 * continues the encoding exactly as if the segment had not been closed.
+	 * 
+	 * @param file    segment file
+	 * @throws IOException if segment could not be opened, or is not valid
+	 */
+	SampleSegment(File file) throws IOException {
+		this.file = file;
+		access = new RandomAccessFile(file, "rw");
+		try {
+			if (access.length() != SEGMENT_SIZE) {
+				throw new IOException("not a sample segment: " + file);
+			}
+			buffer = map(access);
+			if (buffer.getInt(0) != MAGIC) {
+				throw new IOException("not a sample segment: " + file);
+			}
+		} catch (IOException e) {
+			access.close();
+			throw e;
+		}
+		metric = buffer.getInt(OFFSET_METRIC);
+		startTime = buffer.getLong(OFFSET_START);
+		firstPosition = buffer.getLong(OFFSET_FIRST);
+		final int committed = buffer.getInt(OFFSET_COUNT);
+		final int bits = buffer.getInt(OFFSET_BITS);
+		Decoder decoder = new Decoder(buffer);
+		int leading = -1;
+		int trailing = 0;
+		prevTimestamp = startTime;
+		for (int i = 0; i < committed; i++) {
+			if (i == 0) {
+				prevValue = (int) decoder.readBits(32);
+			}
+			else {
+				prevDelta += decoder.readTimestamp();
+				prevTimestamp += prevDelta;
+				if (decoder.readBits(1) != 0) {
+					if (decoder.readBits(1) != 0) {
+						leading = (int) decoder.readBits(5);
+						trailing = 32 - leading - ((int) decoder.readBits(5) + 1);
+					}
+					prevValue ^= ((int) decoder.readBits(32 - leading - trailing)) << trailing;
+				}
+			}
+		}
+		if (decoder.getBitPosition() != bits) {
+			access.close();
+			throw new IOException("inconsistent sample segment: " + file);
+		}
+		count = committed;
+		prevLeading = leading;
+		prevTrailing = trailing;
+		bytePosition = HEADER_SIZE + (bits >>> 3);
+		bitOffset = bits & 7;
+		if (bitOffset > 0) {
+			// keep written bits of partial byte, following bits are rewritten
+			currentByte = buffer.get(bytePosition) & (0xff00 >>> bitOffset) & 0xff;
+		}
+	}
+	
+	private static MappedByteBuffer map(RandomAccessFile access) throws IOException {
+		try {
+			return access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+		} catch (IOException e) {
+			access.close();
+			throw e;
+		}
+	}
+	
+	File getFile() {
+		return file;
+	}
+	
+	int getMetric() {
+		return metric;
+	}
+	
+	long getStartTime() {
+		return startTime;
+	}
+	
+	int getCount() {
+		return count;
+	}
+	
+	long getFirstPosition() {
+		return firstPosition;
+	}
+	
+	/**
+	 * Number of bytes of segment holding encoded readings, including the header.
+	 * 
+	 * @return    bytes used
+	 */
+	int getUsedBytes() {
+		return bytePosition + ((bitOffset > 0) ? 1 : 0);
+	}
+	
+	/**
+	 * Check if reading can be appended to this segment.
+	 * 
+	 * @param metric       id of metric
+	 * @param timestamp    timestamp of reading
+	 * @return    true if reading fits in segment
+	 */
+	boolean accepts(int metric, long timestamp) {
+		if ((metric != this.metric) || ((SEGMENT_SIZE - bytePosition) < MAX_SAMPLE_BYTES)) {
+			return false;
+		}
+		if (count == 0) {
+			return timestamp == startTime;
+		}
+		long dod = (timestamp - prevTimestamp) - prevDelta;
+		return (dod >= Integer.MIN_VALUE) && (dod <= Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Append reading to segment.  Caller must first check that the reading is
+	 * {@link #accepts(int, long) accepted}.  Reading is not visible to readers
+	 * until {@link #commit()}.
+	 * 
+	 * @param timestamp    timestamp of reading
+	 * @param value        value of reading
+	 */
+	void append(long timestamp, float value) {
+		int bits = Float.floatToRawIntBits(value);
+		if (count == 0) {
+			writeBits(bits, 32);
+		}
+		else {
+			long delta = timestamp - prevTimestamp;
+			writeTimestamp(delta - prevDelta);
+			prevDelta = delta;
+			writeValue(bits ^ prevValue);
+		}
+		prevTimestamp = timestamp;
+		prevValue = bits;
+		count++;
+	}
+	
+	/**
+	 * Publish appended readings to readers, by updating the segment header.
+	 */
+	void commit() {
+		if (bitOffset > 0) {
+			buffer.put(bytePosition, (byte) currentByte);
+		}
+		buffer.putInt(OFFSET_BITS, ((bytePosition - HEADER_SIZE) << 3) + bitOffset);
+		buffer.putInt(OFFSET_COUNT, count);
+	}
+	
+	/**
+	 * Commit readings, flush segment to storage and close file.
+	 * Segment may not be written after closing.
+	 */
+	void close() {
+		commit();
+		buffer.force();
+		try {
+			access.close();
+		} catch (IOException e) {
+			// nothing left to release
+		}
+	}
+	
+	private void writeTimestamp(long dod) {
+		if (dod == 0) {
+			writeBits(0, 1);
+		}
+		else if ((dod >= -63) && (dod <= 64)) {
+			writeBits(0x2, 2);
+			writeBits(dod + 63, 7);
+		}
+		else if ((dod >= -255) && (dod <= 256)) {
+			writeBits(0x6, 3);
+			writeBits(dod + 255, 9);
+		}
+		else if ((dod >= -2047) && (dod <= 2048)) {
+			writeBits(0xe, 4);
+			writeBits(dod + 2047, 12);
+		}
+		else {
+			writeBits(0xf, 4);
+			writeBits(dod, 32);
+		}
+	}
+	
+	private void writeValue(int xor) {
+		if (xor == 0) {
+			writeBits(0, 1);
+			return;
+		}
+		int leading = Integer.numberOfLeadingZeros(xor);
+		int trailing = Integer.numberOfTrailingZeros(xor);
+		if ((prevLeading >= 0) && (leading >= prevLeading) && (trailing >= prevTrailing)) {
+			writeBits(0x2, 2);
+			writeBits(xor >>> prevTrailing, 32 - prevLeading - prevTrailing);
+		}
+		else {
+			int significant = 32 - leading - trailing;
+			writeBits(0x3, 2);
+			writeBits(leading, 5);
+			writeBits(significant - 1, 5);
+			writeBits(xor >>> trailing, significant);
+			prevLeading = leading;
+			prevTrailing = trailing;
+		}
+	}
+	
+	private void writeBits(long value, int bits) {
+		while (bits > 0) {
+			int free = 8 - bitOffset;
+			int n = (bits < free) ? bits : free;
+			int chunk = (int) (value >>> (bits - n)) & ((1 << n) - 1);
+			currentByte |= chunk << (free - n);
+			bitOffset += n;
+			bits -= n;
+			if (bitOffset == 8) {
+				buffer.put(bytePosition++, (byte) currentByte);
+				currentByte = 0;
+				bitOffset = 0;
+			}
+		}
+	}
+	
+	/**
+	 * Read header of segment file.
+	 * 
+	 * @param file      segment file
+	 * @param header    array to receive metric id, timestamp of first reading, 
+	 *                    number of readings, and position of first reading
+	 * @return    true if file is a valid segment
+	 */
+	static boolean readHeader(File file, long[] header) {
+		ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE);
+		RandomAccessFile access = null;
+		try {
+			access = new RandomAccessFile(file, "r");
+			if (access.getChannel().read(data, 0) < HEADER_SIZE) return false;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			if (access != null) {
+				try {
+					access.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+		if (data.getInt(0) != MAGIC) return false;
+		header[0] = data.getInt(OFFSET_METRIC);
+		header[1] = data.getLong(OFFSET_START);
+		header[2] = data.getInt(OFFSET_COUNT);
+		header[3] = data.getLong(OFFSET_FIRST);
+		return true;
+	}
+	
+	/**
+	 * Number of bytes of segment file holding committed readings, including
+	 * the header.
+	 * 
+	 * @param file    segment file
+	 * @return    bytes used, or 0 if file is not a valid segment
+	 */
+	static int usedBytes(File file) {
+		ByteBuffer data = ByteBuffer.allocate(HEADER_SIZE);
+		RandomAccessFile access = null;
+		try {
+			access = new RandomAccessFile(file, "r");
+			if (access.getChannel().read(data, 0) < HEADER_SIZE) return 0;
+		} catch (IOException e) {
+			return 0;
+		} finally {
+			if (access != null) {
+				try {
+					access.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+		if (data.getInt(0) != MAGIC) return 0;
+		return HEADER_SIZE + ((data.getInt(OFFSET_BITS) + 7) >>> 3);
+	}
+	
+	/**
+	 * Decode readings of segment file.
+	 * 
+	 * @param file          segment file
+	 * @param count         maximum number of readings to decode
+	 * @param timestamps    array to receive timestamps (length at least _count_)
+	 * @param values        array to receive values (length at least _count_)
+	 * @return    number of readings decoded
+	 * @throws IOException if segment could not be read
+	 */
+	static int decode(File file, int count, long[] timestamps, float[] values) 
+			throws IOException {
+		RandomAccessFile access = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = access.getChannel();
+			ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (data.getInt(0) != MAGIC) {
+				throw new IOException("not a sample segment: " + file);
+			}
+			count = Math.min(count, data.getInt(OFFSET_COUNT));
+			Decoder decoder = new Decoder(data);
+			long timestamp = data.getLong(OFFSET_START);
+			long delta = 0;
+			int value = 0;
+			int leading = 0;
+			int trailing = 0;
+			for (int i = 0; i < count; i++) {
+				if (i == 0) {
+					value = (int) decoder.readBits(32);
+				}
+				else {
+					delta += decoder.readTimestamp();
+					timestamp += delta;
+					if (decoder.readBits(1) != 0) {
+						if (decoder.readBits(1) != 0) {
+							leading = (int) decoder.readBits(5);
+							int significant = (int) decoder.readBits(5) + 1;
+							trailing = 32 - leading - significant;
+						}
+						value ^= ((int) decoder.readBits(32 - leading - trailing)) << trailing;
+					}
+				}
+				timestamps[i] = timestamp;
+				values[i] = Float.intBitsToFloat(value);
+			}
+			return count;
+		} finally {
+			access.close();
+		}
+	}
+	
+	/**
+	 * Bit reader over encoded readings of segment.
+	 */
+	private static final class Decoder {
+		private final ByteBuffer data;
+		private int bytePosition = HEADER_SIZE;
+		private int bitOffset = 0;
+		
+		Decoder(ByteBuffer data) {
+			this.data = data;
+		}
+		
+		int getBitPosition() {
+			return ((bytePosition - HEADER_SIZE) << 3) + bitOffset;
+		}
+		
+		long readTimestamp() {
+			if (readBits(1) == 0) return 0;
+			if (readBits(1) == 0) return readBits(7) - 63;
+			if (readBits(1) == 0) return readBits(9) - 255;
+			if (readBits(1) == 0) return readBits(12) - 2047;
+			return (int) readBits(32);
+		}
+		
+		long readBits(int bits) {
+			long value = 0;
+			while (bits > 0) {
+				int available = 8 - bitOffset;
+				int n = (bits < available) ? bits : available;
+				int current = data.get(bytePosition) & 0xff;
+				int chunk = (current >>> (available - n)) & ((1 << n) - 1);
+				value = (value << n) | chunk;
+				bitOffset += n;
+				bits -= n;
+				if (bitOffset == 8) {
+					bytePosition++;
+					bitOffset = 0;
+				}
+			}
+			return value;
+		}
+	}
+	
+}
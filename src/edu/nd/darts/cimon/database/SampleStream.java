@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2013 Chris Miller
+ *
+ * This file is part of CIMON.
+ * 
+ * CIMON is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *  
+ * CIMON is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *  
+ * You should have received a copy of the GNU General Public License
+ * along with CIMON.  If not, see <http://www.gnu.org/licenses/>.
+ *  
+ */
+package edu.nd.darts.cimon.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import edu.nd.darts.cimon.DebugLog;
+import android.util.Log;
+
+/**
+ * Append-only stream of readings for a single monitor in the sample log.
+ * Readings are written to a sequence of {@link SampleSegment} files in the
+ * directory of the monitor.  A sparse index of segments (start time, metric,
+ * number of readings and position of first reading of each segment) is kept in
+ * memory, and rebuilt from segment headers when the stream is reopened.  Writing
+ * resumes in the last segment, if it has room.
+ * <p>
+ * Positions of readings are their order of insertion in the stream, and do not
+ * change when the oldest segments are {@link #deleteBefore(long) expired}.
+ * 
+ * @author darts
+ * 
+ * @see SampleLog
+ *
+ */
+final class SampleStream {
+	
+	private static final String TAG = "NDroid";
+	static final String SEGMENT_SUFFIX = ".seg";
+	
+	private final File directory;
+	private final int monitor;
+	
+	// sparse index of segments, in order of segment number
+	private File[] files = new File[4];
+	private int[] metrics = new int[4];
+	private long[] startTimes = new long[4];
+	private int[] counts = new int[4];
+	private long[] firstPositions = new long[4];
+	private int size = 0;
+	private int nextSegment = 0;
+	
+	private SampleSegment tail = null;
+	
+	/**
+	 * Open stream for monitor, creating directory if necessary.
+	 * 
+	 * @param directory    directory of stream
+	 * @param monitor      id of monitor
+	 */
+	SampleStream(File directory, int monitor) {
+		this.directory = directory;
+		this.monitor = monitor;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			if (DebugLog.WARNING) Log.w(TAG, "SampleStream - failed to create " + directory);
+		}
+		String[] names = directory.list();
+		if (names == null) return;
+		int[] numbers = new int[names.length];
+		int found = 0;
+		for (String name : names) {
+			if (!name.endsWith(SEGMENT_SUFFIX)) continue;
+			try {
+				numbers[found++] = Integer.parseInt(
+						name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+			} catch (NumberFormatException e) {
+			}
+		}
+		Arrays.sort(numbers, 0, found);
+		long[] header = new long[4];
+		for (int i = 0; i < found; i++) {
+			File file = segmentFile(numbers[i]);
+			if (SampleSegment.readHeader(file, header) && (header[2] > 0)) {
+				addSegment(file, (int) header[0], header[1], (int) header[2],
+						Math.max(header[3], nextPosition()));
+			}
+			nextSegment = numbers[i] + 1;
+		}
+		if (size > 0) {
+			try {
+				tail = new SampleSegment(files[size - 1]);
+				if (DebugLog.DEBUG) Log.d(TAG, "SampleStream - monitor " + monitor +
+						" resumed segment: " + files[size - 1].getName());
+			} catch (IOException e) {
+				if (DebugLog.WARNING) Log.w(TAG, "SampleStream - monitor " + monitor +
+						" failed to resume segment: " + e.getMessage());
+			}
+		}
+	}
+	
+	int getMonitor() {
+		return monitor;
+	}
+	
+	/**
+	 * Metric of readings of stream.
+	 *
+	 * @return    id of metric, or -1 if stream holds no readings
+	 */
+	synchronized int getMetric() {
+		return (size > 0) ? metrics[size - 1] : -1;
+	}
+	
+	/**
+	 * Append readings to stream.  Readings are visible to readers once this
+	 * method returns.
+	 * 
+	 * @param metric        id of metric
+	 * @param timestamps    timestamps of readings
+	 * @param values        values of readings
+	 * @param count         number of readings to append from start of arrays
+	 * @return    number of readings appended
+	 * @throws IOException if a new segment could not be created
+	 */
+	synchronized int append(int metric, long[] timestamps, float[] values, int count) 
+			throws IOException {
+		int appended = 0;
+		try {
+			for (; appended < count; appended++) {
+				long timestamp = timestamps[appended];
+				if ((tail == null) || !tail.accepts(metric, timestamp)) {
+					nextTail(metric, timestamp);
+				}
+				tail.append(timestamp, values[appended]);
+			}
+		} finally {
+			if (tail != null) {
+				tail.commit();
+				counts[size - 1] = tail.getCount();
+			}
+		}
+		return appended;
+	}
+	
+	/**
+	 * Snapshot of segment index, for reading.  Segments in the snapshot are not
+	 * affected by later appends.
+	 * 
+	 * @return    snapshot of segment index
+	 */
+	synchronized Snapshot snapshot() {
+		return new Snapshot(monitor, (size > 0) ? firstPositions[0] : nextPosition(),
+				Arrays.copyOf(files, size), Arrays.copyOf(metrics, size),
+				Arrays.copyOf(startTimes, size), Arrays.copyOf(counts, size));
+	}
+	
+	/**
+	 * Delete segments last written before specified time, other than the segment
+	 * currently being written.  Readers which took a snapshot before the deletion
+	 * stop at the first deleted segment.
+	 *
+	 * @param time    time from epoch (milliseconds)
+	 * @return    number of readings deleted
+	 */
+	synchronized long deleteBefore(long time) {
+		int expired = 0;
+		long deleted = 0;
+		while ((expired < size) && ((tail == null) || (expired < size - 1)) &&
+				(files[expired].lastModified() < time)) {
+			files[expired].delete();
+			deleted += counts[expired];
+			expired++;
+		}
+		if (expired > 0) {
+			int remaining = size - expired;
+			System.arraycopy(files, expired, files, 0, remaining);
+			System.arraycopy(metrics, expired, metrics, 0, remaining);
+			System.arraycopy(startTimes, expired, startTimes, 0, remaining);
+			System.arraycopy(counts, expired, counts, 0, remaining);
+			System.arraycopy(firstPositions, expired, firstPositions, 0, remaining);
+			Arrays.fill(files, remaining, size, null);
+			size = remaining;
+			if (DebugLog.DEBUG) Log.d(TAG, "SampleStream.deleteBefore - monitor " + monitor +
+					" expired segments: " + expired);
+		}
+		return deleted;
+	}
+	
+	/**
+	 * Storage used by segments of stream.
+	 *
+	 * @param bytes    array to receive bytes of segment files, and bytes of these
+	 *                   holding encoded readings (including headers)
+	 */
+	synchronized void getBytes(long[] bytes) {
+		for (int i = 0; i < size; i++) {
+			bytes[0] += SampleSegment.SEGMENT_SIZE;
+			if ((tail != null) && (i == size - 1)) {
+				bytes[1] += tail.getUsedBytes();
+			}
+			else {
+				bytes[1] += SampleSegment.usedBytes(files[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Close segment currently being written.
+	 */
+	synchronized void close() {
+		if (tail != null) {
+			tail.close();
+			tail = null;
+		}
+	}
+	
+	/**
+	 * Close stream and delete all of its segments.
+	 */
+	synchronized void delete() {
+		close();
+		File[] segments = directory.listFiles();
+		if (segments != null) {
+			for (File file : segments) {
+				file.delete();
+			}
+		}
+		directory.delete();
+		size = 0;
+	}
+	
+	private void nextTail(int metric, long timestamp) throws IOException {
+		if (tail != null) {
+			counts[size - 1] = tail.getCount();
+			tail.close();
+			tail = null;
+		}
+		File file = segmentFile(nextSegment++);
+		long position = nextPosition();
+		tail = new SampleSegment(file, metric, timestamp, position);
+		addSegment(file, metric, timestamp, 0, position);
+		if (DebugLog.DEBUG) Log.d(TAG, "SampleStream.nextTail - monitor " + monitor + 
+				" segment: " + file.getName());
+	}
+	
+	private void addSegment(File file, int metric, long startTime, int count,
+			long firstPosition) {
+		if (size == files.length) {
+			int capacity = size << 1;
+			files = Arrays.copyOf(files, capacity);
+			metrics = Arrays.copyOf(metrics, capacity);
+			startTimes = Arrays.copyOf(startTimes, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+			firstPositions = Arrays.copyOf(firstPositions, capacity);
+		}
+		files[size] = file;
+		metrics[size] = metric;
+		startTimes[size] = startTime;
+		counts[size] = count;
+		firstPositions[size] = firstPosition;
+		size++;
+	}
+	
+	/**
+	 * Position of next reading appended after the last segment of the index.
+	 */
+	private long nextPosition() {
+		return (size > 0) ? firstPositions[size - 1] + counts[size - 1] : 0;
+	}
+	
+	private File segmentFile(int number) {
+		return new File(directory, number + SEGMENT_SUFFIX);
+	}
+	
+	/**
+	 * Immutable copy of segment index of a stream.
+	 */
+	static final class Snapshot {
+		final int monitor;
+		/** Position within stream of first reading of snapshot. */
+		final long base;
+		final File[] files;
+		final int[] metrics;
+		final long[] startTimes;
+		final int[] counts;
+		
+		Snapshot(int monitor, long base, File[] files, int[] metrics, long[] startTimes,
+				int[] counts) {
+			this.monitor = monitor;
+			this.base = base;
+			this.files = files;
+			this.metrics = metrics;
+			this.startTimes = startTimes;
+			this.counts = counts;
+		}
+		
+		/**
+		 * Find segment which contains readings at specified time.
+		 * 
+		 * @param time    timestamp
+		 * @return    index of last segment starting at or before _time_, or 0
+		 */
+		int findSegment(long time) {
+			int index = Arrays.binarySearch(startTimes, time);
+			if (index < 0) {
+				index = -index - 2;
+			}
+			return (index < 0) ? 0 : index;
+		}
+	}
+	
+}
@@ -0,0 +1,147 @@
+package edu.nd.darts.cimon;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import edu.nd.darts.cimon.contentprovider.CimonContentProvider;
+import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+import edu.nd.darts.cimon.database.DataTable;
+
+/**
+ * Exports a monitor of one million readings through the content provider with
+ * {@link CsvExporter#writeMonitor}, to a plain and a gzip compressed file, against
+ * paging through the same readings without writing them.  Prints the time of
+ * each pass, the size of the file, bytes allocated per reading, and the peak heap
+ * used during the pass above the heap used before it.  Peaks are summed over the
+ * heap pools, so include garbage not yet collected.
+ */
+public class CsvExporterBench {
+
+	private static final int ROWS = 1000000;
+	private static final int CHUNK = 10000;
+
+	public static void main(String[] args) throws Exception {
+		if (!SQLiteDatabase.isAvailable()) {
+			System.out.println("CsvExporterBench: skipped, no SQLite JDBC driver on TEST_CLASSPATH");
+			return;
+		}
+		final File dir = File.createTempFile("cimon-export", "");
+		dir.delete();
+		dir.mkdirs();
+		Context.setDataDirectory(dir);
+		final Context context = new Context();
+		final CimonContentProvider provider = new CimonContentProvider();
+		provider.attachInfo(context);
+		provider.onCreate();
+		final CimonDatabaseAdapter adapter = CimonDatabaseAdapter.getInstance(context);
+		final int monitor = adapter.insertMonitor(
+				System.currentTimeMillis() - SystemClock.uptimeMillis());
+		final long[] timestamps = new long[CHUNK];
+		final float[] values = new float[CHUNK];
+		final long start = SystemClock.uptimeMillis() - ROWS;
+		for (int row = 0; row < ROWS; row += CHUNK) {
+			for (int i = 0; i < CHUNK; i++) {
+				timestamps[i] = start + row + i;
+				values[i] = (float) Math.sin((row + i) / 1000.0) * 2048;
+			}
+			adapter.insertBulkData(30, monitor, timestamps, values, CHUNK);
+		}
+
+		final com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		final long thread = Thread.currentThread().getId();
+		for (int variant = 0; variant < 3; variant++) {
+			final boolean gzip = variant == 2;
+			final File file = new File(dir, "report.csv" +
+					(gzip ? CsvExporter.GZIP_EXTENSION : ""));
+			System.gc();
+			final long before = heapUsed();
+			resetPeak();
+			final long bytes = threads.getThreadAllocatedBytes(thread);
+			final long t0 = System.nanoTime();
+			long rows;
+			if (variant == 0) {
+				rows = query(context.getContentResolver(), monitor);
+			}
+			else {
+				final CsvExporter exporter = new CsvExporter(file, gzip);
+				rows = exporter.writeMonitor(context.getContentResolver(), monitor);
+				exporter.close();
+			}
+			final double seconds = (System.nanoTime() - t0) / 1e9;
+			final long allocated = threads.getThreadAllocatedBytes(thread) - bytes;
+			final long peak = peakUsed();
+			System.out.printf("%s of %d readings: %.2f s, %.0f readings/s, %.1f MB file, " +
+					"%.0f B allocated per reading, peak heap %.1f MB above %.1f MB%n",
+					(variant == 0) ? "query only" : gzip ? "gzip export" : "export", rows,
+					seconds, rows / seconds, (variant == 0) ? 0 : file.length() / 1e6,
+					(double) allocated / rows, (peak - before) / 1e6, before / 1e6);
+		}
+		adapter.close();
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	/** Page through readings as the exporter does, without writing them. */
+	private static long query(ContentResolver resolver, int monitor) {
+		final String[] projection = {DataTable.COLUMN_ID, DataTable.COLUMN_TIMESTAMP,
+				DataTable.COLUMN_VALUE};
+		long afterTime = Long.MIN_VALUE;
+		long afterId = -1;
+		long rows = 0;
+		float sum = 0;
+		while (true) {
+			final Cursor cursor = resolver.query(CimonContentProvider.monitorPageUri(monitor,
+					afterTime, afterId, CsvExporter.PAGE_SIZE), projection, null, null, null);
+			int count = 0;
+			while (cursor.moveToNext()) {
+				afterId = cursor.getLong(0);
+				afterTime = cursor.getLong(1);
+				sum += cursor.getFloat(2);
+				count++;
+			}
+			cursor.close();
+			rows += count;
+			if (count < CsvExporter.PAGE_SIZE) {
+				return (sum == 42) ? rows + 1 : rows;
+			}
+		}
+	}
+
+	private static long heapUsed() {
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				used += pool.getUsage().getUsed();
+			}
+		}
+		return used;
+	}
+
+	private static void resetPeak() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			pool.resetPeakUsage();
+		}
+	}
+
+	/** Sum of peaks of heap pools, an upper bound of the peak of the heap. */
+	private static long peakUsed() {
+		long used = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				used += pool.getPeakUsage().getUsed();
+			}
+		}
+		return used;
+	}
+
+}
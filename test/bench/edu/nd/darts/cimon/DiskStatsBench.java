@@ -0,0 +1,96 @@
+package edu.nd.darts.cimon;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Times an update of {@link DiskStats} over the fixture /proc/diskstats of
+ * {@link DiskStatsTest}, 70 lines of which four are monitored disks, against
+ * reading the same file through BufferedReader and String.split on each line.
+ * Prints microseconds and bytes allocated per update.
+ */
+public class DiskStatsBench {
+
+	private static final int WARMUP = 20000;
+	private static final int OPS = 100000;
+	private static final String[] DISKS = {"mmcblk0", "mmcblk1", "zram0", "dm-0"};
+
+	private static long sink;
+
+	public static void main(String[] args) throws Exception {
+		final File diskstats = File.createTempFile("cimon-diskstats", "");
+		final String text = DiskStatsTest.diskstats(1, true);
+		final FileWriter writer = new FileWriter(diskstats);
+		writer.write(text);
+		writer.close();
+		diskstats.deleteOnExit();
+		int lines = 0;
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) == '\n') lines++;
+		}
+
+		final DiskStats stats = new DiskStats(diskstats.getPath(), DISKS);
+		final float[] values = new float[DISKS.length * Metrics.DISK_FIELDS];
+		final long[] counters = new long[DISKS.length * Metrics.DISK_FIELDS];
+		for (int i = 0; i < WARMUP; i++) {
+			stats.update(values);
+			sink += readAndSplit(diskstats.getPath(), counters);
+		}
+		final com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		final long thread = Thread.currentThread().getId();
+
+		long bytes = threads.getThreadAllocatedBytes(thread);
+		long t0 = System.nanoTime();
+		for (int i = 0; i < OPS; i++) {
+			stats.update(values);
+		}
+		final double update = (System.nanoTime() - t0) / (1e3 * OPS);
+		final long updateBytes = (threads.getThreadAllocatedBytes(thread) - bytes) / OPS;
+		bytes = threads.getThreadAllocatedBytes(thread);
+		t0 = System.nanoTime();
+		for (int i = 0; i < OPS; i++) {
+			sink += readAndSplit(diskstats.getPath(), counters);
+		}
+		final double split = (System.nanoTime() - t0) / (1e3 * OPS);
+		final long splitBytes = (threads.getThreadAllocatedBytes(thread) - bytes) / OPS;
+		System.out.printf("diskstats of %d lines, %d disks: update %.1f us %d B, " +
+				"BufferedReader+split %.1f us %d B%n", lines, DISKS.length, update, updateBytes,
+				split, splitBytes);
+		if (sink == 42) System.out.println();
+	}
+
+	/** Read file and split every line, as before the file was read in place. */
+	private static long readAndSplit(String path, long[] counters) throws IOException {
+		final BufferedReader reader = new BufferedReader(new FileReader(path), 1024);
+		long total = 0;
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final String[] tokens = line.trim().split("\\s+");
+				for (int d = 0; d < DISKS.length; d++) {
+					if (DISKS[d].equals(tokens[2])) {
+						final int base = d * Metrics.DISK_FIELDS;
+						counters[base] = Long.parseLong(tokens[3]);
+						counters[base + 1] = Long.parseLong(tokens[5]);
+						counters[base + 2] = Long.parseLong(tokens[7]);
+						counters[base + 3] = Long.parseLong(tokens[9]);
+						counters[base + 4] = Long.parseLong(tokens[12]);
+						counters[base + 5] = Long.parseLong(tokens[13]);
+						total += counters[base];
+						break;
+					}
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return total;
+	}
+
+}
@@ -0,0 +1,103 @@
+package edu.nd.darts.cimon;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Times an update of {@link MemPressureStats} over a fixture /proc/vmstat of 192
+ * lines, which matches lines through a {@link ProcKeyTable}, against reading the
+ * same file and comparing each line with every key of the list in turn.  Prints
+ * microseconds per update.
+ */
+public class MemPressureStatsBench {
+
+	private static final int LINES = 192;
+	private static final int WARMUP = 20000;
+	private static final int OPS = 100000;
+	/** Keys matched by MemPressureStats, in the order of its table. */
+	private static final String[] KEYS = {"pgmajfault", "pgscan_kswapd", "pgscan_direct",
+		"pgscan_khugepaged", "pgscan_kswapd_dma", "pgscan_kswapd_dma32", "pgscan_kswapd_normal",
+		"pgscan_kswapd_high", "pgscan_kswapd_movable", "pgscan_direct_dma",
+		"pgscan_direct_dma32", "pgscan_direct_normal", "pgscan_direct_high",
+		"pgscan_direct_movable", "pgsteal_kswapd", "pgsteal_direct", "pgsteal_khugepaged",
+		"pgsteal_kswapd_dma", "pgsteal_kswapd_dma32", "pgsteal_kswapd_normal",
+		"pgsteal_kswapd_high", "pgsteal_kswapd_movable", "pgsteal_direct_dma",
+		"pgsteal_direct_dma32", "pgsteal_direct_normal", "pgsteal_direct_high",
+		"pgsteal_direct_movable", "allocstall", "allocstall_dma", "allocstall_dma32",
+		"allocstall_normal", "allocstall_movable", "allocstall_device"};
+
+	private static long sink;
+
+	public static void main(String[] args) throws Exception {
+		final File dir = File.createTempFile("cimon-vm", "");
+		dir.delete();
+		dir.mkdirs();
+		final File vmstat = new File(dir, "vmstat");
+		final Random random = new Random(1);
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < LINES; i++) {
+			// node counters of a newer kernel, among other lines
+			final String name = (i % 24 == 3) ? KEYS[(i / 24) * 2] :
+					(i % 24 == 17) ? "pgscan_anon" : "nr_counter_" + i;
+			text.append(name).append(' ').append(random.nextInt(100000000)).append('\n');
+		}
+		final FileWriter writer = new FileWriter(vmstat);
+		writer.write(text.toString());
+		writer.close();
+		vmstat.deleteOnExit();
+
+		final MemPressureStats stats = new MemPressureStats(vmstat.getPath(),
+				new File(dir, "pressure").getPath());
+		final float[] values = new float[9];
+		final ProcFileReader reader = new ProcFileReader(vmstat.getPath(), 4096);
+		final byte[][] keys = new byte[KEYS.length][];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = ProcFileReader.key(KEYS[i] + " ");
+		}
+		final long[] counters = new long[KEYS.length];
+
+		for (int i = 0; i < WARMUP; i++) {
+			stats.update(values);
+			sink += scan(reader, keys, counters);
+			reader.read();
+		}
+		long t0 = System.nanoTime();
+		for (int i = 0; i < OPS; i++) {
+			stats.update(values);
+		}
+		final double table = (System.nanoTime() - t0) / (1e3 * OPS);
+		t0 = System.nanoTime();
+		for (int i = 0; i < OPS; i++) {
+			sink += scan(reader, keys, counters);
+		}
+		final double list = (System.nanoTime() - t0) / (1e3 * OPS);
+		t0 = System.nanoTime();
+		for (int i = 0; i < OPS; i++) {
+			reader.read();
+		}
+		final double read = (System.nanoTime() - t0) / (1e3 * OPS);
+		System.out.printf("vmstat of %d lines, %d keys: read %.1f us, update with key table " +
+				"%.1f us, with scan of key list %.1f us%n", LINES, KEYS.length, read, table, list);
+		reader.close();
+		if (sink == 42) System.out.println();
+	}
+
+	/** Read file and compare each line with every key. */
+	private static long scan(ProcFileReader reader, byte[][] keys, long[] counters) {
+		reader.read();
+		long total = 0;
+		do {
+			for (int k = 0; k < keys.length; k++) {
+				if (reader.startsWith(keys[k])) {
+					counters[k] = reader.nextLong(0);
+					total += counters[k];
+					break;
+				}
+			}
+		} while (reader.nextLine());
+		return total;
+	}
+
+}
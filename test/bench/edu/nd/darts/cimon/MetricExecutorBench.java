@@ -0,0 +1,129 @@
+package edu.nd.darts.cimon;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Runs six metric groups updating every 10 ms for five seconds, one of which
+ * blocks for 300 ms every 500 ms (a slow /proc read or content provider query),
+ * on a single shared looper as before {@link MetricExecutor}, and on the loopers
+ * assigned by {@link MetricExecutor#getHandler} in the pool and dedicated lanes.
+ * Each looper is driven by its own thread.  Prints, for each group, the mean and
+ * maximum lag between the scheduled and actual start of its updates, and the
+ * updates run per second by all groups.
+ */
+public class MetricExecutorBench {
+
+	private static final int GROUPS = 6;
+	private static final int SLOW = 0;
+	private static final long PERIOD = 10;
+	private static final long SLOW_EVERY = 500;
+	private static final long SLOW_FOR = 300;
+	private static final long DURATION = 5000;
+	/** Affinities of bench groups, clear of the ids of metric groups. */
+	private static final int AFFINITY = 1000;
+
+	private static volatile boolean running;
+
+	public static void main(String[] args) throws Exception {
+		System.out.println("lane      group  mean lag ms  max lag ms");
+		final Handler shared = new Handler(new HandlerThread("metric").getLooper());
+		final Handler[] single = new Handler[GROUPS];
+		final Handler[] pooled = new Handler[GROUPS];
+		final Handler[] dedicated = new Handler[GROUPS];
+		for (int g = 0; g < GROUPS; g++) {
+			single[g] = shared;
+			pooled[g] = MetricExecutor.getHandler(MetricExecutor.LANE_POOL, AFFINITY + g);
+			dedicated[g] = MetricExecutor.getHandler(MetricExecutor.LANE_DEDICATED, AFFINITY + g);
+		}
+		run("single", single);
+		run("pool", pooled);
+		run("dedicated", dedicated);
+	}
+
+	private static void run(String name, Handler[] handlers) throws Exception {
+		final Group[] groups = new Group[GROUPS];
+		final List<Looper> loopers = new ArrayList<Looper>();
+		running = true;
+		final long start = SystemClock.uptimeMillis();
+		for (int g = 0; g < GROUPS; g++) {
+			groups[g] = new Group(handlers[g], g == SLOW, start);
+			handlers[g].postAtTime(groups[g], start);
+			if (!loopers.contains(handlers[g].getLooper())) {
+				loopers.add(handlers[g].getLooper());
+			}
+		}
+		final Thread[] threads = new Thread[loopers.size()];
+		for (int i = 0; i < threads.length; i++) {
+			final Looper looper = loopers.get(i);
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					while (running) {
+						if (looper.runDue() == 0) {
+							SystemClock.sleep(1);
+						}
+					}
+				}
+			});
+			threads[i].start();
+		}
+		SystemClock.sleep(DURATION);
+		running = false;
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		for (Looper looper : loopers) {
+			looper.quit();
+		}
+		final double seconds = (SystemClock.uptimeMillis() - start) / 1000.0;
+		long updates = 0;
+		for (int g = 0; g < GROUPS; g++) {
+			final Group group = groups[g];
+			updates += group.updates;
+			System.out.printf("%-9s %d%s  %11.1f  %10d%n", name, g, group.slow ? "*" : " ",
+					(double) group.totalLag / Math.max(1, group.updates), group.maxLag);
+		}
+		System.out.printf("%-9s %d loopers, %.0f updates/s (* blocks %d ms every %d ms)%n",
+				name, loopers.size(), updates / seconds, SLOW_FOR, SLOW_EVERY);
+	}
+
+	/** Periodic update of a group, which records its lag and reschedules itself. */
+	private static final class Group implements Runnable {
+
+		final Handler handler;
+		final boolean slow;
+		long next;
+		long lastSlow;
+		long updates = 0;
+		long totalLag = 0;
+		long maxLag = 0;
+
+		Group(Handler handler, boolean slow, long start) {
+			this.handler = handler;
+			this.slow = slow;
+			this.next = start;
+			this.lastSlow = start;
+		}
+
+		public void run() {
+			if (!running) return;
+			final long now = SystemClock.uptimeMillis();
+			final long lag = now - next;
+			updates++;
+			totalLag += lag;
+			maxLag = Math.max(maxLag, lag);
+			if (slow && (now - lastSlow >= SLOW_EVERY)) {
+				lastSlow = now;
+				SystemClock.sleep(SLOW_FOR);
+			}
+			next = Math.max(next + PERIOD, SystemClock.uptimeMillis());
+			handler.postAtTime(this, next);
+		}
+	}
+
+}
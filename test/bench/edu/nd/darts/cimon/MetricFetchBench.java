@@ -0,0 +1,82 @@
+package edu.nd.darts.cimon;
+
+import android.os.Looper;
+
+/**
+ * Times {@link MetricService#fetchMetricDouble(int, long)} of the load average
+ * of {@link CpuService}, with the looper of the group run by a second thread:
+ * cached reads within the freshness threshold, answered from the published
+ * values after a round trip to the looper, against uncached reads which read
+ * /proc/loadavg on the looper.  Values are timed in milliseconds, so each
+ * uncached read waits for the next millisecond, outside of the timing.  Prints
+ * microseconds per read, and the one-shot reads run for the uncached reads.
+ */
+public class MetricFetchBench {
+
+	private static final int WARMUP = 5000;
+	private static final int OPS = 50000;
+	private static final int WARMUP_UNCACHED = 500;
+	private static final int OPS_UNCACHED = 2000;
+
+	private static volatile boolean running = true;
+	private static volatile int reads = 0;
+	private static double sink;
+
+	public static void main(String[] args) throws Exception {
+		final CpuService service = CpuService.getInstance();
+		final Looper looper = service.metricHandler.getLooper();
+		final Thread driver = new Thread("metric") {
+
+			@Override
+			public void run() {
+				while (running) {
+					final int ran = looper.runDue();
+					if (ran == 0) {
+						Thread.yield();
+					}
+					reads += ran;
+				}
+			}
+		};
+		driver.setDaemon(true);
+		driver.start();
+
+		final int metric = Metrics.CPULOAD_CATEGORY;
+		final long freshness = service.freshnessThreshold;
+		for (int i = 0; i < WARMUP; i++) {
+			sink += service.fetchMetricDouble(metric, 1000);
+		}
+		long t0 = System.nanoTime();
+		for (int i = 0; i < OPS; i++) {
+			sink += service.fetchMetricDouble(metric, 1000);
+		}
+		final double cached = (System.nanoTime() - t0) / (1e3 * OPS);
+
+		service.freshnessThreshold = -1;
+		final int before = reads;
+		long elapsed = 0;
+		for (int i = 0; i < WARMUP_UNCACHED + OPS_UNCACHED; i++) {
+			final long last = android.os.SystemClock.uptimeMillis();
+			while (android.os.SystemClock.uptimeMillis() == last) {
+				Thread.yield();
+			}
+			if (i == WARMUP_UNCACHED) {
+				elapsed = 0;
+			}
+			t0 = System.nanoTime();
+			sink += service.fetchMetricDouble(metric, 1000);
+			elapsed += System.nanoTime() - t0;
+		}
+		final int uncachedReads = reads - before;
+		final double uncached = elapsed / (1e3 * OPS_UNCACHED);
+		service.freshnessThreshold = freshness;
+		running = false;
+		driver.join();
+
+		System.out.printf("fetchMetricDouble of load average: cached %.1f us, " +
+				"uncached %.1f us per read, %d one-shot reads for %d uncached reads%n", cached,
+				uncached, uncachedReads, WARMUP_UNCACHED + OPS_UNCACHED);
+		if (Double.isNaN(sink)) System.out.println();
+	}
+
+}
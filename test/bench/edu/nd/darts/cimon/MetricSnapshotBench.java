@@ -0,0 +1,216 @@
+package edu.nd.darts.cimon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+/**
+ * Times reads of 100 metrics, from ten groups of ten metrics on the pool lane,
+ * with the loopers run by a second thread: as one batch, in the steps of the
+ * getSnapshot method of {@link NDroidService}, against 100 individual calls of
+ * {@link MetricService#fetchMetricDouble(int, long)} as made by a client calling
+ * getMetricDouble for each metric.  Reads are timed with published values fresh,
+ * and with every group stale: the freshness threshold is then 0, and each read
+ * waits for the next millisecond, outside of the timing.  A stale batch posts
+ * one read to each group at once, while individual calls wait for a read of a
+ * group at its first metric and find the others fresh.  Prints microseconds per
+ * read of all 100 metrics, and the one-shot reads run for each.
+ */
+public class MetricSnapshotBench {
+
+	private static final int GROUPS = 10;
+	private static final int PER_GROUP = 10;
+	private static final int WARMUP = 2000;
+	private static final int OPS = 20000;
+	private static final int WARMUP_STALE = 200;
+	private static final int OPS_STALE = 2000;
+	/** Group ids of bench groups, clear of the ids of metric groups. */
+	private static final int GROUP_BASE = 100000;
+
+	private static volatile boolean running = true;
+	private static double sink;
+
+	/** Group whose one-shot reads publish the count of reads. */
+	private static final class BenchService extends FloatMetricService {
+		int reads = 0;
+		final float[] read;
+
+		BenchService(int groupId) {
+			this.groupId = groupId;
+			metricsCount = PER_GROUP;
+			floatValues = new float[metricsCount];
+			read = new float[metricsCount];
+			valueNodes = new SparseArray<ValueNode<Float>>();
+			lane = MetricExecutor.LANE_POOL;
+			adminObserver = SystemObserver.getInstance();
+			schedules = new ScheduleIndex();
+			init();
+		}
+
+		@Override
+		void getMetricInfo() {
+			performUpdates();
+		}
+
+		@Override
+		void insertDatabaseEntries() {
+		}
+
+		@Override
+		protected boolean refreshValues() {
+			reads++;
+			for (int i = 0; i < metricsCount; i++) {
+				read[i] = reads + i;
+			}
+			publishValues(read, SystemClock.uptimeMillis());
+			return true;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		final BenchService[] services = new BenchService[GROUPS];
+		final int[] metrics = new int[GROUPS * PER_GROUP];
+		final int[][] indices = new int[GROUPS][PER_GROUP];
+		for (int g = 0; g < GROUPS; g++) {
+			services[g] = new BenchService(GROUP_BASE + g * PER_GROUP);
+			for (int i = 0; i < PER_GROUP; i++) {
+				metrics[g * PER_GROUP + i] = GROUP_BASE + g * PER_GROUP + i;
+				indices[g][i] = g * PER_GROUP + i;
+			}
+		}
+		final Thread[] drivers = drive(services);
+
+		setFreshness(services, 60000);
+		for (final BenchService service : services) {
+			service.metricHandler.post(new Runnable() {
+				public void run() {
+					service.refreshValues();
+				}
+			});
+		}
+		final double[] snapshot = new double[metrics.length];
+		Thread.sleep(100);
+		System.out.println("100 metrics  fresh us  stale us  one-shot reads per stale read");
+		final double batchFresh = time(services, metrics, indices, snapshot, true, WARMUP, OPS);
+		final double singleFresh = time(services, metrics, indices, snapshot, false, WARMUP, OPS);
+		setFreshness(services, 0);
+		int before = reads(services);
+		final double batchStale = time(services, metrics, indices, snapshot, true, WARMUP_STALE,
+				OPS_STALE);
+		final double batchReads = (double) (reads(services) - before) /
+				(WARMUP_STALE + OPS_STALE);
+		before = reads(services);
+		final double singleStale = time(services, metrics, indices, snapshot, false,
+				WARMUP_STALE, OPS_STALE);
+		final double singleReads = (double) (reads(services) - before) /
+				(WARMUP_STALE + OPS_STALE);
+		running = false;
+		for (Thread driver : drivers) {
+			driver.join();
+		}
+		System.out.printf("batch        %8.1f  %8.1f  %5.1f%n", batchFresh, batchStale, batchReads);
+		System.out.printf("individual   %8.1f  %8.1f  %5.1f%n", singleFresh, singleStale,
+				singleReads);
+		if (Double.isNaN(sink)) System.out.println();
+	}
+
+	/** @return    microseconds per read of all metrics */
+	private static double time(BenchService[] services, int[] metrics, int[][] indices,
+			double[] snapshot, boolean batch, int warmup, int ops) throws Exception {
+		long elapsed = 0;
+		for (int i = 0; i < warmup + ops; i++) {
+			if (i == warmup) {
+				elapsed = 0;
+			}
+			if (services[0].freshnessThreshold == 0) {
+				final long last = SystemClock.uptimeMillis();
+				while (SystemClock.uptimeMillis() == last) {
+					Thread.yield();
+				}
+			}
+			final long t0 = System.nanoTime();
+			if (batch) {
+				readBatch(services, metrics, indices, snapshot);
+			}
+			else {
+				for (int m = 0; m < metrics.length; m++) {
+					snapshot[m] = services[m / PER_GROUP].fetchMetricDouble(metrics[m], 1000);
+				}
+			}
+			elapsed += System.nanoTime() - t0;
+			sink += snapshot[i % snapshot.length];
+		}
+		return elapsed / (1e3 * ops);
+	}
+
+	/** Steps of getSnapshot of {@link NDroidService}, for groups known in advance. */
+	private static void readBatch(BenchService[] services, int[] metrics, int[][] indices,
+			double[] snapshot) throws Exception {
+		int stale = 0;
+		final boolean[] read = new boolean[services.length];
+		for (int g = 0; g < services.length; g++) {
+			read[g] = services[g].readSnapshot(metrics, indices[g], snapshot);
+			if (!read[g]) {
+				stale++;
+			}
+		}
+		if (stale == 0) {
+			return;
+		}
+		final CountDownLatch done = new CountDownLatch(stale);
+		for (int g = 0; g < services.length; g++) {
+			if (!read[g]) {
+				services[g].postSnapshot(metrics, indices[g], snapshot, done);
+			}
+		}
+		done.await(1000, TimeUnit.MILLISECONDS);
+	}
+
+	private static void setFreshness(BenchService[] services, long freshness) {
+		for (BenchService service : services) {
+			service.freshnessThreshold = freshness;
+		}
+	}
+
+	private static int reads(BenchService[] services) {
+		int reads = 0;
+		for (BenchService service : services) {
+			reads += service.reads;
+		}
+		return reads;
+	}
+
+	/** Run each looper of the groups on its own thread, until the bench ends. */
+	private static Thread[] drive(BenchService[] services) {
+		final List<Looper> loopers = new ArrayList<Looper>();
+		for (BenchService service : services) {
+			if (!loopers.contains(service.metricHandler.getLooper())) {
+				loopers.add(service.metricHandler.getLooper());
+			}
+		}
+		final Thread[] threads = new Thread[loopers.size()];
+		for (int i = 0; i < threads.length; i++) {
+			final Looper looper = loopers.get(i);
+			threads[i] = new Thread("metric-" + i) {
+
+				@Override
+				public void run() {
+					while (running) {
+						if (looper.runDue() == 0) {
+							Thread.yield();
+						}
+					}
+				}
+			};
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+		return threads;
+	}
+
+}
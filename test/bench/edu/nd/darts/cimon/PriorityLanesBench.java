@@ -0,0 +1,256 @@
+package edu.nd.darts.cimon;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.SystemClock;
+import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+
+/**
+ * Measures the latency of event triggers while the database thread is saturated
+ * by a report export, a 20 ms task which reposts itself, and a second thread
+ * keeps the CPU busy.  A {@link FloatValueNode} with a threshold condition and 20
+ * opportunistic clients (50 us per send) is updated every 2 ms on the metric
+ * thread, and its readings are logged through its {@link LogQueue} on the
+ * database thread.  Trigger latency is measured from the start of updateValue
+ * to the evaluation of the condition on the event thread, for:
+ * <ul>
+ * <li>before - thresholds evaluated after client delivery, as updateValue did
+ * before priority lanes, with all threads at default priority
+ * <li>order only - thresholds evaluated before client delivery, with all threads
+ * at default priority
+ * <li>lanes - thresholds first, with the event thread at
+ * {@link MetricExecutor#PRIORITY_EVENT} and the database thread at
+ * {@link MetricExecutor#PRIORITY_LOG}
+ * </ul>
+ * Thread priorities are ignored by the desktop shims, so they are applied with
+ * renice to the Linux threads, as Process.setThreadPriority does on Android.
+ * Prints percentiles of trigger latency, and readings dropped by the log queue.
+ */
+public class PriorityLanesBench {
+
+	private static final int UPDATES = 3000;
+	private static final long PERIOD = 2;
+	private static final int CLIENTS = 20;
+	private static final long SEND_NANOS = 50000;
+	private static final long EXPORT_MS = 20;
+	private static final long IDLE_NANOS = 20000;
+
+	private static volatile boolean running;
+	private static volatile boolean exporting;
+	private static final long[] started = new long[UPDATES];
+	private static final long[] latencies = new long[UPDATES];
+	private static int triggers;
+
+	/** Node which evaluates thresholds after client delivery, as before lanes. */
+	private static final class BeforeNode extends FloatValueNode {
+
+		BeforeNode(int metric, Handler handler) {
+			super(metric, new ScheduleIndex(), handler, SystemObserver.getInstance());
+		}
+
+		@Override
+		public long updateValue(float value, long timestamp) {
+			updateMonitors(value, timestamp);
+			final Float key = Float.valueOf(value);
+			while (maxList.thresholdPassed(key)) {
+				if (!triggerHead(maxList)) break;
+			}
+			while (minList.thresholdPassed(key)) {
+				if (!triggerHead(minList)) break;
+			}
+			return minPeriod(timestamp);
+		}
+	}
+
+	/** Client callback which takes as long as a binder send. */
+	private static final class SlowMessenger extends Messenger {
+
+		@Override
+		public void send(Message message) {
+			spin(SEND_NANOS);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (!SQLiteDatabase.isAvailable()) {
+			System.out.println("PriorityLanesBench: skipped, no SQLite JDBC driver on TEST_CLASSPATH");
+			return;
+		}
+		final File dir = File.createTempFile("cimon-lanes", "");
+		dir.delete();
+		dir.mkdirs();
+		Context.setDataDirectory(dir);
+		final MyApplication app = new MyApplication();
+		app.onCreate();
+		final CimonDatabaseAdapter adapter = CimonDatabaseAdapter.getInstance(app);
+
+		System.out.println("mode        p50 ms   p90 ms   p99 ms   max ms  dropped  priorities");
+		run(adapter, "before", false, false);
+		run(adapter, "order only", true, false);
+		run(adapter, "lanes", true, true);
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	private static void run(CimonDatabaseAdapter adapter, String name, boolean lanes,
+			boolean priorities) throws Exception {
+		final Looper metric = new HandlerThread("metric").getLooper();
+		final Looper event = new HandlerThread("event").getLooper();
+		final Looper db = new HandlerThread("db").getLooper();
+		final Handler metricHandler = new Handler(metric);
+		final Handler eventHandler = new Handler(event);
+		final Handler dbHandler = new Handler(db);
+		final FloatValueNode node = lanes ? new FloatValueNode(Metrics.CPU_LOAD1,
+				new ScheduleIndex(), dbHandler, SystemObserver.getInstance()) :
+				new BeforeNode(Metrics.CPU_LOAD1, dbHandler);
+		final long offset = System.currentTimeMillis() - SystemClock.uptimeMillis();
+		final int[] monitors = new int[CLIENTS];
+		for (int i = 0; i < CLIENTS; i++) {
+			monitors[i] = adapter.insertMonitor(offset);
+			node.insertOpportunistic(monitors[i], 1000, new SlowMessenger(), 0);
+		}
+		final int condition = adapter.insertMonitor(offset);
+		final ExpressionNode trigger = new ExpressionNode() {
+
+			public boolean triggered(ExpressionNode node) {
+				latencies[triggers] = System.nanoTime() - started[triggers];
+				triggers++;
+				return true;
+			}
+			public void untrigger(ExpressionNode node) { }
+			public void activate() { }
+			public void deactivate() { }
+			public long getCost() { return 0; }
+			public void clear() { }
+			public void setParent(ExpressionNode node) { }
+			public Handler getHandler() { return eventHandler; }
+		};
+
+		// export saturates the database thread until all updates have run
+		triggers = 0;
+		running = true;
+		exporting = true;
+		dbHandler.post(new Runnable() {
+			public void run() {
+				if (!exporting) return;
+				spin(EXPORT_MS * 1000000);
+				dbHandler.post(this);
+			}
+		});
+		final long start = SystemClock.uptimeMillis() + 100;
+		for (int i = 0; i < UPDATES; i++) {
+			final int update = i;
+			metricHandler.postAtTime(new Runnable() {
+				public void run() {
+					node.insertThresh(condition, 0.5f, PERIOD, trigger, true);
+					started[update] = System.nanoTime();
+					node.updateValue((update % 2 == 0) ? 1f : 2f, SystemClock.uptimeMillis());
+				}
+			}, start + i * PERIOD);
+		}
+		final Thread[] threads = {drive("cimon-metric", metric), drive("cimon-event", event),
+				drive("cimon-db", db), hog("cimon-hog")};
+		final boolean reniced = renice("cimon-event", priorities ? MetricExecutor.PRIORITY_EVENT : 0) &
+				renice("cimon-db", priorities ? MetricExecutor.PRIORITY_LOG : 0);
+		while (triggers < UPDATES) {
+			if (SystemClock.uptimeMillis() > start + UPDATES * PERIOD + 10000) break;
+			Thread.sleep(10);
+		}
+		exporting = false;
+		// database thread catches up, writing queued batches and counts of drops
+		Thread.sleep(500);
+		running = false;
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long dropped = 0;
+		for (int monitor : monitors) {
+			dropped += adapter.getDropped(monitor);
+		}
+		final long[] sorted = Arrays.copyOf(latencies, triggers);
+		Arrays.sort(sorted);
+		System.out.printf("%-10s  %6.2f  %7.2f  %7.2f  %7.2f  %7d  %s%n", name,
+				percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99),
+				percentile(sorted, 1), dropped, priorities ? (reniced ? "event " +
+				MetricExecutor.PRIORITY_EVENT + ", db " + MetricExecutor.PRIORITY_LOG :
+				"not applied") : "default");
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		if (sorted.length == 0) return Double.NaN;
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))] / 1e6;
+	}
+
+	/** Run callbacks of looper as they fall due, on a thread of its own. */
+	private static Thread drive(String name, final Looper looper) {
+		final Thread thread = new Thread(name) {
+
+			@Override
+			public void run() {
+				while (running) {
+					if (looper.runDue() == 0) {
+						LockSupport.parkNanos(IDLE_NANOS);
+					}
+				}
+			}
+		};
+		thread.start();
+		return thread;
+	}
+
+	/** Thread competing for the CPU while the bench runs. */
+	private static Thread hog(String name) {
+		final Thread thread = new Thread(name) {
+
+			@Override
+			public void run() {
+				while (running) {
+					spin(1000000);
+				}
+			}
+		};
+		thread.start();
+		return thread;
+	}
+
+	private static void spin(long nanos) {
+		final long end = System.nanoTime() + nanos;
+		while (System.nanoTime() < end) {
+			Thread.onSpinWait();
+		}
+	}
+
+	/**
+	 * Set nice value of the Linux thread with name, as Process.setThreadPriority.
+	 *
+	 * @return    true if priority was set
+	 */
+	private static boolean renice(String name, int priority) {
+		try {
+			for (File task : new File("/proc/self/task").listFiles()) {
+				final String comm = new String(Files.readAllBytes(new File(task, "comm")
+						.toPath()), "UTF-8").trim();
+				if (comm.equals(name)) {
+					return new ProcessBuilder("renice", "-n", String.valueOf(priority), "-p",
+							task.getName()).redirectErrorStream(true).start().waitFor() == 0;
+				}
+			}
+		} catch (Exception e) {
+			// priorities are not available on this system
+		}
+		return false;
+	}
+
+}
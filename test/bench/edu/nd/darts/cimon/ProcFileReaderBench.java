@@ -0,0 +1,241 @@
+package edu.nd.darts.cimon;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Times reading and parsing fixture copies of /proc/loadavg, /proc/stat and
+ * /proc/meminfo through a {@link ProcFileReader}, as CpuService, CpuUtilService
+ * and MemoryService do on every update, against the BufferedReader and
+ * String.split parsing they replace.  Checks that both parse the same values,
+ * and prints time and bytes allocated per read.
+ */
+public class ProcFileReaderBench {
+
+	private static final int WARMUP = 20000;
+	private static final int OPS = 100000;
+	private static final String[] MEM_KEYS = {"MemTotal", "MemFree", "Buffers", "Cached",
+		"SwapTotal", "SwapFree"};
+
+	private static long sink;
+
+	/** Parser of one fixture, by one of the two readers. */
+	private interface Parser {
+		void parse(long[] values) throws IOException;
+	}
+
+	public static void main(String[] args) throws Exception {
+		final File dir = File.createTempFile("cimon-proc", "");
+		dir.delete();
+		dir.mkdirs();
+		final String loadavg = write(dir, "loadavg", "0.57 1.23 2.46 3/842 21457\n");
+		final String stat = write(dir, "stat", statFixture());
+		final String meminfo = write(dir, "meminfo", meminfoFixture());
+
+		final ProcFileReader loadReader = new ProcFileReader(loadavg, 64);
+		final ProcFileReader statReader = new ProcFileReader(stat, 4096);
+		final ProcFileReader memReader = new ProcFileReader(meminfo, 2048);
+		final int[] slots = new int[MEM_KEYS.length];
+		for (int i = 0; i < slots.length; i++) {
+			slots[i] = i;
+		}
+		final ProcKeyTable memKeys = new ProcKeyTable(MEM_KEYS, slots);
+		final byte[] cpuKey = ProcFileReader.key("cpu ");
+		final byte[] ctxtKey = ProcFileReader.key("ctxt ");
+
+		final Parser[][] parsers = {
+			{new Parser() {
+				public void parse(long[] values) throws IOException {
+					final String[] params = readFirstLine(loadavg).split("\\s+");
+					for (int i = 0; i < 3; i++) {
+						values[i] = (long) (Float.parseFloat(params[i]) * 100);
+					}
+				}
+			}, new Parser() {
+				public void parse(long[] values) {
+					loadReader.read();
+					for (int i = 0; i < 3; i++) {
+						values[i] = (long) (loadReader.nextFloat(0) * 100);
+					}
+				}
+			}},
+			{new Parser() {
+				public void parse(long[] values) throws IOException {
+					final BufferedReader reader = new BufferedReader(new InputStreamReader(
+							new FileInputStream(new File(stat))), 1024);
+					try {
+						String line = reader.readLine();
+						String[] params = line.split("\\s+");
+						values[0] = 0;
+						for (int i = 1; i < 8; i++) {
+							values[i] = Long.parseLong(params[i]);
+							values[0] += values[i];
+						}
+						while ((line = reader.readLine()) != null) {
+							if (line.startsWith("ctxt")) {
+								values[8] = Long.parseLong(line.split("\\s+")[1]);
+								break;
+							}
+						}
+					}
+					finally {
+						reader.close();
+					}
+				}
+			}, new Parser() {
+				public void parse(long[] values) {
+					statReader.read();
+					if (statReader.startsWith(cpuKey)) {
+						values[0] = 0;
+						for (int i = 1; i < 8; i++) {
+							values[i] = statReader.nextLong(-1);
+							values[0] += values[i];
+						}
+					}
+					if (statReader.findLine(ctxtKey)) {
+						values[8] = statReader.nextLong(-1);
+					}
+				}
+			}},
+			{new Parser() {
+				public void parse(long[] values) throws IOException {
+					final BufferedReader reader = new BufferedReader(new InputStreamReader(
+							new FileInputStream(new File(meminfo))), 1024);
+					try {
+						String line;
+						int index = 0;
+						while ((line = reader.readLine()) != null) {
+							if (line.startsWith(MEM_KEYS[index] + ":")) {
+								values[index++] = Integer.parseInt(line.split("\\s+")[1]);
+								if (index == MEM_KEYS.length) break;
+							}
+						}
+					}
+					finally {
+						reader.close();
+					}
+				}
+			}, new Parser() {
+				public void parse(long[] values) {
+					memReader.read();
+					int found = 0;
+					do {
+						final int slot = memReader.lookupKey(memKeys);
+						if (slot >= 0) {
+							values[slot] = memReader.nextLong(-1);
+							if (++found == MEM_KEYS.length) break;
+						}
+					} while (memReader.nextLine());
+				}
+			}},
+		};
+		final String[] names = {"loadavg", "stat", "meminfo"};
+
+		System.out.println("file      old ns/read  old B/read  new ns/read  new B/read");
+		for (int f = 0; f < parsers.length; f++) {
+			final long[] oldValues = new long[9];
+			final long[] newValues = new long[9];
+			parsers[f][0].parse(oldValues);
+			parsers[f][1].parse(newValues);
+			Check.that(Arrays.equals(oldValues, newValues), names[f] +
+					" parsed the same by both readers");
+			final double[] oldResult = time(parsers[f][0]);
+			final double[] newResult = time(parsers[f][1]);
+			System.out.printf("%-8s  %11.0f  %10.0f  %11.0f  %10.0f%n", names[f], oldResult[0],
+					oldResult[1], newResult[0], newResult[1]);
+		}
+		loadReader.close();
+		statReader.close();
+		memReader.close();
+		if (sink == 42) System.out.println();
+		Check.done("ProcFileReaderBench");
+	}
+
+	/**
+	 * Time parser after warmup.
+	 *
+	 * @return    nanoseconds and bytes allocated per read
+	 */
+	private static double[] time(Parser parser) throws IOException {
+		final long[] values = new long[9];
+		for (int i = 0; i < WARMUP; i++) {
+			parser.parse(values);
+			sink += values[0];
+		}
+		final com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		final long thread = Thread.currentThread().getId();
+		final long bytes = threads.getThreadAllocatedBytes(thread);
+		final long t0 = System.nanoTime();
+		for (int i = 0; i < OPS; i++) {
+			parser.parse(values);
+			sink += values[0];
+		}
+		final long elapsed = System.nanoTime() - t0;
+		return new double[] {elapsed / (double) OPS,
+				(threads.getThreadAllocatedBytes(thread) - bytes) / (double) OPS};
+	}
+
+	private static String readFirstLine(String path) throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(new File(path))), 64);
+		try {
+			return reader.readLine();
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private static String write(File dir, String name, String contents) throws IOException {
+		final File file = new File(dir, name);
+		final FileWriter writer = new FileWriter(file);
+		writer.write(contents);
+		writer.close();
+		file.deleteOnExit();
+		return file.getPath();
+	}
+
+	/** /proc/stat of an 8 core device, with a typical interrupt line. */
+	private static String statFixture() {
+		final StringBuilder stat = new StringBuilder();
+		stat.append("cpu  1839211 49270 1201380 31847563 30412 0 38101 0 0 0\n");
+		for (int i = 0; i < 8; i++) {
+			stat.append("cpu").append(i).append(" 229901 6158 150172 3980945 3801 0 4762 0 0 0\n");
+		}
+		stat.append("intr 101374862");
+		for (int i = 0; i < 400; i++) {
+			stat.append(' ').append((i % 7 == 0) ? 12345 + i : 0);
+		}
+		stat.append('\n');
+		stat.append("ctxt 173922344\nbtime 1760770000\nprocesses 402187\n");
+		stat.append("procs_running 2\nprocs_blocked 0\n");
+		stat.append("softirq 48211044 12 9361211 1023 512044 0 0 1903321 11230044 0 25410389\n");
+		return stat.toString();
+	}
+
+	private static String meminfoFixture() {
+		return "MemTotal:        3809036 kB\nMemFree:          212540 kB\n" +
+				"MemAvailable:    1903580 kB\nBuffers:           81248 kB\n" +
+				"Cached:          1601232 kB\nSwapCached:         4520 kB\n" +
+				"Active:          1912460 kB\nInactive:        1052316 kB\n" +
+				"Active(anon):    1101012 kB\nInactive(anon):   204840 kB\n" +
+				"Active(file):     811448 kB\nInactive(file):   847476 kB\n" +
+				"Unevictable:       15808 kB\nMlocked:           15808 kB\n" +
+				"SwapTotal:       1048572 kB\nSwapFree:         1002400 kB\n" +
+				"Dirty:               268 kB\nWriteback:             0 kB\n" +
+				"AnonPages:       1281040 kB\nMapped:           702148 kB\n" +
+				"Shmem:              9716 kB\nSlab:             204688 kB\n" +
+				"SReclaimable:      81432 kB\nSUnreclaim:       123256 kB\n" +
+				"KernelStack:       25216 kB\nPageTables:        52400 kB\n" +
+				"CommitLimit:     2953088 kB\nCommitted_AS:   61012740 kB\n" +
+				"VmallocTotal:   258867136 kB\nVmallocUsed:       99696 kB\n";
+	}
+
+}
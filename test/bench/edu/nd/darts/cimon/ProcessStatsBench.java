@@ -0,0 +1,113 @@
+package edu.nd.darts.cimon;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import android.os.SystemClock;
+
+/**
+ * Times an update of {@link ProcessStats} over a fixture proc filesystem of 500
+ * processes, one update per second of virtual time: with no forks, with the count
+ * of forks changing on every update (as threads are created), and against
+ * listing /proc and parsing every stat file through BufferedReader and
+ * String.split on each update.  Prints milliseconds per update and the listings
+ * of /proc.
+ */
+public class ProcessStatsBench {
+
+	private static final int PROCESSES = 500;
+	private static final int WARMUP = 200;
+	private static final int UPDATES = 1000;
+
+	private static File proc;
+	private static long forks = 100000;
+	private static long sink;
+
+	public static void main(String[] args) throws Exception {
+		proc = File.createTempFile("cimon-proc", "");
+		proc.delete();
+		proc.mkdirs();
+		writeForks();
+		for (int pid = 1; pid <= PROCESSES; pid++) {
+			final File dir = new File(proc, String.valueOf(pid));
+			write(new File(dir, "stat"), pid + " (app " + pid + ") S 1 1 0 0 -1 4194560 100 0 " +
+					"0 0 " + (pid * 10) + " " + pid + " 0 0 20 0 4 0 100 1048576 " + pid +
+					" 18446744073709551615 1 1 0 0 0 0 0 0 0 0 0 0 17 0 0 0 0 0 0\n");
+			write(new File(dir, "cmdline"), "edu.bench.app" + pid + "\0");
+		}
+
+		System.out.println("processes  mode                    ms/update  listings");
+		long now = 1000000;
+		for (int mode = 0; mode < 3; mode++) {
+			final ProcessStats stats = new ProcessStats(proc.getPath());
+			final float[] values = new float[Metrics.PROCESS_TOP_N * Metrics.PROCESS_FIELDS];
+			long t0 = 0;
+			int listings = 0;
+			for (int i = 0; i < WARMUP + UPDATES; i++) {
+				if (i == WARMUP) {
+					t0 = System.nanoTime();
+					listings = stats.getRefreshCount();
+				}
+				now += 1000;
+				SystemClock.setVirtualTime(now);
+				if (mode == 1) {
+					forks += 3;
+					writeForks();
+				}
+				if (mode == 2) {
+					sink += listAndParse();
+				}
+				else {
+					Check.equal(PROCESSES, stats.update(values), "all processes sampled");
+				}
+			}
+			final long elapsed = System.nanoTime() - t0;
+			final String name = (mode == 0) ? "steady (no forks)" : (mode == 1) ?
+					"forks on every update" : "list+BufferedReader";
+			System.out.printf("%9d  %-22s  %9.2f  %8s%n", PROCESSES, name,
+					elapsed / (1e6 * UPDATES), (mode == 2) ? String.valueOf(UPDATES) :
+					String.valueOf(stats.getRefreshCount() - listings));
+		}
+		SystemClock.setVirtualTime(-1);
+		if (sink == 42) System.out.println();
+		Check.done("ProcessStatsBench");
+	}
+
+	/** List processes and parse every stat file, as without a cached process list. */
+	private static long listAndParse() throws IOException {
+		long total = 0;
+		for (String file : proc.list()) {
+			if (!Character.isDigit(file.charAt(0))) continue;
+			final BufferedReader reader = new BufferedReader(new InputStreamReader(
+					new FileInputStream(new File(proc, file + "/stat"))), 512);
+			try {
+				final String line = reader.readLine();
+				final String[] params = line.substring(line.lastIndexOf(')') + 2).split("\\s+");
+				total += Long.parseLong(params[11]) + Long.parseLong(params[12]) +
+						Long.parseLong(params[21]);
+			}
+			finally {
+				reader.close();
+			}
+		}
+		return total;
+	}
+
+	private static void writeForks() throws IOException {
+		write(new File(proc, "stat"), "cpu  100 0 100 1000 0 0 0 0 0 0\nctxt 5000\n" +
+				"processes " + forks + "\nprocs_running 1\n");
+	}
+
+	private static void write(File file, String contents) throws IOException {
+		file.getParentFile().mkdirs();
+		final FileWriter writer = new FileWriter(file);
+		writer.write(contents);
+		writer.close();
+		file.deleteOnExit();
+	}
+
+}
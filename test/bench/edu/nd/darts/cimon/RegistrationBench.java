@@ -0,0 +1,125 @@
+package edu.nd.darts.cimon;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Looper;
+import android.os.SystemClock;
+import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+import edu.nd.darts.cimon.database.SampleLog;
+
+/**
+ * Times registration of 100 periodic monitors, spread over the metric groups of
+ * the app which can be read on this system: 100 calls in the steps of the
+ * registerPeriodic method of {@link NDroidService}, each inserting its monitor
+ * row and posting one message to its group, against one call of
+ * {@link MonitorBatch#register}, as made by registerPeriodicBatch.  Loopers of
+ * the groups are run after each registration, outside of the timing, and the
+ * monitors are unregistered again.  Prints microseconds per registration of all
+ * 100 monitors, with the commits and messages to the metric groups it made.
+ */
+public class RegistrationBench {
+
+	private static final int MONITORS = 100;
+	private static final long PERIOD = 1000;
+	private static final int WARMUP = 5;
+	private static final int OPS = 20;
+
+	public static void main(String[] args) throws Exception {
+		if (!SQLiteDatabase.isAvailable()) {
+			System.out.println("RegistrationBench: skipped, no SQLite JDBC driver on TEST_CLASSPATH");
+			return;
+		}
+		final File dir = File.createTempFile("cimon-register", "");
+		dir.delete();
+		dir.mkdirs();
+		Context.setDataDirectory(dir);
+		final MyApplication app = new MyApplication();
+		app.onCreate();
+		final CimonDatabaseAdapter adapter = CimonDatabaseAdapter.getInstance(app);
+
+		final int[] groups = {Metrics.CPU_LOAD1, Metrics.MEMORY_TOTAL, Metrics.CPUCORE_CATEGORY,
+				Metrics.MEMPRESSURE_CATEGORY, Metrics.DISKIO_CATEGORY};
+		final List<Integer> available = new ArrayList<Integer>();
+		final List<Looper> loopers = new ArrayList<Looper>();
+		for (int group : groups) {
+			final MetricService<?> service = MetricService.getService(group);
+			for (int i = 0; i < service.metricsCount; i++) {
+				available.add(service.groupId + i);
+			}
+			if (!loopers.contains(service.metricHandler.getLooper())) {
+				loopers.add(service.metricHandler.getLooper());
+			}
+		}
+		final int[] metrics = new int[MONITORS];
+		for (int i = 0; i < MONITORS; i++) {
+			metrics[i] = available.get(i % available.size());
+		}
+		final long[] periods = new long[MONITORS];
+		Arrays.fill(periods, PERIOD);
+
+		System.out.println("100 monitors    us  commits  messages  groups " + groups.length);
+		for (int batch = 0; batch < 2; batch++) {
+			long elapsed = 0;
+			int commits = 0;
+			int messages = 0;
+			for (int op = 0; op < WARMUP + OPS; op++) {
+				final int before = SQLiteDatabase.getCommitCount();
+				final int posted = size(loopers);
+				final long t0 = System.nanoTime();
+				final int[] monitorIds = (batch == 1) ? MonitorBatch.register(adapter, metrics,
+						periods, 0, false, null) : registerEach(adapter, metrics);
+				final long t1 = System.nanoTime();
+				if (op >= WARMUP) {
+					elapsed += t1 - t0;
+					commits += SQLiteDatabase.getCommitCount() - before;
+					messages += size(loopers) - posted;
+				}
+				runDue(loopers);
+				MonitorBatch.unregister(metrics, monitorIds);
+				runDue(loopers);
+			}
+			System.out.printf("%-12s  %6.0f  %7d  %8d%n", (batch == 1) ? "batch" : "individual",
+					elapsed / (1e3 * OPS), commits / OPS, messages / OPS);
+		}
+
+		adapter.close();
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	/** Steps of registerPeriodic of {@link NDroidService}, for each metric. */
+	private static int[] registerEach(CimonDatabaseAdapter adapter, int[] metrics) {
+		final int[] monitorIds = new int[metrics.length];
+		for (int i = 0; i < metrics.length; i++) {
+			final MetricService<?> metricService = MetricService.getService(metrics[i]);
+			final long curTime = System.currentTimeMillis();
+			final long upTime = SystemClock.uptimeMillis();
+			monitorIds[i] = adapter.insertMonitor(curTime - upTime,
+					PERIOD < SampleLog.HIGH_RATE_PERIOD);
+			metricService.registerClient(metrics[i], monitorIds[i], PERIOD, 0, false, null);
+		}
+		return monitorIds;
+	}
+
+	private static int size(List<Looper> loopers) {
+		int size = 0;
+		for (Looper looper : loopers) {
+			size += looper.size();
+		}
+		return size;
+	}
+
+	private static void runDue(List<Looper> loopers) {
+		for (Looper looper : loopers) {
+			looper.runDue();
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package edu.nd.darts.cimon;
+
+import java.lang.management.ManagementFactory;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.os.SystemClock;
+
+/**
+ * Delivers 10000 samples of a monitor at 50 Hz through a {@link FloatValueNode}
+ * on a virtual clock, to a client {@link Messenger} which counts the messages
+ * sent to it, one per binder transaction on a device: per sample, as monitors
+ * registered with registerPeriodic, and in {@link SampleBatch}es, as monitors
+ * registered with registerBatchedPeriodic, with several limits of latency and
+ * count.  Prints messages sent, samples delivered, and the CPU time of delivery
+ * on the metric thread.
+ */
+public class SampleBatchBench {
+
+	private static final long PERIOD = 20;
+	private static final int SAMPLES = 10000;
+	private static final int WARMUP = 3;
+
+	/** Client messenger, which counts messages and samples sent to it. */
+	private static final class CountingMessenger extends Messenger {
+		int sends = 0;
+		int samples = 0;
+
+		@Override
+		public void send(Message message) throws RemoteException {
+			sends++;
+			final SampleBatch batch = message.getData().<SampleBatch>getParcelable(
+					SampleBatch.KEY);
+			if (batch == null) {
+				samples++;
+				return;
+			}
+			samples += batch.size();
+		}
+	}
+
+	public static void main(String[] args) {
+		System.out.println("delivery             messages  samples  cpu ms");
+		for (int i = 0; i <= WARMUP; i++) {
+			final boolean print = i == WARMUP;
+			run("per sample", 0, 0, print);
+			run("latency 500 ms", 500, SampleBatch.MAX_COUNT, print);
+			run("latency 100 ms", 100, SampleBatch.MAX_COUNT, print);
+			run("max count 25", 60000, 25, print);
+		}
+		SystemClock.setVirtualTime(-1);
+	}
+
+	/**
+	 * Deliver samples to a monitor, batched if maxCount is above 0.
+	 */
+	private static void run(String name, long maxLatency, int maxCount, boolean print) {
+		long now = 1000000;
+		SystemClock.setVirtualTime(now);
+		final Looper metricLooper = new HandlerThread("metric").getLooper();
+		final Handler dbHandler = new Handler(new HandlerThread("db").getLooper());
+		final CountingMessenger client = new CountingMessenger();
+		final FloatValueNode node = new FloatValueNode(Metrics.CPU_LOAD1,
+				new ScheduleIndex(), dbHandler, SystemObserver.getInstance());
+		node.insertTimed(1, PERIOD, client, SAMPLES * PERIOD);
+		if (maxCount > 0) {
+			node.setDelivery(1, maxLatency, maxCount, new Handler(metricLooper));
+		}
+		final long t0 = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime();
+		for (int i = 0; i < SAMPLES; i++) {
+			now += PERIOD;
+			SystemClock.setVirtualTime(now);
+			node.updateValue((float) Math.sin(i * 0.01), now);
+			metricLooper.runDue();
+		}
+		// monitor completes with the last sample, flushing its pending batch
+		now += PERIOD;
+		SystemClock.setVirtualTime(now);
+		node.updateValue(0f, now);
+		metricLooper.runAll();
+		final long cpu = ManagementFactory.getThreadMXBean().getCurrentThreadCpuTime() - t0;
+		if (print) {
+			System.out.printf("%-19s  %8d  %7d  %6.1f%n", name, client.sends,
+					client.samples, cpu / 1e6);
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+package edu.nd.darts.cimon;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import android.os.SystemClock;
+
+/**
+ * Times {@link TimerList#insert}, alignment through {@link ScheduleIndex} and 
+ * {@link TimerList#getNextUpdate} for a metric group with 10, 100 and 10000 
+ * monitors of up to 200 distinct periods, against the linear scans they replace.
+ */
+public class TimerListBench {
+	
+	private static final long[] PERIODS = {100, 150, 250, 400, 1000, 1500, 3000, 
+		7000, 60000};
+	private static final int[] MONITORS = {10, 100, 10000};
+	
+	private static long sink;
+	
+	public static void main(String[] args) {
+		for (int round = 0; round < 4; round++) {
+			if (round == 3) {
+				System.out.println("          ns per monitor                   ns per call");
+				System.out.println("monitors  insert ns  align ns  align(scan)  next ns   (scan)  overdue next ns  (scan)");
+			}
+			for (int count : MONITORS) {
+				run(count, round == 3);
+			}
+		}
+		SystemClock.setVirtualTime(-1);
+		if (sink == 42) System.out.println();
+	}
+	
+	private static void run(int count, boolean print) {
+		final long start = 1000000;
+		final int reps = Math.max(1, 200000 / count);
+		final Random random = new Random(count);
+		final long[] periods = new long[count];
+		for (int i = 0; i < count; i++) {
+			periods[i] = 50 * (1 + random.nextInt(200));
+		}
+		
+		long insertTime = 0;
+		long alignTime = 0;
+		long scanTime = 0;
+		ScheduleIndex schedules = null;
+		TimerList timers = null;
+		final TimerNode[] nodes = new TimerNode[count];
+		for (int r = 0; r < reps; r++) {
+			SystemClock.setVirtualTime(start + r);
+			schedules = new ScheduleIndex();
+			timers = new TimerList(schedules);
+			long t0 = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				nodes[i] = timers.insert(i + 1, periods[i], null, 0);
+				schedules.put(i + 1, nodes[i]);
+			}
+			insertTime += System.nanoTime() - t0;
+			
+			// alignment alone, for a further monitor of each period
+			t0 = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				sink += schedules.getAligned(periods[i] + 50, timers.getHead()).getKey();
+			}
+			alignTime += System.nanoTime() - t0;
+			t0 = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				sink += scanAligned(periods[i] + 50, timers.getHead(), nodes).getKey();
+			}
+			scanTime += System.nanoTime() - t0;
+		}
+		
+		// next update after the updates due have been sent, so no monitor has 
+		//    passed its update time, and with at least 1% of monitors overdue (more 
+		//    where aligned monitors share the update time)
+		final long[] keys = new long[count];
+		for (int i = 0; i < count; i++) {
+			keys[i] = nodes[i].getKey();
+		}
+		Arrays.sort(keys);
+		final long idle = keys[0] - 10;
+		final long overdue = keys[Math.max(1, count / 100) - 1];
+		int passed = 0;
+		for (int i = 0; i < count; i++) {
+			if (nodes[i].nodeTimePassed(overdue)) passed++;
+		}
+		final int calls = 2000000 / count + 1000;
+		final double next = timeNext(timers, null, idle, calls);
+		final double nextScan = timeNext(null, nodes, idle, calls);
+		final double nextOverdue = timeNext(timers, null, overdue, calls);
+		final double nextOverdueScan = timeNext(null, nodes, overdue, calls);
+		
+		if (print) {
+			System.out.printf("%8d  %9.1f  %8.1f  %11.1f  %7.1f  %7.1f  %6d  %7.1f  %7.1f%n", 
+					count, insertTime / (double) (reps * count), 
+					alignTime / (double) (reps * count), scanTime / (double) (reps * count), 
+					next, nextScan, passed, nextOverdue, nextOverdueScan);
+		}
+	}
+	
+	private static double timeNext(TimerList timers, TimerNode[] nodes, long current, 
+			int calls) {
+		final long t0 = System.nanoTime();
+		for (int i = 0; i < calls; i++) {
+			sink += (timers != null) ? timers.getNextUpdate(current) 
+					: scanNextUpdate(nodes, current);
+		}
+		return (System.nanoTime() - t0) / (double) calls;
+	}
+	
+	/** Alignment by scanning every scheduled node, as before the period index. */
+	private static TimerNode scanAligned(long period, TimerNode head, TimerNode[] nodes) {
+		long minLCM = lcm(period, head.getPeriod());
+		TimerNode minNode = head;
+		for (int i = 0; i < nodes.length; i++) {
+			if (minLCM == period) break;
+			final long lcm = lcm(period, nodes[i].getPeriod());
+			if (lcm < minLCM) {
+				minLCM = lcm;
+				minNode = nodes[i];
+			}
+		}
+		return minNode;
+	}
+	
+	/** Next update by scanning every node, as before reading it from the heap. */
+	private static long scanNextUpdate(TimerNode[] nodes, long current) {
+		long nextUpdate = Long.MAX_VALUE;
+		for (TimerNode tNode : nodes) {
+			if (tNode.nodeTimePassed(current)) {
+				if ((tNode.getPeriod() > 0) && (tNode.getPeriod() < nextUpdate)) {
+					nextUpdate = tNode.getPeriod();
+				}
+			}
+			else if ((tNode.getKey() - current) < nextUpdate) {
+				nextUpdate = tNode.getKey() - current;
+			}
+		}
+		return nextUpdate;
+	}
+	
+	private static long lcm(long a, long b) {
+		long x = a;
+		long y = b;
+		while (y > 0) {
+			final long t = y;
+			y = x % y;
+			x = t;
+		}
+		return a * (b / x);
+	}
+	
+}
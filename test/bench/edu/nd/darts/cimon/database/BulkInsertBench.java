@@ -0,0 +1,135 @@
+package edu.nd.darts.cimon.database;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.SystemClock;
+
+/**
+ * Times bulk inserts of 1k, 100k and 1M readings on SQLite through JDBC, for
+ * {@link CimonDatabaseAdapter#insertBulkData} with multi-row statements (API 16
+ * and later), with the single-row statement used below API 16, and for a
+ * ContentValues insert per row as before precompiled statements.  Each case
+ * runs in its own JVM on a new database.
+ */
+public class BulkInsertBench {
+
+	private static final int[] ROWS = {1000, 100000, 1000000};
+	private static final String[] MODES = {"multi", "single", "values"};
+	/** Readings per insertBulkData call, as for a full {@link edu.nd.darts.cimon.DataBatch}. */
+	private static final int BATCH = 1000;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 2) {
+			runCase(args[0], Integer.parseInt(args[1]));
+			return;
+		}
+		if (!SQLiteDatabase.isAvailable()) {
+			System.out.println("BulkInsertBench: skipped, no SQLite JDBC driver on TEST_CLASSPATH");
+			return;
+		}
+		System.out.println("rows      mode    rows/s      us/row");
+		for (int rows : ROWS) {
+			for (String mode : MODES) {
+				final List<String> command = new ArrayList<String>();
+				command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+				command.add("-cp");
+				command.add(System.getProperty("java.class.path"));
+				command.add(BulkInsertBench.class.getName());
+				command.add(mode);
+				command.add(String.valueOf(rows));
+				final Process process = new ProcessBuilder(command).inheritIO().start();
+				if (process.waitFor() != 0) {
+					System.exit(1);
+				}
+			}
+		}
+	}
+
+	private static void runCase(String mode, int rows) throws Exception {
+		final File dir = File.createTempFile("cimon-bench", "");
+		dir.delete();
+		dir.mkdirs();
+		Context.setDataDirectory(dir);
+		try {
+			final long[] timestamps = new long[BATCH];
+			final float[] values = new float[BATCH];
+			final long start = SystemClock.uptimeMillis() - rows;
+			long elapsed;
+			if (mode.equals("values")) {
+				elapsed = insertValues(new File(dir, "values.db"), start, rows);
+			}
+			else {
+				Build.VERSION.SDK_INT = mode.equals("multi") ? 16 : 14;
+				final CimonDatabaseAdapter adapter =
+						CimonDatabaseAdapter.getInstance(new Context());
+				final int monitor = adapter.insertMonitor(
+						System.currentTimeMillis() - SystemClock.uptimeMillis());
+				final long t0 = System.nanoTime();
+				for (int row = 0; row < rows; row += BATCH) {
+					final int count = Math.min(BATCH, rows - row);
+					for (int i = 0; i < count; i++) {
+						timestamps[i] = start + row + i;
+						values[i] = (row + i) % 100;
+					}
+					if (adapter.insertBulkData(1, monitor, timestamps, values, count) != count) {
+						throw new IllegalStateException("insert failed at row " + row);
+					}
+				}
+				elapsed = System.nanoTime() - t0;
+				adapter.close();
+			}
+			System.out.printf("%-8d  %-6s  %8.0f  %8.2f%n", rows, mode,
+					rows * 1e9 / elapsed, elapsed / 1e3 / rows);
+		}
+		finally {
+			delete(dir);
+		}
+	}
+
+	/** Rows inserted by SQLiteDatabase.insert, in transactions of 1000 rows. */
+	private static long insertValues(File file, long start, int rows) {
+		final SQLiteDatabase database = SQLiteDatabase.openOrCreateDatabase(file.getPath(), null);
+		DataTable.onCreate(database);
+		final String table = DataTable.partitionName(
+				DataTable.partitionOf(System.currentTimeMillis()));
+		final long t0 = System.nanoTime();
+		for (int row = 0; row < rows; row += BATCH) {
+			final int count = Math.min(BATCH, rows - row);
+			database.beginTransaction();
+			try {
+				for (int i = 0; i < count; i++) {
+					final ContentValues values = new ContentValues();
+					values.put(DataTable.COLUMN_METRIC_ID, 1);
+					values.put(DataTable.COLUMN_MONITOR_ID, 1);
+					values.put(DataTable.COLUMN_TIMESTAMP, start + row + i);
+					values.put(DataTable.COLUMN_VALUE, (float) ((row + i) % 100));
+					database.insert(table, null, values);
+				}
+				database.setTransactionSuccessful();
+			}
+			finally {
+				database.endTransaction();
+			}
+		}
+		final long elapsed = System.nanoTime() - t0;
+		database.close();
+		return elapsed;
+	}
+
+	private static void delete(File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,135 @@
+package edu.nd.darts.cimon.database;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+/**
+ * Measures contention between a writer inserting batches of readings in
+ * exclusive transactions, and readers querying the latest page of readings
+ * through {@link CimonReaderPool}, with the database in rollback journal mode
+ * (readers share the writer connection) and with write-ahead logging (readers
+ * use {@link CimonStorageConfig#READER_CONNECTIONS} read-only connections).
+ * The writer holds its connection for the whole transaction, as the Android
+ * connection pool does.  Prints rows inserted per second, and queries per
+ * second with mean, 99th percentile and maximum latency of queries.
+ */
+public class ReaderContentionBench {
+
+	private static final int READERS = 2;
+	private static final int BATCH = 1000;
+	private static final long DURATION_MS = 3000;
+	private static final int MAX_QUERIES = 1000000;
+	private static final String QUERY = "SELECT _id, timestamp, value FROM readings " +
+			"WHERE monitor = ? ORDER BY timestamp DESC LIMIT 100";
+
+	public static void main(String[] args) throws Exception {
+		if (!SQLiteDatabase.isAvailable()) {
+			System.out.println("ReaderContentionBench: skipped, no SQLite JDBC driver on TEST_CLASSPATH");
+			return;
+		}
+		final File dir = File.createTempFile("cimon-contention", "");
+		dir.delete();
+		dir.mkdirs();
+		System.out.println("mode     rows/s    queries/s  mean ms   p99 ms    max ms");
+		run(new File(dir, "journal.db"), false);
+		run(new File(dir, "wal.db"), true);
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	private static void run(File file, boolean wal) throws Exception {
+		final SQLiteDatabase writer = SQLiteDatabase.openOrCreateDatabase(file.getPath(), null);
+		if (wal) {
+			CimonStorageConfig.configureWriter(writer);
+		}
+		writer.execSQL("CREATE TABLE readings (_id INTEGER PRIMARY KEY, monitor INTEGER, " +
+				"timestamp INTEGER, value REAL)");
+		writer.execSQL("CREATE INDEX readings_monitor ON readings (monitor, timestamp)");
+		final CimonReaderPool pool = CimonReaderPool.open(writer, wal,
+				CimonStorageConfig.READER_CONNECTIONS);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final long[][] latencies = new long[READERS][MAX_QUERIES];
+		final int[] queries = new int[READERS];
+		final Thread[] readers = new Thread[READERS];
+		for (int r = 0; r < READERS; r++) {
+			final int reader = r;
+			readers[r] = new Thread(new Runnable() {
+				public void run() {
+					final String[] monitor = {String.valueOf(reader % 4)};
+					while (running.get() && (queries[reader] < MAX_QUERIES)) {
+						final long t0 = System.nanoTime();
+						final Cursor cursor = pool.acquire().rawQuery(QUERY, monitor);
+						while (cursor.moveToNext()) {
+							cursor.getFloat(2);
+						}
+						cursor.close();
+						latencies[reader][queries[reader]++] = System.nanoTime() - t0;
+					}
+				}
+			});
+		}
+
+		final SQLiteStatement insert = writer.compileStatement(
+				"INSERT INTO readings (monitor, timestamp, value) VALUES (?, ?, ?)");
+		for (Thread reader : readers) {
+			reader.start();
+		}
+		long rows = 0;
+		final long t0 = System.nanoTime();
+		final long end = t0 + DURATION_MS * 1000000L;
+		while (System.nanoTime() < end) {
+			synchronized (writer) {
+				writer.beginTransaction();
+				try {
+					for (int i = 0; i < BATCH; i++) {
+						insert.bindLong(1, (rows + i) % 4);
+						insert.bindLong(2, rows + i);
+						insert.bindDouble(3, (rows + i) % 100);
+						insert.executeInsert();
+					}
+					writer.setTransactionSuccessful();
+				}
+				finally {
+					writer.endTransaction();
+				}
+			}
+			rows += BATCH;
+		}
+		final double seconds = (System.nanoTime() - t0) / 1e9;
+		running.set(false);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		insert.close();
+		pool.close();
+		writer.close();
+
+		int total = 0;
+		for (int count : queries) {
+			total += count;
+		}
+		final long[] all = new long[total];
+		int n = 0;
+		long sum = 0;
+		for (int r = 0; r < READERS; r++) {
+			System.arraycopy(latencies[r], 0, all, n, queries[r]);
+			n += queries[r];
+		}
+		for (long latency : all) {
+			sum += latency;
+		}
+		Arrays.sort(all);
+		System.out.printf("%-7s  %8.0f  %9.0f  %7.3f  %7.3f  %8.3f%n", wal ? "wal" : "journal",
+				rows / seconds, total / seconds, (total == 0) ? 0 : sum / 1e6 / total,
+				(total == 0) ? 0 : all[(int) (total * 0.99)] / 1e6,
+				(total == 0) ? 0 : all[total - 1] / 1e6);
+	}
+
+}
@@ -0,0 +1,121 @@
+package edu.nd.darts.cimon.database;
+
+import java.io.File;
+import java.util.Random;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import edu.nd.darts.cimon.DataBatch;
+
+/**
+ * Measures storage and append rate of the {@link SampleLog}, for 1M readings
+ * at a 10 ms period with constant, slowly varying and random values.  Bytes
+ * per reading are given both for encoded readings and for whole segment files
+ * on disk.  With SQLite on TEST_CLASSPATH, the size per row of the Data table
+ * (including indexes) is measured for comparison.
+ */
+public class SampleLogBench {
+
+	private static final int ROWS = 1000000;
+	private static final int TABLE_ROWS = 100000;
+	private static final long PERIOD = 10;
+	private static final String[] PATTERNS = {"constant", "slow", "random"};
+
+	public static void main(String[] args) throws Exception {
+		final File dir = File.createTempFile("cimon-bench", "");
+		dir.delete();
+		dir.mkdirs();
+		try {
+			System.out.println("pattern   readings  encoded B/r  on disk B/r  readings/s");
+			for (String pattern : PATTERNS) {
+				runStream(new File(dir, pattern), pattern);
+			}
+			if (SQLiteDatabase.isAvailable()) {
+				runTable(new File(dir, "table"));
+			}
+			else {
+				System.out.println("Data table: skipped, no SQLite JDBC driver on TEST_CLASSPATH");
+			}
+		}
+		finally {
+			delete(dir);
+		}
+	}
+
+	private static void runStream(File dir, String pattern) throws Exception {
+		final long[] timestamps = new long[DataBatch.CAPACITY];
+		final float[] values = new float[DataBatch.CAPACITY];
+		final Random random = new Random(1);
+		final SampleStream stream = new SampleStream(dir, 1);
+		final long start = SystemClock.uptimeMillis() - ROWS * PERIOD;
+		long elapsed = 0;
+		for (int row = 0; row < ROWS; row += DataBatch.CAPACITY) {
+			fill(pattern, random, start, row, timestamps, values);
+			final long t0 = System.nanoTime();
+			stream.append(1, timestamps, values, DataBatch.CAPACITY);
+			elapsed += System.nanoTime() - t0;
+		}
+		final long[] bytes = new long[2];
+		stream.getBytes(bytes);
+		stream.close();
+		System.out.printf("%-8s  %8d  %11.2f  %11.2f  %10.0f%n", pattern, ROWS,
+				(double) bytes[1] / ROWS, (double) bytes[0] / ROWS, ROWS * 1e9 / elapsed);
+	}
+
+	/** Size of Data table per row, from the database files after inserting rows. */
+	private static void runTable(File dir) throws Exception {
+		dir.mkdirs();
+		Context.setDataDirectory(dir);
+		final Context context = new Context();
+		final CimonDatabaseAdapter adapter = CimonDatabaseAdapter.getInstance(context);
+		final int monitor = adapter.insertMonitor(
+				System.currentTimeMillis() - SystemClock.uptimeMillis());
+		final File database = context.getDatabasePath("cimon.db");
+		final long before = size(database);
+		final long[] timestamps = new long[DataBatch.CAPACITY];
+		final float[] values = new float[DataBatch.CAPACITY];
+		final Random random = new Random(1);
+		final long start = SystemClock.uptimeMillis() - TABLE_ROWS * PERIOD;
+		for (int row = 0; row < TABLE_ROWS; row += DataBatch.CAPACITY) {
+			fill("slow", random, start, row, timestamps, values);
+			adapter.insertBulkData(1, monitor, timestamps, values, DataBatch.CAPACITY);
+		}
+		adapter.close();
+		System.out.printf("Data table: %d rows, %.2f B/row on disk%n", TABLE_ROWS,
+				(double) (size(database) - before) / TABLE_ROWS);
+	}
+
+	private static void fill(String pattern, Random random, long start, int row,
+			long[] timestamps, float[] values) {
+		for (int i = 0; i < timestamps.length; i++) {
+			timestamps[i] = start + (row + i) * PERIOD;
+			if (pattern.equals("constant")) {
+				values[i] = 42f;
+			}
+			else if (pattern.equals("slow")) {
+				values[i] = 20f + ((row + i) / 100) % 50 * 0.1f;
+			}
+			else {
+				values[i] = random.nextFloat() * 100f;
+			}
+		}
+	}
+
+	/** Size of database file, with its write-ahead log and journal. */
+	private static long size(File database) {
+		return database.length() + new File(database.getPath() + "-wal").length() +
+				new File(database.getPath() + "-journal").length();
+	}
+
+	private static void delete(File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
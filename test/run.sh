@@ -0,0 +1,31 @@
+#!/bin/bash
+#
+# Compile and run the plain-JVM tests of CIMON, against the desktop shims of the
+# Android classes under test/shims.  Classes of the app, and the generated classes
+# under gen, are compiled as the tests reference them.  With argument "bench", the
+# benchmarks under test/bench are run as well.  Tests which need a JDBC driver for
+# SQLite (such as sqlite-jdbc) find it on TEST_CLASSPATH, and are skipped without it.
+#
+#   test/run.sh [bench]
+#
+
+cd "$(dirname "$0")/.." || exit 1
+OUT=${TEST_OUT:-/tmp/cimon-test}
+
+rm -rf "$OUT"
+mkdir -p "$OUT"
+javac -nowarn -encoding UTF-8 -d "$OUT" -cp "$TEST_CLASSPATH" -sourcepath src:gen:test/shims \
+		$(find test/shims test/src test/bench -name "*.java") || exit 1
+
+status=0
+run() {
+	for class in $(cd "$1" && find . -name "$2" | sed 's|^\./||; s|\.java$||; s|/|.|g' | sort); do
+		java -cp "$OUT:$TEST_CLASSPATH" "$class" || status=1
+	done
+}
+
+run test/src "*Test.java"
+if [ "$1" = "bench" ]; then
+	run test/bench "*Bench.java"
+fi
+exit $status
@@ -0,0 +1,13 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * Desktop shim of android.app.Application.
+ */
+public class Application extends Context {
+	
+	public void onCreate() {
+	}
+	
+}
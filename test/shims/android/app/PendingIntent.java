@@ -0,0 +1,16 @@
+package android.app;
+
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Desktop shim of android.app.PendingIntent.
+ */
+public final class PendingIntent {
+	
+	public static PendingIntent getBroadcast(Context context, int requestCode, Intent intent, 
+			int flags) {
+		return new PendingIntent();
+	}
+	
+}
@@ -0,0 +1,44 @@
+package android.content;
+
+import java.io.FileNotFoundException;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+/**
+ * Desktop shim of android.content.ContentProvider.  Tests attach a context with
+ * {@link #attachInfo(Context)} before calling {@link #onCreate()}.
+ */
+public abstract class ContentProvider {
+	
+	private Context context;
+	
+	public void attachInfo(Context context) {
+		this.context = context;
+		context.getContentResolver().setProvider(this);
+	}
+	
+	public final Context getContext() {
+		return context;
+	}
+	
+	public abstract boolean onCreate();
+	
+	public abstract Cursor query(Uri uri, String[] projection, String selection, 
+			String[] selectionArgs, String sortOrder);
+	
+	public abstract String getType(Uri uri);
+	
+	public abstract Uri insert(Uri uri, ContentValues values);
+	
+	public abstract int delete(Uri uri, String selection, String[] selectionArgs);
+	
+	public abstract int update(Uri uri, ContentValues values, String selection, 
+			String[] selectionArgs);
+	
+	public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+		throw new FileNotFoundException(uri.toString());
+	}
+	
+}
@@ -0,0 +1,57 @@
+package android.content;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+
+/**
+ * Desktop shim of android.content.ContentResolver, which records change 
+ * notifications for tests to inspect.
+ */
+public class ContentResolver {
+	
+	public static final String CURSOR_DIR_BASE_TYPE = "vnd.android.cursor.dir";
+	public static final String CURSOR_ITEM_BASE_TYPE = "vnd.android.cursor.item";
+	
+	private final List<Uri> notified = new ArrayList<Uri>();
+	private ContentProvider provider;
+	
+	/**
+	 * Provider which answers queries, set when it is attached to the context.
+	 */
+	void setProvider(ContentProvider provider) {
+		this.provider = provider;
+	}
+	
+	public final Cursor query(Uri uri, String[] projection, String selection, 
+			String[] selectionArgs, String sortOrder) {
+		return (provider == null) ? null : 
+			provider.query(uri, projection, selection, selectionArgs, sortOrder);
+	}
+	
+	public final void registerContentObserver(Uri uri, boolean notifyForDescendents, 
+			ContentObserver observer) {
+	}
+	
+	public final void unregisterContentObserver(ContentObserver observer) {
+	}
+	
+	public void notifyChange(Uri uri, ContentObserver observer) {
+		synchronized (notified) {
+			notified.add(uri);
+		}
+	}
+	
+	/**
+	 * URIs passed to {@link #notifyChange(Uri, ContentObserver)} so far.
+	 */
+	public List<Uri> getNotified() {
+		synchronized (notified) {
+			return new ArrayList<Uri>(notified);
+		}
+	}
+	
+}
@@ -0,0 +1,95 @@
+package android.content;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Desktop shim of android.content.ContentValues, backed by an ordered map.
+ */
+public final class ContentValues {
+	
+	private final LinkedHashMap<String, Object> values;
+	
+	public ContentValues() {
+		values = new LinkedHashMap<String, Object>();
+	}
+	
+	public ContentValues(int size) {
+		values = new LinkedHashMap<String, Object>(size);
+	}
+	
+	public ContentValues(ContentValues from) {
+		values = new LinkedHashMap<String, Object>(from.values);
+	}
+	
+	public void put(String key, String value) { values.put(key, value); }
+	public void put(String key, Byte value) { values.put(key, value); }
+	public void put(String key, Short value) { values.put(key, value); }
+	public void put(String key, Integer value) { values.put(key, value); }
+	public void put(String key, Long value) { values.put(key, value); }
+	public void put(String key, Float value) { values.put(key, value); }
+	public void put(String key, Double value) { values.put(key, value); }
+	public void put(String key, Boolean value) { values.put(key, value); }
+	public void put(String key, byte[] value) { values.put(key, value); }
+	
+	public void putNull(String key) {
+		values.put(key, null);
+	}
+	
+	public Object get(String key) {
+		return values.get(key);
+	}
+	
+	public String getAsString(String key) {
+		final Object value = values.get(key);
+		return (value == null) ? null : value.toString();
+	}
+	
+	public Long getAsLong(String key) {
+		final Object value = values.get(key);
+		return (value instanceof Number) ? ((Number) value).longValue() : 
+			((value == null) ? null : Long.valueOf(value.toString()));
+	}
+	
+	public Integer getAsInteger(String key) {
+		final Long value = getAsLong(key);
+		return (value == null) ? null : value.intValue();
+	}
+	
+	public Double getAsDouble(String key) {
+		final Object value = values.get(key);
+		return (value instanceof Number) ? ((Number) value).doubleValue() : 
+			((value == null) ? null : Double.valueOf(value.toString()));
+	}
+	
+	public Float getAsFloat(String key) {
+		final Double value = getAsDouble(key);
+		return (value == null) ? null : value.floatValue();
+	}
+	
+	public boolean containsKey(String key) {
+		return values.containsKey(key);
+	}
+	
+	public void remove(String key) {
+		values.remove(key);
+	}
+	
+	public int size() {
+		return values.size();
+	}
+	
+	public void clear() {
+		values.clear();
+	}
+	
+	public Set<String> keySet() {
+		return values.keySet();
+	}
+	
+	public Set<Map.Entry<String, Object>> valueSet() {
+		return values.entrySet();
+	}
+	
+}
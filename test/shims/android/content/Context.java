@@ -0,0 +1,111 @@
+package android.content;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.os.Handler;
+
+/**
+ * Desktop shim of android.content.Context.  Files and databases of all contexts
+ * are placed in a single data directory, set by tests with 
+ * {@link #setDataDirectory(File)}.
+ */
+public class Context {
+	
+	public static final int MODE_PRIVATE = 0;
+	public static final String SENSOR_SERVICE = "sensor";
+	public static final String LOCATION_SERVICE = "location";
+	public static final String TELEPHONY_SERVICE = "phone";
+	public static final String CONNECTIVITY_SERVICE = "connectivity";
+	public static final String POWER_SERVICE = "power";
+	public static final String NOTIFICATION_SERVICE = "notification";
+	public static final String WINDOW_SERVICE = "window";
+	public static final String ACTIVITY_SERVICE = "activity";
+	
+	private static File dataDirectory = new File(System.getProperty("java.io.tmpdir"), 
+			"cimon-test-data");
+	private static final Map<String, SharedPreferences> preferences = 
+			new HashMap<String, SharedPreferences>();
+	private final ContentResolver resolver = new ContentResolver();
+	
+	public static void setDataDirectory(File directory) {
+		dataDirectory = directory;
+	}
+	
+	private static File dir(String name) {
+		final File dir = new File(dataDirectory, name);
+		dir.mkdirs();
+		return dir;
+	}
+	
+	public Context getApplicationContext() {
+		return this;
+	}
+	
+	public String getPackageName() {
+		return "edu.nd.darts.cimon";
+	}
+	
+	public ContentResolver getContentResolver() {
+		return resolver;
+	}
+	
+	public Object getSystemService(String name) {
+		return null;
+	}
+	
+	/**
+	 * Receivers are not called; the sticky intent returned is null.
+	 */
+	public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+		return null;
+	}
+	
+	public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter, 
+			String broadcastPermission, Handler scheduler) {
+		return null;
+	}
+	
+	public void unregisterReceiver(BroadcastReceiver receiver) {
+	}
+	
+	public String getString(int resId) {
+		return "";
+	}
+	
+	public CharSequence getText(int resId) {
+		return "";
+	}
+	
+	public File getFilesDir() {
+		return dir("files");
+	}
+	
+	public File getCacheDir() {
+		return dir("cache");
+	}
+	
+	public File getExternalFilesDir(String type) {
+		return dir((type == null) ? "external" : "external/" + type);
+	}
+	
+	/**
+	 * Preferences of all contexts are held in memory, for the life of the JVM.
+	 */
+	public SharedPreferences getSharedPreferences(String name, int mode) {
+		synchronized (preferences) {
+			SharedPreferences prefs = preferences.get(name);
+			if (prefs == null) {
+				prefs = new MemoryPreferences();
+				preferences.put(name, prefs);
+			}
+			return prefs;
+		}
+	}
+	
+	public File getDatabasePath(String name) {
+		return new File(dir("databases"), name);
+	}
+	
+}
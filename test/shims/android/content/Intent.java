@@ -0,0 +1,29 @@
+package android.content;
+
+/**
+ * Desktop shim of android.content.Intent, which carries no extras.
+ */
+public class Intent {
+	
+	public static final String ACTION_BATTERY_CHANGED = "android.intent.action.BATTERY_CHANGED";
+	public static final String ACTION_SCREEN_ON = "android.intent.action.SCREEN_ON";
+	public static final String ACTION_SCREEN_OFF = "android.intent.action.SCREEN_OFF";
+	
+	public Intent() {
+	}
+	
+	public Intent(String action) {
+	}
+	
+	public Intent(Context context, Class<?> cls) {
+	}
+	
+	public String getAction() { return null; }
+	public int getIntExtra(String name, int defaultValue) { return defaultValue; }
+	public boolean getBooleanExtra(String name, boolean defaultValue) { return defaultValue; }
+	public String getStringExtra(String name) { return null; }
+	public Intent putExtra(String name, int value) { return this; }
+	public Intent putExtra(String name, long value) { return this; }
+	public Intent putExtra(String name, String value) { return this; }
+	
+}
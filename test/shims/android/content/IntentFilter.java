@@ -0,0 +1,17 @@
+package android.content;
+
+/**
+ * Desktop shim of android.content.IntentFilter.
+ */
+public class IntentFilter {
+	
+	public IntentFilter() {
+	}
+	
+	public IntentFilter(String action) {
+	}
+	
+	public final void addAction(String action) {
+	}
+	
+}
@@ -0,0 +1,63 @@
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-memory preferences of the desktop {@link Context} shim.
+ */
+final class MemoryPreferences implements SharedPreferences {
+	
+	private final Map<String, Object> values = new HashMap<String, Object>();
+	
+	public synchronized long getLong(String key, long defValue) {
+		final Object value = values.get(key);
+		return (value instanceof Long) ? (Long) value : defValue;
+	}
+	
+	public synchronized String getString(String key, String defValue) {
+		final Object value = values.get(key);
+		return (value instanceof String) ? (String) value : defValue;
+	}
+	
+	public Editor edit() {
+		return new Editor() {
+			
+			private final Map<String, Object> changes = new HashMap<String, Object>();
+			
+			public Editor putLong(String key, long value) {
+				changes.put(key, value);
+				return this;
+			}
+			
+			public Editor putString(String key, String value) {
+				changes.put(key, value);
+				return this;
+			}
+			
+			public Editor remove(String key) {
+				changes.put(key, null);
+				return this;
+			}
+			
+			public boolean commit() {
+				synchronized (MemoryPreferences.this) {
+					for (Map.Entry<String, Object> change : changes.entrySet()) {
+						if (change.getValue() == null) {
+							values.remove(change.getKey());
+						}
+						else {
+							values.put(change.getKey(), change.getValue());
+						}
+					}
+				}
+				return true;
+			}
+			
+			public void apply() {
+				commit();
+			}
+		};
+	}
+	
+}
@@ -0,0 +1,22 @@
+package android.content;
+
+/**
+ * Desktop shim of android.content.SharedPreferences, for long and string values.
+ */
+public interface SharedPreferences {
+	
+	long getLong(String key, long defValue);
+	String getString(String key, String defValue);
+	Editor edit();
+	
+	interface Editor {
+		
+		Editor putLong(String key, long value);
+		Editor putString(String key, String value);
+		Editor remove(String key);
+		boolean commit();
+		void apply();
+		
+	}
+	
+}
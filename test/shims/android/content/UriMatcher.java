@@ -0,0 +1,55 @@
+package android.content;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.net.Uri;
+
+/**
+ * Desktop shim of android.content.UriMatcher, with the same "#" (number) and "*"
+ * (any segment) wildcards.
+ */
+public class UriMatcher {
+	
+	public static final int NO_MATCH = -1;
+	
+	private final List<String[]> patterns = new ArrayList<String[]>();
+	private final List<Integer> codes = new ArrayList<Integer>();
+	
+	public UriMatcher(int code) {
+	}
+	
+	public void addURI(String authority, String path, int code) {
+		final List<String> pattern = new ArrayList<String>();
+		pattern.add(authority);
+		for (String segment : path.split("/")) {
+			if (segment.length() > 0) pattern.add(segment);
+		}
+		patterns.add(pattern.toArray(new String[pattern.size()]));
+		codes.add(code);
+	}
+	
+	public int match(Uri uri) {
+		final List<String> segments = uri.getPathSegments();
+		for (int p = 0; p < patterns.size(); p++) {
+			final String[] pattern = patterns.get(p);
+			if ((pattern.length != segments.size() + 1) || 
+					!pattern[0].equals(uri.getAuthority())) {
+				continue;
+			}
+			boolean matched = true;
+			for (int i = 1; matched && (i < pattern.length); i++) {
+				final String segment = segments.get(i - 1);
+				if (pattern[i].equals("#")) {
+					matched = segment.matches("-?[0-9]+");
+				}
+				else if (!pattern[i].equals("*")) {
+					matched = pattern[i].equals(segment);
+				}
+			}
+			if (matched) return codes.get(p);
+		}
+		return NO_MATCH;
+	}
+	
+}
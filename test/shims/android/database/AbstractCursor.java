@@ -0,0 +1,97 @@
+package android.database;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+
+/**
+ * Desktop shim of android.database.AbstractCursor, which implements positioning
+ * and column lookup over the abstract getters.
+ */
+public abstract class AbstractCursor implements Cursor {
+	
+	protected int mPos = -1;
+	private boolean closed = false;
+	
+	public abstract int getCount();
+	public abstract String[] getColumnNames();
+	public abstract String getString(int column);
+	public abstract short getShort(int column);
+	public abstract int getInt(int column);
+	public abstract long getLong(int column);
+	public abstract float getFloat(int column);
+	public abstract double getDouble(int column);
+	public abstract boolean isNull(int column);
+	
+	public boolean onMove(int oldPosition, int newPosition) {
+		return true;
+	}
+	
+	public final int getPosition() {
+		return mPos;
+	}
+	
+	public final boolean moveToPosition(int position) {
+		final int count = getCount();
+		if (position >= count) {
+			mPos = count;
+			return false;
+		}
+		if (position < 0) {
+			mPos = -1;
+			return false;
+		}
+		if (position == mPos) {
+			return true;
+		}
+		if (!onMove(mPos, position)) {
+			mPos = -1;
+			return false;
+		}
+		mPos = position;
+		return true;
+	}
+	
+	public final boolean moveToFirst() {
+		return moveToPosition(0);
+	}
+	
+	public final boolean moveToNext() {
+		return moveToPosition(mPos + 1);
+	}
+	
+	public final boolean isAfterLast() {
+		return (getCount() == 0) || (mPos == getCount());
+	}
+	
+	public int getColumnCount() {
+		return getColumnNames().length;
+	}
+	
+	public int getColumnIndex(String columnName) {
+		final String[] names = getColumnNames();
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equalsIgnoreCase(columnName)) return i;
+		}
+		return -1;
+	}
+	
+	public int getColumnIndexOrThrow(String columnName) {
+		final int index = getColumnIndex(columnName);
+		if (index < 0) {
+			throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+		}
+		return index;
+	}
+	
+	public boolean isClosed() {
+		return closed;
+	}
+	
+	public void close() {
+		closed = true;
+	}
+	
+	public void setNotificationUri(ContentResolver resolver, Uri uri) {
+	}
+	
+}
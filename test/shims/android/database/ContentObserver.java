@@ -0,0 +1,16 @@
+package android.database;
+
+import android.os.Handler;
+
+/**
+ * Desktop shim of android.database.ContentObserver.
+ */
+public abstract class ContentObserver {
+	
+	public ContentObserver(Handler handler) {
+	}
+	
+	public void onChange(boolean selfChange) {
+	}
+	
+}
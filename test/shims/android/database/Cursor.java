@@ -0,0 +1,34 @@
+package android.database;
+
+import java.io.Closeable;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+
+/**
+ * Desktop shim of android.database.Cursor.
+ */
+public interface Cursor extends Closeable {
+	
+	int getCount();
+	int getPosition();
+	boolean moveToPosition(int position);
+	boolean moveToFirst();
+	boolean moveToNext();
+	boolean isAfterLast();
+	int getColumnCount();
+	String[] getColumnNames();
+	int getColumnIndex(String columnName);
+	int getColumnIndexOrThrow(String columnName) throws IllegalArgumentException;
+	String getString(int column);
+	short getShort(int column);
+	int getInt(int column);
+	long getLong(int column);
+	float getFloat(int column);
+	double getDouble(int column);
+	boolean isNull(int column);
+	boolean isClosed();
+	void close();
+	void setNotificationUri(ContentResolver resolver, Uri uri);
+	
+}
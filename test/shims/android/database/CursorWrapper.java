@@ -0,0 +1,45 @@
+package android.database;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+
+/**
+ * Desktop shim of android.database.CursorWrapper, which delegates every call
+ * to the wrapped cursor.
+ */
+public class CursorWrapper implements Cursor {
+	
+	private final Cursor cursor;
+	
+	public CursorWrapper(Cursor cursor) {
+		this.cursor = cursor;
+	}
+	
+	public Cursor getWrappedCursor() { return cursor; }
+	
+	public int getCount() { return cursor.getCount(); }
+	public int getPosition() { return cursor.getPosition(); }
+	public boolean moveToPosition(int position) { return cursor.moveToPosition(position); }
+	public boolean moveToFirst() { return cursor.moveToFirst(); }
+	public boolean moveToNext() { return cursor.moveToNext(); }
+	public boolean isAfterLast() { return cursor.isAfterLast(); }
+	public int getColumnCount() { return cursor.getColumnCount(); }
+	public String[] getColumnNames() { return cursor.getColumnNames(); }
+	public int getColumnIndex(String columnName) { return cursor.getColumnIndex(columnName); }
+	public int getColumnIndexOrThrow(String columnName) {
+		return cursor.getColumnIndexOrThrow(columnName);
+	}
+	public String getString(int column) { return cursor.getString(column); }
+	public short getShort(int column) { return cursor.getShort(column); }
+	public int getInt(int column) { return cursor.getInt(column); }
+	public long getLong(int column) { return cursor.getLong(column); }
+	public float getFloat(int column) { return cursor.getFloat(column); }
+	public double getDouble(int column) { return cursor.getDouble(column); }
+	public boolean isNull(int column) { return cursor.isNull(column); }
+	public boolean isClosed() { return cursor.isClosed(); }
+	public void close() { cursor.close(); }
+	public void setNotificationUri(ContentResolver resolver, Uri uri) {
+		cursor.setNotificationUri(resolver, uri);
+	}
+	
+}
@@ -0,0 +1,83 @@
+package android.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Desktop shim of android.database.MatrixCursor, a cursor over rows held in 
+ * memory.  The SQLite shims return query results in a MatrixCursor.
+ */
+public class MatrixCursor extends AbstractCursor {
+	
+	private final String[] columnNames;
+	private final List<Object[]> rows = new ArrayList<Object[]>();
+	
+	public MatrixCursor(String[] columnNames) {
+		this.columnNames = columnNames;
+	}
+	
+	public void addRow(Object[] columnValues) {
+		rows.add(columnValues.clone());
+	}
+	
+	private Object get(int column) {
+		if ((mPos < 0) || (mPos >= rows.size())) {
+			throw new IllegalStateException("cursor position " + mPos + " out of range");
+		}
+		return rows.get(mPos)[column];
+	}
+	
+	private Number number(int column) {
+		final Object value = get(column);
+		if (value == null) return 0;
+		if (value instanceof Number) return (Number) value;
+		return Double.valueOf(value.toString());
+	}
+	
+	@Override
+	public int getCount() {
+		return rows.size();
+	}
+	
+	@Override
+	public String[] getColumnNames() {
+		return columnNames;
+	}
+	
+	@Override
+	public String getString(int column) {
+		final Object value = get(column);
+		return (value == null) ? null : value.toString();
+	}
+	
+	@Override
+	public short getShort(int column) {
+		return number(column).shortValue();
+	}
+	
+	@Override
+	public int getInt(int column) {
+		return number(column).intValue();
+	}
+	
+	@Override
+	public long getLong(int column) {
+		return number(column).longValue();
+	}
+	
+	@Override
+	public float getFloat(int column) {
+		return number(column).floatValue();
+	}
+	
+	@Override
+	public double getDouble(int column) {
+		return number(column).doubleValue();
+	}
+	
+	@Override
+	public boolean isNull(int column) {
+		return (get(column) == null);
+	}
+	
+}
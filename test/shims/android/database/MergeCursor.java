@@ -0,0 +1,72 @@
+package android.database;
+
+/**
+ * Desktop shim of android.database.MergeCursor, which presents the rows of 
+ * several cursors one after another.  Columns are those of the first cursor.
+ */
+public class MergeCursor extends AbstractCursor {
+	
+	private final Cursor[] cursors;
+	private Cursor cursor;
+	
+	public MergeCursor(Cursor[] cursors) {
+		this.cursors = cursors;
+		this.cursor = cursors[0];
+	}
+	
+	@Override
+	public int getCount() {
+		int count = 0;
+		for (Cursor c : cursors) {
+			if (c != null) count += c.getCount();
+		}
+		return count;
+	}
+	
+	@Override
+	public boolean onMove(int oldPosition, int newPosition) {
+		int start = 0;
+		for (Cursor c : cursors) {
+			if (c == null) continue;
+			if (newPosition < start + c.getCount()) {
+				cursor = c;
+				return c.moveToPosition(newPosition - start);
+			}
+			start += c.getCount();
+		}
+		cursor = null;
+		return false;
+	}
+	
+	@Override
+	public String[] getColumnNames() {
+		for (Cursor c : cursors) {
+			if (c != null) return c.getColumnNames();
+		}
+		return new String[0];
+	}
+	
+	@Override
+	public String getString(int column) { return cursor.getString(column); }
+	@Override
+	public short getShort(int column) { return cursor.getShort(column); }
+	@Override
+	public int getInt(int column) { return cursor.getInt(column); }
+	@Override
+	public long getLong(int column) { return cursor.getLong(column); }
+	@Override
+	public float getFloat(int column) { return cursor.getFloat(column); }
+	@Override
+	public double getDouble(int column) { return cursor.getDouble(column); }
+	@Override
+	public boolean isNull(int column) { return cursor.isNull(column); }
+	
+	@Override
+	public void close() {
+		for (Cursor c : cursors) {
+			if (c != null) c.close();
+		}
+		super.close();
+	}
+	
+}
@@ -0,0 +1,21 @@
+package android.database;
+
+/**
+ * Desktop shim of android.database.SQLException.
+ */
+public class SQLException extends RuntimeException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public SQLException() {
+	}
+	
+	public SQLException(String error) {
+		super(error);
+	}
+	
+	public SQLException(String error, Throwable cause) {
+		super(error, cause);
+	}
+	
+}
@@ -0,0 +1,432 @@
+package android.database.sqlite;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+/**
+ * Desktop shim of android.database.sqlite.SQLiteDatabase, over a JDBC connection
+ * to SQLite (such as sqlite-jdbc on the class path).  Transactions nest as on 
+ * Android: the outermost transaction commits only if every nested transaction 
+ * was marked successful.  Queries are read fully into a {@link MatrixCursor}.
+ */
+public final class SQLiteDatabase {
+	
+	public static final int OPEN_READWRITE = 0x00000000;
+	public static final int OPEN_READONLY = 0x00000001;
+	public static final int NO_LOCALIZED_COLLATORS = 0x00000010;
+	public static final int CREATE_IF_NECESSARY = 0x10000000;
+	public static final int ENABLE_WRITE_AHEAD_LOGGING = 0x20000000;
+	
+	public interface CursorFactory {
+	}
+	
+	private static volatile String lastQuery;
+	private static volatile String[] lastQueryArgs;
+	private static final AtomicInteger commits = new AtomicInteger();
+	
+	private final String path;
+	private final boolean readOnly;
+	private Connection connection;
+	private int transactionDepth = 0;
+	private boolean transactionFailed = false;
+	private boolean transactionSuccessful = false;
+	
+	private SQLiteDatabase(String path, int flags) {
+		this.path = path;
+		this.readOnly = ((flags & OPEN_READONLY) != 0);
+		final Properties properties = new Properties();
+		if (readOnly) {
+			properties.setProperty("open_mode", "1");
+		}
+		try {
+			connection = DriverManager.getConnection("jdbc:sqlite:" + 
+					((path == null) ? ":memory:" : path), properties);
+		}
+		catch (SQLException e) {
+			throw new SQLiteException("open " + path + " failed: " + e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Check if a JDBC driver for SQLite is available, so that tests which need a
+	 * database can be skipped without one.
+	 * 
+	 * @return    true if databases can be opened
+	 */
+	public static boolean isAvailable() {
+		try {
+			DriverManager.getDriver("jdbc:sqlite::memory:");
+			return true;
+		}
+		catch (SQLException e) {
+			return false;
+		}
+	}
+	
+	public static SQLiteDatabase openDatabase(String path, CursorFactory factory, int flags) {
+		return new SQLiteDatabase(path, flags);
+	}
+	
+	public static SQLiteDatabase openOrCreateDatabase(String path, CursorFactory factory) {
+		return new SQLiteDatabase(path, CREATE_IF_NECESSARY);
+	}
+	
+	public static SQLiteDatabase create(CursorFactory factory) {
+		return new SQLiteDatabase(null, CREATE_IF_NECESSARY);
+	}
+	
+	static SQLiteException wrap(String sql, SQLException e) {
+		return new SQLiteException(e.getMessage() + ", while compiling: " + sql, e);
+	}
+	
+	/**
+	 * JDBC connection of database, for tests which inspect it directly.
+	 */
+	public synchronized Connection getConnection() {
+		return connection;
+	}
+	
+	public String getPath() {
+		return path;
+	}
+	
+	public synchronized boolean isOpen() {
+		return (connection != null);
+	}
+	
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+	
+	public synchronized void close() {
+		if (connection == null) return;
+		try {
+			connection.close();
+		}
+		catch (SQLException e) {
+			throw wrap("close", e);
+		}
+		connection = null;
+	}
+	
+	public synchronized void execSQL(String sql) {
+		try {
+			final Statement statement = connection.createStatement();
+			try {
+				statement.execute(sql);
+			}
+			finally {
+				statement.close();
+			}
+		}
+		catch (SQLException e) {
+			throw wrap(sql, e);
+		}
+	}
+	
+	public synchronized void execSQL(String sql, Object[] bindArgs) {
+		try {
+			final PreparedStatement statement = connection.prepareStatement(sql);
+			try {
+				for (int i = 0; i < bindArgs.length; i++) {
+					statement.setObject(i + 1, bindArgs[i]);
+				}
+				statement.execute();
+			}
+			finally {
+				statement.close();
+			}
+		}
+		catch (SQLException e) {
+			throw wrap(sql, e);
+		}
+	}
+	
+	/**
+	 * SQL of the last query run by any database, so that tests can examine the 
+	 * query plan of queries built by the app.
+	 */
+	public static String getLastQuery() {
+		return lastQuery;
+	}
+	
+	/**
+	 * Arguments of the last query run by any database.
+	 */
+	public static String[] getLastQueryArgs() {
+		return lastQueryArgs;
+	}
+	
+	/**
+	 * Commits of any database so far: outermost transactions which commit, and 
+	 * inserts run outside of a transaction, which SQLite commits by themselves.
+	 */
+	public static int getCommitCount() {
+		return commits.get();
+	}
+	
+	public synchronized Cursor rawQuery(String sql, String[] selectionArgs) {
+		lastQuery = sql;
+		lastQueryArgs = selectionArgs;
+		try {
+			final PreparedStatement statement = connection.prepareStatement(sql);
+			try {
+				if (selectionArgs != null) {
+					for (int i = 0; i < selectionArgs.length; i++) {
+						statement.setString(i + 1, selectionArgs[i]);
+					}
+				}
+				return toCursor(statement.executeQuery());
+			}
+			finally {
+				statement.close();
+			}
+		}
+		catch (SQLException e) {
+			throw wrap(sql, e);
+		}
+	}
+	
+	private static Cursor toCursor(ResultSet result) throws SQLException {
+		try {
+			final ResultSetMetaData meta = result.getMetaData();
+			final String[] columns = new String[meta.getColumnCount()];
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = meta.getColumnLabel(i + 1);
+			}
+			final MatrixCursor cursor = new MatrixCursor(columns);
+			final Object[] row = new Object[columns.length];
+			while (result.next()) {
+				for (int i = 0; i < columns.length; i++) {
+					row[i] = result.getObject(i + 1);
+				}
+				cursor.addRow(row);
+			}
+			return cursor;
+		}
+		finally {
+			result.close();
+		}
+	}
+	
+	public Cursor query(String table, String[] columns, String selection, 
+			String[] selectionArgs, String groupBy, String having, String orderBy) {
+		return query(table, columns, selection, selectionArgs, groupBy, having, orderBy, null);
+	}
+	
+	public Cursor query(String table, String[] columns, String selection, 
+			String[] selectionArgs, String groupBy, String having, String orderBy, 
+			String limit) {
+		return rawQuery(SQLiteQueryBuilder.buildQueryString(false, table, columns, 
+				selection, groupBy, having, orderBy, limit), selectionArgs);
+	}
+	
+	public long insert(String table, String nullColumnHack, ContentValues values) {
+		try {
+			return insertWithOnConflict(table, "INSERT", values);
+		}
+		catch (SQLiteException e) {
+			return -1;
+		}
+	}
+	
+	public long insertOrThrow(String table, String nullColumnHack, ContentValues values) {
+		return insertWithOnConflict(table, "INSERT", values);
+	}
+	
+	public long replace(String table, String nullColumnHack, ContentValues values) {
+		try {
+			return insertWithOnConflict(table, "INSERT OR REPLACE", values);
+		}
+		catch (SQLiteException e) {
+			return -1;
+		}
+	}
+	
+	private synchronized long insertWithOnConflict(String table, String verb, 
+			ContentValues values) {
+		final StringBuilder sql = new StringBuilder(verb).append(" INTO ").append(table);
+		final StringBuilder params = new StringBuilder();
+		final Object[] args = new Object[values.size()];
+		int i = 0;
+		for (Map.Entry<String, Object> entry : values.valueSet()) {
+			sql.append((i == 0) ? " (" : ", ").append(entry.getKey());
+			params.append((i == 0) ? "?" : ", ?");
+			args[i++] = entry.getValue();
+		}
+		sql.append(") VALUES (").append(params).append(')');
+		final SQLiteStatement statement = compileStatement(sql.toString());
+		try {
+			for (i = 0; i < args.length; i++) {
+				statement.bindObject(i + 1, args[i]);
+			}
+			final long rowId = statement.executeInsert();
+			if (transactionDepth == 0) {
+				commits.incrementAndGet();
+			}
+			return rowId;
+		}
+		finally {
+			statement.close();
+		}
+	}
+	
+	public synchronized int update(String table, ContentValues values, String whereClause, 
+			String[] whereArgs) {
+		final StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+		final Object[] args = new Object[values.size()];
+		int i = 0;
+		for (Map.Entry<String, Object> entry : values.valueSet()) {
+			sql.append((i == 0) ? "" : ", ").append(entry.getKey()).append(" = ?");
+			args[i++] = entry.getValue();
+		}
+		if (whereClause != null) {
+			sql.append(" WHERE ").append(whereClause);
+		}
+		final SQLiteStatement statement = compileStatement(sql.toString());
+		try {
+			for (i = 0; i < args.length; i++) {
+				statement.bindObject(i + 1, args[i]);
+			}
+			if (whereArgs != null) {
+				for (int w = 0; w < whereArgs.length; w++) {
+					statement.bindString(args.length + w + 1, whereArgs[w]);
+				}
+			}
+			return statement.executeUpdateDelete();
+		}
+		finally {
+			statement.close();
+		}
+	}
+	
+	public synchronized int delete(String table, String whereClause, String[] whereArgs) {
+		final SQLiteStatement statement = compileStatement("DELETE FROM " + table + 
+				((whereClause == null) ? "" : " WHERE " + whereClause));
+		try {
+			if (whereArgs != null) {
+				for (int i = 0; i < whereArgs.length; i++) {
+					statement.bindString(i + 1, whereArgs[i]);
+				}
+			}
+			return statement.executeUpdateDelete();
+		}
+		finally {
+			statement.close();
+		}
+	}
+	
+	public synchronized SQLiteStatement compileStatement(String sql) {
+		try {
+			return new SQLiteStatement(this, sql, connection.prepareStatement(sql));
+		}
+		catch (SQLException e) {
+			throw wrap(sql, e);
+		}
+	}
+	
+	synchronized long lastInsertRowId() {
+		try {
+			final Statement statement = connection.createStatement();
+			try {
+				final ResultSet result = statement.executeQuery("SELECT last_insert_rowid()");
+				return result.next() ? result.getLong(1) : -1;
+			}
+			finally {
+				statement.close();
+			}
+		}
+		catch (SQLException e) {
+			throw wrap("last_insert_rowid", e);
+		}
+	}
+	
+	public void beginTransaction() {
+		begin("BEGIN EXCLUSIVE");
+	}
+	
+	public void beginTransactionNonExclusive() {
+		begin("BEGIN IMMEDIATE");
+	}
+	
+	private synchronized void begin(String sql) {
+		if (transactionDepth == 0) {
+			execSQL(sql);
+			transactionFailed = false;
+		}
+		transactionSuccessful = false;
+		transactionDepth++;
+	}
+	
+	public synchronized void setTransactionSuccessful() {
+		if (transactionDepth == 0) {
+			throw new IllegalStateException("no transaction pending");
+		}
+		transactionSuccessful = true;
+	}
+	
+	public synchronized void endTransaction() {
+		if (transactionDepth == 0) {
+			throw new IllegalStateException("no transaction pending");
+		}
+		if (!transactionSuccessful) {
+			transactionFailed = true;
+		}
+		transactionSuccessful = false;
+		transactionDepth--;
+		if (transactionDepth == 0) {
+			execSQL(transactionFailed ? "ROLLBACK" : "COMMIT");
+			if (!transactionFailed) {
+				commits.incrementAndGet();
+			}
+		}
+	}
+	
+	public synchronized boolean inTransaction() {
+		return (transactionDepth > 0);
+	}
+	
+	public boolean enableWriteAheadLogging() {
+		if (path == null) return false;
+		execSQL("PRAGMA journal_mode = WAL");
+		return true;
+	}
+	
+	public void setMaxSqlCacheSize(int cacheSize) {
+	}
+	
+	public int getVersion() {
+		return (int) longForQuery("PRAGMA user_version");
+	}
+	
+	public void setVersion(int version) {
+		execSQL("PRAGMA user_version = " + version);
+	}
+	
+	public long getPageSize() {
+		return longForQuery("PRAGMA page_size");
+	}
+	
+	private long longForQuery(String sql) {
+		final SQLiteStatement statement = compileStatement(sql);
+		try {
+			return statement.simpleQueryForLong();
+		}
+		finally {
+			statement.close();
+		}
+	}
+	
+}
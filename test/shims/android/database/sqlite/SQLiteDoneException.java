@@ -0,0 +1,13 @@
+package android.database.sqlite;
+
+/**
+ * Desktop shim of android.database.sqlite.SQLiteDoneException.
+ */
+public class SQLiteDoneException extends SQLiteException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public SQLiteDoneException() {
+	}
+	
+}
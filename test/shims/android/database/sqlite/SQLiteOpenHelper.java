@@ -0,0 +1,78 @@
+package android.database.sqlite;
+
+import android.content.Context;
+
+/**
+ * Desktop shim of android.database.sqlite.SQLiteOpenHelper.  The database is 
+ * created at {@link Context#getDatabasePath(String)}, or in memory if name is null.
+ */
+public abstract class SQLiteOpenHelper {
+	
+	private final Context context;
+	private final String name;
+	private final int version;
+	private SQLiteDatabase database;
+	
+	public SQLiteOpenHelper(Context context, String name, SQLiteDatabase.CursorFactory factory,
+			int version) {
+		this.context = context;
+		this.name = name;
+		this.version = version;
+	}
+	
+	public String getDatabaseName() {
+		return name;
+	}
+	
+	public synchronized SQLiteDatabase getWritableDatabase() {
+		if ((database != null) && database.isOpen()) {
+			return database;
+		}
+		final SQLiteDatabase db = SQLiteDatabase.openDatabase((name == null) ? null : 
+			context.getDatabasePath(name).getPath(), null, 
+			SQLiteDatabase.CREATE_IF_NECESSARY);
+		onConfigure(db);
+		final int current = db.getVersion();
+		if (current != version) {
+			db.beginTransaction();
+			try {
+				if (current == 0) {
+					onCreate(db);
+				}
+				else {
+					onUpgrade(db, current, version);
+				}
+				db.setVersion(version);
+				db.setTransactionSuccessful();
+			}
+			finally {
+				db.endTransaction();
+			}
+		}
+		onOpen(db);
+		database = db;
+		return db;
+	}
+	
+	public SQLiteDatabase getReadableDatabase() {
+		return getWritableDatabase();
+	}
+	
+	public synchronized void close() {
+		if (database != null) {
+			database.close();
+			database = null;
+		}
+	}
+	
+	public void onConfigure(SQLiteDatabase db) {
+	}
+	
+	public abstract void onCreate(SQLiteDatabase db);
+	
+	public abstract void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion);
+	
+	public void onOpen(SQLiteDatabase db) {
+	}
+	
+}
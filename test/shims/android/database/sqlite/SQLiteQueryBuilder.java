@@ -0,0 +1,90 @@
+package android.database.sqlite;
+
+import android.database.Cursor;
+
+/**
+ * Desktop shim of android.database.sqlite.SQLiteQueryBuilder, building the same
+ * SELECT statements as the Android class.
+ */
+public class SQLiteQueryBuilder {
+	
+	private String tables = "";
+	private StringBuilder where = null;
+	
+	public void setTables(String inTables) {
+		tables = inTables;
+	}
+	
+	public String getTables() {
+		return tables;
+	}
+	
+	public void appendWhere(CharSequence inWhere) {
+		if (where == null) {
+			where = new StringBuilder(inWhere.length() + 16);
+		}
+		where.append(inWhere);
+	}
+	
+	public static String buildQueryString(boolean distinct, String tables, String[] columns,
+			String where, String groupBy, String having, String orderBy, String limit) {
+		final StringBuilder query = new StringBuilder(120);
+		query.append("SELECT ");
+		if (distinct) {
+			query.append("DISTINCT ");
+		}
+		if ((columns != null) && (columns.length > 0)) {
+			for (int i = 0; i < columns.length; i++) {
+				query.append((i == 0) ? "" : ", ").append(columns[i]);
+			}
+		}
+		else {
+			query.append('*');
+		}
+		query.append(" FROM ").append(tables);
+		appendClause(query, " WHERE ", where);
+		appendClause(query, " GROUP BY ", groupBy);
+		appendClause(query, " HAVING ", having);
+		appendClause(query, " ORDER BY ", orderBy);
+		appendClause(query, " LIMIT ", limit);
+		return query.toString();
+	}
+	
+	private static void appendClause(StringBuilder query, String name, String clause) {
+		if ((clause != null) && (clause.length() > 0)) {
+			query.append(name).append(clause);
+		}
+	}
+	
+	public String buildQuery(String[] projectionIn, String selection, String groupBy, 
+			String having, String sortOrder, String limit) {
+		final boolean hasWhere = (where != null) && (where.length() > 0);
+		final boolean hasSelection = (selection != null) && (selection.length() > 0);
+		String clause = null;
+		if (hasWhere && hasSelection) {
+			clause = "(" + where + ") AND (" + selection + ")";
+		}
+		else if (hasWhere) {
+			clause = "(" + where + ")";
+		}
+		else if (hasSelection) {
+			clause = "(" + selection + ")";
+		}
+		return buildQueryString(false, tables, projectionIn, clause, groupBy, having, 
+				sortOrder, limit);
+	}
+	
+	public Cursor query(SQLiteDatabase db, String[] projectionIn, String selection, 
+			String[] selectionArgs, String groupBy, String having, String sortOrder) {
+		return query(db, projectionIn, selection, selectionArgs, groupBy, having, sortOrder, 
+				null);
+	}
+	
+	public Cursor query(SQLiteDatabase db, String[] projectionIn, String selection, 
+			String[] selectionArgs, String groupBy, String having, String sortOrder, 
+			String limit) {
+		return db.rawQuery(buildQuery(projectionIn, selection, groupBy, having, sortOrder, 
+				limit), selectionArgs);
+	}
+	
+}
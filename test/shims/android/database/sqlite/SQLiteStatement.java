@@ -0,0 +1,167 @@
+package android.database.sqlite;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Desktop shim of android.database.sqlite.SQLiteStatement, over a JDBC prepared
+ * statement.  Bindings are kept between executions, as on Android.
+ */
+public final class SQLiteStatement {
+	
+	private final SQLiteDatabase database;
+	private final String sql;
+	private final PreparedStatement statement;
+	
+	SQLiteStatement(SQLiteDatabase database, String sql, PreparedStatement statement) {
+		this.database = database;
+		this.sql = sql;
+		this.statement = statement;
+	}
+	
+	public void bindNull(int index) {
+		try {
+			statement.setNull(index, Types.NULL);
+		}
+		catch (SQLException e) {
+			throw SQLiteDatabase.wrap(sql, e);
+		}
+	}
+	
+	public void bindLong(int index, long value) {
+		try {
+			statement.setLong(index, value);
+		}
+		catch (SQLException e) {
+			throw SQLiteDatabase.wrap(sql, e);
+		}
+	}
+	
+	public void bindDouble(int index, double value) {
+		try {
+			statement.setDouble(index, value);
+		}
+		catch (SQLException e) {
+			throw SQLiteDatabase.wrap(sql, e);
+		}
+	}
+	
+	public void bindString(int index, String value) {
+		try {
+			statement.setString(index, value);
+		}
+		catch (SQLException e) {
+			throw SQLiteDatabase.wrap(sql, e);
+		}
+	}
+	
+	public void bindBlob(int index, byte[] value) {
+		try {
+			statement.setBytes(index, value);
+		}
+		catch (SQLException e) {
+			throw SQLiteDatabase.wrap(sql, e);
+		}
+	}
+	
+	void bindObject(int index, Object value) {
+		if (value == null) bindNull(index);
+		else if ((value instanceof Float) || (value instanceof Double)) {
+			bindDouble(index, ((Number) value).doubleValue());
+		}
+		else if (value instanceof Number) bindLong(index, ((Number) value).longValue());
+		else if (value instanceof Boolean) bindLong(index, ((Boolean) value) ? 1 : 0);
+		else if (value instanceof byte[]) bindBlob(index, (byte[]) value);
+		else bindString(index, value.toString());
+	}
+	
+	public void clearBindings() {
+		try {
+			statement.clearParameters();
+		}
+		catch (SQLException e) {
+			throw SQLiteDatabase.wrap(sql, e);
+		}
+	}
+	
+	public void execute() {
+		synchronized (database) {
+			try {
+				statement.execute();
+			}
+			catch (SQLException e) {
+				throw SQLiteDatabase.wrap(sql, e);
+			}
+		}
+	}
+	
+	public int executeUpdateDelete() {
+		synchronized (database) {
+			try {
+				return statement.executeUpdate();
+			}
+			catch (SQLException e) {
+				throw SQLiteDatabase.wrap(sql, e);
+			}
+		}
+	}
+	
+	public long executeInsert() {
+		synchronized (database) {
+			try {
+				return (statement.executeUpdate() > 0) ? database.lastInsertRowId() : -1;
+			}
+			catch (SQLException e) {
+				throw SQLiteDatabase.wrap(sql, e);
+			}
+		}
+	}
+	
+	public long simpleQueryForLong() {
+		synchronized (database) {
+			try {
+				final ResultSet result = statement.executeQuery();
+				try {
+					if (!result.next()) throw new SQLiteDoneException();
+					return result.getLong(1);
+				}
+				finally {
+					result.close();
+				}
+			}
+			catch (SQLException e) {
+				throw SQLiteDatabase.wrap(sql, e);
+			}
+		}
+	}
+	
+	public String simpleQueryForString() {
+		synchronized (database) {
+			try {
+				final ResultSet result = statement.executeQuery();
+				try {
+					if (!result.next()) throw new SQLiteDoneException();
+					return result.getString(1);
+				}
+				finally {
+					result.close();
+				}
+			}
+			catch (SQLException e) {
+				throw SQLiteDatabase.wrap(sql, e);
+			}
+		}
+	}
+	
+	public void close() {
+		try {
+			statement.close();
+		}
+		catch (SQLException e) {
+			throw SQLiteDatabase.wrap(sql, e);
+		}
+	}
+	
+}
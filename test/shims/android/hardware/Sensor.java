@@ -0,0 +1,29 @@
+package android.hardware;
+
+/**
+ * Desktop shim of android.hardware.Sensor.
+ */
+public final class Sensor {
+	
+	public static final int TYPE_ACCELEROMETER = 1;
+	public static final int TYPE_MAGNETIC_FIELD = 2;
+	public static final int TYPE_ORIENTATION = 3;
+	public static final int TYPE_GYROSCOPE = 4;
+	public static final int TYPE_LIGHT = 5;
+	public static final int TYPE_PRESSURE = 6;
+	public static final int TYPE_TEMPERATURE = 7;
+	public static final int TYPE_PROXIMITY = 8;
+	public static final int TYPE_LINEAR_ACCELERATION = 10;
+	public static final int TYPE_RELATIVE_HUMIDITY = 12;
+	public static final int TYPE_AMBIENT_TEMPERATURE = 13;
+	
+	public String getName() { return ""; }
+	public String getVendor() { return ""; }
+	public int getType() { return 0; }
+	public int getVersion() { return 0; }
+	public int getMinDelay() { return 0; }
+	public float getPower() { return 0; }
+	public float getMaximumRange() { return 0; }
+	public float getResolution() { return 0; }
+	
+}
@@ -0,0 +1,13 @@
+package android.hardware;
+
+/**
+ * Desktop shim of android.hardware.SensorEvent.
+ */
+public class SensorEvent {
+	
+	public final float[] values = new float[3];
+	public Sensor sensor;
+	public int accuracy;
+	public long timestamp;
+	
+}
@@ -0,0 +1,11 @@
+package android.hardware;
+
+/**
+ * Desktop shim of android.hardware.SensorEventListener.
+ */
+public interface SensorEventListener {
+	
+	void onSensorChanged(SensorEvent event);
+	void onAccuracyChanged(Sensor sensor, int accuracy);
+	
+}
@@ -0,0 +1,41 @@
+package android.hardware;
+
+import android.os.Handler;
+
+/**
+ * Desktop shim of android.hardware.SensorManager, which has no sensors.
+ */
+public class SensorManager {
+	
+	public static final int SENSOR_DELAY_FASTEST = 0;
+	public static final int SENSOR_DELAY_GAME = 1;
+	public static final int SENSOR_DELAY_UI = 2;
+	public static final int SENSOR_DELAY_NORMAL = 3;
+	
+	public Sensor getDefaultSensor(int type) { return null; }
+	
+	public boolean registerListener(SensorEventListener listener, Sensor sensor, int rate) {
+		return false;
+	}
+	
+	public boolean registerListener(SensorEventListener listener, Sensor sensor, int rate, 
+			Handler handler) {
+		return false;
+	}
+	
+	public void unregisterListener(SensorEventListener listener) {
+	}
+	
+	public void unregisterListener(SensorEventListener listener, Sensor sensor) {
+	}
+	
+	public static boolean getRotationMatrix(float[] R, float[] I, float[] gravity, 
+			float[] geomagnetic) {
+		return false;
+	}
+	
+	public static float[] getOrientation(float[] R, float[] values) {
+		return values;
+	}
+	
+}
@@ -0,0 +1,32 @@
+package android.location;
+
+/**
+ * Desktop shim of android.location.Criteria.
+ */
+public class Criteria {
+	
+	public static final int ACCURACY_FINE = 1;
+	public static final int ACCURACY_COARSE = 2;
+	public static final int POWER_LOW = 1;
+	public static final int POWER_MEDIUM = 2;
+	public static final int POWER_HIGH = 3;
+	
+	public void setAccuracy(int accuracy) {
+	}
+	
+	public void setPowerRequirement(int level) {
+	}
+	
+	public void setSpeedRequired(boolean speedRequired) {
+	}
+	
+	public void setAltitudeRequired(boolean altitudeRequired) {
+	}
+	
+	public void setBearingRequired(boolean bearingRequired) {
+	}
+	
+	public void setCostAllowed(boolean costAllowed) {
+	}
+	
+}
@@ -0,0 +1,10 @@
+package android.location;
+
+/**
+ * Desktop shim of android.location.GpsStatus.
+ */
+public final class GpsStatus {
+	
+	public int getTimeToFirstFix() { return 0; }
+	
+}
@@ -0,0 +1,29 @@
+package android.location;
+
+/**
+ * Desktop shim of android.location.Location, at latitude and longitude 0.
+ */
+public class Location {
+	
+	private final String provider;
+	
+	public Location(String provider) {
+		this.provider = provider;
+	}
+	
+	public String getProvider() { return provider; }
+	public double getLatitude() { return 0; }
+	public double getLongitude() { return 0; }
+	public double getAltitude() { return 0; }
+	public float getSpeed() { return 0; }
+	public float getBearing() { return 0; }
+	public boolean hasAccuracy() { return false; }
+	public float getAccuracy() { return 0; }
+	public long getTime() { return 0; }
+	public float distanceTo(Location dest) { return 0; }
+	
+	public static void distanceBetween(double startLatitude, double startLongitude, 
+			double endLatitude, double endLongitude, float[] results) {
+	}
+	
+}
@@ -0,0 +1,8 @@
+package android.location;
+
+/**
+ * Desktop shim of android.location.LocationListener.
+ */
+public interface LocationListener {
+	
+}
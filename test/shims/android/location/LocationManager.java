@@ -0,0 +1,42 @@
+package android.location;
+
+import java.util.List;
+
+import android.app.PendingIntent;
+import android.os.Looper;
+
+/**
+ * Desktop shim of android.location.LocationManager, which has no providers.
+ */
+public class LocationManager {
+	
+	public static final String GPS_PROVIDER = "gps";
+	public static final String NETWORK_PROVIDER = "network";
+	public static final String PASSIVE_PROVIDER = "passive";
+	public static final String KEY_PROXIMITY_ENTERING = "entering";
+	
+	public String getBestProvider(Criteria criteria, boolean enabledOnly) { return null; }
+	public List<String> getProviders(boolean enabledOnly) { return null; }
+	public LocationProvider getProvider(String name) { return null; }
+	public boolean isProviderEnabled(String provider) { return false; }
+	public Location getLastKnownLocation(String provider) { return null; }
+	public GpsStatus getGpsStatus(GpsStatus status) { return null; }
+	
+	public void requestLocationUpdates(String provider, long minTime, float minDistance, 
+			LocationListener listener, Looper looper) {
+	}
+	
+	public void requestSingleUpdate(String provider, LocationListener listener, Looper looper) {
+	}
+	
+	public void removeUpdates(LocationListener listener) {
+	}
+	
+	public void addProximityAlert(double latitude, double longitude, float radius, 
+			long expiration, PendingIntent intent) {
+	}
+	
+	public void removeProximityAlert(PendingIntent intent) {
+	}
+	
+}
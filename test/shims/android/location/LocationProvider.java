@@ -0,0 +1,15 @@
+package android.location;
+
+/**
+ * Desktop shim of android.location.LocationProvider.
+ */
+public abstract class LocationProvider {
+	
+	public static final int OUT_OF_SERVICE = 0;
+	public static final int TEMPORARILY_UNAVAILABLE = 1;
+	public static final int AVAILABLE = 2;
+	
+	public String getName() { return null; }
+	public int getPowerRequirement() { return 0; }
+	
+}
@@ -0,0 +1,16 @@
+package android.net;
+
+/**
+ * Desktop shim of android.net.ConnectivityManager, with no active network.
+ */
+public class ConnectivityManager {
+	
+	public static final String CONNECTIVITY_ACTION = "android.net.conn.CONNECTIVITY_CHANGE";
+	public static final String EXTRA_NO_CONNECTIVITY = "noConnectivity";
+	public static final int TYPE_MOBILE = 0;
+	public static final int TYPE_WIFI = 1;
+	
+	public NetworkInfo getActiveNetworkInfo() { return null; }
+	public NetworkInfo getNetworkInfo(int networkType) { return null; }
+	
+}
@@ -0,0 +1,16 @@
+package android.net;
+
+/**
+ * Desktop shim of android.net.NetworkInfo.
+ */
+public class NetworkInfo {
+	
+	public int getType() { return 0; }
+	public String getTypeName() { return null; }
+	public String getSubtypeName() { return null; }
+	public boolean isAvailable() { return false; }
+	public boolean isConnected() { return false; }
+	public boolean isConnectedOrConnecting() { return false; }
+	public boolean isRoaming() { return false; }
+	
+}
@@ -0,0 +1,21 @@
+package android.net;
+
+/**
+ * Desktop shim of android.net.TrafficStats, which counts no traffic.
+ */
+public class TrafficStats {
+	
+	public static final int UNSUPPORTED = -1;
+	
+	public static long getMobileRxBytes() { return 0; }
+	public static long getMobileTxBytes() { return 0; }
+	public static long getTotalRxBytes() { return 0; }
+	public static long getTotalTxBytes() { return 0; }
+	public static long getMobileRxPackets() { return 0; }
+	public static long getMobileTxPackets() { return 0; }
+	public static long getTotalRxPackets() { return 0; }
+	public static long getTotalTxPackets() { return 0; }
+	public static long getUidRxBytes(int uid) { return 0; }
+	public static long getUidTxBytes(int uid) { return 0; }
+	
+}
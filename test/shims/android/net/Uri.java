@@ -0,0 +1,134 @@
+package android.net;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Desktop shim of android.net.Uri, for hierarchical URIs such as 
+ * content://authority/path/segments?key=value.
+ */
+public final class Uri {
+	
+	private final String uri;
+	private final String scheme;
+	private final String authority;
+	private final List<String> segments;
+	private final String query;
+	
+	private Uri(String uri) {
+		this.uri = uri;
+		String rest = uri;
+		int index = rest.indexOf("://");
+		if (index >= 0) {
+			scheme = rest.substring(0, index);
+			rest = rest.substring(index + 3);
+			index = rest.indexOf('/');
+			authority = (index < 0) ? rest : rest.substring(0, index);
+			rest = (index < 0) ? "" : rest.substring(index);
+		}
+		else {
+			scheme = null;
+			authority = null;
+		}
+		index = rest.indexOf('?');
+		query = (index < 0) ? null : rest.substring(index + 1);
+		rest = (index < 0) ? rest : rest.substring(0, index);
+		final List<String> list = new ArrayList<String>();
+		for (String segment : rest.split("/")) {
+			if (segment.length() > 0) list.add(segment);
+		}
+		segments = Collections.unmodifiableList(list);
+	}
+	
+	public static Uri parse(String uriString) {
+		return new Uri(uriString);
+	}
+	
+	public static Uri withAppendedPath(Uri baseUri, String pathSegment) {
+		return baseUri.buildUpon().appendPath(pathSegment).build();
+	}
+	
+	public String getScheme() {
+		return scheme;
+	}
+	
+	public String getAuthority() {
+		return authority;
+	}
+	
+	public String getPath() {
+		final StringBuilder path = new StringBuilder();
+		for (String segment : segments) {
+			path.append('/').append(segment);
+		}
+		return path.toString();
+	}
+	
+	public List<String> getPathSegments() {
+		return segments;
+	}
+	
+	public String getLastPathSegment() {
+		return segments.isEmpty() ? null : segments.get(segments.size() - 1);
+	}
+	
+	public String getQueryParameter(String key) {
+		if (query == null) return null;
+		for (String pair : query.split("&")) {
+			final int index = pair.indexOf('=');
+			if ((index >= 0) && pair.substring(0, index).equals(key)) {
+				return pair.substring(index + 1);
+			}
+		}
+		return null;
+	}
+	
+	public Builder buildUpon() {
+		return new Builder(this);
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		return (o instanceof Uri) && ((Uri) o).uri.equals(uri);
+	}
+	
+	@Override
+	public int hashCode() {
+		return uri.hashCode();
+	}
+	
+	@Override
+	public String toString() {
+		return uri;
+	}
+	
+	public static final class Builder {
+		
+		private final StringBuilder path;
+		private final StringBuilder query;
+		
+		Builder(Uri uri) {
+			path = new StringBuilder(((uri.scheme == null) ? "" : uri.scheme + "://" + 
+					uri.authority) + uri.getPath());
+			query = new StringBuilder((uri.query == null) ? "" : uri.query);
+		}
+		
+		public Builder appendPath(String segment) {
+			path.append('/').append(segment);
+			return this;
+		}
+		
+		public Builder appendQueryParameter(String key, String value) {
+			if (query.length() > 0) query.append('&');
+			query.append(key).append('=').append(value);
+			return this;
+		}
+		
+		public Uri build() {
+			return new Uri((query.length() == 0) ? path.toString() : path + "?" + query);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,23 @@
+package android.os;
+
+/**
+ * Desktop shim of android.os.BatteryManager.
+ */
+public class BatteryManager {
+	
+	public static final String EXTRA_STATUS = "status";
+	public static final String EXTRA_HEALTH = "health";
+	public static final String EXTRA_PRESENT = "present";
+	public static final String EXTRA_LEVEL = "level";
+	public static final String EXTRA_SCALE = "scale";
+	public static final String EXTRA_PLUGGED = "plugged";
+	public static final String EXTRA_VOLTAGE = "voltage";
+	public static final String EXTRA_TEMPERATURE = "temperature";
+	public static final String EXTRA_TECHNOLOGY = "technology";
+	
+	public static final int BATTERY_STATUS_CHARGING = 2;
+	public static final int BATTERY_STATUS_FULL = 5;
+	public static final int BATTERY_PLUGGED_AC = 1;
+	public static final int BATTERY_PLUGGED_USB = 2;
+	
+}
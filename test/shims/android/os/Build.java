@@ -0,0 +1,25 @@
+package android.os;
+
+/**
+ * Desktop shim of android.os.Build.  The SDK level may be changed by tests, to 
+ * exercise paths for older platform releases.
+ */
+public class Build {
+	
+	public static final String MODEL = "desktop";
+	
+	public static class VERSION {
+		
+		public static int SDK_INT = 19;
+		
+	}
+	
+	public static class VERSION_CODES {
+		
+		public static final int ICE_CREAM_SANDWICH = 14;
+		public static final int JELLY_BEAN = 16;
+		public static final int KITKAT = 19;
+		
+	}
+	
+}
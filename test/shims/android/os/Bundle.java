@@ -0,0 +1,76 @@
+package android.os;
+
+import java.util.HashMap;
+
+/**
+ * Desktop shim of android.os.Bundle, backed by a map.
+ */
+public final class Bundle {
+	
+	private final HashMap<String, Object> map = new HashMap<String, Object>();
+	
+	public Bundle() {
+	}
+	
+	public Bundle(ClassLoader loader) {
+	}
+	
+	public void setClassLoader(ClassLoader loader) {
+	}
+	
+	public boolean containsKey(String key) {
+		return map.containsKey(key);
+	}
+	
+	public void putParcelable(String key, Parcelable value) {
+		map.put(key, value);
+	}
+	
+	@SuppressWarnings("unchecked")
+	public <T extends Parcelable> T getParcelable(String key) {
+		return (T) map.get(key);
+	}
+	
+	public void putInt(String key, int value) {
+		map.put(key, value);
+	}
+	
+	public int getInt(String key) {
+		final Object value = map.get(key);
+		return (value == null) ? 0 : (Integer) value;
+	}
+	
+	public void putLong(String key, long value) {
+		map.put(key, value);
+	}
+	
+	public long getLong(String key) {
+		final Object value = map.get(key);
+		return (value == null) ? 0 : (Long) value;
+	}
+	
+	public void putString(String key, String value) {
+		map.put(key, value);
+	}
+	
+	public String getString(String key) {
+		return (String) map.get(key);
+	}
+	
+	public void putLongArray(String key, long[] value) {
+		map.put(key, value);
+	}
+	
+	public long[] getLongArray(String key) {
+		return (long[]) map.get(key);
+	}
+	
+	public void putFloatArray(String key, float[] value) {
+		map.put(key, value);
+	}
+	
+	public float[] getFloatArray(String key) {
+		return (float[]) map.get(key);
+	}
+	
+}
@@ -0,0 +1,17 @@
+package android.os;
+
+/**
+ * Desktop shim of android.os.Debug.
+ */
+public final class Debug {
+	
+	public static class InstructionCount {
+		
+		public boolean resetAndStart() { return false; }
+		public boolean collect() { return false; }
+		public int globalTotal() { return 0; }
+		public int globalMethodInvocations() { return 0; }
+		
+	}
+	
+}
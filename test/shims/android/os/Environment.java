@@ -0,0 +1,23 @@
+package android.os;
+
+import java.io.File;
+
+/**
+ * Desktop shim of android.os.Environment, with no external storage.
+ */
+public class Environment {
+	
+	public static final String MEDIA_MOUNTED = "mounted";
+	public static final String MEDIA_MOUNTED_READ_ONLY = "mounted_ro";
+	public static final String MEDIA_REMOVED = "removed";
+	public static final String MEDIA_UNMOUNTED = "unmounted";
+	public static final String MEDIA_CHECKING = "checking";
+	public static final String MEDIA_NOFS = "nofs";
+	public static final String MEDIA_SHARED = "shared";
+	public static final String MEDIA_BAD_REMOVAL = "bad_removal";
+	public static final String MEDIA_UNMOUNTABLE = "unmountable";
+	
+	public static String getExternalStorageState() { return MEDIA_REMOVED; }
+	public static File getExternalStorageDirectory() { return null; }
+	
+}
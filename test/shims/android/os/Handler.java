@@ -0,0 +1,53 @@
+package android.os;
+
+/**
+ * Desktop shim of android.os.Handler.  Callbacks and messages are queued on the 
+ * {@link Looper} of the handler, and run when the test calls {@link Looper#runDue()}
+ * or {@link Looper#runAll()}.
+ */
+public class Handler {
+	
+	private final Looper looper;
+	
+	public Handler() {
+		this(Looper.getMainLooper());
+	}
+	
+	public Handler(Looper looper) {
+		this.looper = looper;
+	}
+	
+	public final Looper getLooper() {
+		return looper;
+	}
+	
+	public final boolean post(Runnable r) {
+		return looper.enqueue(this, r, SystemClock.uptimeMillis());
+	}
+	
+	public final boolean postAtTime(Runnable r, long uptimeMillis) {
+		return looper.enqueue(this, r, uptimeMillis);
+	}
+	
+	public final boolean postDelayed(Runnable r, long delayMillis) {
+		return looper.enqueue(this, r, SystemClock.uptimeMillis() + Math.max(0, delayMillis));
+	}
+	
+	public final void removeCallbacks(Runnable r) {
+		looper.remove(this, r);
+	}
+	
+	public final boolean sendMessage(final Message msg) {
+		msg.target = this;
+		return post(new Runnable() {
+			
+			public void run() {
+				handleMessage(msg);
+			}
+		});
+	}
+	
+	public void handleMessage(Message msg) {
+	}
+	
+}
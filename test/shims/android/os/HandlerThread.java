@@ -0,0 +1,40 @@
+package android.os;
+
+/**
+ * Desktop shim of android.os.HandlerThread.  No thread runs when started; 
+ * {@link #onLooperPrepared()} is called once, and callbacks posted to its 
+ * {@link Looper} run when a test drives the looper.
+ */
+public class HandlerThread extends Thread {
+	
+	private final Looper looper = new Looper(this);
+	private boolean prepared = false;
+	
+	public HandlerThread(String name) {
+		super(name);
+	}
+	
+	public HandlerThread(String name, int priority) {
+		super(name);
+	}
+	
+	@Override
+	public synchronized void start() {
+		if (prepared) return;
+		prepared = true;
+		onLooperPrepared();
+	}
+	
+	protected void onLooperPrepared() {
+	}
+	
+	public Looper getLooper() {
+		return looper;
+	}
+	
+	public boolean quit() {
+		looper.quit();
+		return true;
+	}
+	
+}
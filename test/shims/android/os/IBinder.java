@@ -0,0 +1,17 @@
+package android.os;
+
+/**
+ * Desktop shim of android.os.IBinder, with only the death notification used by
+ * streams of samples.
+ */
+public interface IBinder {
+	
+	public interface DeathRecipient {
+		public void binderDied();
+	}
+	
+	public void linkToDeath(DeathRecipient recipient, int flags) throws RemoteException;
+	
+	public boolean unlinkToDeath(DeathRecipient recipient, int flags);
+	
+}
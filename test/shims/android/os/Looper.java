@@ -0,0 +1,141 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Desktop shim of android.os.Looper.  A looper is a queue of callbacks ordered by
+ * time, which runs on the thread of the test when it calls {@link #runDue()}.
+ */
+public final class Looper {
+	
+	private static final Looper MAIN = new Looper();
+	
+	private static final class Entry {
+		final Handler handler;
+		final Runnable callback;
+		final long when;
+		
+		Entry(Handler handler, Runnable callback, long when) {
+			this.handler = handler;
+			this.callback = callback;
+			this.when = when;
+		}
+	}
+	
+	private final List<Entry> queue = new ArrayList<Entry>();
+	private final Thread thread;
+	
+	Looper() {
+		this(null);
+	}
+	
+	Looper(Thread thread) {
+		this.thread = thread;
+	}
+	
+	public static Looper getMainLooper() {
+		return MAIN;
+	}
+	
+	public static Looper myLooper() {
+		return MAIN;
+	}
+	
+	/**
+	 * Thread which created the looper, the thread of the test for the main looper.
+	 */
+	public Thread getThread() {
+		return (thread == null) ? Thread.currentThread() : thread;
+	}
+	
+	public void quit() {
+		synchronized (queue) {
+			queue.clear();
+		}
+	}
+	
+	boolean enqueue(Handler handler, Runnable callback, long when) {
+		synchronized (queue) {
+			int i = queue.size();
+			while ((i > 0) && (queue.get(i - 1).when > when)) {
+				i--;
+			}
+			queue.add(i, new Entry(handler, callback, when));
+		}
+		return true;
+	}
+	
+	void remove(Handler handler, Runnable callback) {
+		synchronized (queue) {
+			for (int i = queue.size() - 1; i >= 0; i--) {
+				final Entry entry = queue.get(i);
+				if ((entry.handler == handler) && (entry.callback == callback)) {
+					queue.remove(i);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Number of callbacks queued, including those not yet due.
+	 */
+	public int size() {
+		synchronized (queue) {
+			return queue.size();
+		}
+	}
+	
+	/**
+	 * Time of the earliest queued callback.
+	 * 
+	 * @return    uptime of earliest callback, Long.MAX_VALUE if queue is empty
+	 */
+	public long nextWhen() {
+		synchronized (queue) {
+			return queue.isEmpty() ? Long.MAX_VALUE : queue.get(0).when;
+		}
+	}
+	
+	/**
+	 * Run callbacks which are due at the current {@link SystemClock#uptimeMillis()},
+	 * including those they post which are due.
+	 * 
+	 * @return    number of callbacks run
+	 */
+	public int runDue() {
+		int count = 0;
+		while (true) {
+			final Entry entry;
+			synchronized (queue) {
+				if (queue.isEmpty() || (queue.get(0).when > SystemClock.uptimeMillis())) {
+					return count;
+				}
+				entry = queue.remove(0);
+			}
+			entry.callback.run();
+			count++;
+		}
+	}
+	
+	/**
+	 * Run all queued callbacks regardless of their time, until the queue is empty.
+	 * 
+	 * @return    number of callbacks run
+	 */
+	public int runAll() {
+		int count = 0;
+		while (true) {
+			final Entry entry;
+			synchronized (queue) {
+				if (queue.isEmpty()) {
+					return count;
+				}
+				entry = queue.remove(0);
+			}
+			entry.callback.run();
+			count++;
+		}
+	}
+	
+}
@@ -0,0 +1,72 @@
+package android.os;
+
+/**
+ * Desktop shim of android.os.Message.
+ */
+public final class Message {
+	
+	public int what;
+	public int arg1;
+	public int arg2;
+	public Object obj;
+	public Messenger replyTo;
+	Handler target;
+	private Bundle data;
+	
+	public static Message obtain() {
+		return new Message();
+	}
+	
+	public static Message obtain(Handler h, int what) {
+		final Message m = new Message();
+		m.target = h;
+		m.what = what;
+		return m;
+	}
+	
+	public static Message obtain(Handler h, int what, Object obj) {
+		final Message m = obtain(h, what);
+		m.obj = obj;
+		return m;
+	}
+	
+	public static Message obtain(Handler h, int what, int arg1, int arg2) {
+		final Message m = obtain(h, what);
+		m.arg1 = arg1;
+		m.arg2 = arg2;
+		return m;
+	}
+	
+	public static Message obtain(Handler h, int what, int arg1, int arg2, Object obj) {
+		final Message m = obtain(h, what, arg1, arg2);
+		m.obj = obj;
+		return m;
+	}
+	
+	public Handler getTarget() {
+		return target;
+	}
+	
+	public Bundle getData() {
+		if (data == null) {
+			data = new Bundle();
+		}
+		return data;
+	}
+	
+	public Bundle peekData() {
+		return data;
+	}
+	
+	public void setData(Bundle data) {
+		this.data = data;
+	}
+	
+	public void sendToTarget() {
+		target.sendMessage(this);
+	}
+	
+	public void recycle() {
+	}
+	
+}
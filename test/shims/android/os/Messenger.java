@@ -0,0 +1,26 @@
+package android.os;
+
+/**
+ * Desktop shim of android.os.Messenger, which delivers messages to the 
+ * {@link Handler#handleMessage(Message)} of its handler through the handler's 
+ * queue.  A messenger without a handler discards messages.
+ */
+public class Messenger {
+	
+	private final Handler target;
+	
+	public Messenger() {
+		this.target = null;
+	}
+	
+	public Messenger(Handler target) {
+		this.target = target;
+	}
+	
+	public void send(Message message) throws RemoteException {
+		if (target != null) {
+			target.sendMessage(message);
+		}
+	}
+	
+}
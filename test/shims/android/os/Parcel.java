@@ -0,0 +1,95 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Desktop shim of android.os.Parcel, which holds written values in order rather
+ * than marshalling them to bytes.
+ */
+public final class Parcel {
+	
+	private final List<Object> values = new ArrayList<Object>();
+	private int position = 0;
+	
+	private Parcel() {
+	}
+	
+	public static Parcel obtain() {
+		return new Parcel();
+	}
+	
+	public void recycle() {
+		values.clear();
+		position = 0;
+	}
+	
+	public int dataSize() {
+		return values.size();
+	}
+	
+	public void setDataPosition(int pos) {
+		position = pos;
+	}
+	
+	private Object next() {
+		return values.get(position++);
+	}
+	
+	public void writeInt(int value) {
+		values.add(value);
+	}
+	
+	public int readInt() {
+		return (Integer) next();
+	}
+	
+	public void writeLong(long value) {
+		values.add(value);
+	}
+	
+	public long readLong() {
+		return (Long) next();
+	}
+	
+	public void writeFloat(float value) {
+		values.add(value);
+	}
+	
+	public float readFloat() {
+		return (Float) next();
+	}
+	
+	public void writeString(String value) {
+		values.add(value);
+	}
+	
+	public String readString() {
+		return (String) next();
+	}
+	
+	public void writeIntArray(int[] value) {
+		values.add((value == null) ? null : value.clone());
+	}
+	
+	public int[] createIntArray() {
+		return (int[]) next();
+	}
+	
+	public void writeLongArray(long[] value) {
+		values.add((value == null) ? null : value.clone());
+	}
+	
+	public long[] createLongArray() {
+		return (long[]) next();
+	}
+	
+	public void writeFloatArray(float[] value) {
+		values.add((value == null) ? null : value.clone());
+	}
+	
+	public float[] createFloatArray() {
+		return (float[]) next();
+	}
+	
+}
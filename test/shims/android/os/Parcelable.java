@@ -0,0 +1,22 @@
+package android.os;
+
+/**
+ * Desktop shim of android.os.Parcelable.
+ */
+public interface Parcelable {
+	
+	int PARCELABLE_WRITE_RETURN_VALUE = 1;
+	
+	int describeContents();
+	
+	void writeToParcel(Parcel dest, int flags);
+	
+	public interface Creator<T> {
+		
+		T createFromParcel(Parcel source);
+		
+		T[] newArray(int size);
+		
+	}
+	
+}
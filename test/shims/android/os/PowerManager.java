@@ -0,0 +1,10 @@
+package android.os;
+
+/**
+ * Desktop shim of android.os.PowerManager.
+ */
+public final class PowerManager {
+	
+	public boolean isScreenOn() { return false; }
+	
+}
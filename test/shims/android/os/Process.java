@@ -0,0 +1,20 @@
+package android.os;
+
+/**
+ * Desktop shim of android.os.Process.  Thread priorities are ignored.
+ */
+public class Process {
+	
+	public static final int THREAD_PRIORITY_DEFAULT = 0;
+	public static final int THREAD_PRIORITY_LESS_FAVORABLE = 1;
+	public static final int THREAD_PRIORITY_MORE_FAVORABLE = -1;
+	public static final int THREAD_PRIORITY_FOREGROUND = -2;
+	public static final int THREAD_PRIORITY_BACKGROUND = 10;
+	
+	public static int myPid() { return 0; }
+	public static int myUid() { return 0; }
+	
+	public static void setThreadPriority(int priority) {
+	}
+	
+}
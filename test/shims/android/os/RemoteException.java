@@ -0,0 +1,10 @@
+package android.os;
+
+/**
+ * Desktop shim of android.os.RemoteException.
+ */
+public class RemoteException extends Exception {
+	
+	private static final long serialVersionUID = 1L;
+	
+}
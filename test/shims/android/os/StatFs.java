@@ -0,0 +1,16 @@
+package android.os;
+
+/**
+ * Desktop shim of android.os.StatFs, of an empty file system.
+ */
+public class StatFs {
+	
+	public StatFs(String path) {
+	}
+	
+	public int getBlockSize() { return 0; }
+	public int getBlockCount() { return 0; }
+	public int getFreeBlocks() { return 0; }
+	public int getAvailableBlocks() { return 0; }
+	
+}
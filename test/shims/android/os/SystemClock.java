@@ -0,0 +1,38 @@
+package android.os;
+
+/**
+ * Desktop shim of android.os.SystemClock.  Tests may replace the clock with a
+ * virtual one through {@link #setVirtualTime(long)}.
+ */
+public final class SystemClock {
+	
+	private static volatile long virtualTime = -1;
+	
+	/**
+	 * Use virtual clock, which only advances when set.
+	 * 
+	 * @param time    current virtual time in milliseconds, -1 to use the real clock
+	 */
+	public static void setVirtualTime(long time) {
+		virtualTime = time;
+	}
+	
+	public static long uptimeMillis() {
+		final long time = virtualTime;
+		return (time >= 0) ? time : System.nanoTime() / 1000000;
+	}
+	
+	public static long elapsedRealtime() {
+		return uptimeMillis();
+	}
+	
+	public static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+}
@@ -0,0 +1,11 @@
+package android.provider;
+
+/**
+ * Desktop shim of android.provider.BaseColumns.
+ */
+public interface BaseColumns {
+	
+	public static final String _ID = "_id";
+	public static final String _COUNT = "_count";
+	
+}
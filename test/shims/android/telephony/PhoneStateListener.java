@@ -0,0 +1,14 @@
+package android.telephony;
+
+/**
+ * Desktop shim of android.telephony.PhoneStateListener.
+ */
+public class PhoneStateListener {
+	
+	public static final int LISTEN_NONE = 0;
+	public static final int LISTEN_CALL_STATE = 32;
+	
+	public void onCallStateChanged(int state, String incomingNumber) {
+	}
+	
+}
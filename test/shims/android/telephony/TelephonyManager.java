@@ -0,0 +1,22 @@
+package android.telephony;
+
+/**
+ * Desktop shim of android.telephony.TelephonyManager, of a device without a phone.
+ */
+public class TelephonyManager {
+	
+	public static final int CALL_STATE_IDLE = 0;
+	public static final int CALL_STATE_RINGING = 1;
+	public static final int CALL_STATE_OFFHOOK = 2;
+	public static final int PHONE_TYPE_NONE = 0;
+	public static final int PHONE_TYPE_GSM = 1;
+	public static final int PHONE_TYPE_CDMA = 2;
+	
+	public int getCallState() { return CALL_STATE_IDLE; }
+	public int getPhoneType() { return PHONE_TYPE_NONE; }
+	public String getNetworkOperatorName() { return ""; }
+	
+	public void listen(PhoneStateListener listener, int events) {
+	}
+	
+}
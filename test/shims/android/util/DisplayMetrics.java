@@ -0,0 +1,16 @@
+package android.util;
+
+/**
+ * Desktop shim of android.util.DisplayMetrics.
+ */
+public class DisplayMetrics {
+	
+	public int widthPixels;
+	public int heightPixels;
+	public float density;
+	public int densityDpi;
+	public float scaledDensity;
+	public float xdpi;
+	public float ydpi;
+	
+}
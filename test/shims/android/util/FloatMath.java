@@ -0,0 +1,10 @@
+package android.util;
+
+/**
+ * Desktop shim of android.util.FloatMath.
+ */
+public class FloatMath {
+	
+	public static float sqrt(float value) { return (float) Math.sqrt(value); }
+	
+}
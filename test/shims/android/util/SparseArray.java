@@ -0,0 +1,118 @@
+package android.util;
+
+import java.util.Arrays;
+
+/**
+ * Desktop shim of android.util.SparseArray, with the same sorted-array layout.
+ */
+public class SparseArray<E> {
+	
+	private int[] keys;
+	private Object[] values;
+	private int size;
+	
+	public SparseArray() {
+		this(10);
+	}
+	
+	public SparseArray(int initialCapacity) {
+		keys = new int[Math.max(1, initialCapacity)];
+		values = new Object[keys.length];
+		size = 0;
+	}
+	
+	private int find(int key) {
+		int lo = 0;
+		int hi = size - 1;
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (keys[mid] < key) lo = mid + 1;
+			else if (keys[mid] > key) hi = mid - 1;
+			else return mid;
+		}
+		return ~lo;
+	}
+	
+	public E get(int key) {
+		return get(key, null);
+	}
+	
+	@SuppressWarnings("unchecked")
+	public E get(int key, E valueIfKeyNotFound) {
+		final int i = find(key);
+		return (i < 0) ? valueIfKeyNotFound : (E) values[i];
+	}
+	
+	public void put(int key, E value) {
+		int i = find(key);
+		if (i >= 0) {
+			values[i] = value;
+			return;
+		}
+		i = ~i;
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(values, i, values, i + 1, size - i);
+		keys[i] = key;
+		values[i] = value;
+		size++;
+	}
+	
+	public void append(int key, E value) {
+		put(key, value);
+	}
+	
+	public void delete(int key) {
+		final int i = find(key);
+		if (i >= 0) removeAt(i);
+	}
+	
+	public void remove(int key) {
+		delete(key);
+	}
+	
+	public void removeAt(int index) {
+		System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+		System.arraycopy(values, index + 1, values, index, size - index - 1);
+		size--;
+		values[size] = null;
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public int keyAt(int index) {
+		return keys[index];
+	}
+	
+	@SuppressWarnings("unchecked")
+	public E valueAt(int index) {
+		return (E) values[index];
+	}
+	
+	public void setValueAt(int index, E value) {
+		values[index] = value;
+	}
+	
+	public int indexOfKey(int key) {
+		final int i = find(key);
+		return (i < 0) ? -1 : i;
+	}
+	
+	public int indexOfValue(E value) {
+		for (int i = 0; i < size; i++) {
+			if (values[i] == value) return i;
+		}
+		return -1;
+	}
+	
+	public void clear() {
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+	}
+	
+}
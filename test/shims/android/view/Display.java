@@ -0,0 +1,19 @@
+package android.view;
+
+import android.util.DisplayMetrics;
+
+/**
+ * Desktop shim of android.view.Display.
+ */
+public class Display {
+	
+	public String getName() { return "desktop"; }
+	public int getWidth() { return 0; }
+	public int getHeight() { return 0; }
+	public float getRefreshRate() { return 0; }
+	public int getPixelFormat() { return 0; }
+	
+	public void getMetrics(DisplayMetrics outMetrics) {
+	}
+	
+}
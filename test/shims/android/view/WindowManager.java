@@ -0,0 +1,10 @@
+package android.view;
+
+/**
+ * Desktop shim of android.view.WindowManager.
+ */
+public interface WindowManager {
+	
+	Display getDefaultDisplay();
+	
+}
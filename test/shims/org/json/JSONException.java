@@ -0,0 +1,14 @@
+package org.json;
+
+/**
+ * Desktop shim of org.json.JSONException.
+ */
+public class JSONException extends Exception {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public JSONException(String message) {
+		super(message);
+	}
+	
+}
@@ -0,0 +1,40 @@
+package org.json;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Desktop shim of org.json.JSONObject, for strings and numbers.
+ */
+public class JSONObject {
+	
+	private final LinkedHashMap<String, Object> values = new LinkedHashMap<String, Object>();
+	
+	public JSONObject put(String name, Object value) throws JSONException {
+		values.put(name, value);
+		return this;
+	}
+	
+	public Object opt(String name) {
+		return values.get(name);
+	}
+	
+	@Override
+	public String toString() {
+		final StringBuilder json = new StringBuilder("{");
+		for (Map.Entry<String, Object> entry : values.entrySet()) {
+			if (json.length() > 1) json.append(',');
+			json.append('"').append(entry.getKey()).append("\":");
+			final Object value = entry.getValue();
+			if ((value instanceof Number) || (value instanceof Boolean) || (value == null)) {
+				json.append(value);
+			}
+			else {
+				json.append('"').append(value.toString().replace("\\", "\\\\")
+						.replace("\"", "\\\"")).append('"');
+			}
+		}
+		return json.append('}').toString();
+	}
+	
+}
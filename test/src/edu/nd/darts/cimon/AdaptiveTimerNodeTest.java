@@ -0,0 +1,128 @@
+package edu.nd.darts.cimon;
+
+import java.util.Random;
+
+import android.os.SystemClock;
+
+/**
+ * Checks the period of {@link AdaptiveTimerNode}: it starts at the minimum, grows
+ * at most twofold per update while the signal is flat, is clamped to the
+ * maximum, follows tolerance / rate for a steady slope, and drops to the minimum
+ * as soon as consecutive values differ by more than the tolerance.  Then samples
+ * three traces through the node and prints the share of samples saved against
+ * sampling at the minimum period, with the RMS error of holding each delivered 
+ * value until the next.
+ * <p>
+ * The traces are synthetic: they are generated by the test from simple formulas
+ * with seeded Gaussian noise (accelerometer at rest, walking as a 2 Hz sine and
+ * at rest; battery temperature as a linear drift over an hour; CPU load as a 
+ * square wave of bursts), not recorded on a device.  The printed savings show 
+ * the behaviour of the node on these idealised signals only.
+ */
+public class AdaptiveTimerNodeTest {
+
+	public static void main(String[] args) {
+		SystemClock.setVirtualTime(1000000);
+
+		// growth on a flat signal, clamped to maximum
+		final AdaptiveTimerNode flat = new AdaptiveTimerNode(1, 100, 5000, 0.5f, null, 0);
+		Check.equal(100, flat.getPeriod(), "period starts at minimum");
+		long time = 0;
+		long previous = flat.getPeriod();
+		boolean doubling = true;
+		boolean clamped = true;
+		for (int i = 0; i < 20; i++) {
+			flat.observe(10f, time);
+			doubling &= flat.getPeriod() <= 2 * previous;
+			clamped &= (flat.getPeriod() >= 100) && (flat.getPeriod() <= 5000);
+			previous = flat.getPeriod();
+			time += previous;
+		}
+		Check.that(doubling, "period at most doubles per update");
+		Check.that(clamped, "period stays within minimum and maximum");
+		Check.equal(5000, flat.getPeriod(), "flat signal reaches maximum period");
+
+		// change beyond tolerance
+		flat.observe(10.6f, time);
+		Check.equal(100, flat.getPeriod(), "change beyond tolerance drops to minimum period");
+		time += flat.getPeriod();
+		flat.observe(10.6f, time);
+		Check.equal(200, flat.getPeriod(), "period grows again once signal is flat");
+
+		// steady slope of 0.001 per millisecond: tolerance / rate = 500 ms
+		final AdaptiveTimerNode slope = new AdaptiveTimerNode(2, 100, 5000, 0.5f, null, 0);
+		time = 0;
+		for (int i = 0; i < 100; i++) {
+			slope.observe(time * 0.001f, time);
+			time += slope.getPeriod();
+		}
+		Check.equal(500, slope.getPeriod(), 5, "steady slope settles at tolerance / rate");
+
+		// clamping of arguments
+		final AdaptiveTimerNode inverted = new AdaptiveTimerNode(3, 1000, 10, -0.5f, null, 0);
+		Check.equal(1000, inverted.getMaxPeriod(), "maximum below minimum raised to minimum");
+		Check.equal(0.5, inverted.getTolerance(), 0, "tolerance is absolute");
+		inverted.observe(0f, 0);
+		inverted.observe(0f, 1000);
+		Check.equal(1000, inverted.getPeriod(), "period clamped to minimum = maximum");
+
+		final Random random = new Random(7);
+		// accelerometer: 50 s at rest, 50 s walking at 2 Hz, 50 s at rest, every 20 ms
+		final float[] accel = new float[7500];
+		for (int i = 0; i < accel.length; i++) {
+			final boolean walking = (i >= 2500) && (i < 5000);
+			accel[i] = 9.81f + (float) (random.nextGaussian() * 0.02 +
+					(walking ? 3 * Math.sin(2 * Math.PI * 2 * i * 0.02) : 0));
+		}
+		// battery temperature: drift from 30 to 35 over an hour, every second
+		final float[] battery = new float[3600];
+		for (int i = 0; i < battery.length; i++) {
+			battery[i] = 30 + 5f * i / battery.length + (float) (random.nextGaussian() * 0.01);
+		}
+		// cpu load: idle, with a 20 s burst every 5 minutes, every second
+		final float[] cpu = new float[3600];
+		for (int i = 0; i < cpu.length; i++) {
+			cpu[i] = (((i % 300) < 20) ? 0.8f : 0.05f) + (float) (random.nextGaussian() * 0.01);
+		}
+		final double[] accelResult = sample(accel, 20, 2000, 0.2f);
+		final double[] batteryResult = sample(battery, 1000, 60000, 0.2f);
+		final double[] cpuResult = sample(cpu, 1000, 60000, 0.1f);
+		Check.that(accelResult[0] > 0.5, "accelerometer samples reduced");
+		Check.that(batteryResult[0] > 0.5, "battery temperature samples reduced");
+		Check.that(cpuResult[0] > 0.5, "cpu load samples reduced");
+		Check.that(batteryResult[1] < 0.2, "battery temperature error within tolerance");
+		System.out.printf("AdaptiveTimerNodeTest: samples saved (RMS error): accelerometer " +
+				"%.0f%% (%.2f), battery temperature %.0f%% (%.2f), cpu load %.0f%% (%.2f)%n",
+				100 * accelResult[0], accelResult[1], 100 * batteryResult[0], batteryResult[1],
+				100 * cpuResult[0], cpuResult[1]);
+		SystemClock.setVirtualTime(-1);
+		Check.done("AdaptiveTimerNodeTest");
+	}
+
+	/**
+	 * Sample trace, with a value for every minPeriod, through an adaptive node.
+	 *
+	 * @return    share of samples saved, and RMS error of zero-order hold
+	 */
+	private static double[] sample(float[] trace, long minPeriod, long maxPeriod,
+			float tolerance) {
+		final AdaptiveTimerNode node = new AdaptiveTimerNode(0, minPeriod, maxPeriod,
+				tolerance, null, 0);
+		int samples = 0;
+		double error = 0;
+		float held = 0;
+		int next = 0;
+		for (int i = 0; i < trace.length; i++) {
+			if (i == next) {
+				held = trace[i];
+				node.observe(held, i * minPeriod);
+				samples++;
+				next = i + (int) (node.getPeriod() / minPeriod);
+			}
+			error += (trace[i] - held) * (trace[i] - held);
+		}
+		return new double[] {1 - (double) samples / trace.length,
+				Math.sqrt(error / trace.length)};
+	}
+
+}
@@ -0,0 +1,251 @@
+package edu.nd.darts.cimon;
+
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+/**
+ * Checks that the {@link AdminObserver} delivers changes to the administration
+ * app as group-level bitsets: groups changing before the app handles the
+ * previous change are merged into one task and one call, and a group changing
+ * many times appears once.  Prints the UI tasks per second with 40 groups
+ * changing at 1 kHz each, against the one task per change of the old path.
+ * <p>
+ * Checks that values of metrics watched through the listener of the observer
+ * are taken from the listener alone, without allocation per sample, and measures
+ * the cost of one second of updates of 40 expanded groups of 4 metrics at 1 kHz
+ * each: samples stored through the listener, and groups redrawn on the app's
+ * thread as {@link CimonListAdapter#updateGroup(int)} does, against samples
+ * stored with {@link AdminObserver#setValue(int, float)} by the metric services.
+ */
+public class AdminObserverTest {
+
+	private static final int GROUPS = 40;
+	private static final int RATE = 1000;
+	/** Times the app thread runs per second in the simulation. */
+	private static final int FRAMES = 50;
+	/** Metrics of each group watched through the listener. */
+	private static final int GROUP_SIZE = 4;
+	private static final int WARMUP = 3;
+
+	private static final List<BitSet> delivered = new ArrayList<BitSet>();
+	private static int groupsUpdated = 0;
+
+	private static final AdminUpdate UPDATE = new AdminUpdate() {
+
+		public void updateGroups(BitSet groups) {
+			delivered.add((BitSet) groups.clone());
+			groupsUpdated += groups.cardinality();
+		}
+	};
+
+	private static AdminObserver rendered;
+	private static final DecimalFormat formatter = new DecimalFormat("#.##");
+	private static long shown = 0;
+
+	/** Redraws changed groups as the list adapter, without the views. */
+	private static final AdminUpdate RENDER = new AdminUpdate() {
+
+		public void updateGroups(BitSet groups) {
+			for (int groupId = groups.nextSetBit(0); groupId >= 0;
+					groupId = groups.nextSetBit(groupId + 1)) {
+				final long period = rendered.getPeriod(groupId);
+				shown += (period > 0 ? String.format("Frequency: %.3f Hz", 1000.0 / period) :
+						"inactive").length();
+				for (int i = 0; i < GROUP_SIZE; i++) {
+					if (rendered.getStatus(groupId + i)) {
+						shown++;
+					}
+					shown += formatter.format(rendered.getValue(groupId + i)).length();
+				}
+			}
+		}
+	};
+
+	public static void main(String[] args) {
+		final AdminObserver observer = SystemObserver.getInstance();
+		final Looper ui = new HandlerThread("ui").getLooper();
+		observer.registerObserver(UPDATE, new Handler(ui), 0);
+		ui.runAll();
+		delivered.clear();
+
+		observer.notifyChange(3);
+		observer.notifyChange(5);
+		observer.notifyChange(3);
+		Check.equal(1, ui.size(), "one task posted for several changes");
+		ui.runAll();
+		Check.equal(1, delivered.size(), "changes delivered in one call");
+		final BitSet expected = new BitSet();
+		expected.set(3);
+		expected.set(5);
+		Check.that(expected.equals(delivered.get(0)), "changed groups delivered as bitset: " +
+				delivered.get(0));
+		observer.notifyChange(7);
+		ui.runAll();
+		Check.that((delivered.size() == 2) && (delivered.get(1).cardinality() == 1) &&
+				delivered.get(1).get(7), "later change delivered in new bitset");
+
+		// one second of GROUPS groups changing at RATE each, app thread runs FRAMES times
+		delivered.clear();
+		groupsUpdated = 0;
+		final int perFrame = RATE / FRAMES;
+		for (int frame = 0; frame < FRAMES; frame++) {
+			for (int i = 0; i < perFrame; i++) {
+				for (int group = 0; group < GROUPS; group++) {
+					observer.notifyChange(group);
+				}
+			}
+			ui.runAll();
+		}
+		Check.equal(FRAMES, delivered.size(), "one UI task per frame");
+		Check.equal(GROUPS * FRAMES, groupsUpdated, "each changed group updated once per frame");
+		System.out.printf("AdminObserverTest: %d groups at %d Hz, %d UI tasks/s and %d group " +
+				"updates/s, against %d tasks/s with one task per change%n", GROUPS, RATE,
+				delivered.size(), groupsUpdated, GROUPS * perFrame * FRAMES);
+
+		observer.unregisterObserver(UPDATE);
+
+		checkListener(observer, ui);
+		measure(observer, ui);
+		Check.done("AdminObserverTest");
+	}
+
+	private static void checkListener(AdminObserver observer, Looper ui) {
+		final LocalListener listener = observer.getListener();
+		observer.registerObserver(UPDATE, new Handler(ui), 0);
+		ui.runAll();
+		delivered.clear();
+
+		observer.setValue(5, 1f);
+		observer.watch(5, 4);
+		Check.that(observer.isWatched(5) && !observer.isWatched(6), "only metric 5 watched");
+		Check.equal(1, observer.getValue(5), 0, "watched metric starts from its last value");
+		listener.onUpdate(5, 2f, 0);
+		observer.setValue(5, 3f);
+		Check.equal(2, observer.getValue(5), 0, "value of watched metric taken from listener");
+		Check.equal(1, ui.size(), "sample of listener reports its group");
+		ui.runAll();
+		Check.that((delivered.size() == 1) && (delivered.get(0).cardinality() == 1) &&
+				delivered.get(0).get(4), "group of watched metric delivered");
+		listener.onUpdate(6, 5f, 0);
+		Check.equal(0, ui.size(), "sample of unwatched metric ignored by listener");
+
+		observer.setActive(5, 9);
+		observer.setInactive(5, 9);
+		Check.that(!observer.isWatched(5), "metric unwatched when its monitor is inactive");
+		Check.equal(2, observer.getValue(5), 0, "last value of listener kept");
+		listener.onUpdate(5, 4f, 0);
+		Check.equal(2, observer.getValue(5), 0, "late sample of listener ignored");
+		observer.setValue(5, 3f);
+		Check.equal(3, observer.getValue(5), 0, "metric services set value again");
+		ui.runAll();
+
+		// samples of all watched metrics, one dispatch left pending by the first
+		final com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		final long thread = Thread.currentThread().getId();
+		watchAll(observer);
+		for (int i = 0; i < RATE; i++) {
+			sample(observer, listener, true, i);
+		}
+		final long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < RATE; i++) {
+			sample(observer, listener, true, i);
+		}
+		final long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		Check.equal(0, allocated, "bytes allocated over " + (RATE * GROUPS * GROUP_SIZE) +
+				" samples through listener");
+		Check.equal(1, ui.size(), "one UI task pending for all samples");
+		Check.equal(RATE - 1, observer.getValue(GROUP_SIZE + 1), 0, "last sample visible");
+		ui.runAll();
+		unwatchAll(observer);
+		observer.unregisterObserver(UPDATE);
+	}
+
+	/**
+	 * One second of samples of all metrics of expanded groups, with the app 
+	 * redrawing changed groups FRAMES times.
+	 */
+	private static void measure(AdminObserver observer, Looper ui) {
+		final LocalListener listener = observer.getListener();
+		rendered = observer;
+		observer.registerObserver(RENDER, new Handler(ui), 0);
+		ui.runAll();
+		final int perFrame = RATE / FRAMES;
+		final int samples = RATE * GROUPS * GROUP_SIZE;
+		final long[] uiNanos = new long[2];
+		final long[] metricNanos = new long[2];
+		for (int run = 0; run <= WARMUP; run++) {
+			for (int path = 0; path < 2; path++) {
+				final boolean watched = path == 1;
+				if (watched) {
+					watchAll(observer);
+				}
+				uiNanos[path] = 0;
+				metricNanos[path] = 0;
+				for (int frame = 0; frame < FRAMES; frame++) {
+					final long t0 = System.nanoTime();
+					for (int i = 0; i < perFrame; i++) {
+						sample(observer, listener, watched, frame * perFrame + i);
+					}
+					final long t1 = System.nanoTime();
+					ui.runAll();
+					uiNanos[path] += System.nanoTime() - t1;
+					metricNanos[path] += t1 - t0;
+				}
+				if (watched) {
+					unwatchAll(observer);
+				}
+			}
+		}
+		observer.unregisterObserver(RENDER);
+		System.out.printf("AdminObserverTest: %d expanded groups of %d metrics at %d Hz, " +
+				"per second: setValue path UI %.2f ms, %.0f ns/sample; listener path UI " +
+				"%.2f ms, %.0f ns/sample%n", GROUPS, GROUP_SIZE, RATE, uiNanos[0] / 1e6,
+				(double) metricNanos[0] / samples, uiNanos[1] / 1e6,
+				(double) metricNanos[1] / samples);
+		if (shown < 0) System.out.println();
+	}
+
+	/** Sample every metric of the expanded groups once. */
+	private static void sample(AdminObserver observer, LocalListener listener,
+			boolean watched, int value) {
+		for (int group = 0; group < GROUPS; group++) {
+			final int groupId = (group + 1) * GROUP_SIZE;
+			for (int i = 0; i < GROUP_SIZE; i++) {
+				if (watched) {
+					listener.onUpdate(groupId + i, value, 0);
+				}
+				else {
+					observer.setValue(groupId + i, value);
+					observer.notifyChange(groupId);
+				}
+			}
+		}
+	}
+
+	private static void watchAll(AdminObserver observer) {
+		for (int group = 0; group < GROUPS; group++) {
+			final int groupId = (group + 1) * GROUP_SIZE;
+			for (int i = 0; i < GROUP_SIZE; i++) {
+				observer.watch(groupId + i, groupId);
+			}
+		}
+	}
+
+	private static void unwatchAll(AdminObserver observer) {
+		for (int group = 0; group < GROUPS; group++) {
+			final int groupId = (group + 1) * GROUP_SIZE;
+			for (int i = 0; i < GROUP_SIZE; i++) {
+				observer.unwatch(groupId + i);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+package edu.nd.darts.cimon;
+
+/**
+ * Minimal assertion helper for the plain-JVM tests under test/src.  Each test is
+ * a main which calls {@link #that(boolean, String)} and ends with {@link #done()},
+ * which exits with a non-zero status if any check failed.
+ */
+public final class Check {
+	
+	private static int checks = 0;
+	private static int failures = 0;
+	
+	private Check() {
+	}
+	
+	public static void that(boolean condition, String message) {
+		checks++;
+		if (!condition) {
+			failures++;
+			System.out.println("FAIL: " + message);
+		}
+	}
+	
+	public static void equal(long expected, long actual, String message) {
+		that(expected == actual, message + " (expected " + expected + ", was " + actual + ")");
+	}
+	
+	public static void equal(double expected, double actual, double delta, String message) {
+		that(Math.abs(expected - actual) <= delta, 
+				message + " (expected " + expected + ", was " + actual + ")");
+	}
+	
+	public static void done(String test) {
+		System.out.println(test + ": " + (checks - failures) + "/" + checks + " checks passed");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+	
+}
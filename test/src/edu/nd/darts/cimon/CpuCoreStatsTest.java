@@ -0,0 +1,123 @@
+package edu.nd.darts.cimon;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Checks {@link CpuCoreStats} against fixture copies of /proc/stat and the
+ * cpufreq files of devices with 4, 8 and 64 cores: the first update reports 0
+ * jiffies, later updates report jiffies per core since the previous update with
+ * nice counted as user time, an offline core reports 0 for all fields and again
+ * 0 jiffies when it comes back, and a reset counter reports 0.  The /proc/stat
+ * fixtures hold a long interrupt line, so they outgrow the initial reading
+ * buffer.
+ */
+public class CpuCoreStatsTest {
+
+	private static final int[] CORES = {4, 8, 64};
+
+	public static void main(String[] args) throws Exception {
+		for (int cores : CORES) {
+			check(cores);
+		}
+		Check.done("CpuCoreStatsTest");
+	}
+
+	private static void check(int cores) throws IOException {
+		final File dir = File.createTempFile("cimon-cpu", "");
+		dir.delete();
+		dir.mkdirs();
+		final File stat = new File(dir, "stat");
+		final File cpuDir = new File(dir, "cpu");
+		for (int i = 0; i < cores; i++) {
+			write(new File(cpuDir, "cpu" + i + "/cpufreq/scaling_cur_freq"),
+					(300000 + i * 1000) + "\n");
+		}
+		final CpuCoreStats stats = new CpuCoreStats(cores, stat.getPath(), cpuDir.getPath());
+		final float[] values = new float[cores * Metrics.CORE_FIELDS];
+		final int last = cores - 1;
+
+		write(stat, stat(cores, 0, -1));
+		Check.equal(cores, stats.update(values), cores + " cores online");
+		boolean zero = true;
+		boolean freq = true;
+		for (int i = 0; i < cores; i++) {
+			final int field = i * Metrics.CORE_FIELDS;
+			zero &= (values[field + Metrics.CORE_USER] == 0) &&
+					(values[field + Metrics.CORE_SYSTEM] == 0) &&
+					(values[field + Metrics.CORE_IDLE] == 0) &&
+					(values[field + Metrics.CORE_IOWAIT] == 0);
+			freq &= values[field + Metrics.CORE_FREQ] == 300000 + i * 1000;
+		}
+		Check.that(zero, cores + " cores report 0 jiffies on first update");
+		Check.that(freq, cores + " cores report their frequency");
+
+		// last core offline
+		write(stat, stat(cores, 1, last));
+		Check.equal(cores - 1, stats.update(values), cores + " cores, one offline");
+		boolean deltas = true;
+		for (int i = 0; i < last; i++) {
+			final int field = i * Metrics.CORE_FIELDS;
+			deltas &= (values[field + Metrics.CORE_USER] == 11 + i) &&
+					(values[field + Metrics.CORE_SYSTEM] == 5) &&
+					(values[field + Metrics.CORE_IDLE] == 100) &&
+					(values[field + Metrics.CORE_IOWAIT] == 2);
+		}
+		Check.that(deltas, cores + " cores report jiffies since previous update");
+		final int lastField = last * Metrics.CORE_FIELDS;
+		boolean offline = true;
+		for (int j = 0; j < Metrics.CORE_FIELDS; j++) {
+			offline &= values[lastField + j] == 0;
+		}
+		Check.that(offline, cores + " cores, offline core reports 0 for all fields");
+
+		// last core back online, counters of first core reset
+		final String text = stat(cores, 2, -1).replaceFirst("cpu0 [0-9 ]*\n",
+				"cpu0 1 0 1 1 0 0 0 0 0 0\n");
+		write(stat, text);
+		Check.equal(cores, stats.update(values), cores + " cores online again");
+		Check.equal(0, values[lastField + Metrics.CORE_USER], 0,
+				cores + " cores, core back online reports 0 jiffies");
+		Check.equal(300000 + last * 1000, values[lastField + Metrics.CORE_FREQ], 0,
+				cores + " cores, core back online reports its frequency");
+		Check.equal(0, values[Metrics.CORE_IDLE], 0, cores + " cores, reset counter reports 0");
+		Check.equal(12, values[Metrics.CORE_FIELDS + Metrics.CORE_USER], 0,
+				cores + " cores, other cores keep reporting jiffies");
+	}
+
+	/**
+	 * Contents of /proc/stat at an update.  Each update adds 10 + core user,
+	 * 1 nice, 5 system, 100 idle and 2 iowait jiffies to every core.
+	 */
+	private static String stat(int cores, int update, int offline) {
+		final StringBuilder stat = new StringBuilder();
+		stat.append("cpu  ").append(cores * 1000L).append(" 0 0 0 0 0 0 0 0 0\n");
+		for (int i = 0; i < cores; i++) {
+			if (i == offline) continue;
+			final long base = 100000L * (i + 1);
+			stat.append("cpu").append(i).append(' ')
+					.append(base + update * (10 + i)).append(' ')
+					.append(base / 10 + update).append(' ')
+					.append(base / 2 + update * 5).append(' ')
+					.append(base * 3 + update * 100).append(' ')
+					.append(base / 100 + update * 2).append(" 0 17 0 0 0\n");
+		}
+		stat.append("intr 101374862");
+		for (int i = 0; i < 3000; i++) {
+			stat.append(' ').append((i % 7 == 0) ? 12345 + i : 0);
+		}
+		stat.append("\nctxt 173922344\nbtime 1760770000\nprocesses 402187\n");
+		stat.append("procs_running 2\nprocs_blocked 0\n");
+		return stat.toString();
+	}
+
+	private static void write(File file, String contents) throws IOException {
+		file.getParentFile().mkdirs();
+		final FileWriter writer = new FileWriter(file);
+		writer.write(contents);
+		writer.close();
+		file.deleteOnExit();
+	}
+
+}
@@ -0,0 +1,139 @@
+package edu.nd.darts.cimon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Checks numbers written by {@link CsvExporter} against {@link Float#toString}
+ * and {@link Long#toString}, as written to reports by string concatenation: -0.0,
+ * NaN and the infinities, the extremes of each exponent, every 97th subnormal,
+ * powers of ten and their neighbours (where notation switches at 10^-3 and
+ * 10^7), and random floats, which must also read back as the same bits, and
+ * longs including {@link Long#MIN_VALUE}.  Also checks that writing floats and
+ * longs allocates nothing once warmed up.
+ */
+public class CsvExporterTest {
+
+	private static final int RANDOM = 1000000;
+	private static final int WARMUP = 200000;
+	private static final int WRITES = 100000;
+
+	public static void main(String[] args) throws Exception {
+		final float[] special = {Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY,
+				0.0f, -0.0f, 1.0f, -1.0f, 0.1f, 1e7f, 9999999f, 1e-3f, 9.999999e-4f,
+				Float.MAX_VALUE, -Float.MAX_VALUE, Float.MIN_NORMAL, Float.MIN_VALUE,
+				-Float.MIN_VALUE, Math.nextDown(Float.MIN_NORMAL), 3 * Float.MIN_VALUE,
+				16777216f, 16777217f, 0.3f, 2f / 3, 1.17549435E-38f, 3.4028235E38f};
+		boolean same = true;
+		for (float value : special) {
+			same &= matches(value);
+		}
+		Check.that(same, "special floats written as by Float.toString");
+
+		// powers of ten and neighbours, across the switches of notation
+		int powers = 0;
+		int tested = 0;
+		for (int e = -45; e <= 38; e++) {
+			final float value = Float.parseFloat("1e" + e);
+			for (float v : new float[] {Math.nextDown(value), value, Math.nextUp(value)}) {
+				tested++;
+				if (matches(v) && matches(-v)) {
+					powers++;
+				}
+			}
+		}
+		Check.equal(tested, powers, "powers of ten and neighbours written as by Float.toString");
+
+		int subnormals = 0;
+		tested = 0;
+		for (int bits = 1; bits < 0x00800000; bits += 97) {
+			tested++;
+			if (matches(Float.intBitsToFloat(bits))) {
+				subnormals++;
+			}
+		}
+		Check.equal(tested, subnormals, "subnormals written as by Float.toString");
+
+		final Random random = new Random(42);
+		int exact = 0;
+		int written = 0;
+		tested = 0;
+		for (int i = 0; i < RANDOM; i++) {
+			final float value = Float.intBitsToFloat(random.nextInt());
+			if (Float.isNaN(value)) {
+				continue;
+			}
+			tested++;
+			final String text = format(value);
+			if (Float.floatToRawIntBits(Float.parseFloat(text)) ==
+					Float.floatToRawIntBits(value)) {
+				exact++;
+			}
+			if (text.equals(Float.toString(value))) {
+				written++;
+			}
+		}
+		Check.equal(tested, exact, "random floats read back exactly");
+		Check.equal(tested, written, "random floats written as by Float.toString");
+
+		final long[] longs = {0, 1, -1, 9, 10, -10, Integer.MAX_VALUE, Integer.MIN_VALUE,
+				Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1, 1000000000000L};
+		boolean longsWritten = true;
+		for (long value : longs) {
+			longsWritten &= format(value).equals(Long.toString(value));
+		}
+		for (int i = 0; i < RANDOM; i++) {
+			final long value = random.nextLong() >> random.nextInt(64);
+			longsWritten &= format(value).equals(Long.toString(value));
+		}
+		Check.that(longsWritten, "longs written as by Long.toString");
+
+		final com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		final long thread = Thread.currentThread().getId();
+		final CsvExporter exporter = new CsvExporter(new OutputStream() {
+			public void write(int b) { }
+			public void write(byte[] b, int off, int len) { }
+		}, false);
+		for (int i = 0; i < WARMUP; i++) {
+			exporter.write(1000000L + i).write('\t').write(i * 0.37f).newLine();
+		}
+		final long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < WRITES; i++) {
+			exporter.write(1000000L + i).write('\t').write(i * 0.37f).newLine();
+		}
+		final long allocated = threads.getThreadAllocatedBytes(thread) - before;
+		exporter.close();
+		System.out.printf("CsvExporterTest: %.2f bytes allocated per reading%n",
+				(double) allocated / WRITES);
+		Check.that(allocated < WRITES, "writing readings allocates nothing per reading");
+		Check.done("CsvExporterTest");
+	}
+
+	private static boolean matches(float value) throws Exception {
+		final String text = format(value);
+		if (!text.equals(Float.toString(value))) {
+			System.out.println(value + " written as " + text);
+			return false;
+		}
+		return Float.isNaN(value) || (Float.floatToRawIntBits(Float.parseFloat(text)) ==
+				Float.floatToRawIntBits(value));
+	}
+
+	private static String format(float value) throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+		final CsvExporter exporter = new CsvExporter(out, false);
+		exporter.write(value).close();
+		return out.toString("UTF-8");
+	}
+
+	private static String format(long value) throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+		final CsvExporter exporter = new CsvExporter(out, false);
+		exporter.write(value).close();
+		return out.toString("UTF-8");
+	}
+
+}
@@ -0,0 +1,250 @@
+package edu.nd.darts.cimon;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Looper;
+import android.os.SystemClock;
+import edu.nd.darts.cimon.contentprovider.CimonContentProvider;
+import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+
+/**
+ * Uploads readings of a monitor to a stub HTTP server on the loopback interface,
+ * and checks the requests of {@link DataUploader}: JSON description records of
+ * the sensor and device, then gzip compressed batches of readings in version 2
+ * of the Data_Table format, all over one kept-alive connection.  Checks that any
+ * 2xx status acknowledges a batch, that 503 responses are retried, and that an
+ * upload abandoned on a client error resumes from the last acknowledged batch.
+ * Prints the upload rate and bytes per reading on the wire.
+ */
+public class DataUploaderTest {
+
+	private static final int METRIC = 30;
+	private static final int ROWS = 5000;
+	private static final int MORE_ROWS = 3000;
+
+	/** Request received by the stub server. */
+	private static final class Request {
+		String query;
+		String contentType;
+		boolean gzip;
+		int port;
+		int wireBytes;
+		String body;
+		int status;
+	}
+
+	private static final List<Request> requests = new ArrayList<Request>();
+	/** Statuses of the next responses; 200 once exhausted. */
+	private static final List<Integer> statuses = new ArrayList<Integer>();
+
+	public static void main(String[] args) throws Exception {
+		if (!SQLiteDatabase.isAvailable()) {
+			System.out.println("DataUploaderTest: skipped, no SQLite JDBC driver on TEST_CLASSPATH");
+			return;
+		}
+		final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+
+			public void handle(HttpExchange exchange) throws IOException {
+				final Request request = new Request();
+				request.query = exchange.getRequestURI().getRawQuery();
+				request.contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+				request.gzip = "gzip".equals(exchange.getRequestHeaders()
+						.getFirst("Content-Encoding"));
+				request.port = exchange.getRemoteAddress().getPort();
+				final byte[] wire = readAll(exchange.getRequestBody());
+				request.wireBytes = wire.length;
+				request.body = new String(request.gzip ? readAll(new GZIPInputStream(
+						new ByteArrayInputStream(wire))) : wire, "UTF-8");
+				synchronized (requests) {
+					request.status = statuses.isEmpty() ? 200 : statuses.remove(0);
+					requests.add(request);
+				}
+				final byte[] response = (request.status == 204) ? new byte[0] :
+						"OK".getBytes("UTF-8");
+				exchange.sendResponseHeaders(request.status,
+						(response.length == 0) ? -1 : response.length);
+				if (response.length > 0) {
+					exchange.getResponseBody().write(response);
+				}
+				exchange.close();
+			}
+		});
+		server.start();
+
+		final File dir = File.createTempFile("cimon-upload", "");
+		dir.delete();
+		dir.mkdirs();
+		Context.setDataDirectory(dir);
+		final Context context = new Context();
+		final CimonContentProvider provider = new CimonContentProvider();
+		provider.attachInfo(context);
+		provider.onCreate();
+		final CimonDatabaseAdapter adapter = CimonDatabaseAdapter.getInstance(context);
+		adapter.insertOrReplaceMetricInfo(3, "Memory", "Memory usage", 1, 0.5f, 100,
+				"2048 MB", "1 kB", 0);
+		adapter.insertOrReplaceMetrics(METRIC, 3, "Free memory", "kB", 2097152);
+		final int monitor = adapter.insertMonitor(
+				System.currentTimeMillis() - SystemClock.uptimeMillis());
+		insert(adapter, monitor, 0, ROWS);
+
+		DataUploader.setServerUrl(context, "http://127.0.0.1:" +
+				server.getAddress().getPort() + "/Update_Data/");
+		final Looper looper = Looper.getMainLooper();
+		final DataUploader uploader = new DataUploader(context, looper);
+
+		// 201 and 204 acknowledge batches as well as 200
+		statuses.add(200);
+		statuses.add(201);
+		statuses.add(204);
+		statuses.add(201);
+		statuses.add(204);
+		long t0 = System.nanoTime();
+		uploader.upload(monitor, METRIC);
+		looper.runAll();
+		final long elapsed = System.nanoTime() - t0;
+		List<Request> sent = take();
+		Check.equal(6, sent.size(), "three description records and three batches posted");
+		Check.that(sent.get(0).body.contains("\"type\":\"Sensor_Table\"") &&
+				sent.get(0).body.contains("\"Sensor_ID\":\"" + METRIC + "\"") &&
+				sent.get(0).body.contains("\"Unit\":\"kB\"") &&
+				sent.get(0).body.contains("\"Resolution\":\"1 kB\""),
+				"sensor described from metric tables: " + sent.get(0).body);
+		Check.that(sent.get(1).body.contains("\"type\":\"Device_List\"") &&
+				sent.get(1).body.contains("\"Sensor " + METRIC + "\":\"True\""),
+				"device described: " + sent.get(1).body);
+		Check.that(sent.get(2).body.contains("\"type\":\"Labeling_Freq\""),
+				"labeling frequency described: " + sent.get(2).body);
+		boolean json = true;
+		for (int i = 0; i < 3; i++) {
+			json &= !sent.get(i).gzip && sent.get(i).contentType.startsWith("application/json");
+		}
+		Check.that(json, "description records posted as plain JSON");
+		boolean versioned = true;
+		int wireBytes = 0;
+		for (int i = 3; i < sent.size(); i++) {
+			final Request request = sent.get(i);
+			versioned &= request.gzip && request.query.contains("type=Data_Table") &&
+					request.query.contains("version=" + DataUploader.FORMAT_VERSION) &&
+					request.query.contains("monitor=" + monitor) &&
+					request.contentType.startsWith("text/tab-separated-values");
+			wireBytes += request.wireBytes;
+		}
+		Check.that(versioned, "batches posted gzip compressed in Data_Table version " +
+				DataUploader.FORMAT_VERSION);
+		final Set<Integer> ports = new HashSet<Integer>();
+		for (Request request : sent) {
+			ports.add(request.port);
+		}
+		Check.equal(1, ports.size(), "all requests of upload share one connection");
+		final Set<Long> uploaded = new HashSet<Long>();
+		Check.equal(ROWS, acknowledged(sent, uploaded), "every reading uploaded once");
+		System.out.printf("DataUploaderTest: %d readings in %.0f ms, %.0f readings/s, " +
+				"%.2f bytes/reading on the wire%n", ROWS, elapsed / 1e6, ROWS * 1e9 / elapsed,
+				(double) wireBytes / ROWS);
+
+		// 503 is retried, then a client error abandons the upload
+		insert(adapter, monitor, ROWS, MORE_ROWS);
+		statuses.add(200);
+		statuses.add(200);
+		statuses.add(200);
+		statuses.add(503);
+		statuses.add(200);
+		statuses.add(400);
+		uploader.upload(monitor, METRIC);
+		looper.runAll();
+		sent = take();
+		Check.equal(6, sent.size(), "descriptions, retried batch, and failed batch posted");
+		Check.equal(503, sent.get(3).status, "first batch refused");
+		Check.that(sent.get(3).body.equals(sent.get(4).body), "refused batch retried unchanged");
+		Check.equal(400, sent.get(5).status, "second batch rejected");
+		Check.equal(2000, acknowledged(sent, uploaded), "only acknowledged batch counted");
+
+		uploader.upload(monitor, METRIC);
+		looper.runAll();
+		sent = take();
+		Check.equal(MORE_ROWS - 2000, acknowledged(sent, uploaded),
+				"upload resumed after last acknowledged batch");
+		Check.equal(ROWS + MORE_ROWS, uploaded.size(), "every reading uploaded");
+
+		server.stop(0);
+		adapter.close();
+		delete(dir);
+		Check.done("DataUploaderTest");
+	}
+
+	private static void insert(CimonDatabaseAdapter adapter, int monitor, int first, int rows) {
+		final long[] timestamps = new long[rows];
+		final float[] values = new float[rows];
+		final long start = SystemClock.uptimeMillis() - 100000;
+		for (int i = 0; i < rows; i++) {
+			timestamps[i] = start + (first + i) * 10;
+			values[i] = (first + i) % 100;
+		}
+		Check.equal(rows, adapter.insertBulkData(METRIC, monitor, timestamps, values, rows),
+				"readings inserted");
+	}
+
+	/**
+	 * Count readings of acknowledged batches, adding their row ids to _uploaded_.
+	 * A reading uploaded twice is not counted.
+	 */
+	private static int acknowledged(List<Request> sent, Set<Long> uploaded) {
+		int count = 0;
+		for (Request request : sent) {
+			if ((request.status < 200) || (request.status >= 300) || !request.gzip) continue;
+			for (String line : request.body.split("\n")) {
+				if (line.length() == 0) continue;
+				if (uploaded.add(Long.parseLong(line.substring(0, line.indexOf('\t'))))) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static List<Request> take() {
+		synchronized (requests) {
+			final List<Request> taken = new ArrayList<Request>(requests);
+			requests.clear();
+			return taken;
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+
+	private static void delete(File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
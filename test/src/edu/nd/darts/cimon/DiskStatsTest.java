@@ -0,0 +1,128 @@
+package edu.nd.darts.cimon;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Checks {@link DiskStats} against a fixture /proc/diskstats of an Android device,
+ * with ram and loop devices, 50 partitions of internal flash, an SD card, zram
+ * and a device mapper volume, in the 14, 18 and 20 column formats of successive
+ * kernels.  Only whole disks are monitored, the first update reports 0, later
+ * updates the counts since the previous update, and a removed SD card reports 0
+ * until it has been present for two updates again.
+ */
+public class DiskStatsTest {
+
+	private static final String[] DISKS = {"mmcblk0", "mmcblk1", "zram0", "dm-0"};
+
+	public static void main(String[] args) throws Exception {
+		final File dir = File.createTempFile("cimon-disk", "");
+		dir.delete();
+		dir.mkdirs();
+		final File block = new File(dir, "block");
+		for (String disk : DISKS) {
+			new File(block, disk).mkdirs();
+		}
+		new File(block, "ram0").mkdirs();
+		new File(block, "loop0").mkdirs();
+		final File diskstats = new File(dir, "diskstats");
+
+		write(diskstats, diskstats(0, true));
+		final String[] devices = DiskStats.findDevices(diskstats.getPath(), block.getPath(),
+				Metrics.MAX_DISKS);
+		Check.equal(DISKS.length, devices.length, "whole disks found, ram/loop/partitions skipped");
+		boolean names = devices.length == DISKS.length;
+		for (int i = 0; names && (i < DISKS.length); i++) {
+			names = DISKS[i].equals(devices[i]);
+		}
+		Check.that(names, "disks in order of diskstats");
+		Check.equal(2, DiskStats.findDevices(diskstats.getPath(), block.getPath(), 2).length,
+				"devices capped at maximum");
+
+		final DiskStats stats = new DiskStats(diskstats.getPath(), devices);
+		final float[] values = new float[devices.length * Metrics.DISK_FIELDS];
+		Check.equal(DISKS.length, stats.update(values), "all disks present");
+		boolean zero = true;
+		for (float value : values) {
+			zero &= value == 0;
+		}
+		Check.that(zero, "first update reports 0");
+
+		write(diskstats, diskstats(1, true));
+		Check.equal(DISKS.length, stats.update(values), "all disks present again");
+		boolean deltas = true;
+		for (int d = 0; d < DISKS.length; d++) {
+			final int field = d * Metrics.DISK_FIELDS;
+			deltas &= (values[field + Metrics.DISK_READS] == 10 * (d + 1)) &&
+					(values[field + Metrics.DISK_READ_SECTORS] == 80 * (d + 1)) &&
+					(values[field + Metrics.DISK_WRITES] == 5 * (d + 1)) &&
+					(values[field + Metrics.DISK_WRITE_SECTORS] == 40 * (d + 1)) &&
+					(values[field + Metrics.DISK_BUSY_TIME] == 7 * (d + 1)) &&
+					(values[field + Metrics.DISK_QUEUE_TIME] == 9 * (d + 1));
+		}
+		Check.that(deltas, "counts since previous update, in every column format");
+
+		// SD card removed, then inserted again
+		write(diskstats, diskstats(2, false));
+		Check.equal(DISKS.length - 1, stats.update(values), "removed SD card missing");
+		final int sd = Metrics.DISK_FIELDS;
+		Check.equal(0, values[sd + Metrics.DISK_READS] + values[sd + Metrics.DISK_WRITES], 0,
+				"removed SD card reports 0");
+		Check.equal(30, values[2 * Metrics.DISK_FIELDS + Metrics.DISK_READS], 0,
+				"other disks keep reporting");
+		write(diskstats, diskstats(3, true));
+		stats.update(values);
+		Check.equal(0, values[sd + Metrics.DISK_READS], 0, "reinserted SD card starts from 0");
+		write(diskstats, diskstats(4, true));
+		stats.update(values);
+		Check.equal(20, values[sd + Metrics.DISK_READS], 0, "reinserted SD card reports counts");
+		Check.done("DiskStatsTest");
+	}
+
+	/**
+	 * Contents of diskstats at an update.  Each update adds 10, 80, 5, 40, 7 and 9
+	 * times (disk + 1) to reads, sectors read, writes, sectors written, busy and
+	 * queue time of each disk.  Lines of disks alternate between 14, 18 and 20
+	 * columns.
+	 */
+	static String diskstats(int update, boolean sdCard) {
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 8; i++) {
+			line(text, 1, i, "ram" + i, 0, 14);
+		}
+		for (int i = 0; i < 8; i++) {
+			line(text, 7, i, "loop" + i, 100 + update, 14);
+		}
+		line(text, 179, 0, "mmcblk0", 1 + update, 14);
+		for (int i = 1; i <= 50; i++) {
+			line(text, 259, i, "mmcblk0p" + i, 1000 * i + update, 18);
+		}
+		if (sdCard) {
+			line(text, 179, 64, "mmcblk1", 2 + 2 * update, 18);
+		}
+		line(text, 253, 0, "zram0", 3 + 3 * update, 20);
+		line(text, 254, 0, "dm-0", 4 + 4 * update, 20);
+		return text.toString();
+	}
+
+	private static void line(StringBuilder text, int major, int minor, String name, long n,
+			int columns) {
+		text.append(String.format("%4d %7d %s ", major, minor, name));
+		text.append(10 * n).append(' ').append(n).append(' ').append(80 * n).append(' ')
+				.append(3 * n).append(' ').append(5 * n).append(' ').append(n).append(' ')
+				.append(40 * n).append(' ').append(2 * n).append(" 0 ").append(7 * n).append(' ')
+				.append(9 * n);
+		for (int i = 14; i < columns; i++) {
+			text.append(' ').append(i * n);
+		}
+		text.append('\n');
+	}
+
+	private static void write(File file, String contents) throws IOException {
+		final FileWriter writer = new FileWriter(file);
+		writer.write(contents);
+		writer.close();
+	}
+
+}
@@ -0,0 +1,95 @@
+package edu.nd.darts.cimon;
+
+import java.io.File;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+import edu.nd.darts.cimon.database.DataTable;
+
+/**
+ * Fills the {@link LogQueue} of a metric while the database thread is held up,
+ * and checks that further batches are dropped and counted per monitor in the
+ * Monitor table, while the final batch of a monitor is still written.
+ */
+public class LogQueueTest {
+
+	private static final int ENTRIES = 10;
+	private static final int FINAL_ENTRIES = 5;
+
+	public static void main(String[] args) throws Exception {
+		if (!SQLiteDatabase.isAvailable()) {
+			System.out.println("LogQueueTest: skipped, no SQLite JDBC driver on TEST_CLASSPATH");
+			return;
+		}
+		final File dir = File.createTempFile("cimon-logqueue", "");
+		dir.delete();
+		dir.mkdirs();
+		Context.setDataDirectory(dir);
+		final MyApplication app = new MyApplication();
+		app.onCreate();
+		final CimonDatabaseAdapter adapter = CimonDatabaseAdapter.getInstance(app);
+		final long offset = System.currentTimeMillis() - SystemClock.uptimeMillis();
+		final int running = adapter.insertMonitor(offset);
+		final int finished = adapter.insertMonitor(offset);
+
+		final Looper db = new HandlerThread("db").getLooper();
+		final LogQueue queue = new LogQueue(Metrics.CPU_LOAD1, new Handler(db));
+		long time = SystemClock.uptimeMillis();
+		for (int i = 0; i < LogQueue.MAX_PENDING; i++) {
+			Check.that(queue.offer(running, batch(time, ENTRIES), false), "batch queued");
+			time += ENTRIES;
+		}
+		Check.equal(1, db.size(), "one task posted for queued batches");
+		Check.that(!queue.offer(running, batch(time, ENTRIES), false),
+				"batch dropped while database backlogged");
+		time += ENTRIES;
+		Check.that(!queue.offer(finished, batch(time, ENTRIES), false),
+				"batch of other monitor dropped");
+		time += ENTRIES;
+		Check.that(!queue.offer(finished, batch(time, ENTRIES), false),
+				"second batch of other monitor dropped");
+		time += ENTRIES;
+		Check.that(queue.offer(finished, batch(time, FINAL_ENTRIES), true),
+				"final batch of monitor kept while database backlogged");
+		Check.equal(3 * ENTRIES, queue.getDropped(), "entries dropped");
+
+		db.runAll();
+		Check.equal(LogQueue.MAX_PENDING * ENTRIES, rows(adapter, running),
+				"queued batches written");
+		Check.equal(FINAL_ENTRIES, rows(adapter, finished), "final batch written");
+		Check.equal(ENTRIES, adapter.getDropped(running), "drops of monitor in Monitor table");
+		Check.equal(2 * ENTRIES, adapter.getDropped(finished),
+				"drops of other monitor in Monitor table");
+
+		Check.that(queue.offer(running, batch(time, ENTRIES), false), "batch queued after catching up");
+		db.runAll();
+		Check.equal(ENTRIES, adapter.getDropped(running), "no drops once caught up");
+		Check.equal(0, db.size(), "database thread idle");
+		Check.done("LogQueueTest");
+	}
+
+	private static DataBatch batch(long time, int entries) {
+		final DataBatch batch = DataBatch.obtain();
+		for (int i = 0; i < entries; i++) {
+			batch.add(time + i, i);
+		}
+		return batch;
+	}
+
+	private static int rows(CimonDatabaseAdapter adapter, int monitor) {
+		final Cursor cursor = adapter.queryMonitorPage(monitor, new String[] {DataTable.COLUMN_ID,
+				DataTable.COLUMN_TIMESTAMP, DataTable.COLUMN_VALUE}, Long.MIN_VALUE, -1, 1000);
+		try {
+			return cursor.getCount();
+		} finally {
+			cursor.close();
+		}
+	}
+
+}
@@ -0,0 +1,174 @@
+package edu.nd.darts.cimon;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks {@link MemPressureStats} against fixture copies of /proc/vmstat with
+ * lines in shuffled order: the per-zone counters of older kernels, and the
+ * per-node counters of newer kernels along with the pgscan_anon, pgscan_file
+ * and pgscan_direct_throttle counters which must not be added, and pressure
+ * stall information.  The first update reports 0, later updates the difference
+ * since the previous update, and a reset counter reports 0.
+ */
+public class MemPressureStatsTest {
+
+	private static final int MAJFAULT = Metrics.VM_PGMAJFAULT - Metrics.MEMPRESSURE_CATEGORY;
+	private static final int SCAN = Metrics.VM_PGSCAN - Metrics.MEMPRESSURE_CATEGORY;
+	private static final int STEAL = Metrics.VM_PGSTEAL - Metrics.MEMPRESSURE_CATEGORY;
+	private static final int STALLS = Metrics.VM_ALLOCSTALL - Metrics.MEMPRESSURE_CATEGORY;
+	private static final int MEMORY_SOME = Metrics.PSI_MEMORY_SOME - Metrics.MEMPRESSURE_CATEGORY;
+	private static final int MEMORY_FULL = Metrics.PSI_MEMORY_FULL - Metrics.MEMPRESSURE_CATEGORY;
+	private static final int MEMORY_STALL = Metrics.PSI_MEMORY_STALL - Metrics.MEMPRESSURE_CATEGORY;
+	private static final int CPU_SOME = Metrics.PSI_CPU_SOME - Metrics.MEMPRESSURE_CATEGORY;
+	private static final int CPU_STALL = Metrics.PSI_CPU_STALL - Metrics.MEMPRESSURE_CATEGORY;
+
+	private static final Random random = new Random(1);
+
+	public static void main(String[] args) throws Exception {
+		checkNodeCounters();
+		checkZoneCounters();
+		Check.done("MemPressureStatsTest");
+	}
+
+	private static void checkNodeCounters() throws IOException {
+		final File dir = directory();
+		final File vmstat = new File(dir, "vmstat");
+		final File pressure = new File(dir, "pressure");
+		final Map<String, Long> counters = counters("pgmajfault", "pgscan_kswapd", "pgscan_direct",
+				"pgscan_khugepaged", "pgscan_anon", "pgscan_file", "pgscan_direct_throttle",
+				"pgsteal_kswapd", "pgsteal_direct", "pgsteal_khugepaged", "pgsteal_anon",
+				"pgsteal_file", "allocstall_dma", "allocstall_normal", "allocstall_movable");
+		write(vmstat, counters);
+		writePressure(pressure, 123456, 45678, 999999);
+		final MemPressureStats stats = new MemPressureStats(vmstat.getPath(), pressure.getPath());
+		final float[] values = new float[9];
+		Check.that(stats.hasPressure(), "pressure stall information found");
+		Check.that(stats.update(values), "vmstat read");
+		boolean zero = true;
+		for (int i = MAJFAULT; i <= STALLS; i++) {
+			zero &= values[i] == 0;
+		}
+		Check.that(zero, "first update reports 0 for counters");
+		Check.equal(0, values[MEMORY_STALL], 0, "first update reports 0 for stall time");
+		Check.equal(1.5, values[MEMORY_SOME], 0, "memory some average");
+		Check.equal(0.5, values[MEMORY_FULL], 0, "memory full average");
+		Check.equal(3.25, values[CPU_SOME], 0, "cpu some average");
+
+		add(counters, "pgmajfault", 7);
+		add(counters, "pgscan_kswapd", 100);
+		add(counters, "pgscan_direct", 20);
+		add(counters, "pgscan_khugepaged", 1);
+		add(counters, "pgscan_anon", 500);
+		add(counters, "pgscan_file", 400);
+		add(counters, "pgscan_direct_throttle", 9);
+		add(counters, "pgsteal_kswapd", 90);
+		add(counters, "pgsteal_direct", 10);
+		add(counters, "pgsteal_anon", 300);
+		add(counters, "allocstall_normal", 2);
+		add(counters, "allocstall_movable", 1);
+		write(vmstat, counters);
+		writePressure(pressure, 128456, 45678, 1006999);
+		Check.that(stats.update(values), "vmstat read again");
+		Check.equal(7, values[MAJFAULT], 0, "major faults since previous update");
+		Check.equal(121, values[SCAN], 0, "node scans summed, anon/file/throttle excluded");
+		Check.equal(100, values[STEAL], 0, "node steals summed, anon/file excluded");
+		Check.equal(3, values[STALLS], 0, "allocation stalls summed");
+		Check.equal(5000, values[MEMORY_STALL], 0, "memory stall time since previous update");
+		Check.equal(7000, values[CPU_STALL], 0, "cpu stall time since previous update");
+
+		add(counters, "pgmajfault", -1000);
+		write(vmstat, counters);
+		Check.that(stats.update(values), "vmstat read after reset");
+		Check.equal(0, values[MAJFAULT], 0, "reset counter reports 0");
+	}
+
+	private static void checkZoneCounters() throws IOException {
+		final File dir = directory();
+		final File vmstat = new File(dir, "vmstat");
+		final Map<String, Long> counters = counters("pgmajfault", "pgscan_kswapd_dma",
+				"pgscan_kswapd_normal", "pgscan_kswapd_movable", "pgscan_direct_dma",
+				"pgscan_direct_normal", "pgscan_direct_movable", "pgsteal_kswapd_dma",
+				"pgsteal_kswapd_normal", "pgsteal_direct_normal", "allocstall");
+		write(vmstat, counters);
+		final MemPressureStats stats = new MemPressureStats(vmstat.getPath(),
+				new File(dir, "pressure").getPath());
+		final float[] values = new float[9];
+		Check.that(!stats.hasPressure(), "no pressure stall information on older kernel");
+		stats.update(values);
+		add(counters, "pgscan_kswapd_dma", 1);
+		add(counters, "pgscan_kswapd_normal", 50);
+		add(counters, "pgscan_kswapd_movable", 4);
+		add(counters, "pgscan_direct_normal", 30);
+		add(counters, "pgsteal_kswapd_normal", 40);
+		add(counters, "pgsteal_direct_normal", 25);
+		add(counters, "allocstall", 6);
+		write(vmstat, counters);
+		Check.that(stats.update(values), "zone vmstat read");
+		Check.equal(85, values[SCAN], 0, "zone scans summed");
+		Check.equal(65, values[STEAL], 0, "zone steals summed");
+		Check.equal(6, values[STALLS], 0, "allocation stalls of older kernel");
+		Check.equal(0, values[MEMORY_SOME] + values[MEMORY_STALL] + values[CPU_SOME], 0,
+				"pressure reports 0 without pressure stall information");
+	}
+
+	private static File directory() throws IOException {
+		final File dir = File.createTempFile("cimon-vm", "");
+		dir.delete();
+		dir.mkdirs();
+		return dir;
+	}
+
+	/** Counters of vmstat at random values, among 150 other lines. */
+	private static Map<String, Long> counters(String... names) {
+		final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+		for (String name : names) {
+			counters.put(name, 100000L + random.nextInt(1000000));
+		}
+		for (int i = 0; i < 150; i++) {
+			counters.put("nr_other_" + i, (long) random.nextInt(1000000));
+		}
+		return counters;
+	}
+
+	private static void add(Map<String, Long> counters, String name, long count) {
+		counters.put(name, counters.get(name) + count);
+	}
+
+	/** Write vmstat with lines in random order. */
+	private static void write(File file, Map<String, Long> counters) throws IOException {
+		final List<String> lines = new ArrayList<String>();
+		for (Map.Entry<String, Long> counter : counters.entrySet()) {
+			lines.add(counter.getKey() + " " + counter.getValue() + "\n");
+		}
+		Collections.shuffle(lines, random);
+		final StringBuilder text = new StringBuilder();
+		for (String line : lines) {
+			text.append(line);
+		}
+		write(file, text.toString());
+	}
+
+	private static void writePressure(File dir, long memory, long memoryFull, long cpu)
+			throws IOException {
+		write(new File(dir, "memory"), "some avg10=1.50 avg60=0.80 avg300=0.20 total=" +
+				memory + "\nfull avg10=0.50 avg60=0.30 avg300=0.10 total=" + memoryFull + "\n");
+		write(new File(dir, "cpu"), "some avg10=3.25 avg60=2.00 avg300=1.00 total=" + cpu +
+				"\nfull avg10=0.00 avg60=0.00 avg300=0.00 total=0\n");
+	}
+
+	private static void write(File file, String contents) throws IOException {
+		file.getParentFile().mkdirs();
+		final FileWriter writer = new FileWriter(file);
+		writer.write(contents);
+		writer.close();
+	}
+
+}
@@ -0,0 +1,111 @@
+package edu.nd.darts.cimon;
+
+import android.os.Looper;
+import android.util.SparseArray;
+
+/**
+ * Checks the synchronous reads of {@link MetricService#fetchMetricDouble(int, long)}
+ * on a looper driven by a thread of the test: a stale group is refreshed by a
+ * one-shot read which publishes values without an update of the group, a fresh
+ * group is answered from the published values, and a group which cannot be read
+ * outside of its updates returns NaN once the timeout expires.
+ */
+public class MetricFetchTest {
+
+	/** Group whose one-shot reads publish the count of reads. */
+	private static final class CountingService extends FloatMetricService {
+		final boolean refreshable;
+		int reads = 0;
+
+		CountingService(int groupId, boolean refreshable, long freshness) {
+			this.groupId = groupId;
+			this.refreshable = refreshable;
+			metricsCount = 2;
+			floatValues = new float[metricsCount];
+			valueNodes = new SparseArray<ValueNode<Float>>();
+			freshnessThreshold = freshness;
+			adminObserver = SystemObserver.getInstance();
+			schedules = new ScheduleIndex();
+			init();
+		}
+
+		@Override
+		void getMetricInfo() {
+			floatValues[0] = -1;
+			performUpdates();
+		}
+
+		@Override
+		void insertDatabaseEntries() {
+		}
+
+		@Override
+		protected boolean refreshValues() {
+			if (!refreshable) {
+				return false;
+			}
+			reads++;
+			publishValues(new float[] {reads, 10 * reads}, android.os.SystemClock.uptimeMillis());
+			return true;
+		}
+	}
+
+	private static volatile boolean running = true;
+
+	public static void main(String[] args) throws Exception {
+		final CountingService counting = new CountingService(Metrics.MEMPRESSURE_CATEGORY,
+				true, 50);
+		final CountingService callbacks = new CountingService(Metrics.DISKIO_CATEGORY,
+				false, 50);
+		final Thread driver = drive(counting.metricHandler.getLooper(),
+				callbacks.metricHandler.getLooper());
+
+		final int metric = Metrics.MEMPRESSURE_CATEGORY;
+		Check.that(Double.isNaN(counting.fetchMetricDouble(metric, 0)),
+				"nothing published, no wait: NaN");
+		Check.equal(1, counting.fetchMetricDouble(metric, 1000), 0, "stale group read once");
+		Check.equal(10, counting.fetchMetricDouble(metric + 1, 1000), 0,
+				"other metric of same read");
+		Check.equal(1, counting.reads, "fresh value answered from published values");
+		Check.equal(0, counting.getMeasureCnt(), "one-shot read is not an update of the group");
+		Check.equal(0, counting.lastUpdate, "one-shot read leaves time of last update");
+		Check.that(counting.updateMetric == null, "one-shot read schedules no update");
+		Thread.sleep(80);
+		Check.equal(2, counting.fetchMetricDouble(metric, 1000), 0, "expired value read again");
+		Check.that(Double.isNaN(counting.fetchMetricDouble(metric - 1, 1000)),
+				"metric of other group: NaN");
+
+		final long start = System.nanoTime();
+		final double value = callbacks.fetchMetricDouble(Metrics.DISKIO_CATEGORY, 100);
+		final long waited = (System.nanoTime() - start) / 1000000;
+		Check.that(Double.isNaN(value), "no value within timeout: NaN");
+		Check.that(waited >= 100, "waited for timeout: " + waited + "ms");
+
+		running = false;
+		driver.join();
+		Check.done("MetricFetchTest");
+	}
+
+	/** Run callbacks of loopers as they fall due, until the test ends. */
+	static Thread drive(final Looper... loopers) {
+		final Thread thread = new Thread("metric") {
+
+			@Override
+			public void run() {
+				while (running) {
+					int ran = 0;
+					for (Looper looper : loopers) {
+						ran += looper.runDue();
+					}
+					if (ran == 0) {
+						Thread.yield();
+					}
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+}
@@ -0,0 +1,109 @@
+package edu.nd.darts.cimon;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+/**
+ * Checks batch reads of metrics of several groups, in the steps of the
+ * getSnapshot method of {@link NDroidService}: each group is first read from its
+ * published values with {@link MetricService#readSnapshot}, and only the groups
+ * found stale are posted to their loopers with {@link MetricService#postSnapshot}.
+ * The batch mixes a fresh group, a stale group which is refreshed by a one-shot
+ * read, and a stale group which cannot be read outside of its updates.  Loopers
+ * are run by the test itself, so two snapshots of the stale group can be queued
+ * before either runs.
+ */
+public class MetricSnapshotTest {
+
+	/** Group whose one-shot reads publish the count of reads. */
+	private static final class CountingService extends FloatMetricService {
+		final boolean refreshable;
+		int reads = 0;
+
+		CountingService(int groupId, boolean refreshable, long freshness) {
+			this.groupId = groupId;
+			this.refreshable = refreshable;
+			metricsCount = 2;
+			floatValues = new float[metricsCount];
+			valueNodes = new SparseArray<ValueNode<Float>>();
+			freshnessThreshold = freshness;
+			adminObserver = SystemObserver.getInstance();
+			schedules = new ScheduleIndex();
+			init();
+		}
+
+		@Override
+		void getMetricInfo() {
+			floatValues[0] = -1;
+			performUpdates();
+		}
+
+		@Override
+		void insertDatabaseEntries() {
+		}
+
+		@Override
+		protected boolean refreshValues() {
+			if (!refreshable) {
+				return false;
+			}
+			reads++;
+			publishValues(new float[] {reads, 10 * reads}, SystemClock.uptimeMillis());
+			return true;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		final CountingService fresh = new CountingService(Metrics.MEMPRESSURE_CATEGORY,
+				true, 60000);
+		final CountingService stale = new CountingService(Metrics.DISKIO_CATEGORY,
+				true, 50);
+		final CountingService callbacks = new CountingService(Metrics.NETBYTES_CATEGORY,
+				false, 50);
+		final CountingService[] services = {fresh, stale, callbacks};
+		final Looper[] loopers = {fresh.metricHandler.getLooper(),
+				stale.metricHandler.getLooper(), callbacks.metricHandler.getLooper()};
+		// publish values of both refreshable groups, then let those of stale expire
+		fresh.refreshValues();
+		stale.refreshValues();
+		Thread.sleep(80);
+
+		final int[] metrics = {Metrics.DISKIO_CATEGORY + 1, Metrics.MEMPRESSURE_CATEGORY,
+				Metrics.NETBYTES_CATEGORY, Metrics.DISKIO_CATEGORY,
+				Metrics.MEMPRESSURE_CATEGORY + 1};
+		final int[][] indices = {{1, 4}, {0, 3}, {2}};
+		final double[] snapshot = new double[metrics.length];
+		Arrays.fill(snapshot, Double.NaN);
+		boolean[] read = new boolean[services.length];
+		for (int g = 0; g < services.length; g++) {
+			read[g] = services[g].readSnapshot(metrics, indices[g], snapshot);
+		}
+		Check.that(read[0], "fresh group read from published values");
+		Check.that(!read[1] && !read[2], "stale groups not read from published values");
+
+		final CountDownLatch done = new CountDownLatch(3);
+		stale.postSnapshot(metrics, indices[1], snapshot, done);
+		stale.postSnapshot(metrics, indices[1], snapshot, done);
+		callbacks.postSnapshot(metrics, indices[2], snapshot, done);
+		Check.equal(1, stale.reads, "nothing read before the looper runs");
+		for (Looper looper : loopers) {
+			looper.runDue();
+		}
+		Check.equal(0, done.getCount(), "every posted group counted down");
+		Check.equal(1, fresh.reads, "fresh group not read again");
+		Check.equal(2, stale.reads, "stale group refreshed once for two snapshots");
+		Check.equal(1, snapshot[1], 0, "fresh value stored at its index");
+		Check.equal(10, snapshot[4], 0, "fresh value of other metric stored at its index");
+		Check.equal(2, snapshot[3], 0, "refreshed value stored at its index");
+		Check.equal(20, snapshot[0], 0, "refreshed value of same read stored at its index");
+		Check.that(Double.isNaN(snapshot[2]), "group without one-shot reads and no update: NaN");
+		Check.equal(0, stale.getMeasureCnt(), "snapshot is not an update of the group");
+		Check.equal(0, stale.lastUpdate, "snapshot leaves time of last update");
+		Check.done("MetricSnapshotTest");
+	}
+
+}
@@ -0,0 +1,189 @@
+package edu.nd.darts.cimon;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Looper;
+import edu.nd.darts.cimon.contentprovider.CimonContentProvider;
+import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+import edu.nd.darts.cimon.database.MonitorTable;
+
+/**
+ * Checks batch registration through {@link MonitorBatch}, as made by the
+ * registerPeriodicBatch and unregisterBatch calls of {@link CimonInterface}, with
+ * the metric groups of the app which can be read on this system: the monitor ids
+ * of the batch are inserted in a single transaction, with one notification of
+ * the Monitor table, and each group is sent one message to register, and one to
+ * unregister, all of its monitors.  Also checks that a batch whose inserts fail
+ * part way, made to fail by a trigger on the Monitor table, leaves no monitor
+ * rows and registers nothing with the metric groups.  Loopers of the groups are
+ * run by the test itself.
+ */
+public class MonitorBatchTest {
+
+	private static final long PERIOD = 1000;
+	private static final int UNKNOWN = -5;
+
+	public static void main(String[] args) throws Exception {
+		if (!SQLiteDatabase.isAvailable()) {
+			System.out.println("MonitorBatchTest: skipped, no SQLite JDBC driver on TEST_CLASSPATH");
+			return;
+		}
+		final File dir = File.createTempFile("cimon-batch", "");
+		dir.delete();
+		dir.mkdirs();
+		Context.setDataDirectory(dir);
+		final MyApplication app = new MyApplication();
+		app.onCreate();
+		final CimonDatabaseAdapter adapter = CimonDatabaseAdapter.getInstance(app);
+		final String path = app.getDatabasePath("cimon.db").getPath();
+
+		final int[] metrics = {Metrics.CPU_LOAD1, Metrics.MEMORY_TOTAL, UNKNOWN,
+				Metrics.CPU_LOAD1 + 1, Metrics.MEMORY_AVAIL, Metrics.CPUCORE_CATEGORY,
+				Metrics.DISKIO_CATEGORY, Metrics.MEMORY_TOTAL + 2};
+		final long[] periods = new long[metrics.length];
+		Arrays.fill(periods, PERIOD);
+		final List<MetricService<?>> services = new ArrayList<MetricService<?>>();
+		final List<Looper> loopers = new ArrayList<Looper>();
+		for (int metric : metrics) {
+			final MetricService<?> service = MetricService.getService(metric);
+			if ((service == null) || services.contains(service)) continue;
+			services.add(service);
+			if (!loopers.contains(service.metricHandler.getLooper())) {
+				loopers.add(service.metricHandler.getLooper());
+			}
+		}
+		final int[] expected = new int[loopers.size()];
+		for (MetricService<?> service : services) {
+			expected[loopers.indexOf(service.metricHandler.getLooper())]++;
+		}
+		Check.equal(4, services.size(), "metric groups of batch");
+
+		int commits = SQLiteDatabase.getCommitCount();
+		int notified = monitorNotifications(app);
+		int[] posted = sizes(loopers);
+		final int[] monitorIds = MonitorBatch.register(adapter, metrics, periods, 0, false,
+				null);
+		Check.equal(-1, monitorIds[2], "unknown metric gets no monitor");
+		final int[] sorted = monitorIds.clone();
+		Arrays.sort(sorted);
+		Check.that((sorted[1] >= 0) && (sorted[sorted.length - 1] - sorted[1] ==
+				sorted.length - 2), "monitor ids of batch are consecutive: " +
+				Arrays.toString(monitorIds));
+		Check.equal(1, SQLiteDatabase.getCommitCount() - commits,
+				"monitor ids inserted in one transaction");
+		Check.equal(1, monitorNotifications(app) - notified,
+				"Monitor table notified once for batch");
+		Check.that(Arrays.equals(expected, delta(loopers, posted)),
+				"one message to each group to register: " + Arrays.toString(delta(loopers, posted)));
+		runDue(loopers);
+		Check.that(allScheduled(metrics, monitorIds, true), "every monitor scheduled by its group");
+
+		posted = sizes(loopers);
+		MonitorBatch.unregister(metrics, monitorIds);
+		Check.that(Arrays.equals(expected, delta(loopers, posted)),
+				"one message to each group to unregister: " + Arrays.toString(delta(loopers, posted)));
+		runDue(loopers);
+		Check.that(allScheduled(metrics, monitorIds, false), "every monitor removed by its group");
+
+		// third insert of the next batch fails
+		final int rows = monitorRows(path);
+		final SQLiteDatabase other = SQLiteDatabase.openDatabase(path, null,
+				SQLiteDatabase.OPEN_READWRITE);
+		other.execSQL("CREATE TRIGGER fail_batch BEFORE INSERT ON " + MonitorTable.TABLE_MONITOR +
+				" WHEN (SELECT count(*) FROM " + MonitorTable.TABLE_MONITOR + ") >= " + (rows + 2) +
+				" BEGIN SELECT RAISE(ABORT, 'batch failed'); END");
+		commits = SQLiteDatabase.getCommitCount();
+		notified = monitorNotifications(app);
+		posted = sizes(loopers);
+		final int[] failed = MonitorBatch.register(adapter, metrics, periods, 0, false, null);
+		final int[] none = new int[metrics.length];
+		Arrays.fill(none, -1);
+		Check.that(Arrays.equals(none, failed), "failed batch returns no monitors: " +
+				Arrays.toString(failed));
+		Check.equal(rows, monitorRows(path), "inserts of failed batch rolled back");
+		Check.equal(0, SQLiteDatabase.getCommitCount() - commits, "failed batch commits nothing");
+		Check.equal(0, monitorNotifications(app) - notified, "failed batch not notified");
+		Check.that(Arrays.equals(new int[loopers.size()], delta(loopers, posted)),
+				"failed batch sends no message to groups");
+		other.execSQL("DROP TRIGGER fail_batch");
+		other.close();
+
+		final int[] retried = MonitorBatch.register(adapter, metrics, periods, 0, false, null);
+		Check.that(retried[0] >= 0, "batch registered once inserts succeed");
+		MonitorBatch.unregister(metrics, retried);
+		runDue(loopers);
+
+		adapter.close();
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+		Check.done("MonitorBatchTest");
+	}
+
+	private static boolean allScheduled(int[] metrics, int[] monitorIds, boolean scheduled) {
+		for (int i = 0; i < metrics.length; i++) {
+			if (monitorIds[i] < 0) continue;
+			final MetricService<?> service = MetricService.getService(metrics[i]);
+			if ((service.schedules.get(monitorIds[i]) != null) != scheduled) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int monitorNotifications(Context context) {
+		int count = 0;
+		for (Uri uri : context.getContentResolver().getNotified()) {
+			if (uri.equals(CimonContentProvider.MONITOR_URI)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static int monitorRows(String path) {
+		final SQLiteDatabase database = SQLiteDatabase.openDatabase(path, null,
+				SQLiteDatabase.OPEN_READONLY);
+		final Cursor cursor = database.rawQuery("SELECT count(*) FROM " +
+				MonitorTable.TABLE_MONITOR, null);
+		try {
+			cursor.moveToFirst();
+			return cursor.getInt(0);
+		}
+		finally {
+			cursor.close();
+			database.close();
+		}
+	}
+
+	private static int[] sizes(List<Looper> loopers) {
+		final int[] sizes = new int[loopers.size()];
+		for (int i = 0; i < sizes.length; i++) {
+			sizes[i] = loopers.get(i).size();
+		}
+		return sizes;
+	}
+
+	private static int[] delta(List<Looper> loopers, int[] before) {
+		final int[] sizes = sizes(loopers);
+		for (int i = 0; i < sizes.length; i++) {
+			sizes[i] -= before[i];
+		}
+		return sizes;
+	}
+
+	private static void runDue(List<Looper> loopers) {
+		for (Looper looper : loopers) {
+			looper.runDue();
+		}
+	}
+
+}
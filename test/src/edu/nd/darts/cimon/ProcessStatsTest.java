@@ -0,0 +1,141 @@
+package edu.nd.darts.cimon;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import android.os.SystemClock;
+
+/**
+ * Checks {@link ProcessStats} against a fixture proc filesystem on a virtual
+ * clock: processes are ranked by processor time and resident memory, a process
+ * which exits is dropped without listing the directory again, a new process is
+ * found once the count of forks changes and the refresh interval has passed, and
+ * watched process ids which can no longer be sampled are dropped from the set.
+ */
+public class ProcessStatsTest {
+
+	private static final int PROCESSES = 20;
+
+	private static File proc;
+	private static long forks = 1000;
+	private static final long[] utime = new long[PROCESSES + 2];
+
+	public static void main(String[] args) throws Exception {
+		proc = File.createTempFile("cimon-proc", "");
+		proc.delete();
+		proc.mkdirs();
+		long now = 1000000;
+		SystemClock.setVirtualTime(now);
+		writeForks();
+		for (int pid = 1; pid <= PROCESSES; pid++) {
+			writeProcess(pid, 0, pid);
+		}
+		final ProcessStats stats = new ProcessStats(proc.getPath());
+		final float[] values = new float[Metrics.PROCESS_TOP_N * Metrics.PROCESS_FIELDS];
+		Check.equal(PROCESSES, stats.update(values), "all processes sampled");
+		Check.equal(1, stats.getRefreshCount(), "processes listed on first update");
+		Check.equal(PROCESSES, values[Metrics.PROCESS_MEM_PID], 0, "largest process ranked first");
+		Check.equal(PROCESSES * 4, values[Metrics.PROCESS_MEM], 0, "resident memory in kB");
+
+		// process 7 consumes most processor time, then process 3
+		for (int pid = 1; pid <= PROCESSES; pid++) {
+			writeProcess(pid, (pid == 7) ? 50 : (pid == 3) ? 30 : 1, pid);
+		}
+		now += 1000;
+		SystemClock.setVirtualTime(now);
+		Check.equal(PROCESSES, stats.update(values), "all processes sampled again");
+		Check.equal(7, values[Metrics.PROCESS_CPU_PID], 0, "top processor consumer ranked first");
+		Check.equal(50, values[Metrics.PROCESS_CPU], 0, "jiffies since previous update");
+		Check.equal(3, values[Metrics.processMetric(1, Metrics.PROCESS_CPU_PID) -
+				Metrics.PROCESS_CATEGORY], 0, "second consumer ranked second");
+		Check.equal(1, stats.getRefreshCount(), "no listing without new forks");
+
+		// process exits: dropped without listing
+		exit(7);
+		now += 1000;
+		SystemClock.setVirtualTime(now);
+		Check.equal(PROCESSES - 1, stats.update(values), "exited process dropped");
+		Check.equal(1, stats.getRefreshCount(), "no listing when a process exits");
+
+		// new process found once forks change and refresh interval passed
+		writeProcess(PROCESSES + 1, 0, 1);
+		forks += 5;
+		writeForks();
+		now += 1000;
+		SystemClock.setVirtualTime(now);
+		Check.equal(PROCESSES - 1, stats.update(values), "no listing within refresh interval");
+		now = 1000000 + ProcessStats.REFRESH_INTERVAL;
+		SystemClock.setVirtualTime(now);
+		Check.equal(PROCESSES, stats.update(values), "new process found after refresh interval");
+		Check.equal(2, stats.getRefreshCount(), "processes listed again once");
+		now += 2 * ProcessStats.REFRESH_INTERVAL;
+		SystemClock.setVirtualTime(now);
+		stats.update(values);
+		Check.equal(2, stats.getRefreshCount(), "no listing while forks unchanged");
+
+		// watched ids only
+		stats.setWatched(new int[] {3, 5}, null);
+		Check.equal(2, stats.update(values), "watched processes sampled");
+		Check.equal(3, stats.getRefreshCount(), "watched set applied");
+		exit(5);
+		now += 1000;
+		SystemClock.setVirtualTime(now);
+		Check.equal(1, stats.update(values), "watched process which exited dropped");
+		// id of process 3 reused by a new process
+		writeProcess(3, 0, 3, 999);
+		forks++;
+		writeForks();
+		for (int i = 0; i < 5; i++) {
+			now += ProcessStats.REFRESH_INTERVAL;
+			SystemClock.setVirtualTime(now);
+			stats.update(values);
+		}
+		Check.equal(0, stats.update(values), "watched id reused by a new process dropped");
+		Check.equal(3, stats.getRefreshCount(), "proc not listed when only ids are watched");
+
+		SystemClock.setVirtualTime(-1);
+		Check.done("ProcessStatsTest");
+	}
+
+	private static void writeProcess(int pid, long jiffies, int pages) throws IOException {
+		writeProcess(pid, jiffies, pages, 100);
+	}
+
+	/** Write stat and cmdline of process, with user jiffies added. */
+	private static void writeProcess(int pid, long jiffies, int pages, long startTime)
+			throws IOException {
+		final File dir = new File(proc, String.valueOf(pid));
+		utime[pid] = (startTime == 100) ? utime[pid] + jiffies : jiffies;
+		write(new File(dir, "stat"), pid + " (app " + pid + ") S 1 1 0 0 -1 4194560 100 0 0 0 " +
+				utime[pid] + " 0 0 0 20 0 4 0 " + startTime + " 1048576 " + pages +
+				" 18446744073709551615 1 1 0 0 0 0 0 0 0 0 0 0 17 0 0 0 0 0 0\n");
+		write(new File(dir, "cmdline"), "edu.test.app" + pid + "\0");
+	}
+
+	/**
+	 * Remove process.  Its stat file is emptied first, as the stat file of an
+	 * exited process can no longer be read, even when it is held open.
+	 */
+	private static void exit(int pid) throws IOException {
+		final File dir = new File(proc, String.valueOf(pid));
+		write(new File(dir, "stat"), "");
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+	}
+
+	private static void writeForks() throws IOException {
+		write(new File(proc, "stat"), "cpu  100 0 100 1000 0 0 0 0 0 0\nctxt 5000\n" +
+				"processes " + forks + "\nprocs_running 1\n");
+	}
+
+	private static void write(File file, String contents) throws IOException {
+		file.getParentFile().mkdirs();
+		final FileWriter writer = new FileWriter(file);
+		writer.write(contents);
+		writer.close();
+	}
+
+}
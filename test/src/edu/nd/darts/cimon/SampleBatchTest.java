@@ -0,0 +1,113 @@
+package edu.nd.darts.cimon;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.SystemClock;
+
+/**
+ * Checks batched delivery of samples by a {@link ValueNode} on a virtual clock:
+ * a batch whose next sample is late is still sent once its first sample has been
+ * held for maxLatency, a batch sent on reaching maxCount leaves no flush
+ * behind, and batched delivery sends one message per batch where delivery per
+ * sample sends one per sample.
+ */
+public class SampleBatchTest {
+
+	private static final long PERIOD = 100;
+	private static final long MAX_LATENCY = 1000;
+	private static final int MAX_COUNT = 5;
+
+	private static final List<SampleBatch> received = new ArrayList<SampleBatch>();
+
+	/** Client messenger, which counts messages sent to it. */
+	private static final class CountingMessenger extends Messenger {
+		int sends = 0;
+
+		@Override
+		public void send(Message message) {
+			sends++;
+		}
+	}
+
+	public static void main(String[] args) {
+		long now = 1000000;
+		SystemClock.setVirtualTime(now);
+		final Looper metricLooper = new HandlerThread("metric").getLooper();
+		final Looper clientLooper = new HandlerThread("client").getLooper();
+		final Handler metricHandler = new Handler(metricLooper);
+		final Handler dbHandler = new Handler(new HandlerThread("db").getLooper());
+		final Messenger client = new Messenger(new Handler(clientLooper) {
+
+			public void handleMessage(Message msg) {
+				received.add(msg.getData().<SampleBatch>getParcelable(SampleBatch.KEY));
+			}
+		});
+
+		// next sample is late: flush sends batch at maxLatency after first sample
+		final FloatValueNode late = new FloatValueNode(Metrics.CPU_LOAD1,
+				new ScheduleIndex(), dbHandler, SystemObserver.getInstance());
+		late.insertTimed(1, PERIOD, client, 0);
+		late.setDelivery(1, MAX_LATENCY, 100, metricHandler);
+		// first sample is due one period after insert
+		final long first = now + PERIOD;
+		for (int i = 0; i < 3; i++) {
+			now += PERIOD;
+			SystemClock.setVirtualTime(now);
+			late.updateValue(i, now);
+		}
+		SystemClock.setVirtualTime(first + MAX_LATENCY - 1);
+		metricLooper.runDue();
+		clientLooper.runAll();
+		Check.equal(0, received.size(), "batch held before maxLatency");
+		SystemClock.setVirtualTime(first + MAX_LATENCY);
+		metricLooper.runDue();
+		clientLooper.runAll();
+		Check.equal(1, received.size(), "batch flushed at maxLatency without a further sample");
+		Check.equal(3, received.get(0).size(), "flushed batch holds pending samples");
+		Check.equal(first, received.get(0).getFirstTimestamp(), "flushed batch starts at first sample");
+		received.clear();
+
+		// batch sent on reaching maxCount removes its flush
+		now = first + 10 * MAX_LATENCY;
+		SystemClock.setVirtualTime(now);
+		final FloatValueNode full = new FloatValueNode(Metrics.CPU_LOAD5,
+				new ScheduleIndex(), dbHandler, SystemObserver.getInstance());
+		full.insertTimed(2, PERIOD, client, 0);
+		full.setDelivery(2, 100 * MAX_LATENCY, MAX_COUNT, metricHandler);
+		for (int i = 0; i < MAX_COUNT; i++) {
+			now += PERIOD;
+			SystemClock.setVirtualTime(now);
+			full.updateValue(i, now);
+		}
+		clientLooper.runAll();
+		Check.equal(1, received.size(), "batch sent on reaching maxCount");
+		Check.equal(MAX_COUNT, received.get(0).size(), "full batch holds maxCount samples");
+		Check.equal(0, metricLooper.size(), "no flush pending after batch sent");
+
+		// messages sent for the same samples, per sample and batched
+		final CountingMessenger perSample = new CountingMessenger();
+		final CountingMessenger batched = new CountingMessenger();
+		final FloatValueNode counted = new FloatValueNode(Metrics.CPU_LOAD15,
+				new ScheduleIndex(), dbHandler, SystemObserver.getInstance());
+		counted.insertTimed(3, PERIOD, perSample, 0);
+		counted.insertTimed(4, PERIOD, batched, 0);
+		counted.setDelivery(4, 100 * MAX_LATENCY, MAX_COUNT, metricHandler);
+		for (int i = 0; i < 20 * MAX_COUNT; i++) {
+			now += PERIOD;
+			SystemClock.setVirtualTime(now);
+			counted.updateValue(i, now);
+		}
+		Check.equal(20 * MAX_COUNT, perSample.sends, "one message per sample");
+		Check.equal(20, batched.sends, "one message per batch of maxCount samples");
+
+		SystemClock.setVirtualTime(-1);
+		Check.done("SampleBatchTest");
+	}
+
+}
@@ -0,0 +1,130 @@
+package edu.nd.darts.cimon;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Checks the {@link SampleRing} on the desktop: records are read in order, a
+ * consumer which falls behind skips overwritten records and counts them as
+ * overruns, closing is seen by the consumer, and a region which is not a ring is
+ * rejected.  A producer thread then writes into a memory-mapped file while a
+ * consumer thread reads from a separate mapping, and every record read must be
+ * intact and in order, with records read and overruns adding up to those
+ * written.  Prints the rate of the concurrent run.
+ */
+public class SampleRingTest {
+
+	private static final int CAPACITY = 1024;
+	private static final int RECORDS = 5000000;
+
+	public static void main(String[] args) throws Exception {
+		checkSequential();
+		checkConcurrent();
+		Check.done("SampleRingTest");
+	}
+
+	private static void checkSequential() {
+		final ByteBuffer region = ByteBuffer.allocateDirect(SampleRing.regionSize(64));
+		final SampleRing producer = SampleRing.create(region, 64);
+		final SampleRing consumer = SampleRing.attach(region.duplicate());
+		final long[] timestamps = new long[256];
+		final int[] metrics = new int[256];
+		final float[] values = new float[256];
+
+		for (int i = 0; i < 10; i++) {
+			producer.write(1000 + i, i, i * 0.5f);
+		}
+		Check.equal(10, consumer.available(), "records available");
+		int read = consumer.read(timestamps, metrics, values, 256);
+		boolean ordered = true;
+		for (int i = 0; i < read; i++) {
+			ordered &= (timestamps[i] == 1000 + i) && (metrics[i] == i) && (values[i] == i * 0.5f);
+		}
+		Check.equal(10, read, "records read");
+		Check.that(ordered, "records read in order of writing");
+		Check.equal(0, consumer.read(timestamps, metrics, values, 256), "nothing left to read");
+
+		// consumer falls behind by 36 records more than the capacity
+		for (int i = 10; i < 110; i++) {
+			producer.write(1000 + i, i, i * 0.5f);
+		}
+		read = consumer.read(timestamps, metrics, values, 256);
+		Check.equal(64, read, "capacity of records read after falling behind");
+		Check.equal(36, consumer.getOverruns(), "overwritten records counted as overruns");
+		Check.equal(1046, timestamps[0], "reading resumes at oldest record held");
+
+		Check.that(!consumer.isClosed(), "ring open while monitors remain");
+		producer.close();
+		Check.that(consumer.isClosed(), "consumer sees ring closed");
+
+		boolean rejected = false;
+		try {
+			SampleRing.attach(ByteBuffer.allocateDirect(SampleRing.regionSize(64)));
+		}
+		catch (IllegalArgumentException e) {
+			rejected = true;
+		}
+		Check.that(rejected, "region which is not a ring rejected");
+		Check.equal(128, SampleRing.validCapacity(100), "capacity rounded up to power of 2");
+	}
+
+	/** Producer and consumer on separate threads and mappings of one file. */
+	private static void checkConcurrent() throws Exception {
+		final File file = File.createTempFile("ring", ".ring");
+		final int size = SampleRing.regionSize(CAPACITY);
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(size);
+		final MappedByteBuffer writeMap = raf.getChannel().map(FileChannel.MapMode.READ_WRITE,
+				0, size);
+		final MappedByteBuffer readMap = raf.getChannel().map(FileChannel.MapMode.READ_ONLY,
+				0, size);
+		raf.close();
+		file.delete();
+
+		final SampleRing producer = SampleRing.create(writeMap, CAPACITY);
+		final SampleRing consumer = SampleRing.attach(readMap);
+		final Thread writer = new Thread(new Runnable() {
+
+			public void run() {
+				for (int i = 0; i < RECORDS; i++) {
+					producer.write(i, i & 0xffff, (float) (i % 1000));
+				}
+				producer.close();
+			}
+		});
+		final long[] timestamps = new long[256];
+		final int[] metrics = new int[256];
+		final float[] values = new float[256];
+		long read = 0;
+		long last = -1;
+		boolean intact = true;
+		boolean ordered = true;
+		final long t0 = System.nanoTime();
+		writer.start();
+		while (true) {
+			final boolean closed = consumer.isClosed();
+			final int count = consumer.read(timestamps, metrics, values, timestamps.length);
+			for (int i = 0; i < count; i++) {
+				final long time = timestamps[i];
+				intact &= (metrics[i] == (int) (time & 0xffff)) && (values[i] == time % 1000);
+				ordered &= time > last;
+				last = time;
+			}
+			read += count;
+			if (closed && (count == 0)) break;
+		}
+		final long elapsed = System.nanoTime() - t0;
+		writer.join();
+		Check.that(intact, "records read intact while producer writes");
+		Check.that(ordered, "records read in order while producer writes");
+		Check.equal(RECORDS - 1, last, "last record read");
+		Check.equal(RECORDS, read + consumer.getOverruns(), "records read and overruns add up");
+		System.out.printf("SampleRingTest: %d records in %.0f ms, %.1fM records/s, " +
+				"%d read, %d overruns%n", RECORDS, elapsed / 1e6, RECORDS * 1e3 / elapsed,
+				read, consumer.getOverruns());
+	}
+
+}
@@ -0,0 +1,142 @@
+package edu.nd.darts.cimon;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import android.os.SystemClock;
+
+/**
+ * Checks {@link TimerList} and {@link ScheduleIndex} against brute-force 
+ * references: heap order of updates, alignment of new monitors with the 
+ * scheduled period of least common multiple, and {@link TimerList#getNextUpdate}.
+ */
+public class TimerListTest {
+	
+	private static final long[] PERIODS = {100, 150, 250, 400, 1000, 1500, 3000, 
+		7000, 60000};
+	
+	public static void main(String[] args) {
+		final Random random = new Random(42);
+		long now = 1000000;
+		SystemClock.setVirtualTime(now);
+		
+		final ScheduleIndex schedules = new ScheduleIndex();
+		final TimerList timers = new TimerList(schedules);
+		final List<TimerNode> live = new ArrayList<TimerNode>();
+		int nextId = 1;
+		
+		for (int step = 0; step < 20000; step++) {
+			now += random.nextInt(40);
+			SystemClock.setVirtualTime(now);
+			final int action = random.nextInt(10);
+			if ((action < 4) || live.isEmpty()) {
+				final long period = PERIODS[random.nextInt(PERIODS.length)];
+				final TimerNode head = timers.isEmpty() ? null : timers.getHead();
+				final TimerNode aligned = schedules.getAligned(period, head);
+				if (head != null) {
+					Check.equal(lcmReference(period, head, live), 
+							lcm(period, aligned.getPeriod()), 
+							"period " + period + " aligned with least common multiple");
+				}
+				final int id = nextId++;
+				final TimerNode tnode = timers.insert(id, period, null, 0);
+				if (head != null) {
+					final TimerNode check = new TimerNode(0, period, null, 0);
+					check.setInsertKey(aligned.getKey());
+					Check.equal(check.getKey(), tnode.getKey(), "insert uses aligned key");
+				}
+				schedules.put(id, tnode);
+				live.add(tnode);
+			}
+			else if (action < 6) {
+				final TimerNode victim = live.remove(random.nextInt(live.size()));
+				Check.that(timers.remove(victim.getMonitorId()) == victim, 
+						"remove returns node of monitor");
+				schedules.remove(victim.getMonitorId());
+			}
+			else {
+				while (timers.headTimePassed(now)) {
+					final TimerNode head = timers.getHead();
+					Check.equal(minKey(live), head.getKey(), "head holds earliest update");
+					if (timers.popHead() != null) {
+						live.remove(head);
+						schedules.remove(head.getMonitorId());
+					}
+				}
+			}
+			Check.equal(live.size(), timers.size(), "size matches live monitors");
+			Check.equal(live.size(), schedules.size(), "schedule size matches");
+			final long probe = now + random.nextInt(200) - 100;
+			Check.equal(nextUpdateReference(live, probe), timers.getNextUpdate(probe), 
+					"next update at " + probe);
+		}
+		
+		// periods are indexed once each, however many monitors share them
+		final ScheduleIndex shared = new ScheduleIndex();
+		final TimerList list = new TimerList(shared);
+		for (int id = 1; id <= 1000; id++) {
+			shared.put(id, list.insert(id, PERIODS[id % 3], null, 0));
+		}
+		Check.equal(3, shared.getPeriodCount(), "distinct periods indexed");
+		for (int id = 1; id <= 1000; id += 3) {
+			shared.remove(id);
+		}
+		Check.equal(2, shared.getPeriodCount(), "emptied period dropped from index");
+		Check.that(shared.getAligned(PERIODS[2], null).getPeriod() == PERIODS[2], 
+				"same period found after removals");
+		Check.that(shared.getAligned(PERIODS[1], null).getPeriod() != PERIODS[1], 
+				"removed period not aligned with");
+		
+		SystemClock.setVirtualTime(-1);
+		Check.done("TimerListTest");
+	}
+	
+	/**
+	 * Least common multiple of alignment, as TimerList originally computed it: the
+	 * head, unless another scheduled node has a smaller least common multiple.
+	 */
+	private static long lcmReference(long period, TimerNode head, 
+			List<TimerNode> scheduled) {
+		long minLCM = lcm(period, head.getPeriod());
+		for (TimerNode tnode : scheduled) {
+			minLCM = Math.min(minLCM, lcm(period, tnode.getPeriod()));
+		}
+		return minLCM;
+	}
+	
+	private static long nextUpdateReference(List<TimerNode> nodes, long current) {
+		long nextUpdate = Long.MAX_VALUE;
+		for (TimerNode tNode : nodes) {
+			if (tNode.nodeTimePassed(current)) {
+				if ((tNode.getPeriod() > 0) && (tNode.getPeriod() < nextUpdate)) {
+					nextUpdate = tNode.getPeriod();
+				}
+			}
+			else if ((tNode.getKey() - current) < nextUpdate) {
+				nextUpdate = tNode.getKey() - current;
+			}
+		}
+		return nextUpdate;
+	}
+	
+	private static long minKey(List<TimerNode> nodes) {
+		long min = Long.MAX_VALUE;
+		for (TimerNode tnode : nodes) {
+			min = Math.min(min, tnode.getKey());
+		}
+		return min;
+	}
+	
+	private static long lcm(long a, long b) {
+		long x = a;
+		long y = b;
+		while (y > 0) {
+			final long t = y;
+			y = x % y;
+			x = t;
+		}
+		return a * (b / x);
+	}
+	
+}
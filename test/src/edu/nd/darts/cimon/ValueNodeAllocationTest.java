@@ -0,0 +1,100 @@
+package edu.nd.darts.cimon;
+
+import java.lang.management.ManagementFactory;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+/**
+ * Checks that updating a {@link FloatValueNode} or {@link LongValueNode} with a
+ * primitive value allocates nothing once warmed up: threshold comparisons of
+ * {@link FloatThresholdList} and {@link LongThresholdList}, the schedule of a
+ * periodic monitor, delivery to a {@link LocalListener}, and batching of samples
+ * for the database (through pooled {@link DataBatch}es).
+ */
+public class ValueNodeAllocationTest {
+
+	private static final long PERIOD = 100;
+	private static final int WARMUP = 200000;
+	private static final int UPDATES = 100000;
+
+	private static final ExpressionNode CONDITION = new ExpressionNode() {
+
+		public boolean triggered(ExpressionNode node) { return false; }
+		public void untrigger(ExpressionNode node) { }
+		public void activate() { }
+		public void deactivate() { }
+		public long getCost() { return 0; }
+		public void clear() { }
+		public void setParent(ExpressionNode node) { }
+		public Handler getHandler() { return null; }
+	};
+
+	private static long delivered = 0;
+
+	private static final LocalListener LISTENER = new LocalListener() {
+
+		public void onUpdate(int metric, float value, long timestamp) {
+			delivered++;
+		}
+	};
+
+	public static void main(String[] args) {
+		final com.sun.management.ThreadMXBean threads =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		final long thread = Thread.currentThread().getId();
+		long now = 1000000;
+		SystemClock.setVirtualTime(now);
+		// database queue is never drained, so full batches are dropped and recycled
+		final Handler handler = new Handler();
+
+		final FloatValueNode floatNode = new FloatValueNode(Metrics.CPU_LOAD1,
+				new ScheduleIndex(), handler, SystemObserver.getInstance());
+		floatNode.insertThresh(1, 1000f, PERIOD, CONDITION, true);
+		floatNode.insertThresh(2, -1000f, PERIOD, CONDITION, false);
+		floatNode.insertTimed(3, PERIOD, null, 0);
+		floatNode.setListener(3, LISTENER);
+
+		final LongValueNode longNode = new LongValueNode(Metrics.PROC_CTXT,
+				new ScheduleIndex(), handler, SystemObserver.getInstance());
+		longNode.insertThresh(4, Long.valueOf(Long.MAX_VALUE), PERIOD, CONDITION, true);
+		longNode.insertThresh(5, Long.valueOf(-1), PERIOD, CONDITION, false);
+		longNode.insertTimed(6, PERIOD, null, 0);
+		longNode.setListener(6, LISTENER);
+
+		for (int i = 0; i < WARMUP; i++) {
+			now += PERIOD;
+			SystemClock.setVirtualTime(now);
+			floatNode.updateValue((float) (i % 100), now);
+			longNode.updateValue(1000000L + i, now);
+		}
+
+		delivered = 0;
+		final long before = threads.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < UPDATES; i++) {
+			now += PERIOD;
+			SystemClock.setVirtualTime(now);
+			floatNode.updateValue((float) (i % 100), now);
+			longNode.updateValue(1000000L + i, now);
+		}
+		final long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+		Check.equal(2L * UPDATES, delivered, "every update delivered to periodic monitors");
+		Check.equal(0, allocated, "bytes allocated over " + UPDATES + " updates of each node");
+		Check.equal(1000000L + UPDATES - 1, longNode.getLongValue(),
+				"long value kept without rounding");
+		Check.that(longNode.getValue().longValue() == longNode.getLongValue(),
+				"boxed value matches primitive");
+
+		final long large = (1L << 53) + 1;
+		now += PERIOD;
+		SystemClock.setVirtualTime(now);
+		longNode.updateValue(large, now);
+		Check.equal(large, longNode.getLongValue(), "long beyond float precision kept exactly");
+		Check.equal(large, longNode.getValue().longValue(), "boxed long beyond float precision");
+
+		SystemClock.setVirtualTime(-1);
+		Check.done("ValueNodeAllocationTest");
+	}
+
+}
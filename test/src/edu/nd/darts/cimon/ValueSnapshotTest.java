@@ -0,0 +1,103 @@
+package edu.nd.darts.cimon;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stress test of the {@link ValueSnapshot}: a writer thread publishes updates in
+ * which every value of the group is derived from the same update number, while
+ * reader threads copy the whole group, or selected metrics of a batch straight
+ * into their own array.  Every copy must belong to a single update, with
+ * timestamps never going backwards.  Prints reads per second.
+ */
+public class ValueSnapshotTest {
+
+	private static final int GROUP_ID = 100;
+	private static final int SIZE = 6;
+	private static final int READERS = 4;
+	private static final long RUN_MILLIS = 1000;
+
+	private static volatile boolean running = true;
+
+	public static void main(String[] args) throws Exception {
+		final ValueSnapshot snapshot = new ValueSnapshot(SIZE);
+		final double[] unpublished = new double[SIZE];
+		Check.equal(-1, snapshot.read(unpublished), "no update published yet");
+		Check.that(Double.isNaN(unpublished[0]), "values unavailable before first update");
+
+		final AtomicLong torn = new AtomicLong();
+		final AtomicLong backwards = new AtomicLong();
+		final AtomicLong reads = new AtomicLong();
+		final Thread writer = new Thread(new Runnable() {
+
+			public void run() {
+				for (long update = 1; running; update++) {
+					snapshot.begin();
+					for (int i = 0; i < SIZE; i++) {
+						snapshot.set(i, update * 10 + i);
+					}
+					snapshot.end(update);
+				}
+			}
+		});
+		final Thread[] readers = new Thread[READERS];
+		for (int r = 0; r < READERS; r++) {
+			final boolean batch = (r % 2) == 1;
+			readers[r] = new Thread(new Runnable() {
+
+				public void run() {
+					// batch of metrics from several groups, every other entry in this group
+					final int[] metrics = new int[2 * SIZE];
+					final int[] indices = new int[SIZE];
+					for (int i = 0; i < SIZE; i++) {
+						metrics[2 * i] = 7;
+						metrics[2 * i + 1] = GROUP_ID + (SIZE - 1 - i);
+						indices[i] = 2 * i + 1;
+					}
+					final double[] dest = new double[batch ? metrics.length : SIZE];
+					long last = -1;
+					long count = 0;
+					while (running) {
+						final long timestamp;
+						boolean consistent = true;
+						if (batch) {
+							timestamp = snapshot.read(metrics, indices, GROUP_ID, dest);
+							for (int i : indices) {
+								consistent &= dest[i] == timestamp * 10 + (metrics[i] - GROUP_ID);
+							}
+						}
+						else {
+							timestamp = snapshot.read(dest);
+							for (int i = 0; i < SIZE; i++) {
+								consistent &= dest[i] == timestamp * 10 + i;
+							}
+						}
+						if ((timestamp > 0) && !consistent) torn.incrementAndGet();
+						if (timestamp < last) backwards.incrementAndGet();
+						last = timestamp;
+						count++;
+					}
+					reads.addAndGet(count);
+				}
+			});
+		}
+		writer.start();
+		for (Thread reader : readers) {
+			reader.start();
+		}
+		Thread.sleep(RUN_MILLIS);
+		running = false;
+		writer.join();
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		final long updates = snapshot.getTimestamp();
+		Check.equal(0, torn.get(), "reads mixing values of different updates");
+		Check.equal(0, backwards.get(), "reads going back to an older update");
+		Check.that(updates > 0, "writer published updates");
+		Check.equal(updates * 10 + 3, snapshot.get(3), 0, "single value of last update");
+		System.out.printf("ValueSnapshotTest: %d readers, %.1fM reads/s, %.1fM updates/s%n",
+				READERS, reads.get() * 1e-3 / RUN_MILLIS, updates * 1e-3 / RUN_MILLIS);
+		Check.done("ValueSnapshotTest");
+	}
+
+}
@@ -0,0 +1,189 @@
+package edu.nd.darts.cimon;
+
+import java.util.Random;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Simulates an hour of 50 periodic monitors with mixed periods and random phases
+ * on a virtual clock, each in its own group: 49 spread over two pool loopers, and
+ * one alone on a dedicated looper.  Groups either post their updates directly to
+ * their loopers, as without the {@link WakeupScheduler}, or schedule them through
+ * the scheduler.  Wakeups are counted for each looper as the distinct times at
+ * which it runs anything, so they include every thread woken.  Checks that no
+ * update runs before its deadline or after its tolerance, that the group alone
+ * on its looper runs at its deadline, that the scheduler reports the wakeups
+ * counted, and that cancelled groups run no further updates.  Prints the looper
+ * wakeups with and without coalescing.
+ */
+public class WakeupSchedulerTest {
+
+	private static final int MONITORS = 50;
+	private static final int POOL = 2;
+	private static final long[] PERIODS = {1000, 1500, 2000, 5000, 10000, 30000, 60000};
+	private static final long HOUR = 60 * 60 * 1000;
+	private static final long START = 1000000;
+
+	/** Periodic monitor, which reschedules itself on its own period. */
+	private static final class Monitor implements Runnable {
+		final int groupId;
+		final long period;
+		final Handler handler;
+		WakeupScheduler scheduler;
+		long deadline;
+		int updates;
+		boolean early;
+		boolean late;
+		boolean delayed;
+
+		Monitor(int groupId, long period, Handler handler) {
+			this.groupId = groupId;
+			this.period = period;
+			this.handler = handler;
+		}
+
+		void schedule() {
+			if (scheduler == null) {
+				handler.postAtTime(this, deadline);
+			}
+			else {
+				scheduler.schedule(groupId, handler, this, deadline,
+						WakeupScheduler.tolerance(period));
+			}
+		}
+
+		public void run() {
+			final long now = SystemClock.uptimeMillis();
+			early |= now < deadline;
+			late |= now > deadline + WakeupScheduler.tolerance(period);
+			delayed |= now != deadline;
+			updates++;
+			deadline += period;
+			schedule();
+		}
+	}
+
+	public static void main(String[] args) {
+		final long[] plain = simulate(false);
+		final long[] coalesced = simulate(true);
+		Check.equal(plain[1], coalesced[1], "same updates run with and without coalescing");
+		Check.that(coalesced[0] < plain[0], "coalescing reduces looper wakeups: " +
+				coalesced[0] + " of " + plain[0]);
+		System.out.printf("WakeupSchedulerTest: %d monitors on %d loopers, %d updates in an " +
+				"hour, %d looper wakeups without coalescing, %d with (%d saved, %.0f%%)%n",
+				MONITORS, POOL + 1, coalesced[1], plain[0], coalesced[0],
+				plain[0] - coalesced[0], 100.0 * (plain[0] - coalesced[0]) / plain[0]);
+		SystemClock.setVirtualTime(-1);
+		Check.done("WakeupSchedulerTest");
+	}
+
+	/**
+	 * Run monitors for an hour, then cancel every other group and run another hour.
+	 *
+	 * @return    looper wakeups and updates run in the first hour
+	 */
+	private static long[] simulate(boolean coalesce) {
+		SystemClock.setVirtualTime(START);
+		final Looper[] loopers = new Looper[POOL + 1];
+		final Handler[] handlers = new Handler[POOL + 1];
+		for (int i = 0; i < loopers.length; i++) {
+			loopers[i] = new HandlerThread((i < POOL) ? "metric-pool-" + i : "metric-0")
+					.getLooper();
+			handlers[i] = new Handler(loopers[i]);
+		}
+		final WakeupScheduler scheduler = new WakeupScheduler();
+		final Random random = new Random(1);
+		final Monitor[] monitors = new Monitor[MONITORS];
+		for (int i = 0; i < MONITORS; i++) {
+			final long period = PERIODS[random.nextInt(PERIODS.length)];
+			final Handler handler = (i == MONITORS - 1) ? handlers[POOL] : handlers[i % POOL];
+			monitors[i] = new Monitor(i, period, handler);
+			monitors[i].scheduler = coalesce ? scheduler : null;
+			monitors[i].deadline = START + 1 + random.nextInt((int) period);
+			monitors[i].schedule();
+		}
+		final long wakeups = run(loopers, START + HOUR);
+		boolean early = false;
+		boolean late = false;
+		int updates = 0;
+		for (Monitor monitor : monitors) {
+			early |= monitor.early;
+			late |= monitor.late;
+			updates += monitor.updates;
+		}
+		final String mode = coalesce ? "coalesced" : "uncoalesced";
+		Check.that(!early, mode + " updates never run before their deadline");
+		Check.that(!late, mode + " updates run within their tolerance");
+		Check.that(!monitors[MONITORS - 1].delayed, mode + " group alone on its looper " +
+				"runs at its deadline");
+		if (coalesce) {
+			Check.equal(updates, scheduler.getReleases(), "updates run reported");
+			Check.equal(wakeups, scheduler.getWakeups(), "looper wakeups reported");
+			final long[] stats = scheduler.getStats();
+			Check.equal(stats[1] - stats[0], scheduler.getWakeupsSaved(), "wakeups saved reported");
+		}
+		else {
+			// only cancellation of scheduled groups is checked below
+			return new long[] {wakeups, updates};
+		}
+
+		final int[] stopped = new int[MONITORS];
+		for (int i = 0; i < MONITORS; i += 2) {
+			scheduler.cancel(i);
+			stopped[i] = monitors[i].updates;
+		}
+		run(loopers, START + 2 * HOUR);
+		boolean idle = true;
+		boolean running = true;
+		for (int i = 0; i < MONITORS; i++) {
+			if ((i % 2) == 0) {
+				idle &= monitors[i].updates == stopped[i];
+			}
+			else {
+				running &= monitors[i].updates > stopped[i];
+			}
+		}
+		Check.that(idle, "cancelled groups run no further updates");
+		Check.that(running, "other groups keep running");
+		for (int i = 1; i < MONITORS; i += 2) {
+			scheduler.cancel(i);
+		}
+		boolean disarmed = true;
+		for (int i = 0; i < loopers.length; i++) {
+			disarmed &= (scheduler.nextWakeup(handlers[i]) == Long.MAX_VALUE) &&
+					(loopers[i].size() == 0);
+		}
+		Check.that(disarmed, "no looper wakeup once all cancelled");
+		return new long[] {wakeups, updates};
+	}
+
+	/**
+	 * Advance virtual clock through callbacks of all loopers, until end.
+	 *
+	 * @return    wakeups of loopers, the times at which each looper ran callbacks
+	 */
+	private static long run(Looper[] loopers, long end) {
+		long wakeups = 0;
+		while (true) {
+			long next = Long.MAX_VALUE;
+			for (Looper looper : loopers) {
+				next = Math.min(next, looper.nextWhen());
+			}
+			if (next > end) break;
+			if (next > SystemClock.uptimeMillis()) {
+				SystemClock.setVirtualTime(next);
+			}
+			for (Looper looper : loopers) {
+				if (looper.runDue() > 0) {
+					wakeups++;
+				}
+			}
+		}
+		SystemClock.setVirtualTime(end);
+		return wakeups;
+	}
+
+}
@@ -0,0 +1,134 @@
+package edu.nd.darts.cimon.contentprovider;
+
+import java.io.File;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.SystemClock;
+import edu.nd.darts.cimon.Check;
+import edu.nd.darts.cimon.database.CimonDatabaseAdapter;
+import edu.nd.darts.cimon.database.DataTable;
+import edu.nd.darts.cimon.database.RollupTable;
+
+/**
+ * Runs the queries of {@link CimonContentProvider} for readings and rollups on
+ * SQLite through JDBC, and checks with EXPLAIN QUERY PLAN that each table they
+ * read is searched through an index, rather than scanned.  Readings are spread
+ * over three days, so that queries of the Data view read several partitions.
+ */
+public class QueryPlanTest {
+
+	private static final long DAY = 24 * 60 * 60 * 1000;
+	private static final int METRIC = 30;
+	private static final int ROWS = 300;
+
+	private static Context context;
+	private static CimonContentProvider provider;
+
+	public static void main(String[] args) throws Exception {
+		if (!SQLiteDatabase.isAvailable()) {
+			System.out.println("QueryPlanTest: skipped, no SQLite JDBC driver on TEST_CLASSPATH");
+			return;
+		}
+		final File dir = File.createTempFile("cimon-plan", "");
+		dir.delete();
+		dir.mkdirs();
+		Context.setDataDirectory(dir);
+		context = new Context();
+		provider = new CimonContentProvider();
+		provider.attachInfo(context);
+		provider.onCreate();
+
+		final CimonDatabaseAdapter adapter = CimonDatabaseAdapter.getInstance(context);
+		final int monitor = adapter.insertMonitor(
+				System.currentTimeMillis() - SystemClock.uptimeMillis());
+		final long[] timestamps = new long[ROWS];
+		final float[] values = new float[ROWS];
+		final long now = SystemClock.uptimeMillis();
+		for (int i = 0; i < ROWS; i++) {
+			timestamps[i] = now - 2 * DAY + (i * 2 * DAY) / ROWS;
+			values[i] = i % 10;
+		}
+		Check.equal(ROWS, adapter.insertBulkData(METRIC, monitor, timestamps, values, ROWS),
+				"readings inserted");
+
+		final String since = String.valueOf(now - DAY);
+		checkPlan(Uri.withAppendedPath(CimonContentProvider.MONITOR_DATA_URI,
+				String.valueOf(monitor)), null, null, DataTable.TABLE_DATA, "monitor readings");
+		checkPlan(Uri.withAppendedPath(CimonContentProvider.MONITOR_DATA_URI,
+				String.valueOf(monitor)), DataTable.COLUMN_TIMESTAMP + " > ?",
+				new String[] {since}, DataTable.TABLE_DATA, "monitor readings since time");
+		checkPlan(CimonContentProvider.monitorPageUri(monitor, Long.MIN_VALUE, -1, 50),
+				null, null, DataTable.TABLE_DATA, "page of monitor readings");
+		checkPlan(Uri.withAppendedPath(CimonContentProvider.METRIC_DATA_URI,
+				String.valueOf(METRIC)), DataTable.COLUMN_TIMESTAMP + " > ?",
+				new String[] {since}, DataTable.TABLE_DATA, "metric readings since time");
+		checkPlan(Uri.withAppendedPath(CimonContentProvider.DATA_URI, "1"), null, null,
+				DataTable.TABLE_DATA, "reading by id");
+		checkPlan(Uri.withAppendedPath(CimonContentProvider.MONITOR_MINUTE_URI,
+				String.valueOf(monitor)), null, null, RollupTable.TABLE_MINUTE,
+				"minute rollups of monitor");
+		checkPlan(Uri.withAppendedPath(CimonContentProvider.METRIC_MINUTE_URI,
+				String.valueOf(METRIC)), null, null, RollupTable.TABLE_MINUTE,
+				"minute rollups of metric");
+		checkPlan(Uri.withAppendedPath(CimonContentProvider.MONITOR_HOUR_URI,
+				String.valueOf(monitor)), null, null, RollupTable.TABLE_HOUR,
+				"hour rollups of monitor");
+		checkPlan(Uri.withAppendedPath(CimonContentProvider.METRIC_HOUR_URI,
+				String.valueOf(METRIC)), RollupTable.COLUMN_TIMESTAMP + " > ?",
+				new String[] {since}, RollupTable.TABLE_HOUR, "hour rollups of metric since time");
+
+		adapter.close();
+		delete(dir);
+		Check.done("QueryPlanTest");
+	}
+
+	/**
+	 * Query uri through the provider, then explain the SQL it ran.  Every table
+	 * (or partition) of _table_ in the plan must be searched through an index.
+	 */
+	private static void checkPlan(Uri uri, String selection, String[] selectionArgs,
+			String table, String name) {
+		provider.query(uri, null, selection, selectionArgs, null).close();
+		final String sql = SQLiteDatabase.getLastQuery();
+		final SQLiteDatabase database = SQLiteDatabase.openDatabase(
+				context.getDatabasePath("cimon.db").getPath(), null,
+				SQLiteDatabase.OPEN_READONLY);
+		final Cursor plan = database.rawQuery("explain query plan " + sql,
+				SQLiteDatabase.getLastQueryArgs());
+		int searched = 0;
+		final StringBuilder detail = new StringBuilder();
+		try {
+			final int column = plan.getColumnIndex("detail");
+			while (plan.moveToNext()) {
+				final String step = plan.getString(column);
+				detail.append("\n    ").append(step);
+				final String[] words = step.split(" ");
+				if ((words.length < 2) || !words[1].startsWith(table)) {
+					continue;
+				}
+				Check.that(words[0].equals("SEARCH") && step.contains(" USING "),
+						name + " searches " + words[1] + " through an index: " + step);
+				searched++;
+			}
+		}
+		finally {
+			plan.close();
+			database.close();
+		}
+		Check.that(searched > 0, name + " reads " + table + ", plan:" + detail);
+	}
+
+	private static void delete(File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,131 @@
+package edu.nd.darts.cimon.database;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import edu.nd.darts.cimon.Check;
+
+/**
+ * Checks {@link CimonReaderPool} bounds: a WAL database gets the requested number
+ * of read-only connections, handed out round-robin and never the writer, while a
+ * database in rollback journal mode, or a pool of size zero, shares the writer
+ * connection, which closing the pool leaves open.  Also checks that a reader runs
+ * while the writer holds an exclusive transaction, seeing only committed rows.
+ */
+public class CimonReaderPoolTest {
+
+	private static final int SIZE = 3;
+
+	public static void main(String[] args) throws Exception {
+		if (!SQLiteDatabase.isAvailable()) {
+			System.out.println("CimonReaderPoolTest: skipped, no SQLite JDBC driver on TEST_CLASSPATH");
+			return;
+		}
+		final File dir = File.createTempFile("cimon-pool", "");
+		dir.delete();
+		dir.mkdirs();
+
+		// rollback journal: every query on the writer, which the pool does not own
+		final SQLiteDatabase journal = SQLiteDatabase.openOrCreateDatabase(
+				new File(dir, "journal.db").getPath(), null);
+		final CimonReaderPool shared = CimonReaderPool.open(journal, false, SIZE);
+		boolean writer = true;
+		for (int i = 0; i < 2 * SIZE; i++) {
+			writer &= (shared.acquire() == journal);
+		}
+		Check.that(writer, "journal mode pool serves queries from the writer");
+		shared.close();
+		Check.that(journal.isOpen(), "closing shared pool leaves writer open");
+		final CimonReaderPool empty = CimonReaderPool.open(journal, true, 0);
+		Check.that(empty.acquire() == journal, "pool of no readers serves queries from the writer");
+		journal.close();
+
+		// write-ahead logging: SIZE read-only connections, round-robin
+		final SQLiteDatabase database = SQLiteDatabase.openOrCreateDatabase(
+				new File(dir, "wal.db").getPath(), null);
+		Check.that(CimonStorageConfig.configureWriter(database), "write-ahead logging enabled");
+		database.execSQL("CREATE TABLE readings (_id INTEGER PRIMARY KEY, value REAL)");
+		database.execSQL("INSERT INTO readings (value) VALUES (1)");
+		final CimonReaderPool pool = CimonReaderPool.open(database, true, SIZE);
+		final SQLiteDatabase[] readers = new SQLiteDatabase[SIZE];
+		boolean distinct = true;
+		boolean readOnly = true;
+		for (int i = 0; i < SIZE; i++) {
+			readers[i] = pool.acquire();
+			readOnly &= readers[i].isReadOnly() && (readers[i] != database);
+			for (int j = 0; j < i; j++) {
+				distinct &= (readers[i] != readers[j]);
+			}
+		}
+		Check.that(distinct, "pool opens " + SIZE + " distinct readers");
+		Check.that(readOnly, "readers are read-only and not the writer");
+		boolean cycled = true;
+		for (int i = 0; i < 4 * SIZE; i++) {
+			cycled &= (pool.acquire() == readers[(i + SIZE) % SIZE]);
+		}
+		Check.that(cycled, "readers handed out round-robin");
+
+		// reader during an exclusive write transaction, from another thread
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		database.beginTransaction();
+		long during;
+		try {
+			database.execSQL("INSERT INTO readings (value) VALUES (2)");
+			final Future<Long> count = executor.submit(counter(pool));
+			try {
+				during = count.get(2, TimeUnit.SECONDS);
+			}
+			catch (TimeoutException e) {
+				during = -1;
+			}
+			database.setTransactionSuccessful();
+		}
+		finally {
+			database.endTransaction();
+		}
+		Check.equal(1, during, "reader runs during write transaction and sees committed rows");
+		Check.equal(2, executor.submit(counter(pool)).get(2, TimeUnit.SECONDS),
+				"reader sees rows after commit");
+		executor.shutdown();
+
+		pool.close();
+		boolean closed = true;
+		for (SQLiteDatabase reader : readers) {
+			closed &= !reader.isOpen();
+		}
+		Check.that(closed, "closing pool closes readers");
+		Check.that(database.isOpen(), "closing pool leaves writer open");
+		database.close();
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		dir.delete();
+		Check.done("CimonReaderPoolTest");
+	}
+
+	private static Callable<Long> counter(final CimonReaderPool pool) {
+		return new Callable<Long>() {
+			public Long call() {
+				return count(pool.acquire());
+			}
+		};
+	}
+
+	private static long count(SQLiteDatabase reader) {
+		final Cursor cursor = reader.rawQuery("SELECT COUNT(*) FROM readings", null);
+		try {
+			return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+		}
+		finally {
+			cursor.close();
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+package edu.nd.darts.cimon.database;
+
+import java.io.File;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import edu.nd.darts.cimon.Check;
+
+/**
+ * Checks the upgrade of a version 2 Data table, whose readings are split into
+ * the partitions of their days from the time offsets of their monitors, keeping
+ * their row ids, and that raw readings are retained until a retention period
+ * is set, and then dropped by whole partitions.
+ */
+public class DataPartitionsTest {
+
+	private static final long DAY = DataTable.PARTITION_PERIOD;
+	private static final int ROWS = 120;
+
+	public static void main(String[] args) throws Exception {
+		if (!SQLiteDatabase.isAvailable()) {
+			System.out.println("DataPartitionsTest: skipped, no SQLite JDBC driver on TEST_CLASSPATH");
+			return;
+		}
+		final File dir = File.createTempFile("cimon-partitions", "");
+		dir.delete();
+		dir.mkdirs();
+		upgrade(new File(dir, "legacy.db"));
+		retention(dir);
+		delete(dir);
+		Check.done("DataPartitionsTest");
+	}
+
+	/** Upgrade version 2 table, with readings of two monitors over three days. */
+	private static void upgrade(File file) {
+		final SQLiteDatabase database = SQLiteDatabase.openOrCreateDatabase(file.getPath(), null);
+		MonitorTable.onCreate(database);
+		database.execSQL("create table data (_id integer primary key autoincrement, " +
+				"metricid integer not null, monitorid integer not null, " +
+				"timestamp integer not null, value real not null)");
+		database.execSQL("create index data_monitor_time on data (monitorid, timestamp)");
+		final int today = DataTable.partitionOf(System.currentTimeMillis());
+		final long start = (today - 2) * DAY;
+		// second monitor started a day later, with timestamps from its own uptime
+		database.execSQL("insert into monitor (timeoffset, endtime) values (?, 0)",
+				new Object[] {start});
+		database.execSQL("insert into monitor (timeoffset, endtime) values (?, 0)",
+				new Object[] {start + DAY});
+		for (int i = 0; i < ROWS; i++) {
+			final long time = (i * 3 * DAY) / ROWS;
+			database.execSQL("insert into data (metricid, monitorid, timestamp, value) " +
+					"values (30, 1, ?, ?)", new Object[] {time, i});
+			if (time < 2 * DAY) {
+				database.execSQL("insert into data (metricid, monitorid, timestamp, value) " +
+						"values (31, 2, ?, ?)", new Object[] {time, i});
+			}
+		}
+
+		DataTable.onUpgrade(database, 2, 4);
+		final int[] days = new int[3];
+		int partitions = 0;
+		Cursor cursor = DataTable.queryPartitions(database);
+		while (cursor.moveToNext()) {
+			final int day = DataTable.partitionDay(cursor.getString(0));
+			if ((day >= today - 2) && (day <= today)) {
+				days[day - today + 2]++;
+			}
+			partitions++;
+		}
+		cursor.close();
+		Check.equal(3, partitions, "one partition per day of readings");
+		Check.that((days[0] == 1) && (days[1] == 1) && (days[2] == 1),
+				"partitions of the days of readings, from the offsets of their monitors");
+		Check.equal(ROWS / 3, count(database, DataTable.partitionName(today - 2), null),
+				"first day: first monitor only");
+		Check.equal(2 * ROWS / 3, count(database, DataTable.partitionName(today - 1), null),
+				"second day: both monitors");
+		Check.equal(2 * ROWS / 3, count(database, DataTable.partitionName(today), null),
+				"current day: both monitors");
+		Check.equal(5 * ROWS / 3, count(database, DataTable.TABLE_DATA, null),
+				"every reading in the Data view");
+		Check.equal(5 * ROWS / 3, count(database, DataTable.TABLE_DATA,
+				"_id <= " + (5 * ROWS / 3)), "row ids of readings kept");
+		cursor = database.rawQuery("select count(*) from sqlite_master where name in " +
+				"('data_legacy', 'data_monitor_time')", null);
+		cursor.moveToNext();
+		Check.equal(0, cursor.getInt(0), "version 2 table and indexes dropped");
+		cursor.close();
+		database.close();
+	}
+
+	/** Readings of 30 days ago are kept until a retention period is set. */
+	private static void retention(File dir) {
+		Context.setDataDirectory(dir);
+		final CimonDatabaseAdapter adapter = CimonDatabaseAdapter.getInstance(new Context());
+		final long offset = System.currentTimeMillis() - SystemClock.uptimeMillis();
+		final int monitor = adapter.insertMonitor(offset);
+		final long[] timestamps = new long[ROWS];
+		final float[] values = new float[ROWS];
+		final long now = SystemClock.uptimeMillis();
+		for (int i = 0; i < ROWS; i++) {
+			timestamps[i] = now - 30 * DAY + i;
+		}
+		Check.equal(ROWS, adapter.insertBulkData(30, monitor, timestamps, values, ROWS),
+				"old readings stored without retention period");
+		Check.that(adapter.insertData(30, monitor, now, 0) > 0, "current reading stored");
+		adapter.setRetention(CimonDatabaseAdapter.RETAIN_ALL, CimonDatabaseAdapter.RETAIN_ALL,
+				CimonDatabaseAdapter.RETAIN_ALL);
+		Check.equal(ROWS + 1, countData(adapter), "old readings kept while retaining all");
+		adapter.setRetention(7, 31, 366);
+		Check.equal(1, countData(adapter), "old partition dropped once retention is set");
+		Check.equal(0, adapter.insertBulkData(30, monitor, timestamps, values, ROWS),
+				"expired readings skipped");
+		boolean rejected = false;
+		try {
+			adapter.setRetention(-1, 31, 366);
+		}
+		catch (IllegalArgumentException e) {
+			rejected = true;
+		}
+		Check.that(rejected, "negative retention rejected");
+		adapter.close();
+	}
+
+	private static int countData(CimonDatabaseAdapter adapter) {
+		final Cursor cursor = adapter.queryMonitorPage(1, new String[] {DataTable.COLUMN_ID,
+				DataTable.COLUMN_TIMESTAMP}, Long.MIN_VALUE, -1, 10 * ROWS);
+		final int rows = cursor.getCount();
+		cursor.close();
+		return rows;
+	}
+
+	private static int count(SQLiteDatabase database, String table, String where) {
+		final Cursor cursor = database.rawQuery("select count(*) from " + table +
+				(where == null ? "" : " where " + where), null);
+		cursor.moveToNext();
+		final int rows = cursor.getInt(0);
+		cursor.close();
+		return rows;
+	}
+
+	private static void delete(File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
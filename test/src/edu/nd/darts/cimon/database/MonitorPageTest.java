@@ -0,0 +1,137 @@
+package edu.nd.darts.cimon.database;
+
+import java.io.File;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import edu.nd.darts.cimon.Check;
+import edu.nd.darts.cimon.contentprovider.CimonContentProvider;
+
+/**
+ * Pages through readings of a monitor spread over three day partitions, through
+ * {@link CimonContentProvider#monitorPageUri}, and checks that every reading is
+ * returned once, in order of timestamp and row id, with pages filled across
+ * partition boundaries, and that pages read partitions rather than the Data view.
+ * Also checks that retention of raw readings is capped below
+ * {@link DataTable#MAX_PARTITIONS} days, the partitions of the Data view.
+ */
+public class MonitorPageTest {
+
+	private static final long DAY = 24 * 60 * 60 * 1000;
+	private static final int ROWS = 300;
+	private static final int PAGE = 7;
+
+	public static void main(String[] args) throws Exception {
+		if (!SQLiteDatabase.isAvailable()) {
+			System.out.println("MonitorPageTest: skipped, no SQLite JDBC driver on TEST_CLASSPATH");
+			return;
+		}
+		final File dir = File.createTempFile("cimon-page", "");
+		dir.delete();
+		dir.mkdirs();
+		Context.setDataDirectory(dir);
+		final Context context = new Context();
+		final CimonContentProvider provider = new CimonContentProvider();
+		provider.attachInfo(context);
+		provider.onCreate();
+
+		final CimonDatabaseAdapter adapter = CimonDatabaseAdapter.getInstance(context);
+		final long offset = System.currentTimeMillis() - SystemClock.uptimeMillis();
+		final int monitor = adapter.insertMonitor(offset);
+		final int other = adapter.insertMonitor(offset);
+		final long[] timestamps = new long[ROWS];
+		final float[] values = new float[ROWS];
+		final long now = SystemClock.uptimeMillis();
+		for (int i = 0; i < ROWS; i++) {
+			timestamps[i] = now - 2 * DAY + (i * 2 * DAY) / ROWS;
+			values[i] = i;
+		}
+		Check.equal(ROWS, adapter.insertBulkData(30, monitor, timestamps, values, ROWS),
+				"readings of monitor inserted");
+		Check.equal(ROWS, adapter.insertBulkData(30, other, timestamps, values, ROWS),
+				"readings of other monitor inserted");
+
+		final String[] projection = {DataTable.COLUMN_ID, DataTable.COLUMN_TIMESTAMP,
+				DataTable.COLUMN_VALUE};
+		long afterTime = Long.MIN_VALUE;
+		long afterId = -1;
+		int read = 0;
+		int pages = 0;
+		boolean ordered = true;
+		boolean fullPages = true;
+		boolean viewQueried = false;
+		while (true) {
+			final Cursor cursor = provider.query(CimonContentProvider.monitorPageUri(
+					monitor, afterTime, afterId, PAGE), projection, null, null, null);
+			final String sql = SQLiteDatabase.getLastQuery();
+			viewQueried |= sql.contains(" FROM " + DataTable.TABLE_DATA + " ");
+			final int count = cursor.getCount();
+			if (count == 0) {
+				cursor.close();
+				break;
+			}
+			pages++;
+			if ((count < PAGE) && (read + count < ROWS)) {
+				fullPages = false;
+			}
+			while (cursor.moveToNext()) {
+				final long id = cursor.getLong(0);
+				final long time = cursor.getLong(1);
+				if ((time < afterTime) || ((time == afterTime) && (id <= afterId))) {
+					ordered = false;
+				}
+				if (cursor.getFloat(2) != read) {
+					ordered = false;
+				}
+				afterTime = time;
+				afterId = id;
+				read++;
+			}
+			cursor.close();
+		}
+		Check.equal(ROWS, read, "every reading of monitor read once");
+		Check.equal((ROWS + PAGE - 1) / PAGE, pages, "pages read");
+		Check.that(ordered, "readings in order of timestamp and row id");
+		Check.that(fullPages, "pages filled across partition boundaries");
+		Check.that(!viewQueried, "pages read partitions rather than the Data view");
+
+		boolean rejected = false;
+		try {
+			adapter.setRetention(DataTable.MAX_PARTITIONS, 31, 366);
+		}
+		catch (IllegalArgumentException e) {
+			rejected = true;
+		}
+		Check.that(rejected, "retention beyond maximum days rejected");
+		adapter.setRetention(120, 31, 366);
+		adapter.setRetention(DataTable.MAX_PARTITIONS - 1, 31, 366);
+		Check.equal(ROWS, countReadings(provider, monitor), "readings retained for " +
+				(DataTable.MAX_PARTITIONS - 1) + " days");
+
+		adapter.close();
+		delete(dir);
+		Check.done("MonitorPageTest");
+	}
+
+	private static int countReadings(CimonContentProvider provider, int monitor) {
+		final Cursor cursor = provider.query(CimonContentProvider.monitorPageUri(monitor,
+				Long.MIN_VALUE, -1, 2 * ROWS), new String[] {DataTable.COLUMN_ID}, null, null,
+				null);
+		final int count = cursor.getCount();
+		cursor.close();
+		return count;
+	}
+
+	private static void delete(File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}
@@ -0,0 +1,265 @@
+package edu.nd.darts.cimon.database;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.SystemClock;
+import edu.nd.darts.cimon.Check;
+import edu.nd.darts.cimon.DataBatch;
+import edu.nd.darts.cimon.contentprovider.CimonContentProvider;
+
+/**
+ * Checks the {@link SampleLog}: a reopened stream continues its last segment,
+ * with the same encoding as a stream which was never closed; row ids stay the
+ * same when old segments expire, and when the log is reopened; segments expire
+ * with the retention of the Data table.  With SQLite on TEST_CLASSPATH, also
+ * checks that provider queries of a monitor in the sample log honour selection
+ * and sort order, and that queries of all readings and of a metric include
+ * readings of the sample log.
+ */
+public class SampleLogTest {
+
+	private static final long DAY = 24 * 60 * 60 * 1000;
+	private static final int METRIC = 30;
+	private static final int MONITOR = 7;
+
+	public static void main(String[] args) throws Exception {
+		final File dir = File.createTempFile("cimon-log", "");
+		dir.delete();
+		dir.mkdirs();
+		checkReopen(new File(dir, "reopen"));
+		checkExpiry(new File(dir, "expiry"));
+		if (SQLiteDatabase.isAvailable()) {
+			checkQueries(new File(dir, "provider"));
+		}
+		else {
+			System.out.println("SampleLogTest: provider queries skipped, no SQLite JDBC " +
+					"driver on TEST_CLASSPATH");
+		}
+		delete(dir);
+		Check.done("SampleLogTest");
+	}
+
+	/**
+	 * Stream closed and reopened half way must write the same segment as a stream
+	 * written without interruption.
+	 */
+	private static void checkReopen(File dir) throws Exception {
+		final int rows = 2000;
+		final long[] timestamps = new long[rows];
+		final float[] values = new float[rows];
+		final Random random = new Random(1);
+		long time = 1000000;
+		for (int i = 0; i < rows; i++) {
+			time += 10 + random.nextInt(3);
+			timestamps[i] = time;
+			values[i] = 20f + (i / 50) * 0.5f;
+		}
+
+		final SampleStream whole = new SampleStream(new File(dir, "whole"), MONITOR);
+		whole.append(METRIC, timestamps, values, rows);
+		whole.close();
+
+		for (int half = 1; half <= 3; half++) {
+			final File split = new File(dir, "split" + half);
+			SampleStream stream = new SampleStream(split, MONITOR);
+			final int first = half * 333;
+			stream.append(METRIC, timestamps, values, first);
+			stream.close();
+			stream = new SampleStream(split, MONITOR);
+			stream.append(METRIC, Arrays.copyOfRange(timestamps, first, rows),
+					Arrays.copyOfRange(values, first, rows), rows - first);
+			stream.close();
+			final String[] segments = split.list();
+			Check.equal(1, segments.length, "reopened stream continues its last segment");
+			Check.that(Arrays.equals(read(new File(dir, "whole/0.seg")),
+					read(new File(split, segments[0]))),
+					"reopened stream encodes as if never closed, after " + first + " readings");
+		}
+
+		final long[] decodedTimes = new long[rows];
+		final float[] decodedValues = new float[rows];
+		Check.equal(rows, SampleSegment.decode(new File(dir, "split1/0.seg"), rows,
+				decodedTimes, decodedValues), "readings of reopened segment decoded");
+		Check.that(Arrays.equals(timestamps, decodedTimes) &&
+				Arrays.equals(values, decodedValues), "decoded readings match appended");
+	}
+
+	/**
+	 * Expire the oldest segments of a stream, and check that row ids of the
+	 * remaining readings are unchanged.
+	 */
+	private static void checkExpiry(File root) throws Exception {
+		final int rows = 60000;
+		SampleLog log = new SampleLog(root);
+		log.create(MONITOR);
+		final Random random = new Random(2);
+		final long[] timestamps = new long[DataBatch.CAPACITY];
+		final float[] values = new float[DataBatch.CAPACITY];
+		long time = 1000000;
+		for (int row = 0; row < rows; row += DataBatch.CAPACITY) {
+			for (int i = 0; i < DataBatch.CAPACITY; i++) {
+				time += 10;
+				timestamps[i] = time;
+				values[i] = Float.intBitsToFloat(random.nextInt());
+			}
+			log.append(METRIC, MONITOR, timestamps, values, DataBatch.CAPACITY);
+		}
+		final File dir = new File(root, String.valueOf(MONITOR));
+		final File[] segments = dir.listFiles();
+		Arrays.sort(segments);
+		Check.that(segments.length >= 3, "readings span several segments: " + segments.length);
+		final long[] ids = ids(log.queryPage(MONITOR, null, -1, rows));
+		Check.equal(rows, ids.length, "readings of stream before expiry");
+
+		final long now = System.currentTimeMillis();
+		for (int i = 0; i < segments.length; i++) {
+			segments[i].setLastModified(now - 2 * DAY);
+		}
+		final long expired = log.deleteBefore(now - DAY);
+		Check.that((expired > 0) && (expired < rows),
+				"all but the segment being written expired: " + expired);
+		Check.equal(1, dir.list().length, "segments left after expiry");
+
+		long[] remaining = ids(log.queryPage(MONITOR, null, -1, rows));
+		Check.equal(rows - expired, remaining.length, "readings of stream after expiry");
+		Check.that(Arrays.equals(Arrays.copyOfRange(ids, (int) expired, rows), remaining),
+				"row ids unchanged by expiry");
+		final long afterId = (expired + rows) / 2;
+		remaining = ids(log.queryPage(MONITOR, null, afterId, 10));
+		Check.equal(afterId + 1, remaining[0], "page follows row id after expiry");
+
+		log.close();
+		log = new SampleLog(root);
+		remaining = ids(log.queryPage(MONITOR, null, afterId, 10));
+		Check.equal(afterId + 1, remaining[0], "row ids unchanged when log is reopened");
+
+		log.close();
+		log.deleteBefore(now + DAY);
+		Check.that(!log.contains(MONITOR), "closed stream removed once every segment expired");
+	}
+
+	private static void checkQueries(File dir) throws Exception {
+		Context.setDataDirectory(dir);
+		final Context context = new Context();
+		final CimonContentProvider provider = new CimonContentProvider();
+		provider.attachInfo(context);
+		provider.onCreate();
+		final CimonDatabaseAdapter adapter = CimonDatabaseAdapter.getInstance(context);
+		final long offset = System.currentTimeMillis() - SystemClock.uptimeMillis();
+		final int logged = adapter.insertMonitor(offset, true);
+		final int stored = adapter.insertMonitor(offset, false);
+		final int rows = 500;
+		final long now = SystemClock.uptimeMillis();
+		final DataBatch batch = DataBatch.obtain();
+		for (int i = 0; i < rows; i++) {
+			batch.add(now - rows + i, i % 100);
+		}
+		Check.equal(rows, adapter.insertBatchData(METRIC, logged, batch),
+				"readings appended to sample log");
+		Check.equal(rows, adapter.insertBatchData(METRIC, stored, batch),
+				"readings inserted in Data table");
+		batch.recycle();
+		final String[] projection = {DataTable.COLUMN_MONITOR_ID, DataTable.COLUMN_TIMESTAMP,
+				DataTable.COLUMN_VALUE};
+
+		Cursor cursor = provider.query(Uri.withAppendedPath(CimonContentProvider.MONITOR_DATA_URI,
+				String.valueOf(logged)), projection, null, null, null);
+		Check.equal(rows, cursor.getCount(), "readings of sample log monitor streamed");
+		cursor.close();
+
+		cursor = provider.query(Uri.withAppendedPath(CimonContentProvider.MONITOR_DATA_URI,
+				String.valueOf(logged)), projection, DataTable.COLUMN_VALUE + " >= ?",
+				new String[] {"90"}, DataTable.COLUMN_TIMESTAMP + " desc");
+		Check.equal(rows / 10, cursor.getCount(), "selection applied to sample log monitor");
+		boolean selected = true;
+		boolean sorted = true;
+		long previous = Long.MAX_VALUE;
+		while (cursor.moveToNext()) {
+			selected &= (cursor.getFloat(2) >= 90) && (cursor.getInt(0) == logged);
+			sorted &= cursor.getLong(1) < previous;
+			previous = cursor.getLong(1);
+		}
+		cursor.close();
+		Check.that(selected, "only selected readings of monitor returned");
+		Check.that(sorted, "sort order applied to sample log monitor");
+
+		cursor = provider.query(Uri.withAppendedPath(CimonContentProvider.METRIC_DATA_URI,
+				String.valueOf(METRIC)), projection, DataTable.COLUMN_VALUE + " < ?",
+				new String[] {"10"}, DataTable.COLUMN_TIMESTAMP + ", " +
+				DataTable.COLUMN_MONITOR_ID);
+		int fromLog = 0;
+		int fromTable = 0;
+		sorted = true;
+		previous = Long.MIN_VALUE;
+		while (cursor.moveToNext()) {
+			if (cursor.getInt(0) == logged) fromLog++;
+			if (cursor.getInt(0) == stored) fromTable++;
+			sorted &= cursor.getLong(1) >= previous;
+			previous = cursor.getLong(1);
+		}
+		cursor.close();
+		Check.equal(rows / 10, fromLog, "metric readings include sample log");
+		Check.equal(rows / 10, fromTable, "metric readings include Data table");
+		Check.that(sorted, "metric readings sorted across sample log and Data table");
+
+		cursor = provider.query(CimonContentProvider.DATA_URI, projection, null, null, null);
+		Check.equal(2 * rows, cursor.getCount(), "all readings include sample log");
+		cursor.close();
+
+		// readings of another metric start a new segment, so the first may expire
+		final DataBatch next = DataBatch.obtain();
+		next.add(now, 1);
+		adapter.insertBatchData(METRIC + 1, logged, next);
+		next.recycle();
+		final File stream = new File(new File(context.getFilesDir(), SampleLog.DIRECTORY),
+				String.valueOf(logged));
+		Check.equal(2, stream.list().length, "segments of sample log monitor");
+		for (File segment : stream.listFiles()) {
+			segment.setLastModified(System.currentTimeMillis() - 30 * DAY);
+		}
+		adapter.setRetention(7, 31, 366);
+		Check.equal(1, stream.list().length, "segments expired with retention of Data table");
+
+		adapter.close();
+	}
+
+	private static long[] ids(Cursor cursor) {
+		final long[] ids = new long[cursor.getCount()];
+		final int column = cursor.getColumnIndex(DataTable.COLUMN_ID);
+		for (int i = 0; cursor.moveToNext(); i++) {
+			ids[i] = cursor.getLong(column);
+		}
+		cursor.close();
+		return ids;
+	}
+
+	private static byte[] read(File file) throws Exception {
+		final RandomAccessFile access = new RandomAccessFile(file, "r");
+		try {
+			final byte[] data = new byte[(int) access.length()];
+			access.readFully(data);
+			return data;
+		}
+		finally {
+			access.close();
+		}
+	}
+
+	private static void delete(File file) {
+		final File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+}